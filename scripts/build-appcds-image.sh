@@ -0,0 +1,47 @@
+#!/usr/bin/env bash
+# Builds the jib image with an AppCDS archive.
+# 1. builds the plain image and runs it once with -XX:ArchiveClassesAtExit, issuing a token so the token path is archived
+# 2. rebuilds the image with the 'appcds' profile, which adds the archive as an extra layer
+# Both builds are reproducible, so class path and jar timestamps inside the image match the ones the archive was dumped with.
+#
+# Usage: scripts/build-appcds-image.sh <image> <authorization-secret>
+# Datasource of the training run is passed through SPRING_DATASOURCE_URL, SPRING_DATASOURCE_USERNAME and SPRING_DATASOURCE_PASSWORD.
+# The training run listens on SERVER_PORT, 9000 ( server.port ) by default.
+set -euo pipefail
+
+IMAGE="${1:?image required}"
+SECRET="${2:?authorization secret required}"
+ARCHIVE_DIR="$(pwd)/target/appcds"
+CLIENT_ID="appcds-training-$$"
+PORT="${SERVER_PORT:-9000}"
+BASE_URL="http://localhost:${PORT}/api/v1/oauth2"
+
+./mvnw -B -q package jib:dockerBuild -DskipTests -Dimage="${IMAGE}"
+
+rm -rf "${ARCHIVE_DIR}" && mkdir -p "${ARCHIVE_DIR}"
+container=$(docker run -d --network host \
+  -v "${ARCHIVE_DIR}:/appcds" \
+  -e JAVA_TOOL_OPTIONS="-XX:ArchiveClassesAtExit=/appcds/app.jsa" \
+  -e SPRING_DATASOURCE_URL -e SPRING_DATASOURCE_USERNAME -e SPRING_DATASOURCE_PASSWORD \
+  -e AUTHORIZATIONSECRET="${SECRET}" \
+  -e SERVER_PORT="${PORT}" \
+  "${IMAGE}")
+trap 'docker rm -f "${container}" > /dev/null 2>&1 || true' EXIT
+
+for _ in $(seq 1 600); do
+  if curl -sf -o /dev/null -X POST "${BASE_URL}/client" \
+      -H "Authorization: ${SECRET}" -H "Content-Type: application/json" \
+      -d "{\"client_id\":\"${CLIENT_ID}\",\"client_secret\":\"secret\",\"scopes\":[\"ALL\"],\"client_authentication_methods\":[\"CLIENT_SECRET_BASIC\"],\"client_authorization_grant_types\":[\"CLIENT_CREDENTIALS\"]}"; then
+    break
+  fi
+  sleep 0.2
+done
+
+curl -sf -o /dev/null -X POST "${BASE_URL}/token" -u "${CLIENT_ID}:secret" -d "grant_type=client_credentials&scope=ALL"
+curl -sf -o /dev/null -X DELETE "${BASE_URL}/client/${CLIENT_ID}" -H "Authorization: ${SECRET}" || true
+
+# the archive is dumped while the JVM exits
+docker stop -t 120 "${container}" > /dev/null
+[[ -s "${ARCHIVE_DIR}/app.jsa" ]] || { echo "archive was not created" >&2; exit 1; }
+
+./mvnw -B -q -Pappcds package jib:dockerBuild -DskipTests -Dimage="${IMAGE}"
@@ -0,0 +1,9 @@
+#!/usr/bin/env bash
+# Lookup rates of the jpa and jdbc client repositories, called in process against a Postgres started in Docker.
+# Registers 'clients' clients, then measures findByClientId ( token requests ) and findById ( introspection ) of each
+# implementation, with nothing but the repository and the database in the measured path.
+#
+# Usage: scripts/client-repository-benchmark.sh [jmh-options], e.g. '-p clients=10000 -t 32'
+set -euo pipefail
+
+exec "$(dirname "$0")/run-benchmark.sh" ClientRepositoryBenchmark "$@"
@@ -0,0 +1,13 @@
+#!/usr/bin/env bash
+# Runs a JMH benchmark from src/test/java in forked JVMs, benchmarks starting Postgres need Docker.
+# Extra arguments are passed to JMH, e.g. '-p clients=10000' or '-t 16'.
+#
+# Usage: scripts/run-benchmark.sh <benchmark-class> [jmh-options]
+set -euo pipefail
+
+BENCHMARK="${1:?benchmark class required}"
+shift
+cd "$(dirname "$0")/.."
+
+mvn -q -B test-compile dependency:build-classpath -Dmdep.outputFile=target/benchmark.classpath -Dmdep.includeScope=test
+exec java -cp "target/test-classes:target/classes:$(cat target/benchmark.classpath)" org.openjdk.jmh.Main "${BENCHMARK}" "$@"
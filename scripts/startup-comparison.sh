@@ -0,0 +1,70 @@
+#!/usr/bin/env bash
+# Smoke test and startup comparison between the jvm jar and the native binary.
+# For each artifact: start it, register a client, poll the token endpoint until a token is issued,
+# then report time to first token and resident memory.
+#
+# Usage: scripts/startup-comparison.sh <authorization-secret> [jar] [native-binary]
+# When MAX_FIRST_TOKEN_MS is set the script fails if an artifact exceeds it, so CI can track time to first token.
+# Needs a running database configured through the usual spring.datasource.* environment variables.
+set -euo pipefail
+
+SECRET="${1:?authorization secret required}"
+JAR="${2:-target/authorization-server-1.0.0.jar}"
+JAVA_OPTS="${JAVA_OPTS:-}"
+NATIVE="${3:-target/authorization-server}"
+PORT="${SERVER_PORT:-8080}"
+BASE_URL="http://localhost:${PORT}/api/v1/oauth2"
+TIMEOUT_SECONDS="${TIMEOUT_SECONDS:-120}"
+
+now_millis() {
+  date +%s%3N
+}
+
+# $1 = label, remaining = command
+measure() {
+  local label="$1"
+  shift
+  local client_id="smoke-${label}-$$"
+  local start pid first_token rss
+
+  start=$(now_millis)
+  "$@" --server.port="${PORT}" --authorizationSecret="${SECRET}" > "target/${label}-smoke.log" 2>&1 &
+  pid=$!
+  trap 'kill ${pid} 2>/dev/null || true' EXIT
+
+  until curl -sf -o /dev/null -X POST "${BASE_URL}/client" \
+      -H "Authorization: ${SECRET}" -H "Content-Type: application/json" \
+      -d "{\"client_id\":\"${client_id}\",\"client_secret\":\"secret\",\"scopes\":[\"ALL\"],\"client_authentication_methods\":[\"CLIENT_SECRET_BASIC\"],\"client_authorization_grant_types\":[\"CLIENT_CREDENTIALS\"]}"; do
+    if (( $(now_millis) - start > TIMEOUT_SECONDS * 1000 )); then
+      echo "${label}: client registration timed out, see target/${label}-smoke.log" >&2
+      exit 1
+    fi
+    sleep 0.05
+  done
+
+  curl -sf -o /dev/null -X POST "${BASE_URL}/token" -u "${client_id}:secret" \
+      -d "grant_type=client_credentials&scope=ALL" \
+      || { echo "${label}: token request failed" >&2; exit 1; }
+  first_token=$(( $(now_millis) - start ))
+  rss=$(awk '/VmRSS/ {print $2}' "/proc/${pid}/status")
+
+  curl -sf -o /dev/null -X DELETE "${BASE_URL}/client/${client_id}" -H "Authorization: ${SECRET}" || true
+  kill "${pid}"
+  wait "${pid}" 2>/dev/null || true
+  trap - EXIT
+
+  printf '%-8s time to first token: %6d ms   rss: %8d kB\n' "${label}" "${first_token}" "${rss}"
+  if [[ -n "${MAX_FIRST_TOKEN_MS:-}" ]] && (( first_token > MAX_FIRST_TOKEN_MS )); then
+    echo "${label}: time to first token ${first_token} ms exceeds budget of ${MAX_FIRST_TOKEN_MS} ms" >&2
+    exit 1
+  fi
+}
+
+mkdir -p target
+if [[ -f "${JAR}" ]]; then
+  # shellcheck disable=SC2086
+  measure jvm java ${JAVA_OPTS} -jar "${JAR}"
+fi
+if [[ -x "${NATIVE}" ]]; then
+  measure native "${NATIVE}"
+fi
@@ -0,0 +1,8 @@
+#!/usr/bin/env bash
+# Token rates of the authorization server chain against the client_credentials fast path, in process.
+# Extra arguments are passed to JMH, e.g. '-p tokenReusePercentage=0' or '-t 32'.
+#
+# Usage: scripts/token-fast-path-benchmark.sh [jmh-options]
+set -euo pipefail
+
+exec "$(dirname "$0")/run-benchmark.sh" TokenFastPathBenchmark "$@"
@@ -1,16 +1,29 @@
 package com.authorizationserver;
 
+import com.authorizationserver.config.NativeRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * @author Blajan George
  */
+@EnableScheduling
 @SpringBootApplication
+@ImportRuntimeHints(NativeRuntimeHints.class)
 public class AuthorizationServerApplication {
 
+    /**
+     * Maximum number of recorded startup steps
+     */
+    private static final int STARTUP_STEPS_CAPACITY = 4096;
+
     public static void main(String[] args) {
-        SpringApplication.run(AuthorizationServerApplication.class, args);
+        SpringApplication application = new SpringApplication(AuthorizationServerApplication.class);
+        application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS_CAPACITY));
+        application.run(args);
     }
 
 }
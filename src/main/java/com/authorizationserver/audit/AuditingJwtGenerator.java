@@ -0,0 +1,51 @@
+package com.authorizationserver.audit;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenContext;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
+
+/**
+ * Token generator that publishes every signed token to {@link TokenAuditRingBuffer}
+ *
+ * @author Blajan George
+ */
+public class AuditingJwtGenerator implements OAuth2TokenGenerator<Jwt> {
+    /**
+     * Kid header name
+     */
+    private static final String KID_HEADER = "kid";
+    /**
+     * Generator that signs tokens
+     */
+    private final OAuth2TokenGenerator<Jwt> delegate;
+    /**
+     * Audit ring buffer
+     */
+    private final TokenAuditRingBuffer ringBuffer;
+
+    public AuditingJwtGenerator(OAuth2TokenGenerator<Jwt> delegate, TokenAuditRingBuffer ringBuffer) {
+        this.delegate = delegate;
+        this.ringBuffer = ringBuffer;
+    }
+
+    /**
+     * Sign a token and publish its audit event
+     *
+     * @param context token context
+     * @return {@link Jwt}
+     */
+    @Override
+    public Jwt generate(OAuth2TokenContext context) {
+        Jwt jwt = delegate.generate(context);
+        if (jwt != null) {
+            ringBuffer.publish(
+                    context.getRegisteredClient().getClientId(),
+                    (String) jwt.getHeaders().get(KID_HEADER),
+                    jwt.getId(),
+                    jwt.getClaims(),
+                    jwt.getIssuedAt(),
+                    jwt.getExpiresAt());
+        }
+        return jwt;
+    }
+}
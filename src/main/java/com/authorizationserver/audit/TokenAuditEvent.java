@@ -0,0 +1,56 @@
+package com.authorizationserver.audit;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Preallocated slot of {@link TokenAuditRingBuffer}, overwritten in place for every issued token.
+ * Holds references to values already owned by the issued token, so publishing allocates nothing.
+ *
+ * @author Blajan George
+ */
+public class TokenAuditEvent {
+    private String clientId;
+    private String kid;
+    private String jti;
+    private Map<String, Object> claims;
+    private Instant issuedAt;
+    private Instant expiresAt;
+
+    void set(String clientId, String kid, String jti, Map<String, Object> claims, Instant issuedAt, Instant expiresAt) {
+        this.clientId = clientId;
+        this.kid = kid;
+        this.jti = jti;
+        this.claims = claims;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    void clear() {
+        set(null, null, null, null, null, null);
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public String getKid() {
+        return kid;
+    }
+
+    public String getJti() {
+        return jti;
+    }
+
+    public Iterable<String> getClaimNames() {
+        return claims.keySet();
+    }
+
+    public Instant getIssuedAt() {
+        return issuedAt;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
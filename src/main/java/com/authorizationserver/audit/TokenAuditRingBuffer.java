@@ -0,0 +1,147 @@
+package com.authorizationserver.audit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Bounded multi producer, single consumer ring buffer of preallocated {@link TokenAuditEvent} slots.
+ * Token issuing threads claim a sequence, fill the slot in place and mark it published; {@link TokenAuditWriter} drains it.
+ * When the buffer is full events are dropped or the issuing thread waits, depending on 'audit.overflowStrategy'.
+ *
+ * @author Blajan George
+ */
+@Component
+@ConditionalOnProperty(value = "audit.enabled", havingValue = "true")
+public class TokenAuditRingBuffer {
+    /**
+     * Behaviour when the buffer is full
+     */
+    public enum OverflowStrategy {
+        DROP,
+        BLOCK
+    }
+
+    /**
+     * Preallocated slots
+     */
+    private final TokenAuditEvent[] events;
+    /**
+     * Sequence published in each slot, -1 when the slot was never written
+     */
+    private final AtomicLongArray published;
+    /**
+     * Index mask, capacity is a power of two
+     */
+    private final int mask;
+    /**
+     * Next sequence to be claimed by a producer
+     */
+    private final AtomicLong claimed = new AtomicLong();
+    /**
+     * Next sequence to be read by the consumer
+     */
+    private final AtomicLong consumed = new AtomicLong();
+    /**
+     * Overflow strategy
+     */
+    private final OverflowStrategy overflowStrategy;
+    /**
+     * Dropped events
+     */
+    private final Counter dropped;
+
+    public TokenAuditRingBuffer(@Value("${audit.bufferSize:65536}") Integer bufferSize,
+                                @Value("${audit.overflowStrategy:DROP}") OverflowStrategy overflowStrategy,
+                                MeterRegistry meterRegistry) {
+        int capacity = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1;
+        this.events = new TokenAuditEvent[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            events[i] = new TokenAuditEvent();
+            published.set(i, -1);
+        }
+        this.mask = capacity - 1;
+        this.overflowStrategy = overflowStrategy;
+
+        this.dropped = Counter.builder("token.audit.dropped").register(meterRegistry);
+        Gauge.builder("token.audit.lag", this, TokenAuditRingBuffer::lag).register(meterRegistry);
+        Gauge.builder("token.audit.capacity", this, buffer -> buffer.events.length).register(meterRegistry);
+    }
+
+    /**
+     * Publish an issued token
+     *
+     * @param clientId  client id
+     * @param kid       signing key id
+     * @param jti       token id
+     * @param claims    token claims, only claim names are recorded
+     * @param issuedAt  issued at
+     * @param expiresAt expires at
+     * @return true if the event was published, false if it was dropped
+     */
+    public boolean publish(String clientId, String kid, String jti, Map<String, Object> claims, Instant issuedAt, Instant expiresAt) {
+        long sequence;
+        while (true) {
+            sequence = claimed.get();
+            if (sequence - consumed.get() >= events.length) {
+                if (overflowStrategy == OverflowStrategy.DROP) {
+                    dropped.increment();
+                    return false;
+                }
+                LockSupport.parkNanos(1_000);
+            } else if (claimed.compareAndSet(sequence, sequence + 1)) {
+                break;
+            }
+        }
+
+        int index = (int) sequence & mask;
+        events[index].set(clientId, kid, jti, claims, issuedAt, expiresAt);
+        published.lazySet(index, sequence);
+        return true;
+    }
+
+    /**
+     * Hand published events to the handler in order, must be called by a single consumer thread.
+     * A slot is only valid during the handler call.
+     *
+     * @param handler   event handler
+     * @param maxEvents maximum number of events drained
+     * @return number of drained events
+     */
+    public int drain(Consumer<TokenAuditEvent> handler, int maxEvents) {
+        long sequence = consumed.get();
+        int count = 0;
+        while (count < maxEvents) {
+            int index = (int) sequence & mask;
+            if (published.get(index) != sequence) {
+                break;
+            }
+
+            TokenAuditEvent event = events[index];
+            handler.accept(event);
+            event.clear();
+            sequence++;
+            count++;
+            consumed.lazySet(sequence);
+        }
+        return count;
+    }
+
+    /**
+     * @return number of claimed events not consumed yet
+     */
+    public long lag() {
+        return claimed.get() - consumed.get();
+    }
+}
@@ -0,0 +1,465 @@
+package com.authorizationserver.audit;
+
+import com.authorizationserver.db.resilience.DataAccessErrors;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background consumer of {@link TokenAuditRingBuffer}. Writes events as json lines to rolling files and,
+ * when 'audit.database.enabled=true', to the token_audit table in batched inserts.
+ * Rows that fail with a transient error are kept and retried with backoff, rows the database rejects and rows beyond
+ * 'audit.database.maxPendingRows' are appended to the dead letter file instead of being dropped.
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(value = "audit.enabled", havingValue = "true")
+public class TokenAuditWriter implements Runnable {
+    /**
+     * Insert query prefix, followed by one values group per row
+     */
+    private static final String INSERT_QUERY_PREFIX = "INSERT INTO token_audit (jti, client_id, kid, claim_names, issued_at, expires_at) VALUES ";
+    /**
+     * Values of one row
+     */
+    private static final String ROW_VALUES = "(?, ?, ?, ?, ?, ?)";
+    /**
+     * File name timestamp format
+     */
+    private static final DateTimeFormatter FILE_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    /**
+     * Rows the database rejected or that could not be kept, as json lines
+     */
+    static final String DEAD_LETTER_FILE = "token-audit.dead";
+
+    /**
+     * Directory of audit files
+     */
+    @Value("${audit.directory:audit}")
+    private String directory;
+    /**
+     * Size after which a new audit file is started ( in bytes )
+     */
+    @Value("${audit.maxFileSize:104857600}")
+    private Long maxFileSize;
+    /**
+     * Maximum number of events handled in one batch
+     */
+    @Value("${audit.batchSize:500}")
+    private Integer batchSize;
+    /**
+     * Specify if events are also inserted in db
+     */
+    @Value("${audit.database.enabled:false}")
+    private boolean databaseEnabled;
+    /**
+     * First delay before retrying rows after a transient error, doubled on every failed retry ( in ms )
+     */
+    @Value("${audit.database.retryDelay:100}")
+    private Long retryDelay;
+    /**
+     * Maximum delay between retries ( in ms )
+     */
+    @Value("${audit.database.maxRetryDelay:10000}")
+    private Long maxRetryDelay;
+    /**
+     * Rows kept for retry while the database is unavailable, older rows are dead lettered
+     */
+    @Value("${audit.database.maxPendingRows:100000}")
+    private Integer maxPendingRows;
+
+    /**
+     * Ring buffer
+     */
+    private final TokenAuditRingBuffer ringBuffer;
+    /**
+     * Jdbc template
+     */
+    private final JdbcTemplate jdbcTemplate;
+    /**
+     * Rows rejected by the database or over the pending limit
+     */
+    private final Counter deadLettered;
+    /**
+     * Line being written, reused between events
+     */
+    private final StringBuilder line = new StringBuilder(512);
+    /**
+     * Rows not inserted yet, in issue order
+     */
+    private final List<Row> rows = new ArrayList<>();
+    /**
+     * Consumer thread
+     */
+    private Thread thread;
+    /**
+     * Current file writer
+     */
+    private BufferedWriter writer;
+    /**
+     * Bytes written to current file
+     */
+    private long fileSize;
+    /**
+     * Day of current file
+     */
+    private LocalDate fileDay;
+    /**
+     * Sequence of the next file, keeps names of files rolled in the same millisecond apart
+     */
+    private int fileSequence;
+    /**
+     * Consecutive failed inserts
+     */
+    private int failedInserts;
+    /**
+     * Time before which rows are not retried ( System.nanoTime )
+     */
+    private long retryAt;
+    /**
+     * Consumer running flag
+     */
+    private volatile boolean running;
+
+    public TokenAuditWriter(TokenAuditRingBuffer ringBuffer, JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.ringBuffer = ringBuffer;
+        this.jdbcTemplate = jdbcTemplate;
+        this.deadLettered = Counter.builder("token.audit.dead.lettered").register(meterRegistry);
+    }
+
+    /**
+     * Start consumer thread
+     */
+    @PostConstruct
+    public void start() {
+        running = true;
+        thread = new Thread(this, "token-audit-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop consumer thread after the buffer is drained
+     *
+     * @throws InterruptedException thrown when interrupted while waiting for consumer thread
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @Override
+    public void run() {
+        int idle = 0;
+        while (running || ringBuffer.lag() > 0) {
+            try {
+                int drained = ringBuffer.drain(this::handle, batchSize);
+                if (drained > 0) {
+                    flush();
+                    idle = 0;
+                } else {
+                    insertRows();
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(Math.min(1_000, 10L << Math.min(idle++, 7))));
+                }
+            } catch (Exception e) {
+                log.error("Error encountered when writing token audit events.", e);
+            }
+        }
+
+        // last attempt regardless of backoff, what is still not inserted is kept in the dead letter file
+        failedInserts = 0;
+        insertRows();
+        if (!rows.isEmpty()) {
+            log.error("{} token audit rows could not be inserted before shutdown and are dead lettered.", rows.size());
+            deadLetter(rows);
+            rows.clear();
+        }
+        closeFile();
+    }
+
+    /**
+     * Append event to current file and db batch
+     *
+     * @param event audit event
+     */
+    private void handle(TokenAuditEvent event) {
+        line.setLength(0);
+        line.append("{\"client_id\":");
+        appendString(event.getClientId());
+        line.append(",\"kid\":");
+        appendString(event.getKid());
+        line.append(",\"jti\":");
+        appendString(event.getJti());
+        line.append(",\"claims\":[");
+        int claimsStart = line.length();
+        for (String claimName : event.getClaimNames()) {
+            if (line.length() > claimsStart) {
+                line.append(',');
+            }
+            appendString(claimName);
+        }
+        line.append("],\"iat\":").append(event.getIssuedAt() == null ? "null" : event.getIssuedAt().getEpochSecond());
+        line.append(",\"exp\":").append(event.getExpiresAt() == null ? "null" : event.getExpiresAt().getEpochSecond());
+        line.append("}\n");
+
+        try {
+            rollIfNeeded();
+            writer.append(line);
+            fileSize += utf8Length(line);
+        } catch (IOException e) {
+            log.error("Error encountered when writing token audit file.", e);
+            closeFile();
+        }
+
+        if (databaseEnabled) {
+            rows.add(new Row(
+                    event.getJti(),
+                    event.getClientId(),
+                    event.getKid(),
+                    String.join(",", event.getClaimNames()),
+                    event.getIssuedAt() == null ? null : Timestamp.from(event.getIssuedAt()),
+                    event.getExpiresAt() == null ? null : Timestamp.from(event.getExpiresAt()),
+                    line.toString()));
+        }
+    }
+
+    /**
+     * Flush file and insert db batch
+     *
+     * @throws IOException thrown when file can't be flushed
+     */
+    private void flush() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        insertRows();
+    }
+
+    /**
+     * Insert pending rows, in statements of at most 'audit.batchSize' rows. After a transient error the remaining rows
+     * are kept and retried once the backoff elapsed
+     */
+    private void insertRows() {
+        if (rows.isEmpty()) {
+            return;
+        }
+        if (failedInserts > 0 && System.nanoTime() - retryAt < 0) {
+            trimPending();
+            return;
+        }
+
+        try {
+            while (!rows.isEmpty()) {
+                List<Row> batch = rows.subList(0, Math.min(batchSize, rows.size()));
+                insertIsolating(batch);
+                batch.clear();
+            }
+            failedInserts = 0;
+        } catch (DataAccessException e) {
+            long delay = Math.min(maxRetryDelay, retryDelay << Math.min(failedInserts++, 20));
+            retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            log.warn("Token audit rows can't be inserted, {} rows are retried in {} ms: {}", rows.size(), delay, e.getMessage());
+            trimPending();
+        }
+    }
+
+    /**
+     * Dead letter the oldest rows over 'audit.database.maxPendingRows'
+     */
+    private void trimPending() {
+        if (rows.size() <= maxPendingRows) {
+            return;
+        }
+
+        List<Row> overflow = rows.subList(0, rows.size() - maxPendingRows);
+        log.error("{} token audit rows are over the pending limit and are dead lettered.", overflow.size());
+        deadLetter(overflow);
+        overflow.clear();
+    }
+
+    /**
+     * Insert rows, a statement failing with a non transient error is split in halves until the rejected rows are
+     * isolated and dead lettered. Transient errors are thrown, each statement is atomic so the rows can be retried as they are
+     *
+     * @param batch rows
+     */
+    private void insertIsolating(List<Row> batch) {
+        try {
+            insert(batch);
+        } catch (DataAccessException e) {
+            if (DataAccessErrors.isTransient(e)) {
+                throw e;
+            }
+
+            if (batch.size() == 1) {
+                log.error("Token audit row {} is rejected and dead lettered: {}", batch.get(0).jti(), e.getMessage());
+                deadLetter(batch);
+                return;
+            }
+
+            int half = batch.size() / 2;
+            insertIsolating(batch.subList(0, half));
+            insertIsolating(batch.subList(half, batch.size()));
+        }
+    }
+
+    /**
+     * Insert rows in one statement
+     *
+     * @param batch rows
+     */
+    private void insert(List<Row> batch) {
+        jdbcTemplate.update(INSERT_QUERY_PREFIX + String.join(", ", Collections.nCopies(batch.size(), ROW_VALUES)), statement -> {
+            int i = 1;
+            for (Row row : batch) {
+                statement.setString(i++, row.jti());
+                statement.setString(i++, row.clientId());
+                statement.setString(i++, row.kid());
+                statement.setString(i++, row.claimNames());
+                statement.setTimestamp(i++, row.issuedAt());
+                statement.setTimestamp(i++, row.expiresAt());
+            }
+        });
+    }
+
+    /**
+     * Append rows that can't be inserted to the dead letter file, in the format of the audit files
+     *
+     * @param batch rows
+     */
+    private void deadLetter(List<Row> batch) {
+        deadLettered.increment(batch.size());
+        Path file = Path.of(directory).resolve(DEAD_LETTER_FILE);
+        try {
+            Files.createDirectories(file.getParent());
+            try (BufferedWriter deadLetterWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (Row row : batch) {
+                    deadLetterWriter.write(row.line());
+                }
+            }
+        } catch (IOException e) {
+            log.error("{} token audit rows could not be dead lettered and are lost.", batch.size(), e);
+        }
+    }
+
+    private void rollIfNeeded() throws IOException {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        if (writer != null && fileSize < maxFileSize && today.equals(fileDay)) {
+            return;
+        }
+
+        closeFile();
+        Path dir = Path.of(directory);
+        Files.createDirectories(dir);
+        String timestamp = LocalDateTime.now(ZoneOffset.UTC).format(FILE_NAME_FORMAT);
+        while (true) {
+            Path file = dir.resolve("token-audit-" + timestamp + "-" + fileSequence++ + ".log");
+            try {
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                break;
+            } catch (FileAlreadyExistsException e) {
+                // left by a previous run in the same millisecond, try the next sequence
+            }
+        }
+        fileSize = 0;
+        fileDay = today;
+    }
+
+    private void closeFile() {
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Error encountered when closing token audit file.", e);
+        }
+        writer = null;
+    }
+
+    private void appendString(String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\');
+            }
+            if (c < 0x20) {
+                line.append(' ');
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    /**
+     * @param value text
+     * @return size of the text encoded in UTF-8, without encoding it
+     */
+    static int utf8Length(CharSequence value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Token audit row waiting to be inserted
+     *
+     * @param jti        token id
+     * @param clientId   client id
+     * @param kid        signing key id
+     * @param claimNames comma separated claim names
+     * @param issuedAt   issued at
+     * @param expiresAt  expires at
+     * @param line       json line of the event, written when the row is dead lettered
+     */
+    private record Row(String jti, String clientId, String kid, String claimNames, Timestamp issuedAt, Timestamp expiresAt, String line) {
+    }
+}
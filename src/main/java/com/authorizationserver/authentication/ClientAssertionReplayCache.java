@@ -0,0 +1,58 @@
+package com.authorizationserver.authentication;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Node local, bounded cache of client assertion ids ( jti ) seen until their assertion expires.
+ * When the cache is full and holds no expired entry, new assertions are rejected instead of risking a replay.
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@Component
+public class ClientAssertionReplayCache {
+    /**
+     * Maximum number of remembered assertion ids
+     */
+    @Value("${privateKeyJwt.replayCacheSize:100000}")
+    private Integer maxEntries;
+
+    /**
+     * Expiration time by client id and assertion id
+     */
+    private final Map<String, Instant> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Remember an assertion id
+     *
+     * @param clientId  client id
+     * @param jti       assertion id
+     * @param expiresAt assertion expiration time
+     * @return true if the assertion id was not seen before and was remembered
+     */
+    public boolean register(String clientId, String jti, Instant expiresAt) {
+        if (entries.size() >= maxEntries) {
+            purgeExpired();
+            if (entries.size() >= maxEntries) {
+                log.warn("Client assertion replay cache is full, assertion of client {} rejected.", clientId);
+                return false;
+            }
+        }
+
+        return entries.putIfAbsent(clientId + ' ' + jti, expiresAt) == null;
+    }
+
+    /**
+     * Remove expired assertion ids
+     */
+    private void purgeExpired() {
+        Instant now = Instant.now();
+        entries.entrySet().removeIf(entry -> entry.getValue().isBefore(now));
+    }
+}
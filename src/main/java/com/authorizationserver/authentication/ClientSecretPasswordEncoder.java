@@ -0,0 +1,138 @@
+package com.authorizationserver.authentication;
+
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Client secret encoder choosing the hash by secret origin. Secrets generated by the server are random 256 bit values
+ * hashed with {@link HmacPasswordEncoder}, secrets supplied by clients are hashed with bcrypt whatever their length.
+ * Generated secrets carry a prefix that client supplied secrets may not use, so the origin is known from the secret.
+ * Encoded secrets carry the algorithm as '{id}' prefix, secrets stored before prefixes were introduced are bcrypt
+ * hashes and are matched as such.
+ *
+ * @author Blajan George
+ */
+public class ClientSecretPasswordEncoder implements PasswordEncoder {
+    /**
+     * Bcrypt algorithm id
+     */
+    public static final String BCRYPT = "bcrypt";
+    /**
+     * Keyed hash algorithm id
+     */
+    public static final String HMAC_SHA256 = "hmac-sha256";
+    /**
+     * Prefix of secrets generated by the server
+     */
+    public static final String GENERATED_SECRET_PREFIX = "sas_";
+    /**
+     * Random bytes in a generated secret
+     */
+    private static final int GENERATED_SECRET_BYTES = 32;
+    /**
+     * Length of a generated secret, prefix and unpadded base64url random bytes
+     */
+    private static final int GENERATED_SECRET_LENGTH = GENERATED_SECRET_PREFIX.length() + (GENERATED_SECRET_BYTES * 4 + 2) / 3;
+    /**
+     * Source of generated secrets
+     */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Encoders by algorithm id
+     */
+    private final Map<String, PasswordEncoder> encoders = new HashMap<>();
+    /**
+     * Encoder used for matching
+     */
+    private final DelegatingPasswordEncoder delegatingPasswordEncoder;
+
+    /**
+     * @param bcryptEncoder bcrypt encoder
+     * @param hmacEncoder   keyed hash encoder, null to hash every secret with bcrypt
+     */
+    public ClientSecretPasswordEncoder(PasswordEncoder bcryptEncoder, PasswordEncoder hmacEncoder) {
+        this.encoders.put(BCRYPT, bcryptEncoder);
+        if (hmacEncoder != null) {
+            this.encoders.put(HMAC_SHA256, hmacEncoder);
+        }
+        this.delegatingPasswordEncoder = new DelegatingPasswordEncoder(BCRYPT, encoders);
+        this.delegatingPasswordEncoder.setDefaultPasswordEncoderForMatches(bcryptEncoder);
+    }
+
+    /**
+     * Hash a secret with the algorithm chosen for it
+     *
+     * @param rawPassword secret
+     * @return encoded secret, prefixed with the algorithm id
+     */
+    @Override
+    public String encode(CharSequence rawPassword) {
+        String algorithm = algorithmFor(rawPassword);
+        return "{" + algorithm + "}" + encoders.get(algorithm).encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return delegatingPasswordEncoder.matches(rawPassword, encodedPassword);
+    }
+
+    /**
+     * Generate a client secret
+     *
+     * @return random secret with the generated secret prefix
+     */
+    public String generateSecret() {
+        byte[] secret = new byte[GENERATED_SECRET_BYTES];
+        RANDOM.nextBytes(secret);
+        return GENERATED_SECRET_PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(secret);
+    }
+
+    /**
+     * @param rawPassword secret
+     * @return true if the secret was generated by the server
+     */
+    public static boolean isGenerated(CharSequence rawPassword) {
+        return rawPassword.length() == GENERATED_SECRET_LENGTH && rawPassword.toString().startsWith(GENERATED_SECRET_PREFIX);
+    }
+
+    /**
+     * Check, after a successful match, whether the secret must be hashed again because the chosen algorithm changed
+     *
+     * @param rawPassword     secret
+     * @param encodedPassword stored encoded secret
+     * @return true if the secret must be hashed again
+     */
+    public boolean needsRehash(CharSequence rawPassword, String encodedPassword) {
+        return !algorithmFor(rawPassword).equals(algorithmOf(encodedPassword));
+    }
+
+    /**
+     * @param encodedPassword encoded secret
+     * @return algorithm id of an encoded secret, {@link #BCRYPT} for secrets without prefix
+     */
+    public static String algorithmOf(String encodedPassword) {
+        if (encodedPassword != null && encodedPassword.startsWith("{")) {
+            int end = encodedPassword.indexOf('}');
+            if (end > 0) {
+                return encodedPassword.substring(1, end);
+            }
+        }
+        return BCRYPT;
+    }
+
+    /**
+     * Choose the hash algorithm from the origin of the secret
+     *
+     * @param rawPassword secret
+     * @return algorithm id
+     */
+    private String algorithmFor(CharSequence rawPassword) {
+        return encoders.containsKey(HMAC_SHA256) && isGenerated(rawPassword) ? HMAC_SHA256 : BCRYPT;
+    }
+}
@@ -0,0 +1,63 @@
+package com.authorizationserver.authentication;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Keyed HMAC-SHA256 hash, meant only for high entropy, server generated secrets where a slow salted hash adds cost
+ * without adding resistance. The key is kept out of the database, a leaked table alone doesn't allow offline guessing.
+ *
+ * @author Blajan George
+ */
+public class HmacPasswordEncoder implements PasswordEncoder {
+    /**
+     * Mac algorithm
+     */
+    private static final String HMAC_SHA256 = "HmacSHA256";
+
+    /**
+     * Mac per thread, {@link Mac} instances are not thread safe
+     */
+    private final ThreadLocal<Mac> mac;
+
+    public HmacPasswordEncoder(String key) {
+        SecretKeySpec keySpec = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), HMAC_SHA256);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(HMAC_SHA256);
+                instance.init(keySpec);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return Base64.getEncoder().encodeToString(hash(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null) {
+            return false;
+        }
+
+        try {
+            return MessageDigest.isEqual(hash(rawPassword), Base64.getDecoder().decode(encodedPassword));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private byte[] hash(CharSequence rawPassword) {
+        return mac.get().doFinal(rawPassword.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,280 @@
+package com.authorizationserver.authentication;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyType;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContext;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.text.ParseException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.authorizationserver.constants.Constants.CLIENT_JWK_SET_SETTING;
+
+/**
+ * Authenticates 'private_key_jwt' clients ( RFC 7523 ) with the public keys registered in their client settings.
+ * Keys are kept decoded, with their verifiers, until the registered key set changes or the client is deleted. Assertion ids are checked against
+ * {@link ClientAssertionReplayCache}, so an assertion is accepted once per node.
+ * Clients registered for 'client_secret_jwt' are left to the default provider.
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@Component
+public class PrivateKeyJwtClientAuthenticationProvider implements AuthenticationProvider {
+    /**
+     * Authentication method set by the client assertion converter
+     */
+    private static final ClientAuthenticationMethod JWT_CLIENT_ASSERTION_AUTHENTICATION_METHOD =
+            new ClientAuthenticationMethod("urn:ietf:params:oauth:client-assertion-type:jwt-bearer");
+    /**
+     * Error uri of client authentication failures
+     */
+    private static final String ERROR_URI = "https://datatracker.ietf.org/doc/html/rfc6749#section-3.2.1";
+
+    /**
+     * Maximum time between now and assertion expiration ( in ms ), bounds how long assertion ids are remembered
+     */
+    @Value("${privateKeyJwt.maxAssertionLifetime:300000}")
+    private Long maxAssertionLifetime;
+    /**
+     * Accepted clock skew ( in ms )
+     */
+    @Value("${privateKeyJwt.clockSkew:60000}")
+    private Long clockSkew;
+
+    /**
+     * Client repository
+     */
+    private final RegisteredClientRepository registeredClientRepository;
+    /**
+     * Replay cache
+     */
+    private final ClientAssertionReplayCache replayCache;
+    /**
+     * Decoded keys by registered client id
+     */
+    private final Map<String, ClientKeys> clientKeys = new ConcurrentHashMap<>();
+
+    public PrivateKeyJwtClientAuthenticationProvider(RegisteredClientRepository registeredClientRepository,
+                                                     ClientAssertionReplayCache replayCache) {
+        this.registeredClientRepository = registeredClientRepository;
+        this.replayCache = replayCache;
+    }
+
+    /**
+     * Authenticate a client assertion
+     *
+     * @param authentication {@link OAuth2ClientAuthenticationToken}
+     * @return authenticated {@link OAuth2ClientAuthenticationToken} or null if the client doesn't use 'private_key_jwt'
+     */
+    @Override
+    public Authentication authenticate(Authentication authentication) {
+        OAuth2ClientAuthenticationToken clientAuthentication = (OAuth2ClientAuthenticationToken) authentication;
+        if (!JWT_CLIENT_ASSERTION_AUTHENTICATION_METHOD.equals(clientAuthentication.getClientAuthenticationMethod())) {
+            return null;
+        }
+
+        String clientId = clientAuthentication.getPrincipal().toString();
+        RegisteredClient registeredClient = registeredClientRepository.findByClientId(clientId);
+        if (registeredClient == null) {
+            throw invalidClient(OAuth2ParameterNames.CLIENT_ID);
+        }
+        if (!registeredClient.getClientAuthenticationMethods().contains(ClientAuthenticationMethod.PRIVATE_KEY_JWT)) {
+            return null;
+        }
+        if (!(clientAuthentication.getCredentials() instanceof String assertionValue)) {
+            throw invalidClient(OAuth2ParameterNames.CLIENT_ASSERTION);
+        }
+
+        JWTClaimsSet claims;
+        try {
+            SignedJWT assertion = SignedJWT.parse(assertionValue);
+            if (!verify(registeredClient, assertion)) {
+                throw invalidClient("signature");
+            }
+            claims = assertion.getJWTClaimsSet();
+        } catch (ParseException | JOSEException e) {
+            log.debug("Client assertion of client {} rejected: {}", clientId, e.getMessage());
+            throw invalidClient(OAuth2ParameterNames.CLIENT_ASSERTION);
+        }
+
+        validateClaims(clientId, claims);
+        // kept as long as the assertion is accepted, skew included, so it can't be replayed once purged
+        if (!replayCache.register(clientId, claims.getJWTID(), claims.getExpirationTime().toInstant().plusMillis(clockSkew))) {
+            throw invalidClient("jti");
+        }
+
+        return new OAuth2ClientAuthenticationToken(registeredClient, ClientAuthenticationMethod.PRIVATE_KEY_JWT, assertionValue);
+    }
+
+    /**
+     * Forget the decoded keys of a client, called when the client is deleted or changed
+     *
+     * @param registeredClientId registered client id
+     */
+    public void evictClient(String registeredClientId) {
+        clientKeys.remove(registeredClientId);
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return OAuth2ClientAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+
+    /**
+     * Verify assertion signature with the registered keys matching its header
+     *
+     * @param registeredClient registered client
+     * @param assertion        client assertion
+     * @return true if a registered key verifies the signature
+     * @throws JOSEException thrown when the signature can't be verified
+     */
+    private boolean verify(RegisteredClient registeredClient, SignedJWT assertion) throws JOSEException {
+        JWSHeader header = assertion.getHeader();
+        KeyType keyType = KeyType.forAlgorithm(header.getAlgorithm());
+        for (ClientKey clientKey : keys(registeredClient).keys()) {
+            JWK jwk = clientKey.jwk();
+            if ((header.getKeyID() == null || header.getKeyID().equals(jwk.getKeyID()))
+                    && jwk.getKeyType().equals(keyType)
+                    && (jwk.getKeyUse() == null || KeyUse.SIGNATURE.equals(jwk.getKeyUse()))
+                    && clientKey.verifier().supportedJWSAlgorithms().contains(header.getAlgorithm())
+                    && assertion.verify(clientKey.verifier())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Validate assertion claims as required by RFC 7523
+     *
+     * @param clientId client id
+     * @param claims   assertion claims
+     */
+    private void validateClaims(String clientId, JWTClaimsSet claims) {
+        if (!clientId.equals(claims.getIssuer())) {
+            throw invalidClient("iss");
+        }
+        if (!clientId.equals(claims.getSubject())) {
+            throw invalidClient("sub");
+        }
+
+        AuthorizationServerContext context = AuthorizationServerContextHolder.getContext();
+        String tokenEndpoint = context.getIssuer() + context.getAuthorizationServerSettings().getTokenEndpoint();
+        if (claims.getAudience() == null || !claims.getAudience().contains(tokenEndpoint)) {
+            throw invalidClient("aud");
+        }
+
+        Instant now = Instant.now();
+        Instant expiresAt = toInstant(claims.getExpirationTime());
+        if (expiresAt == null || expiresAt.plusMillis(clockSkew).isBefore(now) || expiresAt.isAfter(now.plusMillis(maxAssertionLifetime + clockSkew))) {
+            throw invalidClient("exp");
+        }
+        Instant notBefore = toInstant(claims.getNotBeforeTime());
+        if (notBefore != null && notBefore.isAfter(now.plusMillis(clockSkew))) {
+            throw invalidClient("nbf");
+        }
+        Instant issuedAt = toInstant(claims.getIssueTime());
+        if (issuedAt != null && issuedAt.isAfter(now.plusMillis(clockSkew))) {
+            throw invalidClient("iat");
+        }
+        if (claims.getJWTID() == null || claims.getJWTID().isBlank()) {
+            throw invalidClient("jti");
+        }
+    }
+
+    /**
+     * Retrieve decoded keys of a client, decoding them again when the registered key set changed
+     *
+     * @param registeredClient registered client
+     * @return {@link ClientKeys}
+     */
+    private ClientKeys keys(RegisteredClient registeredClient) {
+        Object setting = registeredClient.getClientSettings().getSetting(CLIENT_JWK_SET_SETTING);
+        if (!(setting instanceof String jwkSet)) {
+            throw invalidClient(CLIENT_JWK_SET_SETTING);
+        }
+
+        ClientKeys cached = clientKeys.get(registeredClient.getId());
+        if (cached != null && cached.jwkSet().equals(jwkSet)) {
+            return cached;
+        }
+
+        ClientKeys decoded = decode(jwkSet);
+        clientKeys.put(registeredClient.getId(), decoded);
+        return decoded;
+    }
+
+    private static ClientKeys decode(String jwkSet) {
+        try {
+            List<ClientKey> keys = new ArrayList<>();
+            for (JWK jwk : JWKSet.parse(jwkSet).getKeys()) {
+                if (jwk instanceof RSAKey rsaKey) {
+                    keys.add(new ClientKey(jwk, new RSASSAVerifier(rsaKey)));
+                } else if (jwk instanceof ECKey ecKey) {
+                    keys.add(new ClientKey(jwk, new ECDSAVerifier(ecKey)));
+                }
+            }
+            return new ClientKeys(jwkSet, keys);
+        } catch (ParseException | JOSEException e) {
+            throw invalidClient(CLIENT_JWK_SET_SETTING);
+        }
+    }
+
+    private static Instant toInstant(Date date) {
+        return date == null ? null : date.toInstant();
+    }
+
+    private static OAuth2AuthenticationException invalidClient(String parameterName) {
+        return new OAuth2AuthenticationException(new OAuth2Error(OAuth2ErrorCodes.INVALID_CLIENT,
+                "Client authentication failed: " + parameterName, ERROR_URI));
+    }
+
+    /**
+     * Decoded keys of a client
+     *
+     * @param jwkSet registered key set the keys were decoded from
+     * @param keys   decoded keys
+     */
+    private record ClientKeys(String jwkSet, List<ClientKey> keys) {
+    }
+
+    /**
+     * Decoded key with its signature verifier
+     *
+     * @param jwk      public key
+     * @param verifier signature verifier
+     */
+    private record ClientKey(JWK jwk, JWSVerifier verifier) {
+    }
+}
@@ -0,0 +1,141 @@
+package com.authorizationserver.authentication;
+
+import com.authorizationserver.db.repository.Oauth2ClientRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Authenticates 'client_secret_basic' and 'client_secret_post' clients, replaces the default client secret provider.
+ * After a successful match the secret is hashed again when {@link ClientSecretPasswordEncoder} now picks another algorithm
+ * for it, so stored hashes move to the configured scheme without clients changing their secrets.
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@Component
+public class RehashingClientSecretAuthenticationProvider implements AuthenticationProvider {
+    /**
+     * Error uri of client authentication failures
+     */
+    private static final String ERROR_URI = "https://datatracker.ietf.org/doc/html/rfc6749#section-3.2.1";
+
+    /**
+     * Client repository
+     */
+    private final RegisteredClientRepository registeredClientRepository;
+    /**
+     * Jpa repo used to store rehashed secrets
+     */
+    private final Oauth2ClientRepository clientRepository;
+    /**
+     * Client secret encoder
+     */
+    private final ClientSecretPasswordEncoder passwordEncoder;
+    /**
+     * Meter registry
+     */
+    private final MeterRegistry meterRegistry;
+
+    public RehashingClientSecretAuthenticationProvider(RegisteredClientRepository registeredClientRepository,
+                                                       Oauth2ClientRepository clientRepository,
+                                                       ClientSecretPasswordEncoder passwordEncoder,
+                                                       MeterRegistry meterRegistry) {
+        this.registeredClientRepository = registeredClientRepository;
+        this.clientRepository = clientRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Authenticate a client secret
+     *
+     * @param authentication {@link OAuth2ClientAuthenticationToken}
+     * @return authenticated {@link OAuth2ClientAuthenticationToken} or null if the client doesn't authenticate with a secret
+     */
+    @Override
+    public Authentication authenticate(Authentication authentication) {
+        OAuth2ClientAuthenticationToken clientAuthentication = (OAuth2ClientAuthenticationToken) authentication;
+        ClientAuthenticationMethod authenticationMethod = clientAuthentication.getClientAuthenticationMethod();
+        if (!ClientAuthenticationMethod.CLIENT_SECRET_BASIC.equals(authenticationMethod)
+                && !ClientAuthenticationMethod.CLIENT_SECRET_POST.equals(authenticationMethod)) {
+            return null;
+        }
+
+        String clientId = clientAuthentication.getPrincipal().toString();
+        RegisteredClient registeredClient = registeredClientRepository.findByClientId(clientId);
+        if (registeredClient == null) {
+            throw invalidClient(OAuth2ParameterNames.CLIENT_ID);
+        }
+        if (!registeredClient.getClientAuthenticationMethods().contains(authenticationMethod)) {
+            throw invalidClient("authentication_method");
+        }
+        if (clientAuthentication.getCredentials() == null) {
+            throw invalidClient("credentials");
+        }
+
+        String clientSecret = clientAuthentication.getCredentials().toString();
+        String storedSecret = registeredClient.getClientSecret();
+        if (storedSecret == null || !passwordEncoder.matches(clientSecret, storedSecret)) {
+            throw invalidClient(OAuth2ParameterNames.CLIENT_SECRET);
+        }
+        if (registeredClient.getClientSecretExpiresAt() != null && Instant.now().isAfter(registeredClient.getClientSecretExpiresAt())) {
+            throw invalidClient("client_secret_expires_at");
+        }
+
+        if (passwordEncoder.needsRehash(clientSecret, storedSecret)) {
+            registeredClient = rehash(registeredClient, clientSecret);
+        }
+
+        return new OAuth2ClientAuthenticationToken(registeredClient, authenticationMethod, clientAuthentication.getCredentials());
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return OAuth2ClientAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+
+    /**
+     * Store the secret hashed with the algorithm now chosen for it. The update only applies if the stored hash
+     * is still the one that was matched, a failed rehash doesn't fail the authentication.
+     *
+     * @param registeredClient registered client
+     * @param clientSecret     matched secret
+     * @return registered client with the new hash, or the given one if the hash was not updated
+     */
+    private RegisteredClient rehash(RegisteredClient registeredClient, String clientSecret) {
+        String storedSecret = registeredClient.getClientSecret();
+        String encodedSecret = passwordEncoder.encode(clientSecret);
+        try {
+            if (clientRepository.updateClientSecret(registeredClient.getClientId(), storedSecret, encodedSecret) == 0) {
+                return registeredClient;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Secret of client {} could not be rehashed: {}", registeredClient.getClientId(), e.getMessage());
+            return registeredClient;
+        }
+
+        String from = ClientSecretPasswordEncoder.algorithmOf(storedSecret);
+        String to = ClientSecretPasswordEncoder.algorithmOf(encodedSecret);
+        meterRegistry.counter("client.secret.rehashed", "from", from, "to", to).increment();
+        log.info("Secret of client {} rehashed from {} to {}.", registeredClient.getClientId(), from, to);
+        return RegisteredClient.from(registeredClient).clientSecret(encodedSecret).build();
+    }
+
+    private static OAuth2AuthenticationException invalidClient(String parameterName) {
+        return new OAuth2AuthenticationException(new OAuth2Error(OAuth2ErrorCodes.INVALID_CLIENT,
+                "Client authentication failed: " + parameterName, ERROR_URI));
+    }
+}
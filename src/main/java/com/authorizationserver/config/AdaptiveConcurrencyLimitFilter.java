@@ -0,0 +1,237 @@
+package com.authorizationserver.config;
+
+import com.authorizationserver.exception.RejectionLogger;
+import com.authorizationserver.usage.ClientUsageCounters;
+import com.authorizationserver.usage.UsageOutcome;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleUnaryOperator;
+
+import static com.authorizationserver.constants.Constants.GENERATE_AUTH_TOKEN_PATH;
+
+/**
+ * AIMD concurrency limiter for the token and introspection endpoints, runs ahead of the authorization server filters.
+ * Requests over the current limit are answered at once with 503 instead of queueing behind requests that will time out.
+ * Every completed request is a latency sample: the limit drops by 'concurrencyLimit.backoffRatio' when the sample is slower
+ * than 'concurrencyLimit.latencyTolerance' times the long term average or than 'concurrencyLimit.maxLatency' while the
+ * limit was nearly reached, at most once per latency window so one burst of slow requests backs off once, and grows by
+ * one while at least half of it is in use. Samples update the limit with compare and set, without a lock. JWKS, metadata and health requests are not limited, so they keep being served
+ * while token requests are shed. Limit, in flight requests and shed requests are published as 'concurrency_limit.*' metrics.
+ *
+ * @author Blajan George
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@ConditionalOnProperty(value = "concurrencyLimit.enabled", havingValue = "true", matchIfMissing = true)
+public class AdaptiveConcurrencyLimitFilter extends OncePerRequestFilter {
+    /**
+     * Weight of a sample in the long term latency average
+     */
+    private static final double LATENCY_SMOOTHING = 0.01;
+    /**
+     * Body of a shed request
+     */
+    private static final byte[] SHED_BODY = "{\"error\":\"temporarily_unavailable\",\"error_description\":\"Server overloaded, retry later.\"}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Limit at startup
+     */
+    @Value("${concurrencyLimit.initialLimit:100}")
+    private Integer initialLimit;
+    /**
+     * Lowest limit
+     */
+    @Value("${concurrencyLimit.minLimit:10}")
+    private Integer minLimit;
+    /**
+     * Highest limit
+     */
+    @Value("${concurrencyLimit.maxLimit:1000}")
+    private Integer maxLimit;
+    /**
+     * Factor applied to the limit on a slow sample
+     */
+    @Value("${concurrencyLimit.backoffRatio:0.9}")
+    private Double backoffRatio;
+    /**
+     * A sample slower than this multiple of the long term average latency lowers the limit
+     */
+    @Value("${concurrencyLimit.latencyTolerance:2.0}")
+    private Double latencyTolerance;
+    /**
+     * A sample slower than this ( in ms ) always lowers the limit
+     */
+    @Value("${concurrencyLimit.maxLatency:1000}")
+    private Long maxLatency;
+
+    /**
+     * Limited requests
+     */
+    private final RequestMatcher limitedRequests = new OrRequestMatcher(
+            new AntPathRequestMatcher(GENERATE_AUTH_TOKEN_PATH),
+            new AntPathRequestMatcher("/oauth2/introspect"));
+    /**
+     * Requests being served
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+    /**
+     * Shed requests
+     */
+    private final Counter shed;
+    /**
+     * Logger for rejected requests
+     */
+    private final RejectionLogger rejectionLogger;
+    /**
+     * Per client token request counters
+     */
+    private final ClientUsageCounters clientUsageCounters;
+    /**
+     * Bits of the current limit, fractional so additive increase and multiplicative decrease compose
+     */
+    private final AtomicLong limit = new AtomicLong();
+    /**
+     * Bits of the long term average latency ( in ns ), 0 until the first sample
+     */
+    private final AtomicLong averageLatency = new AtomicLong();
+    /**
+     * Time ( in ns ) before which the limit is not lowered again, requests admitted under the previous limit finish first
+     */
+    private final AtomicLong nextDecrease = new AtomicLong(System.nanoTime());
+
+    public AdaptiveConcurrencyLimitFilter(MeterRegistry meterRegistry, RejectionLogger rejectionLogger, ClientUsageCounters clientUsageCounters) {
+        this.rejectionLogger = rejectionLogger;
+        this.clientUsageCounters = clientUsageCounters;
+        this.shed = Counter.builder("concurrency_limit.shed").register(meterRegistry);
+        Gauge.builder("concurrency_limit.limit", this, AdaptiveConcurrencyLimitFilter::limit).register(meterRegistry);
+        Gauge.builder("concurrency_limit.in_flight", inFlight, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("concurrency_limit.average_latency", this, filter -> filter.averageLatency() / TimeUnit.MILLISECONDS.toNanos(1))
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        limit.set(Double.doubleToLongBits(initialLimit));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !limitedRequests.matches(request);
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain)
+            throws ServletException, IOException {
+        int current = inFlight.incrementAndGet();
+        if (current > limit()) {
+            inFlight.decrementAndGet();
+            reject(request, response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            onSample(System.nanoTime() - start, current);
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Adjust the limit from the latency of a completed request
+     *
+     * @param latency  request latency in ns
+     * @param inFlight requests in flight when the request started, including it
+     */
+    private void onSample(long latency, int inFlight) {
+        double average = Double.longBitsToDouble(averageLatency.updateAndGet(bits -> {
+            double current = Double.longBitsToDouble(bits);
+            return Double.doubleToLongBits(current == 0 ? latency : current + (latency - current) * LATENCY_SMOOTHING);
+        }));
+        double current = Double.longBitsToDouble(limit.get());
+
+        if (latency > average * latencyTolerance || latency > TimeUnit.MILLISECONDS.toNanos(maxLatency)) {
+            // far below the limit, slow requests are not caused by concurrency and a lower limit would not help
+            if (inFlight >= current * backoffRatio && claimDecrease(latency)) {
+                updateLimit(value -> Math.max(minLimit, value * backoffRatio));
+            }
+        } else if (inFlight * 2 >= current) {
+            updateLimit(value -> Math.min(maxLimit, value + 1));
+        }
+    }
+
+    /**
+     * Claim the single decrease of the current latency window
+     *
+     * @param latency latency of the slow sample in ns, length of the next window
+     * @return true if the caller may lower the limit
+     */
+    private boolean claimDecrease(long latency) {
+        long now = System.nanoTime();
+        long next = nextDecrease.get();
+        return now - next >= 0 && nextDecrease.compareAndSet(next, now + latency);
+    }
+
+    /**
+     * Apply a change to the limit with compare and set
+     *
+     * @param change new limit from the current one
+     */
+    private void updateLimit(DoubleUnaryOperator change) {
+        limit.updateAndGet(bits -> Double.doubleToLongBits(change.applyAsDouble(Double.longBitsToDouble(bits))));
+    }
+
+    /**
+     * @return current limit, whole requests
+     */
+    private int limit() {
+        return (int) Double.longBitsToDouble(limit.get());
+    }
+
+    /**
+     * @return long term average latency in ns
+     */
+    private double averageLatency() {
+        return Double.longBitsToDouble(averageLatency.get());
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        shed.increment();
+        rejectionLogger.reject("overloaded", request.getRequestURI());
+        clientUsageCounters.recordRequested(PreSerializedOAuth2ErrorHandler.requestedClientId(request), UsageOutcome.RATE_LIMITED);
+
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(SHED_BODY.length);
+        response.getOutputStream().write(SHED_BODY);
+    }
+}
@@ -1,24 +1,54 @@
 package com.authorizationserver.config;
 
+import com.authorizationserver.audit.AuditingJwtGenerator;
+import com.authorizationserver.authentication.PrivateKeyJwtClientAuthenticationProvider;
+import com.authorizationserver.authentication.RehashingClientSecretAuthenticationProvider;
+import com.authorizationserver.audit.TokenAuditRingBuffer;
+import com.authorizationserver.exception.ClaimNotWhitelistedException;
+import com.authorizationserver.exception.RejectionLogger;
+import com.authorizationserver.token.AccessTokenReuseCache;
+import com.authorizationserver.token.FirstTokenTimer;
+import com.authorizationserver.token.MappedReferenceTokenStore;
+import com.authorizationserver.token.ReferenceTokenAuthorizationService;
+import com.authorizationserver.token.ReuseAwareAuthorizationService;
+import com.authorizationserver.token.ReusingJwtGenerator;
+import com.authorizationserver.token.WriteBehindAuthorizationService;
+import com.authorizationserver.token.WriteBehindAuthorizationStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.authorizationserver.usage.ClientUsageCounters;
+import com.authorizationserver.usage.UsageOutcome;
 import com.nimbusds.jose.jwk.source.JWKSource;
 import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.Ordered;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.OAuth2Token;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
 import org.springframework.security.oauth2.jwt.JwtClaimsSet;
 import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.security.oauth2.server.authorization.InMemoryOAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.authentication.ClientSecretAuthenticationProvider;
 import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientCredentialsAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
 import org.springframework.security.oauth2.server.authorization.config.annotation.web.configuration.OAuth2AuthorizationServerConfiguration;
 import org.springframework.security.oauth2.server.authorization.config.annotation.web.configurers.OAuth2AuthorizationServerConfigurer;
 import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.security.oauth2.server.authorization.token.DelegatingOAuth2TokenGenerator;
 import org.springframework.security.oauth2.server.authorization.token.JwtEncodingContext;
 import org.springframework.security.oauth2.server.authorization.token.JwtGenerator;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2AccessTokenGenerator;
 import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenCustomizer;
 import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
 import org.springframework.security.oauth2.server.authorization.web.authentication.OAuth2ClientCredentialsAuthenticationConverter;
@@ -26,19 +56,23 @@ import org.springframework.security.web.SecurityFilterChain;
 
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
 
 import static com.authorizationserver.constants.Constants.GENERATE_AUTH_TOKEN_PATH;
 import static com.authorizationserver.constants.Constants.GET_JWK_SET_PATH;
 import static org.springframework.security.oauth2.server.authorization.config.annotation.web.configuration.OAuth2AuthorizationServerConfiguration.applyDefaultSecurity;
 
 /**
- * Configuration class for spring authorization server
+ * Configuration class for spring authorization server, token endpoint and signing are skipped on nodes started with
+ * 'node.tokenEndpoint.enabled=false'
  *
  * @author Blajan George
  */
 @Slf4j
 @Configuration
 @EnableWebSecurity
+@ConditionalOnProperty(value = "node.tokenEndpoint.enabled", havingValue = "true", matchIfMissing = true)
 @Import(OAuth2AuthorizationServerConfiguration.class)
 public class AuthorizationServerConfig {
     /**
@@ -47,25 +81,72 @@ public class AuthorizationServerConfig {
     @Value("#{'${claims.whiteList}'.split(',')}")
     private List<String> whiteListedClaims;
     /**
-     * @param http {@link HttpSecurity} HttpSecurity container class
+     * @param http                  {@link HttpSecurity} HttpSecurity container class
+     * @param rejectionLogger       logger for rejected token requests
+     * @param privateKeyJwtProvider authentication provider for 'private_key_jwt' clients
+     * @param clientSecretProvider  authentication provider for client secrets, replaces the default one
+     * @param clientUsageCounters   per client token request counters
      * @return {@link SecurityFilterChain}
      * @throws Exception Exception thrown by 'applyDefaultSecurity'
      */
     @Bean
-    public SecurityFilterChain authorizeFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain authorizeFilterChain(HttpSecurity http,
+                                                    RejectionLogger rejectionLogger,
+                                                    PrivateKeyJwtClientAuthenticationProvider privateKeyJwtProvider,
+                                                    RehashingClientSecretAuthenticationProvider clientSecretProvider,
+                                                    ClientUsageCounters clientUsageCounters) throws Exception {
         OAuth2AuthorizationServerConfigurer authorizationServerConfigurer =
                 new OAuth2AuthorizationServerConfigurer();
         http.apply(authorizationServerConfigurer);
 
         authorizationServerConfigurer
+                .clientAuthentication(clientAuthentication ->
+                        clientAuthentication.authenticationProvider(privateKeyJwtProvider)
+                                .authenticationProvider(clientSecretProvider)
+                                .authenticationProviders(providers -> providers.removeIf(ClientSecretAuthenticationProvider.class::isInstance))
+                                .errorResponseHandler(new PreSerializedOAuth2ErrorHandler(rejectionLogger, clientUsageCounters, true))
+                )
                 .tokenEndpoint(tokenEndpoint ->
                         tokenEndpoint.accessTokenRequestConverter(new OAuth2ClientCredentialsAuthenticationConverter())
+                                .errorResponseHandler(new PreSerializedOAuth2ErrorHandler(rejectionLogger, clientUsageCounters, false))
                 );
 
         applyDefaultSecurity(http);
         return http.build();
     }
 
+    /**
+     * Registers {@link ClientCredentialsFastPathFilter} in front of the authorization server chain, built from the same
+     * provider, generator, authorization service and error handlers so both paths answer identically
+     *
+     * @param clientSecretProvider        authentication provider for client secrets
+     * @param tokenGenerator              token generator
+     * @param authorizationService        authorization service
+     * @param authorizationServerSettings authorization server settings
+     * @param rejectionLogger             logger for rejected token requests
+     * @param clientUsageCounters         per client token request counters
+     * @param meterRegistry               meter registry
+     * @return {@link FilterRegistrationBean}
+     */
+    @Bean
+    @ConditionalOnProperty(value = "tokenFastPath.enabled", havingValue = "true")
+    public FilterRegistrationBean<ClientCredentialsFastPathFilter> clientCredentialsFastPathFilter(RehashingClientSecretAuthenticationProvider clientSecretProvider,
+                                                                                                   OAuth2TokenGenerator<OAuth2Token> tokenGenerator,
+                                                                                                   OAuth2AuthorizationService authorizationService,
+                                                                                                   AuthorizationServerSettings authorizationServerSettings,
+                                                                                                   RejectionLogger rejectionLogger,
+                                                                                                   ClientUsageCounters clientUsageCounters,
+                                                                                                   MeterRegistry meterRegistry) {
+        FilterRegistrationBean<ClientCredentialsFastPathFilter> registration = new FilterRegistrationBean<>(
+                new ClientCredentialsFastPathFilter(clientSecretProvider, tokenGenerator, authorizationService, authorizationServerSettings,
+                        new PreSerializedOAuth2ErrorHandler(rejectionLogger, clientUsageCounters, true),
+                        new PreSerializedOAuth2ErrorHandler(rejectionLogger, clientUsageCounters, false),
+                        meterRegistry));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 4);
+        log.info("Client credentials token fast path enabled.");
+        return registration;
+    }
+
     /**
      * Bean to config {@link AuthorizationServerSettings}
      *
@@ -81,15 +162,67 @@ public class AuthorizationServerConfig {
     }
 
     /**
-     * Bean to config token generator
+     * Bean to config token generator, tokens of clients that opted in for reuse are served from {@link AccessTokenReuseCache}
+     * and, when audit is enabled, every signed token is published to {@link TokenAuditRingBuffer}.
+     * Clients with 'reference' access token format receive random opaque tokens instead.
      *
      * @return {@link OAuth2TokenGenerator}
      */
     @Bean
-    public OAuth2TokenGenerator<Jwt> tokenGenerator(JWKSource<SecurityContext> jwkSource) {
+    public OAuth2TokenGenerator<OAuth2Token> tokenGenerator(JWKSource<SecurityContext> jwkSource,
+                                                    AccessTokenReuseCache accessTokenReuseCache,
+                                                    ObjectProvider<TokenAuditRingBuffer> tokenAuditRingBuffer,
+                                                    FirstTokenTimer firstTokenTimer,
+                                                    ClientUsageCounters clientUsageCounters) {
         JwtGenerator jwtGenerator = new JwtGenerator(new NimbusJwtEncoder(jwkSource));
         jwtGenerator.setJwtCustomizer(jwtCustomizer());
-        return jwtGenerator;
+
+        OAuth2TokenGenerator<Jwt> signingGenerator = jwtGenerator;
+        TokenAuditRingBuffer ringBuffer = tokenAuditRingBuffer.getIfAvailable();
+        if (ringBuffer != null) {
+            signingGenerator = new AuditingJwtGenerator(jwtGenerator, ringBuffer);
+        }
+
+        OAuth2AccessTokenGenerator referenceGenerator = new OAuth2AccessTokenGenerator();
+        referenceGenerator.setAccessTokenCustomizer(context ->
+                addRequestedClaims(context.getAuthorizationGrant(), context.getClaims()::claim));
+
+        OAuth2TokenGenerator<OAuth2Token> generator = new DelegatingOAuth2TokenGenerator(
+                new ReusingJwtGenerator(signingGenerator, accessTokenReuseCache), referenceGenerator);
+        return context -> {
+            OAuth2Token token = generator.generate(context);
+            firstTokenTimer.tokenIssued();
+            if (token != null) {
+                clientUsageCounters.record(context.getRegisteredClient().getClientId(), UsageOutcome.ISSUED);
+            }
+            return token;
+        };
+    }
+
+    /**
+     * Bean to config authorization service, keeps one authorization per reused token and evicts revoked tokens from cache.
+     * When the reference token store is enabled, reference tokens are kept there instead of on the heap.
+     * When the authorization store is enabled, other access token authorizations are persisted to the database with write-behind.
+     *
+     * @return {@link OAuth2AuthorizationService}
+     */
+    @Bean
+    public OAuth2AuthorizationService authorizationService(AccessTokenReuseCache accessTokenReuseCache,
+                                                           ObjectProvider<MappedReferenceTokenStore> referenceTokenStore,
+                                                           ObjectProvider<WriteBehindAuthorizationStore> authorizationStore,
+                                                           RegisteredClientRepository registeredClientRepository,
+                                                           ObjectMapper objectMapper) {
+        OAuth2AuthorizationService authorizationService = new InMemoryOAuth2AuthorizationService();
+        WriteBehindAuthorizationStore persistentStore = authorizationStore.getIfAvailable();
+        if (persistentStore != null) {
+            authorizationService = new WriteBehindAuthorizationService(authorizationService, persistentStore, registeredClientRepository, objectMapper);
+        }
+        MappedReferenceTokenStore store = referenceTokenStore.getIfAvailable();
+        if (store != null) {
+            authorizationService = new ReferenceTokenAuthorizationService(authorizationService, store, registeredClientRepository, objectMapper);
+        }
+
+        return new ReuseAwareAuthorizationService(authorizationService, accessTokenReuseCache);
     }
 
     /**
@@ -100,30 +233,33 @@ public class AuthorizationServerConfig {
     @Bean
     public OAuth2TokenCustomizer<JwtEncodingContext> jwtCustomizer() {
         return context -> {
-            final OAuth2ClientCredentialsAuthenticationToken authenticationToken = context.getAuthorizationGrant();
             final JwtClaimsSet.Builder claims = context.getClaims();
-            final Map<String, Object> additionalParams = authenticationToken.getAdditionalParameters();
-            for (Map.Entry<String, Object> entry : additionalParams.entrySet()) {
-                if(!whiteListedClaims.contains(entry.getKey().toLowerCase())) {
-                    log.warn("Claim {} not white listed.", entry.getKey().toLowerCase());
-                    throw new IllegalArgumentException(String.format("Claim %s not white listed.", entry.getKey().toLowerCase()));
-                }
-
-                claims.claim(entry.getKey().toLowerCase(), entry.getValue());
-            }
+            addRequestedClaims(context.getAuthorizationGrant(), claims::claim);
 
+            claims.claims(existingClaims -> existingClaims.putIfAbsent(JwtClaimNames.JTI, UUID.randomUUID().toString()));
             claims.build();
         };
     }
 
     /**
-     * Used to salt and hash client secrets
+     * Copy white listed request parameters to token claims
      *
-     * @return {@link BCryptPasswordEncoder}
+     * @param authorizationGrant authorization grant of the token request
+     * @param claims             claims of the token
      */
-    @Bean
-    public BCryptPasswordEncoder bCryptPasswordEncoder() {
-        return new BCryptPasswordEncoder(10);
+    private void addRequestedClaims(Authentication authorizationGrant, BiConsumer<String, Object> claims) {
+        if (!(authorizationGrant instanceof OAuth2ClientCredentialsAuthenticationToken authenticationToken)) {
+            return;
+        }
+
+        final Map<String, Object> additionalParams = authenticationToken.getAdditionalParameters();
+        for (Map.Entry<String, Object> entry : additionalParams.entrySet()) {
+            if(!whiteListedClaims.contains(entry.getKey().toLowerCase())) {
+                throw new ClaimNotWhitelistedException(String.format("Claim %s not white listed.", entry.getKey().toLowerCase()));
+            }
+
+            claims.accept(entry.getKey().toLowerCase(), entry.getValue());
+        }
     }
 
 }
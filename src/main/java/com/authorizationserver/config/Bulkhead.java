@@ -0,0 +1,102 @@
+package com.authorizationserver.config;
+
+import com.authorizationserver.exception.BulkheadFullException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds the requests of one traffic class served at once. Requests over the limit wait in a bounded queue for at most
+ * the queue timeout, requests finding the queue full or timing out are refused with {@link BulkheadFullException}.
+ * Saturation is published as 'bulkhead.*' metrics tagged with the bulkhead name.
+ *
+ * @author Blajan George
+ */
+class Bulkhead {
+    /**
+     * Bulkhead name
+     */
+    private final String name;
+    /**
+     * Permits of requests being served
+     */
+    private final Semaphore permits;
+    /**
+     * Requests served at once
+     */
+    private final int maxConcurrent;
+    /**
+     * Requests allowed to wait for a permit
+     */
+    private final int maxQueued;
+    /**
+     * Maximum wait for a permit ( in ms )
+     */
+    private final long queueTimeout;
+    /**
+     * Requests waiting for a permit
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+    /**
+     * Refused requests
+     */
+    private final Counter rejected;
+
+    Bulkhead(String name, int maxConcurrent, int maxQueued, long queueTimeout, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.permits = new Semaphore(maxConcurrent);
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.queueTimeout = queueTimeout;
+        this.rejected = Counter.builder("bulkhead.rejected").tag("bulkhead", name).register(meterRegistry);
+        Gauge.builder("bulkhead.active", this, Bulkhead::active).tag("bulkhead", name).register(meterRegistry);
+        Gauge.builder("bulkhead.queued", queued, AtomicInteger::get).tag("bulkhead", name).register(meterRegistry);
+        Gauge.builder("bulkhead.saturation", this, bulkhead -> (double) bulkhead.active() / bulkhead.maxConcurrent)
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Take a permit, waiting in the queue if none is free
+     *
+     * @throws BulkheadFullException thrown when the queue is full or the wait timed out
+     * @throws InterruptedException  thrown when interrupted while waiting
+     */
+    void acquire() throws InterruptedException {
+        if (permits.tryAcquire()) {
+            return;
+        }
+
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            throw full();
+        }
+        try {
+            if (!permits.tryAcquire(queueTimeout, TimeUnit.MILLISECONDS)) {
+                throw full();
+            }
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    /**
+     * Return a permit taken by {@link #acquire()}
+     */
+    void release() {
+        permits.release();
+    }
+
+    private int active() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    private BulkheadFullException full() {
+        rejected.increment();
+        return new BulkheadFullException(String.format("Too many %s requests, retry later.", name));
+    }
+}
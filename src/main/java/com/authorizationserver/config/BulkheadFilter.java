@@ -0,0 +1,204 @@
+package com.authorizationserver.config;
+
+import com.authorizationserver.exception.BulkheadFullException;
+import com.authorizationserver.usage.ClientUsageCounters;
+import com.authorizationserver.usage.UsageOutcome;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+import static com.authorizationserver.constants.Constants.API_V1;
+import static com.authorizationserver.constants.Constants.GENERATE_AUTH_TOKEN_PATH;
+import static com.authorizationserver.constants.Constants.GET_JWK_SET_PATH;
+import static com.authorizationserver.constants.Constants.GET_METADATA_PATH;
+
+/**
+ * Filter admitting token, JWKS / metadata and admin requests through separate {@link Bulkhead}s, so a saturated class
+ * can't take the worker threads and database connections of the others. Bulkheads bound requests, not connections: most
+ * requests hold one pooled connection at a time, but a read falling back from the replicas to primary inside a transaction
+ * holds two, and background writers take connections outside any bulkhead. The pool check at startup is therefore a lower
+ * bound. Token requests are also bounded by {@link AdaptiveConcurrencyLimitFilter} ahead of this filter, the token bulkhead
+ * is sized at or above its maximum limit so that limit stays in effect, rejected token requests are counted as rate
+ * limited in {@link ClientUsageCounters}. Health requests and unmatched paths are not bulkheaded.
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+@ConditionalOnProperty(value = "bulkhead.enabled", havingValue = "true", matchIfMissing = true)
+public class BulkheadFilter extends OncePerRequestFilter {
+    /**
+     * Token requests served at once
+     */
+    @Value("${bulkhead.token.maxConcurrent:1000}")
+    private Integer tokenMaxConcurrent;
+    /**
+     * Token requests waiting for a permit
+     */
+    @Value("${bulkhead.token.maxQueued:0}")
+    private Integer tokenMaxQueued;
+    /**
+     * JWKS and metadata requests served at once
+     */
+    @Value("${bulkhead.jwks.maxConcurrent:4}")
+    private Integer jwksMaxConcurrent;
+    /**
+     * JWKS and metadata requests waiting for a permit
+     */
+    @Value("${bulkhead.jwks.maxQueued:32}")
+    private Integer jwksMaxQueued;
+    /**
+     * Admin requests served at once
+     */
+    @Value("${bulkhead.admin.maxConcurrent:4}")
+    private Integer adminMaxConcurrent;
+    /**
+     * Admin requests waiting for a permit
+     */
+    @Value("${bulkhead.admin.maxQueued:16}")
+    private Integer adminMaxQueued;
+    /**
+     * Maximum wait for a permit ( in ms )
+     */
+    @Value("${bulkhead.queueTimeout:1000}")
+    private Long queueTimeout;
+    /**
+     * Whether this node issues tokens, without token issuance no connection has to be reserved
+     */
+    @Value("${node.tokenEndpoint.enabled:true}")
+    private Boolean tokenEndpointEnabled;
+    /**
+     * Whether token requests pass the adaptive concurrency limit first
+     */
+    @Value("${concurrencyLimit.enabled:true}")
+    private Boolean concurrencyLimitEnabled;
+    /**
+     * Maximum adaptive concurrency limit of token requests
+     */
+    @Value("${concurrencyLimit.maxLimit:1000}")
+    private Integer concurrencyLimitMaxLimit;
+
+    /**
+     * Token and introspection requests
+     */
+    private final RequestMatcher tokenRequests = new OrRequestMatcher(
+            new AntPathRequestMatcher(GENERATE_AUTH_TOKEN_PATH),
+            new AntPathRequestMatcher("/oauth2/introspect"));
+    /**
+     * JWKS and metadata requests
+     */
+    private final RequestMatcher jwksRequests = new OrRequestMatcher(
+            new AntPathRequestMatcher(GET_JWK_SET_PATH),
+            new AntPathRequestMatcher(GET_METADATA_PATH),
+            new AntPathRequestMatcher("/.well-known/**"));
+    /**
+     * Admin requests
+     */
+    private final RequestMatcher adminRequests = new OrRequestMatcher(
+            new AntPathRequestMatcher(API_V1 + "/client"),
+            new AntPathRequestMatcher(API_V1 + "/client/**"),
+            new AntPathRequestMatcher(API_V1 + "/secret-hashing"));
+    /**
+     * Meter registry
+     */
+    private final MeterRegistry meterRegistry;
+    /**
+     * Pool of the primary database, checked against the bulkhead sizes
+     */
+    private final ObjectProvider<HikariDataSource> hikariDataSource;
+    /**
+     * Per client token request counters
+     */
+    private final ClientUsageCounters clientUsageCounters;
+    /**
+     * Bulkhead of token requests
+     */
+    private Bulkhead tokenBulkhead;
+    /**
+     * Bulkhead of JWKS and metadata requests
+     */
+    private Bulkhead jwksBulkhead;
+    /**
+     * Bulkhead of admin requests
+     */
+    private Bulkhead adminBulkhead;
+
+    public BulkheadFilter(MeterRegistry meterRegistry, ObjectProvider<HikariDataSource> hikariDataSource, ClientUsageCounters clientUsageCounters) {
+        this.meterRegistry = meterRegistry;
+        this.hikariDataSource = hikariDataSource;
+        this.clientUsageCounters = clientUsageCounters;
+    }
+
+    @PostConstruct
+    public void init() {
+        tokenBulkhead = new Bulkhead("token", tokenMaxConcurrent, tokenMaxQueued, queueTimeout, meterRegistry);
+        jwksBulkhead = new Bulkhead("jwks", jwksMaxConcurrent, jwksMaxQueued, queueTimeout, meterRegistry);
+        adminBulkhead = new Bulkhead("admin", adminMaxConcurrent, adminMaxQueued, queueTimeout, meterRegistry);
+
+        HikariDataSource pool = hikariDataSource.getIfUnique();
+        if (pool != null && tokenEndpointEnabled && jwksMaxConcurrent + adminMaxConcurrent >= pool.getMaximumPoolSize()) {
+            log.warn("JWKS and admin bulkheads ({} + {}) can take all {} database connections, token issuance has none reserved.",
+                    jwksMaxConcurrent, adminMaxConcurrent, pool.getMaximumPoolSize());
+        }
+        if (tokenEndpointEnabled && concurrencyLimitEnabled && tokenMaxConcurrent < concurrencyLimitMaxLimit) {
+            log.warn("Token bulkhead ({}) is below the maximum concurrency limit ({}), the adaptive limit can't grow past it.",
+                    tokenMaxConcurrent, concurrencyLimitMaxLimit);
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain)
+            throws ServletException, IOException {
+        Bulkhead bulkhead = bulkheadOf(request);
+        if (bulkhead == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        try {
+            bulkhead.acquire();
+        } catch (BulkheadFullException e) {
+            if (bulkhead == tokenBulkhead) {
+                clientUsageCounters.recordRequested(PreSerializedOAuth2ErrorHandler.requestedClientId(request), UsageOutcome.RATE_LIMITED);
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServletException("Interrupted while waiting for a bulkhead permit.", e);
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private Bulkhead bulkheadOf(HttpServletRequest request) {
+        if (tokenRequests.matches(request)) {
+            return tokenBulkhead;
+        }
+        if (jwksRequests.matches(request)) {
+            return jwksBulkhead;
+        }
+        return adminRequests.matches(request) ? adminBulkhead : null;
+    }
+}
@@ -0,0 +1,378 @@
+package com.authorizationserver.config;
+
+import com.authorizationserver.authentication.RehashingClientSecretAuthenticationProvider;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClaimAccessor;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.OAuth2Token;
+import org.springframework.security.oauth2.core.endpoint.DefaultOAuth2AccessTokenResponseMapConverter;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AccessTokenResponse;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientCredentialsAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContext;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContextHolder;
+import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.security.oauth2.server.authorization.token.DefaultOAuth2TokenContext;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenContext;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
+import org.springframework.security.web.header.HeaderWriter;
+import org.springframework.security.web.header.writers.CacheControlHeadersWriter;
+import org.springframework.security.web.header.writers.HstsHeaderWriter;
+import org.springframework.security.web.header.writers.XContentTypeOptionsHeaderWriter;
+import org.springframework.security.web.header.writers.XXssProtectionHeaderWriter;
+import org.springframework.security.web.header.writers.frameoptions.XFrameOptionsHeaderWriter;
+import org.springframework.security.web.util.UrlUtils;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.authorizationserver.constants.Constants.GENERATE_AUTH_TOKEN_PATH;
+
+/**
+ * Serves 'client_credentials' token requests authenticated with 'client_secret_basic' ahead of the authorization server
+ * filter chain. The request is checked, authenticated, authorized and answered with the same components and in the same
+ * order as the standard path ( client secret provider, token generator, authorization service, error handlers, response
+ * map converter ), so responses are identical to the standard ones, without the chain's matchers, converters and
+ * provider manager. Any request not of that exact shape, including malformed ones, is passed on untouched so
+ * the standard path answers it. Enabled with 'tokenFastPath.enabled=true'.
+ *
+ * @author Blajan George
+ */
+public class ClientCredentialsFastPathFilter extends OncePerRequestFilter {
+    /**
+     * Prefix of basic authorization header
+     */
+    private static final String BASIC_PREFIX = "Basic ";
+    /**
+     * Content type written by the standard token response converter
+     */
+    private static final String CONTENT_TYPE = "application/json;charset=UTF-8";
+    /**
+     * Error uri of token request failures
+     */
+    private static final String ERROR_URI = "https://datatracker.ietf.org/doc/html/rfc6749#section-5.2";
+
+    /**
+     * Token requests
+     */
+    private final RequestMatcher tokenRequests = new AntPathRequestMatcher(GENERATE_AUTH_TOKEN_PATH, HttpMethod.POST.name());
+    /**
+     * Authenticates client secrets, same provider as the standard path
+     */
+    private final RehashingClientSecretAuthenticationProvider clientSecretProvider;
+    /**
+     * Token generator, same as the standard path
+     */
+    private final OAuth2TokenGenerator<? extends OAuth2Token> tokenGenerator;
+    /**
+     * Authorization service, same as the standard path
+     */
+    private final OAuth2AuthorizationService authorizationService;
+    /**
+     * Authorization server settings
+     */
+    private final AuthorizationServerSettings authorizationServerSettings;
+    /**
+     * Handler of client authentication failures
+     */
+    private final AuthenticationFailureHandler clientAuthenticationFailureHandler;
+    /**
+     * Handler of token request failures
+     */
+    private final AuthenticationFailureHandler tokenFailureHandler;
+    /**
+     * Converts token responses to their parameters, same converter as the standard path
+     */
+    private final DefaultOAuth2AccessTokenResponseMapConverter responseParametersConverter = new DefaultOAuth2AccessTokenResponseMapConverter();
+    /**
+     * Writes response parameters, built like the object mapper of the standard path converter
+     */
+    private final ObjectWriter responseWriter = Jackson2ObjectMapperBuilder.json().build().writerFor(new TypeReference<Map<String, Object>>() {
+    });
+    /**
+     * Default security headers of the standard path
+     */
+    private final List<HeaderWriter> headerWriters = List.of(
+            new XContentTypeOptionsHeaderWriter(),
+            new XXssProtectionHeaderWriter(),
+            new CacheControlHeadersWriter(),
+            new HstsHeaderWriter(),
+            new XFrameOptionsHeaderWriter(XFrameOptionsHeaderWriter.XFrameOptionsMode.DENY));
+    /**
+     * Requests served by the fast path
+     */
+    private final Counter served;
+    /**
+     * Requests passed on to the standard path
+     */
+    private final Counter delegated;
+
+    public ClientCredentialsFastPathFilter(RehashingClientSecretAuthenticationProvider clientSecretProvider,
+                                           OAuth2TokenGenerator<? extends OAuth2Token> tokenGenerator,
+                                           OAuth2AuthorizationService authorizationService,
+                                           AuthorizationServerSettings authorizationServerSettings,
+                                           AuthenticationFailureHandler clientAuthenticationFailureHandler,
+                                           AuthenticationFailureHandler tokenFailureHandler,
+                                           MeterRegistry meterRegistry) {
+        this.clientSecretProvider = clientSecretProvider;
+        this.tokenGenerator = tokenGenerator;
+        this.authorizationService = authorizationService;
+        this.authorizationServerSettings = authorizationServerSettings;
+        this.clientAuthenticationFailureHandler = clientAuthenticationFailureHandler;
+        this.tokenFailureHandler = tokenFailureHandler;
+        this.served = Counter.builder("token.fast_path").tag("result", "served").register(meterRegistry);
+        this.delegated = Counter.builder("token.fast_path").tag("result", "delegated").register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !tokenRequests.matches(request);
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain)
+            throws ServletException, IOException {
+        String[] credentials = basicCredentials(request.getHeader(HttpHeaders.AUTHORIZATION));
+        String[] grantTypes = request.getParameterValues(OAuth2ParameterNames.GRANT_TYPE);
+        String[] scopes = request.getParameterValues(OAuth2ParameterNames.SCOPE);
+        if (credentials == null
+                || grantTypes == null || grantTypes.length != 1 || !AuthorizationGrantType.CLIENT_CREDENTIALS.getValue().equals(grantTypes[0])
+                || (scopes != null && scopes.length != 1)
+                || request.getParameter(OAuth2ParameterNames.CLIENT_ASSERTION_TYPE) != null
+                || request.getParameter(OAuth2ParameterNames.CLIENT_ASSERTION) != null) {
+            delegated.increment();
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        served.increment();
+        try {
+            AuthorizationServerContextHolder.setContext(new FastPathAuthorizationServerContext(resolveIssuer(request), authorizationServerSettings));
+            handle(request, response, credentials, scopes == null ? null : scopes[0]);
+        } finally {
+            SecurityContextHolder.clearContext();
+            AuthorizationServerContextHolder.resetContext();
+        }
+    }
+
+    private void handle(HttpServletRequest request, HttpServletResponse response, String[] credentials, String scope) throws IOException {
+        OAuth2ClientAuthenticationToken clientPrincipal;
+        try {
+            Authentication authentication = clientSecretProvider.authenticate(
+                    new OAuth2ClientAuthenticationToken(credentials[0], ClientAuthenticationMethod.CLIENT_SECRET_BASIC, credentials[1], null));
+            if (authentication instanceof CredentialsContainer container) {
+                container.eraseCredentials();
+            }
+            clientPrincipal = (OAuth2ClientAuthenticationToken) authentication;
+        } catch (OAuth2AuthenticationException e) {
+            clientAuthenticationFailureHandler.onAuthenticationFailure(request, response, e);
+            return;
+        }
+
+        SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
+        securityContext.setAuthentication(clientPrincipal);
+        SecurityContextHolder.setContext(securityContext);
+
+        Set<String> requestedScopes = StringUtils.hasText(scope) ? new HashSet<>(Arrays.asList(StringUtils.delimitedListToStringArray(scope, " "))) : null;
+        Map<String, Object> additionalParameters = new HashMap<>();
+        request.getParameterMap().forEach((name, values) -> {
+            if (!name.equals(OAuth2ParameterNames.GRANT_TYPE) && !name.equals(OAuth2ParameterNames.SCOPE)) {
+                additionalParameters.put(name, values[0]);
+            }
+        });
+
+        OAuth2AccessToken accessToken;
+        try {
+            accessToken = issue(new OAuth2ClientCredentialsAuthenticationToken(clientPrincipal, requestedScopes, additionalParameters));
+        } catch (OAuth2AuthenticationException e) {
+            tokenFailureHandler.onAuthenticationFailure(request, response, e);
+            return;
+        }
+
+        writeResponse(request, response, accessToken);
+    }
+
+    /**
+     * Authorize a client credentials grant and issue its access token, same checks and order as the standard provider
+     *
+     * @param clientCredentialsAuthentication grant of an authenticated client
+     * @return {@link OAuth2AccessToken}
+     */
+    private OAuth2AccessToken issue(OAuth2ClientCredentialsAuthenticationToken clientCredentialsAuthentication) {
+        OAuth2ClientAuthenticationToken clientPrincipal = (OAuth2ClientAuthenticationToken) clientCredentialsAuthentication.getPrincipal();
+        RegisteredClient registeredClient = clientPrincipal.getRegisteredClient();
+        if (!registeredClient.getAuthorizationGrantTypes().contains(AuthorizationGrantType.CLIENT_CREDENTIALS)) {
+            throw new OAuth2AuthenticationException(OAuth2ErrorCodes.UNAUTHORIZED_CLIENT);
+        }
+
+        Set<String> authorizedScopes = Collections.emptySet();
+        if (!clientCredentialsAuthentication.getScopes().isEmpty()) {
+            for (String requestedScope : clientCredentialsAuthentication.getScopes()) {
+                if (!registeredClient.getScopes().contains(requestedScope)) {
+                    throw new OAuth2AuthenticationException(OAuth2ErrorCodes.INVALID_SCOPE);
+                }
+            }
+            authorizedScopes = new LinkedHashSet<>(clientCredentialsAuthentication.getScopes());
+        }
+
+        OAuth2TokenContext tokenContext = DefaultOAuth2TokenContext.builder()
+                .registeredClient(registeredClient)
+                .principal(clientPrincipal)
+                .authorizationServerContext(AuthorizationServerContextHolder.getContext())
+                .authorizedScopes(authorizedScopes)
+                .tokenType(OAuth2TokenType.ACCESS_TOKEN)
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .authorizationGrant(clientCredentialsAuthentication)
+                .build();
+
+        OAuth2Token generatedAccessToken = tokenGenerator.generate(tokenContext);
+        if (generatedAccessToken == null) {
+            throw new OAuth2AuthenticationException(new OAuth2Error(OAuth2ErrorCodes.SERVER_ERROR,
+                    "The token generator failed to generate the access token.", ERROR_URI));
+        }
+        OAuth2AccessToken accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER,
+                generatedAccessToken.getTokenValue(), generatedAccessToken.getIssuedAt(),
+                generatedAccessToken.getExpiresAt(), tokenContext.getAuthorizedScopes());
+
+        OAuth2Authorization.Builder authorizationBuilder = OAuth2Authorization.withRegisteredClient(registeredClient)
+                .principalName(clientPrincipal.getName())
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .authorizedScopes(authorizedScopes);
+        if (generatedAccessToken instanceof ClaimAccessor claimAccessor) {
+            authorizationBuilder.token(accessToken, metadata -> metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, claimAccessor.getClaims()));
+        } else {
+            authorizationBuilder.accessToken(accessToken);
+        }
+        authorizationService.save(authorizationBuilder.build());
+
+        return accessToken;
+    }
+
+    private void writeResponse(HttpServletRequest request, HttpServletResponse response, OAuth2AccessToken accessToken) throws IOException {
+        OAuth2AccessTokenResponse.Builder builder = OAuth2AccessTokenResponse.withToken(accessToken.getTokenValue())
+                .tokenType(accessToken.getTokenType())
+                .scopes(accessToken.getScopes());
+        if (accessToken.getIssuedAt() != null && accessToken.getExpiresAt() != null) {
+            builder.expiresIn(ChronoUnit.SECONDS.between(accessToken.getIssuedAt(), accessToken.getExpiresAt()));
+        }
+        byte[] body = responseWriter.writeValueAsBytes(responseParametersConverter.convert(builder.build()));
+
+        headerWriters.forEach(headerWriter -> headerWriter.writeHeaders(request, response));
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(CONTENT_TYPE);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * Parse basic credentials the way the standard path does, any deviation is left to the standard path
+     *
+     * @param header authorization header
+     * @return client id and secret, or null if the header is missing or not well-formed
+     */
+    private static String[] basicCredentials(String header) {
+        if (header == null || !header.regionMatches(true, 0, BASIC_PREFIX, 0, BASIC_PREFIX.length())) {
+            return null;
+        }
+
+        String encoded = header.substring(BASIC_PREFIX.length());
+        for (int i = 0; i < encoded.length(); i++) {
+            if (Character.isWhitespace(encoded.charAt(i))) {
+                return null;
+            }
+        }
+
+        try {
+            String decoded = new String(Base64.getDecoder().decode(encoded), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(':');
+            if (separator <= 0 || separator == decoded.length() - 1) {
+                return null;
+            }
+            return new String[]{
+                    URLDecoder.decode(decoded.substring(0, separator), StandardCharsets.UTF_8),
+                    URLDecoder.decode(decoded.substring(separator + 1), StandardCharsets.UTF_8)};
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Issuer resolved like the authorization server context filter of the standard path
+     *
+     * @param request request
+     * @return issuer
+     */
+    private String resolveIssuer(HttpServletRequest request) {
+        if (authorizationServerSettings.getIssuer() != null) {
+            return authorizationServerSettings.getIssuer();
+        }
+
+        return UriComponentsBuilder.fromHttpUrl(UrlUtils.buildFullRequestUrl(request))
+                .replacePath(request.getContextPath())
+                .replaceQuery(null)
+                .fragment(null)
+                .build()
+                .toUriString();
+    }
+
+    /**
+     * Authorization server context of a fast path request
+     *
+     * @param issuer                      issuer
+     * @param authorizationServerSettings authorization server settings
+     */
+    private record FastPathAuthorizationServerContext(String issuer,
+                                                      AuthorizationServerSettings authorizationServerSettings) implements AuthorizationServerContext {
+        @Override
+        public String getIssuer() {
+            return issuer;
+        }
+
+        @Override
+        public AuthorizationServerSettings getAuthorizationServerSettings() {
+            return authorizationServerSettings;
+        }
+    }
+}
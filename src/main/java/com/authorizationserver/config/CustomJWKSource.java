@@ -1,6 +1,9 @@
 package com.authorizationserver.config;
 
 import com.authorizationserver.db.model.RsaKey;
+import com.authorizationserver.db.resilience.DatabaseCircuitBreaker;
+import com.authorizationserver.db.resilience.LastKnownGoodCache;
+import com.authorizationserver.db.repository.RsaKeyReadRepository;
 import com.authorizationserver.db.repository.RsaKeyRepository;
 import com.authorizationserver.model.RSADto;
 import com.authorizationserver.util.CryptographyUtils;
@@ -13,8 +16,11 @@ import com.nimbusds.jose.proc.SecurityContext;
 import com.authorizationserver.exception.KeyGenerationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.security.GeneralSecurityException;
 import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
 import java.security.interfaces.RSAPrivateKey;
@@ -28,7 +34,8 @@ import java.util.List;
 import java.util.Optional;
 
 /**
- * Custom JWKSource entity to provide JWKSet based on keys from db
+ * Custom JWKSource entity to provide JWKSet based on keys from db. The signing key is read through {@link DatabaseCircuitBreaker},
+ * while the database is unavailable tokens keep being signed with the last key read.
  *
  * @author Blajan George
  */
@@ -48,17 +55,51 @@ public class CustomJWKSource implements JWKSource<SecurityContext> {
     private String encryptionSecret;
 
     /**
-     * Repository to retrieve keys
+     * Repository to store keys
      */
     private final RsaKeyRepository rsaKeyRepository;
     /**
-     * Key factory
+     * Repository to retrieve keys
+     */
+    private final RsaKeyReadRepository rsaKeyReadRepository;
+    /**
+     * Key of the signing key set in the last known good cache
+     */
+    private static final String SIGNING_KEY_SET = "signing";
+    /**
+     * Key factory per thread, {@link KeyFactory} instances are not documented as thread safe
+     */
+    private static final ThreadLocal<KeyFactory> KEY_FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return KeyFactory.getInstance("RSA");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    /**
+     * Transaction scoped lock serializing key generation across all nodes when no active key exists
      */
-    KeyFactory keyFactory;
+    private static final String KEY_GENERATION_LOCK_QUERY = "SELECT pg_advisory_xact_lock(hashtext('rsa_key_generation'))";
+    /**
+     * Last signing key set read, served while the database is unavailable
+     */
+    private final LastKnownGoodCache<String, JWKSet> signingKeySet;
+    /**
+     * Jdbc template, takes the key generation lock
+     */
+    private final JdbcTemplate jdbcTemplate;
+    /**
+     * Transaction template, holds the key generation lock until the new key is committed
+     */
+    private final TransactionTemplate transactionTemplate;
 
-    public CustomJWKSource(RsaKeyRepository rsaKeyRepository) throws NoSuchAlgorithmException {
+    public CustomJWKSource(RsaKeyRepository rsaKeyRepository, RsaKeyReadRepository rsaKeyReadRepository, DatabaseCircuitBreaker circuitBreaker,
+                           JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
         this.rsaKeyRepository = rsaKeyRepository;
-        this.keyFactory = KeyFactory.getInstance("RSA");
+        this.rsaKeyReadRepository = rsaKeyReadRepository;
+        this.signingKeySet = circuitBreaker.lastKnownGood("signing_key");
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
     }
 
     /**
@@ -70,23 +111,7 @@ public class CustomJWKSource implements JWKSource<SecurityContext> {
      */
     @Override
     public List<JWK> get(JWKSelector jwkSelector, SecurityContext securityContext) {
-        Optional<RsaKey> optionalRsaKey = rsaKeyRepository.getMostRecentKey();
-
-        if (optionalRsaKey.isEmpty()) {
-            try {
-                return jwkSelector.select(generateNewKeySet());
-            } catch (Exception e) {
-                log.error("Error encountered when generating a new key set.", e);
-                throw new KeyGenerationException(e.getMessage());
-            }
-        } else {
-            try {
-                return jwkSelector.select(obtainJWKSetFroDb(optionalRsaKey.get()));
-            } catch (Exception e) {
-                log.error("Error encountered when obtain the key set from db.", e);
-                throw new KeyGenerationException(e.getMessage());
-            }
-        }
+        return jwkSelector.select(signingKeySet.read(SIGNING_KEY_SET, this::obtainSigningKeySet));
     }
 
     /**
@@ -97,16 +122,55 @@ public class CustomJWKSource implements JWKSource<SecurityContext> {
      * @throws InvalidKeySpecException invalid key exception
      */
     public List<JWK> getLastNPublicKeys(JWKSelector jwkSelector) throws InvalidKeySpecException {
-        List<JWK> rsaKeyList = new ArrayList<>();
-        List<RsaKey> keys = rsaKeyRepository.getLimitNMostRecentPublicKeys(numberOfRetrievedPublicKeys);
+        return jwkSelector.select(toPublicKeySet(rsaKeyReadRepository.getLimitNMostRecentPublicKeys(numberOfRetrievedPublicKeys)));
+    }
+
+    /**
+     * Get the keys of the jwk set endpoint read from primary, so a key committed just before is always included
+     *
+     * @return {@link List} of {@link RsaKey}, most recently activated first
+     */
+    public List<RsaKey> getLastNKeysFromPrimary() {
+        return rsaKeyRepository.getLimitNMostRecentPublicKeysFromPrimary(numberOfRetrievedPublicKeys);
+    }
 
+    /**
+     * Build the public jwk set of keys
+     *
+     * @param keys keys
+     * @return {@link JWKSet} of their public keys
+     * @throws InvalidKeySpecException invalid key exception
+     */
+    public static JWKSet toPublicKeySet(List<RsaKey> keys) throws InvalidKeySpecException {
+        List<JWK> rsaKeyList = new ArrayList<>();
         for (RsaKey key : keys) {
             X509EncodedKeySpec publicKeySpec = new X509EncodedKeySpec(key.getPublicKey());
-            RSAPublicKey rsaPublicKey = (RSAPublicKey) keyFactory.generatePublic(publicKeySpec);
+            RSAPublicKey rsaPublicKey = (RSAPublicKey) KEY_FACTORY.get().generatePublic(publicKeySpec);
             rsaKeyList.add(new RSAKey.Builder(rsaPublicKey).keyID(key.getId()).build());
         }
 
-        return jwkSelector.select(new JWKSet(rsaKeyList));
+        return new JWKSet(rsaKeyList);
+    }
+
+    /**
+     * Obtain the signing key set from db, generating it if no active key exists. Database failures are rethrown
+     * unwrapped so they are seen by the circuit breaker.
+     *
+     * @return {@link JWKSet}
+     */
+    private JWKSet obtainSigningKeySet() {
+        Optional<RsaKey> optionalRsaKey = rsaKeyReadRepository.getMostRecentKey();
+
+        if (optionalRsaKey.isEmpty()) {
+            return obtainOrGenerateKeySet();
+        } else {
+            try {
+                return obtainJWKSetFroDb(optionalRsaKey.get());
+            } catch (Exception e) {
+                log.error("Error encountered when obtain the key set from db.", e);
+                throw new KeyGenerationException(e.getMessage());
+            }
+        }
     }
 
     /**
@@ -114,12 +178,13 @@ public class CustomJWKSource implements JWKSource<SecurityContext> {
      *
      * @param rsaKey rsa key
      * @return {@link JWKSet}
-     * @throws InvalidKeySpecException thrown when a specification for key is invalid
+     * @throws GeneralSecurityException thrown when the key can't be decrypted or parsed
      */
-    private JWKSet obtainJWKSetFroDb(RsaKey rsaKey) throws Exception {
+    private JWKSet obtainJWKSetFroDb(RsaKey rsaKey) throws GeneralSecurityException {
         X509EncodedKeySpec publicKeySpec = new X509EncodedKeySpec(rsaKey.getPublicKey());
         PKCS8EncodedKeySpec privateKeySpec = new PKCS8EncodedKeySpec(CryptographyUtils.decrypt(rsaKey.getPrivateKey(), encryptionSecret, rsaKey.getIv()));
 
+        KeyFactory keyFactory = KEY_FACTORY.get();
         RSAPublicKey rsaPublicKey = (RSAPublicKey) keyFactory.generatePublic(publicKeySpec);
         RSAPrivateKey rsaPrivateKey = (RSAPrivateKey) keyFactory.generatePrivate(privateKeySpec);
 
@@ -127,16 +192,39 @@ public class CustomJWKSource implements JWKSource<SecurityContext> {
     }
 
     /**
-     * Generates new {@link JWKSet} if doesn't exist in db
+     * Obtain the active key set when the first read found none. The check and insert run in one transaction under a
+     * database lock, so across all nodes only the first caller generates a key and the others read it from the primary.
+     * Database failures are rethrown unwrapped so they are seen by the circuit breaker.
+     *
+     * @return {@link JWKSet}
+     */
+    private JWKSet obtainOrGenerateKeySet() {
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.query(KEY_GENERATION_LOCK_QUERY, rs -> {
+            });
+            Optional<RsaKey> optionalRsaKey = rsaKeyRepository.getMostRecentKeyAtCurrentTime();
+            try {
+                return optionalRsaKey.isPresent() ? obtainJWKSetFroDb(optionalRsaKey.get()) : generateNewKeySet();
+            } catch (GeneralSecurityException e) {
+                log.error("Error encountered when generating a new key set.", e);
+                throw new KeyGenerationException(e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Generates new {@link JWKSet} if no active key exists in db, the key is active immediately
      *
      * @return {@link JWKSet}
-     * @throws NoSuchAlgorithmException thrown when specified alg doesn't exist
+     * @throws GeneralSecurityException thrown when the key can't be generated or encrypted
      */
-    private JWKSet generateNewKeySet() throws Exception {
+    private JWKSet generateNewKeySet() throws GeneralSecurityException {
         RSADto rsaDto = CryptographyUtils.generateNewRsaKey();
         byte[] iv = CryptographyUtils.generateIv();
 
-        rsaKeyRepository.saveAndFlush(new RsaKey(rsaDto.rsaKey().getKeyID(), rsaDto.rsaPublicKey().getEncoded(), CryptographyUtils.encrypt(rsaDto.rsaPrivateKey().getEncoded(), encryptionSecret, iv), iv, Instant.now()));
+        Instant now = Instant.now();
+        rsaKeyRepository.saveAndFlush(new RsaKey(rsaDto.rsaKey().getKeyID(), rsaDto.rsaPublicKey().getEncoded(), CryptographyUtils.encrypt(rsaDto.rsaPrivateKey().getEncoded(), encryptionSecret, iv), iv, now, now));
+        log.info("No active key found, first key {} generated.", rsaDto.rsaKey().getKeyID());
 
         return new JWKSet(rsaDto.rsaKey());
     }
@@ -0,0 +1,32 @@
+package com.authorizationserver.config;
+
+import com.authorizationserver.db.resilience.DatabaseCircuitBreaker;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Interceptor refusing client writes while the database circuit is not closed, before a transaction waits on the pool.
+ *
+ * @author Blajan George
+ */
+public class DegradedModeInterceptor implements HandlerInterceptor {
+    /**
+     * Database circuit
+     */
+    private final DatabaseCircuitBreaker circuitBreaker;
+
+    public DegradedModeInterceptor(DatabaseCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull Object handler) throws Exception {
+        if (!HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())) {
+            circuitBreaker.checkWritable();
+        }
+        return HandlerInterceptor.super.preHandle(request, response, handler);
+    }
+}
@@ -1,5 +1,10 @@
 package com.authorizationserver.config;
 
+import com.authorizationserver.exception.BulkheadFullException;
+import com.authorizationserver.exception.ClaimNotWhitelistedException;
+import com.authorizationserver.exception.DatabaseUnavailableException;
+import com.authorizationserver.exception.EntityNotFoundException;
+import com.authorizationserver.exception.UnauthorizedException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -37,10 +42,26 @@ public class FilterChainExceptionHandler extends OncePerRequestFilter {
         try {
             filterChain.doFilter(request, response);
         } catch (Exception e) {
-            log.error("Spring Security Filter Chain Exception:", e);
+            if (!isExpectedRejection(e)) {
+                log.error("Spring Security Filter Chain Exception:", e);
+            }
             if (resolver.resolveException(request, response, null, e) == null) {
                 throw e;
             }
         }
     }
+
+    /**
+     * Expected rejections are counted and logged by the exception handler, without a stack trace
+     *
+     * @param e exception
+     * @return true if exception is an expected rejection
+     */
+    private static boolean isExpectedRejection(Exception e) {
+        return e instanceof ClaimNotWhitelistedException
+                || e instanceof UnauthorizedException
+                || e instanceof EntityNotFoundException
+                || e instanceof DatabaseUnavailableException
+                || e instanceof BulkheadFullException;
+    }
 }
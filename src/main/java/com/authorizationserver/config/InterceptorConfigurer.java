@@ -1,10 +1,12 @@
 package com.authorizationserver.config;
 
+import com.authorizationserver.db.resilience.DatabaseCircuitBreaker;
 import com.authorizationserver.model.MetadataContext;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import static com.authorizationserver.constants.Constants.API_V1;
 import static com.authorizationserver.constants.Constants.GET_METADATA_PATH;
 
 /**
@@ -18,14 +20,21 @@ public class InterceptorConfigurer implements WebMvcConfigurer {
      * Metadata context model object
      */
     private final MetadataContext metadataContext;
+    /**
+     * Database circuit
+     */
+    private final DatabaseCircuitBreaker circuitBreaker;
 
-    public InterceptorConfigurer(MetadataContext metadataContext) {
+    public InterceptorConfigurer(MetadataContext metadataContext, DatabaseCircuitBreaker circuitBreaker) {
         this.metadataContext = metadataContext;
+        this.circuitBreaker = circuitBreaker;
     }
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(new MetadataContextInterceptor(metadataContext))
                 .addPathPatterns(GET_METADATA_PATH);
+        registry.addInterceptor(new DegradedModeInterceptor(circuitBreaker))
+                .addPathPatterns(API_V1 + "/client", API_V1 + "/client/**");
     }
 }
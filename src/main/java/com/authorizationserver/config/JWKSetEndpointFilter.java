@@ -8,6 +8,7 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.NonNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpMethod;
@@ -28,7 +29,8 @@ import static com.authorizationserver.constants.Constants.GET_JWK_SET_PATH;
  * @author Blajan George
  */
 @Component
-@Order(Ordered.HIGHEST_PRECEDENCE)
+@Order(Ordered.HIGHEST_PRECEDENCE + 3)
+@ConditionalOnProperty(value = "node.tokenEndpoint.enabled", havingValue = "true", matchIfMissing = true)
 public class JWKSetEndpointFilter extends OncePerRequestFilter {
     /**
      * JWK Source
@@ -0,0 +1,111 @@
+package com.authorizationserver.config;
+
+import com.authorizationserver.db.model.Oauth2Client;
+import com.authorizationserver.db.model.RsaKey;
+import com.authorizationserver.scheduler.jobs.UpdateRsaKeyJob;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.util.ClassUtils;
+
+import java.util.List;
+
+/**
+ * Reflection, resource and serialization hints for the native image, covering what Spring AOT can't infer:
+ * Nimbus JOSE types, classes Quartz loads by name, Jackson modules and mixins used to (de)serialize client settings
+ * and the jpa entities.
+ *
+ * @author Blajan George
+ */
+public class NativeRuntimeHints implements RuntimeHintsRegistrar {
+    /**
+     * Nimbus JOSE types serialized to and from json
+     */
+    private static final List<String> NIMBUS_TYPES = List.of(
+            "com.nimbusds.jose.jwk.JWKSet",
+            "com.nimbusds.jose.jwk.RSAKey",
+            "com.nimbusds.jose.JWSHeader",
+            "com.nimbusds.jwt.JWTClaimsSet",
+            "com.nimbusds.jose.shaded.gson.internal.LinkedTreeMap");
+    /**
+     * Quartz classes instantiated from scheduler properties
+     */
+    private static final List<String> QUARTZ_TYPES = List.of(
+            "org.quartz.impl.jdbcjobstore.PostgreSQLDelegate",
+            "org.quartz.impl.jdbcjobstore.StdJDBCDelegate",
+            "org.quartz.simpl.SimpleInstanceIdGenerator",
+            "org.quartz.simpl.SimpleThreadPool",
+            "org.quartz.impl.StdSchedulerFactory");
+    /**
+     * Quartz types stored as serialized blobs by the jdbc job store
+     */
+    private static final List<String> QUARTZ_SERIALIZED_TYPES = List.of(
+            "org.quartz.JobDataMap",
+            "org.quartz.utils.StringKeyDirtyFlagMap",
+            "org.quartz.utils.DirtyFlagMap",
+            "java.util.HashMap");
+    /**
+     * Jackson modules loaded by name from {@link org.springframework.security.jackson2.SecurityJackson2Modules}
+     */
+    private static final List<String> JACKSON_MODULES = List.of(
+            "org.springframework.security.jackson2.CoreJackson2Module",
+            "org.springframework.security.web.jackson2.WebJackson2Module",
+            "org.springframework.security.web.jackson2.WebServletJackson2Module",
+            "org.springframework.security.web.server.jackson2.WebServerJackson2Module",
+            "org.springframework.security.oauth2.server.authorization.jackson2.OAuth2AuthorizationServerJackson2Module");
+    /**
+     * Mixins, deserializers and types of the polymorphic client and token settings
+     */
+    private static final List<String> JACKSON_TYPES = List.of(
+            "org.springframework.security.jackson2.UnmodifiableSetMixin",
+            "org.springframework.security.jackson2.UnmodifiableListMixin",
+            "org.springframework.security.jackson2.UnmodifiableMapMixin",
+            "org.springframework.security.jackson2.UnmodifiableMapDeserializer",
+            "org.springframework.security.jackson2.UnmodifiableSetDeserializer",
+            "org.springframework.security.jackson2.UnmodifiableListDeserializer",
+            "org.springframework.security.oauth2.server.authorization.jackson2.UnmodifiableMapMixin",
+            "org.springframework.security.oauth2.server.authorization.jackson2.UnmodifiableMapDeserializer",
+            "org.springframework.security.oauth2.server.authorization.jackson2.HashSetMixin",
+            "org.springframework.security.oauth2.server.authorization.jackson2.DurationMixin",
+            "org.springframework.security.oauth2.server.authorization.jackson2.JwsAlgorithmMixin",
+            "org.springframework.security.oauth2.server.authorization.jackson2.OAuth2TokenFormatMixin",
+            "org.springframework.security.oauth2.server.authorization.jackson2.StringArrayMixin",
+            "org.springframework.security.oauth2.server.authorization.jackson2.JsonNodeUtils",
+            "org.springframework.security.oauth2.server.authorization.settings.OAuth2TokenFormat",
+            "org.springframework.security.oauth2.jose.jws.SignatureAlgorithm",
+            "org.springframework.security.oauth2.jose.jws.MacAlgorithm",
+            "java.time.Duration",
+            "java.util.HashSet",
+            "java.util.Collections$UnmodifiableMap",
+            "java.util.Collections$UnmodifiableSet");
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        registerTypes(hints, classLoader, NIMBUS_TYPES);
+        registerTypes(hints, classLoader, QUARTZ_TYPES);
+        registerTypes(hints, classLoader, JACKSON_MODULES);
+        registerTypes(hints, classLoader, JACKSON_TYPES);
+        QUARTZ_SERIALIZED_TYPES.stream()
+                .filter(type -> ClassUtils.isPresent(type, classLoader))
+                .forEach(type -> hints.serialization().registerType(TypeReference.of(type)));
+
+        hints.reflection().registerType(UpdateRsaKeyJob.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        hints.reflection().registerType(Oauth2Client.class, MemberCategory.values());
+        hints.reflection().registerType(RsaKey.class, MemberCategory.values());
+        hints.reflection().registerType(TypeReference.of("com.authorizationserver.token.StoredAuthorizationCodec$StoredAuthorization"), MemberCategory.values());
+        hints.reflection().registerType(TypeReference.of("com.authorizationserver.token.WriteBehindAuthorizationStore$Row"), MemberCategory.values());
+        hints.reflection().registerType(TypeReference.of("com.authorizationserver.token.WriteBehindAuthorizationStore$Write"), MemberCategory.values());
+
+        hints.resources().registerPattern("db/migration/*.sql");
+    }
+
+    private static void registerTypes(RuntimeHints hints, ClassLoader classLoader, List<String> types) {
+        types.stream()
+                .filter(type -> ClassUtils.isPresent(type, classLoader))
+                .forEach(type -> hints.reflection().registerType(TypeReference.of(type),
+                        MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                        MemberCategory.INVOKE_DECLARED_METHODS,
+                        MemberCategory.DECLARED_FIELDS));
+    }
+}
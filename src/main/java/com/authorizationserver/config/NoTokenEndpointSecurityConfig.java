@@ -0,0 +1,33 @@
+package com.authorizationserver.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.web.SecurityFilterChain;
+
+/**
+ * Security configuration of nodes started without token endpoint ( 'node.tokenEndpoint.enabled=false' ).
+ * Keeps the admin api and actuator reachable the same way they are on token nodes, where no filter chain matches them,
+ * instead of falling back to spring boot's default form login security.
+ *
+ * @author Blajan George
+ */
+@Configuration
+@EnableWebSecurity
+@ConditionalOnProperty(value = "node.tokenEndpoint.enabled", havingValue = "false")
+public class NoTokenEndpointSecurityConfig {
+
+    /**
+     * @param http {@link HttpSecurity} HttpSecurity container class
+     * @return {@link SecurityFilterChain}
+     * @throws Exception Exception thrown while building the chain
+     */
+    @Bean
+    public SecurityFilterChain permitAllFilterChain(HttpSecurity http) throws Exception {
+        http.authorizeHttpRequests(authorize -> authorize.anyRequest().permitAll())
+                .csrf(csrf -> csrf.disable());
+        return http.build();
+    }
+}
@@ -0,0 +1,67 @@
+package com.authorizationserver.config;
+
+import com.authorizationserver.authentication.ClientSecretPasswordEncoder;
+import com.authorizationserver.authentication.HmacPasswordEncoder;
+import com.authorizationserver.db.repository.Oauth2ClientRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataAccessException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Configuration class for client secret hashing, shared by the admin api and the token endpoint.
+ * Secrets are hashed with bcrypt unless 'secretHashing.hmacKey' is set, then secrets generated by the server use a keyed hash.
+ * Startup fails when keyed hashes are stored but the key is not set, since those clients could never authenticate.
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@Configuration
+public class PasswordEncoderConfig {
+    /**
+     * Key of the keyed hash, empty to hash every secret with bcrypt
+     */
+    @Value("${secretHashing.hmacKey:}")
+    private String hmacKey;
+    /**
+     * Bcrypt strength
+     */
+    @Value("${secretHashing.bcryptStrength:10}")
+    private Integer bcryptStrength;
+
+    /**
+     * Used to hash and match client secrets
+     *
+     * @param oauth2ClientRepository client repository, checked for keyed hashes when no key is set
+     * @return {@link ClientSecretPasswordEncoder}
+     */
+    @Bean
+    public ClientSecretPasswordEncoder clientSecretPasswordEncoder(Oauth2ClientRepository oauth2ClientRepository) {
+        HmacPasswordEncoder hmacPasswordEncoder = null;
+        if (!hmacKey.isBlank()) {
+            hmacPasswordEncoder = new HmacPasswordEncoder(hmacKey);
+        } else {
+            checkNoKeyedHashes(oauth2ClientRepository);
+            log.info("secretHashing.hmacKey not set, every client secret is hashed with bcrypt.");
+        }
+
+        return new ClientSecretPasswordEncoder(new BCryptPasswordEncoder(bcryptStrength), hmacPasswordEncoder);
+    }
+
+    private static void checkNoKeyedHashes(Oauth2ClientRepository oauth2ClientRepository) {
+        boolean keyedHashes;
+        try {
+            keyedHashes = oauth2ClientRepository.existsBySecretPrefix("{" + ClientSecretPasswordEncoder.HMAC_SHA256 + "}%");
+        } catch (DataAccessException e) {
+            log.warn("Stored client secrets could not be checked for keyed hashes: {}", e.getMessage());
+            return;
+        }
+
+        if (keyedHashes) {
+            throw new IllegalStateException(String.format("Client secrets hashed with %s are stored but secretHashing.hmacKey is not set.",
+                    ClientSecretPasswordEncoder.HMAC_SHA256));
+        }
+    }
+}
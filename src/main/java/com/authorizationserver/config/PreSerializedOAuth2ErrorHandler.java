@@ -0,0 +1,194 @@
+package com.authorizationserver.config;
+
+import com.authorizationserver.exception.RejectionLogger;
+import com.authorizationserver.usage.ClientUsageCounters;
+import com.authorizationserver.usage.UsageOutcome;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Error response handler for client authentication and token endpoint failures. The small set of distinct OAuth2 errors
+ * is serialized once and written as bytes, rejections are counted and logged through {@link RejectionLogger} and counted
+ * per client in {@link ClientUsageCounters}.
+ *
+ * @author Blajan George
+ */
+public class PreSerializedOAuth2ErrorHandler implements AuthenticationFailureHandler {
+    /**
+     * Maximum number of distinct cached bodies
+     */
+    private static final int MAX_CACHED_BODIES = 64;
+    /**
+     * Prefix of basic authorization header
+     */
+    private static final String BASIC_PREFIX = "Basic ";
+    /**
+     * Object mapper
+     */
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    /**
+     * Serialized bodies by error
+     */
+    private final Map<ErrorKey, byte[]> bodies = new ConcurrentHashMap<>();
+    /**
+     * Rejection logger
+     */
+    private final RejectionLogger rejectionLogger;
+    /**
+     * Per client token request counters
+     */
+    private final ClientUsageCounters clientUsageCounters;
+    /**
+     * True when used for client authentication, invalid_client is then answered with 401 instead of 400
+     */
+    private final boolean clientAuthentication;
+
+    public PreSerializedOAuth2ErrorHandler(RejectionLogger rejectionLogger, ClientUsageCounters clientUsageCounters, boolean clientAuthentication) {
+        this.rejectionLogger = rejectionLogger;
+        this.clientUsageCounters = clientUsageCounters;
+        this.clientAuthentication = clientAuthentication;
+    }
+
+    @Override
+    public void onAuthenticationFailure(HttpServletRequest request, HttpServletResponse response, AuthenticationException exception) throws IOException {
+        recordFailure(request);
+        SecurityContextHolder.clearContext();
+
+        OAuth2Error error = exception instanceof OAuth2AuthenticationException oauth2Exception
+                ? oauth2Exception.getError()
+                : new OAuth2Error(clientAuthentication ? OAuth2ErrorCodes.INVALID_CLIENT : OAuth2ErrorCodes.INVALID_REQUEST);
+        rejectionLogger.reject(error.getErrorCode(), error.getDescription());
+
+        response.setStatus(status(error).value());
+        if (OAuth2ErrorCodes.TEMPORARILY_UNAVAILABLE.equals(error.getErrorCode())) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        byte[] body = body(error);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * @param error OAuth2 error
+     * @return 401 for client authentication failures, 503 when the server can't take the request for now, 400 otherwise
+     */
+    private HttpStatus status(OAuth2Error error) {
+        if (clientAuthentication && OAuth2ErrorCodes.INVALID_CLIENT.equals(error.getErrorCode())) {
+            return HttpStatus.UNAUTHORIZED;
+        }
+        if (OAuth2ErrorCodes.TEMPORARILY_UNAVAILABLE.equals(error.getErrorCode())) {
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        return HttpStatus.BAD_REQUEST;
+    }
+
+    /**
+     * Count a failed request under the authenticated client for token endpoint failures,
+     * otherwise under the client id the request claims through its parameters or basic credentials
+     *
+     * @param request failed request
+     */
+    private void recordFailure(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication instanceof OAuth2ClientAuthenticationToken clientAuthentication && clientAuthentication.getRegisteredClient() != null) {
+            clientUsageCounters.record(clientAuthentication.getRegisteredClient().getClientId(), UsageOutcome.FAILED);
+            return;
+        }
+
+        clientUsageCounters.recordRequested(requestedClientId(request), UsageOutcome.FAILED);
+    }
+
+    /**
+     * Resolve the client id a request claims through its parameters or basic credentials, without authenticating it
+     *
+     * @param request request
+     * @return client id or null if the request names no client
+     */
+    static String requestedClientId(HttpServletRequest request) {
+        String clientId = request.getParameter(OAuth2ParameterNames.CLIENT_ID);
+        if (clientId != null) {
+            return clientId;
+        }
+
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.regionMatches(true, 0, BASIC_PREFIX, 0, BASIC_PREFIX.length())) {
+            return null;
+        }
+
+        try {
+            String credentials = new String(Base64.getDecoder().decode(header.substring(BASIC_PREFIX.length()).trim()), StandardCharsets.UTF_8);
+            int separator = credentials.indexOf(':');
+            return separator < 0 ? null : URLDecoder.decode(credentials.substring(0, separator), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Retrieve serialized body of an error
+     *
+     * @param error OAuth2 error
+     * @return serialized body
+     */
+    private byte[] body(OAuth2Error error) {
+        ErrorKey key = new ErrorKey(error.getErrorCode(), error.getDescription(), error.getUri());
+        byte[] body = bodies.get(key);
+        if (body != null) {
+            return body;
+        }
+
+        body = serialize(error);
+        if (bodies.size() < MAX_CACHED_BODIES) {
+            bodies.putIfAbsent(key, body);
+        }
+        return body;
+    }
+
+    private byte[] serialize(OAuth2Error error) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put(OAuth2ParameterNames.ERROR, error.getErrorCode());
+        if (error.getDescription() != null) {
+            parameters.put(OAuth2ParameterNames.ERROR_DESCRIPTION, error.getDescription());
+        }
+        if (error.getUri() != null) {
+            parameters.put(OAuth2ParameterNames.ERROR_URI, error.getUri());
+        }
+
+        try {
+            return objectMapper.writeValueAsBytes(parameters);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Identity of an OAuth2 error
+     */
+    private record ErrorKey(String errorCode, String description, String uri) {
+    }
+}
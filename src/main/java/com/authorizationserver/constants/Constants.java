@@ -12,6 +12,17 @@ import lombok.experimental.UtilityClass;
 public class Constants {
     public static final Integer DEFAULT_TOKEN_AVAILABILITY_IN_MINUTES = 30;
     public static final String AUTHORIZATION_HEADER = "Authorization";
+    public static final Integer DEFAULT_CHANGED_CLIENTS_LIMIT = 100;
+    public static final Integer MAX_CHANGED_CLIENTS_LIMIT = 1000;
+    // Token path lookups fail after this timeout instead of waiting on a slow database
+    public static final int LOOKUP_QUERY_TIMEOUT_SECONDS = 2;
+    public static final String LOOKUP_QUERY_TIMEOUT_MILLIS = LOOKUP_QUERY_TIMEOUT_SECONDS * 1000 + "";
+
+    // Custom client and token settings
+    public static final String ACCESS_TOKEN_REUSE_PERCENTAGE_SETTING = "settings.token.access-token-reuse-percentage";
+    public static final String CLIENT_JWK_SET_SETTING = "settings.client.jwk-set";
+    // Longest registered JWK set, leaves room in client_settings ( varchar(10000) ) for escaping and the other settings
+    public static final int MAX_JWK_SET_LENGTH = 8000;
 
     // Path constants
     public static final String API_V1 = "/api/v1/oauth2";
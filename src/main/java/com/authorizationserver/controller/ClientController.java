@@ -1,11 +1,16 @@
 package com.authorizationserver.controller;
 
 import com.authorizationserver.model.ClientResponse;
+import com.authorizationserver.model.ClientSecretResponse;
 import com.authorizationserver.model.PatchClientRequest;
+import com.authorizationserver.model.PatchClientResult;
 import com.authorizationserver.model.RegisterClientRequest;
 import com.authorizationserver.service.AuthorizationService;
+import com.authorizationserver.util.ETagUtils;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -21,6 +26,7 @@ import static com.authorizationserver.constants.Constants.*;
  */
 @Slf4j
 @RestController
+@ConditionalOnProperty(value = "node.adminApi.enabled", havingValue = "true", matchIfMissing = true)
 @RequestMapping(path = API_V1 + "/client")
 public class ClientController {
     /**
@@ -35,28 +41,31 @@ public class ClientController {
     /**
      * @param registerClientRequest {@link RegisterClientRequest} request entity for registering client
      * @param authorizationSecret   authorization secret to confirm identity
-     * @return {@link ResponseEntity}
+     * @return {@link ResponseEntity} with the generated secret if one was requested
      */
     @PostMapping
-    public ResponseEntity<Void> registerOauth2Client(@Valid @RequestBody RegisterClientRequest registerClientRequest,
-                                                     @RequestHeader(value = AUTHORIZATION_HEADER, required = false) String authorizationSecret) {
+    public ResponseEntity<ClientSecretResponse> registerOauth2Client(@Valid @RequestBody RegisterClientRequest registerClientRequest,
+                                                                     @RequestHeader(value = AUTHORIZATION_HEADER, required = false) String authorizationSecret) {
         log.info("Register client with id {} request received.", registerClientRequest.clientId());
-        authorizationService.registerOauth2Client(registerClientRequest, authorizationSecret);
-        return ResponseEntity.ok().build();
+        String clientSecret = authorizationService.registerOauth2Client(registerClientRequest, authorizationSecret);
+        return clientSecret == null ? ResponseEntity.ok().build() : ResponseEntity.ok(new ClientSecretResponse(clientSecret));
     }
 
     /**
      * @param patchClientRequest  {@link PatchClientRequest} request entity for patching client
      * @param authorizationSecret authorization secret to confirm identity
-     * @return {@link ResponseEntity}
+     * @return {@link ResponseEntity} with the generated secret if one was requested
      */
     @PatchMapping("/{client_id}")
-    public ResponseEntity<Void> patchOauth2Client(@Valid @RequestBody PatchClientRequest patchClientRequest,
+    public ResponseEntity<ClientSecretResponse> patchOauth2Client(@Valid @RequestBody PatchClientRequest patchClientRequest,
                                                   @RequestHeader(value = AUTHORIZATION_HEADER, required = false) String authorizationSecret,
+                                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
                                                   @PathVariable("client_id") String clientId) {
         log.info("Update client with id {} request received.", clientId);
-        authorizationService.patchOauth2Client(patchClientRequest, authorizationSecret, clientId);
-        return ResponseEntity.ok().build();
+        Long expectedVersion = ifMatch == null ? null : ETagUtils.parseVersion(ifMatch);
+        PatchClientResult result = authorizationService.patchOauth2Client(patchClientRequest, authorizationSecret, clientId, expectedVersion);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(ETagUtils.format(result.version()));
+        return result.clientSecret() == null ? response.build() : response.body(new ClientSecretResponse(result.clientSecret()));
     }
 
     /**
@@ -77,20 +86,41 @@ public class ClientController {
      */
     @GetMapping("/{client_id}")
     public ResponseEntity<ClientResponse> getOauth2ClientById(@RequestHeader(value = AUTHORIZATION_HEADER, required = false) String authorizationSecret,
+                                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
                                                               @PathVariable("client_id") String clientId) {
         log.info("Get client with id {} request received.", clientId);
+        if (ifNoneMatch != null) {
+            Long version = authorizationService.getOauth2ClientVersion(authorizationSecret, clientId);
+            if (ETagUtils.matches(ifNoneMatch, version)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(ETagUtils.format(version)).build();
+            }
+        }
+
         ClientResponse response = authorizationService.getOauth2Client(authorizationSecret, clientId);
-        return new ResponseEntity<>(response, HttpStatus.OK);
+        return ResponseEntity.ok().eTag(ETagUtils.format(response.version())).body(response);
     }
 
     /**
      * @param authorizationSecret authorization secret to confirm identity
+     * @param changedSince        optional, only clients changed after this version are returned, oldest change first
+     * @param after               optional, clients are returned after this client id, partition by partition, one page at a time,
+     *                            the first page without it, with 'changed_since' the last client id seen with that version
+     * @param limit               optional, maximum number of clients returned with 'changed_since' or as a page
      * @return {@link ResponseEntity}
      */
     @GetMapping
-    public ResponseEntity<List<ClientResponse>> getOauth2Clients(@RequestHeader(value = AUTHORIZATION_HEADER, required = false) String authorizationSecret) {
-        log.info("Get all clients request received.");
-        var response = authorizationService.getOauth2Clients(authorizationSecret);
+    public ResponseEntity<List<ClientResponse>> getOauth2Clients(@RequestHeader(value = AUTHORIZATION_HEADER, required = false) String authorizationSecret,
+                                                                 @RequestParam(value = "changed_since", required = false) Long changedSince,
+                                                                 @RequestParam(value = "after", required = false) String after,
+                                                                 @RequestParam(value = "limit", required = false) Integer limit) {
+        if (changedSince != null) {
+            log.info("Get clients changed since version {} request received.", changedSince);
+            var response = authorizationService.getOauth2ClientsChangedSince(authorizationSecret, changedSince, after, limit);
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        }
+
+        log.info("Get clients page after {} request received.", after);
+        var response = authorizationService.getOauth2ClientsPage(authorizationSecret, after, limit);
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
 }
@@ -0,0 +1,56 @@
+package com.authorizationserver.controller;
+
+import com.authorizationserver.model.ClientUsageResponse;
+import com.authorizationserver.service.AuthorizationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+
+import static com.authorizationserver.constants.Constants.API_V1;
+import static com.authorizationserver.constants.Constants.AUTHORIZATION_HEADER;
+
+/**
+ * Entry point for client usage, token requests counted per client and time bucket
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@RestController
+@ConditionalOnProperty(value = "node.adminApi.enabled", havingValue = "true", matchIfMissing = true)
+@RequestMapping(path = API_V1 + "/client/{client_id}/usage")
+public class ClientUsageController {
+    /**
+     * Service that provide authorization operations
+     */
+    private final AuthorizationService authorizationService;
+
+    public ClientUsageController(AuthorizationService authorizationService) {
+        this.authorizationService = authorizationService;
+    }
+
+    /**
+     * @param authorizationSecret authorization secret to confirm identity
+     * @param clientId            client id
+     * @param from                inclusive start as ISO-8601 instant
+     * @param to                  exclusive end as ISO-8601 instant
+     * @return {@link ResponseEntity}
+     */
+    @GetMapping
+    public ResponseEntity<ClientUsageResponse> getClientUsage(@RequestHeader(value = AUTHORIZATION_HEADER, required = false) String authorizationSecret,
+                                                              @PathVariable("client_id") String clientId,
+                                                              @RequestParam(value = "from", required = false) Instant from,
+                                                              @RequestParam(value = "to", required = false) Instant to) {
+        log.info("Get usage of client with id {} request received.", clientId);
+        ClientUsageResponse response = authorizationService.getClientUsage(authorizationSecret, clientId, from, to);
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+}
@@ -0,0 +1,46 @@
+package com.authorizationserver.controller;
+
+import com.authorizationserver.model.SecretHashingReportResponse;
+import com.authorizationserver.service.AuthorizationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static com.authorizationserver.constants.Constants.API_V1;
+import static com.authorizationserver.constants.Constants.AUTHORIZATION_HEADER;
+
+/**
+ * Entry point for client secret hashing reports, used to follow the migration between hash algorithms
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@RestController
+@RequestMapping(path = API_V1 + "/secret-hashing")
+@ConditionalOnProperty(value = "node.adminApi.enabled", havingValue = "true", matchIfMissing = true)
+public class SecretHashingController {
+    /**
+     * Service that provide authorization operations
+     */
+    private final AuthorizationService authorizationService;
+
+    public SecretHashingController(AuthorizationService authorizationService) {
+        this.authorizationService = authorizationService;
+    }
+
+    /**
+     * @param authorizationSecret authorization secret to confirm identity
+     * @return {@link ResponseEntity}
+     */
+    @GetMapping
+    public ResponseEntity<SecretHashingReportResponse> getSecretHashingReport(@RequestHeader(value = AUTHORIZATION_HEADER, required = false) String authorizationSecret) {
+        log.info("Get secret hashing report request received.");
+        SecretHashingReportResponse response = authorizationService.getSecretHashingReport(authorizationSecret);
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+}
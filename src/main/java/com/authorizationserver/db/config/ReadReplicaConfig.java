@@ -0,0 +1,113 @@
+package com.authorizationserver.db.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration class for routing read only transactions to read replicas.
+ * Enabled with 'datasource.replicas.enabled=true', replicas are listed in 'datasource.replicas.urls'.
+ * For local testing point 'spring.datasource.url' and 'datasource.replicas.urls' at two Postgres instances,
+ * routing decisions are published as 'datasource.routing' metrics.
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(value = "datasource.replicas.enabled", havingValue = "true")
+public class ReadReplicaConfig {
+    /**
+     * Comma separated jdbc urls of replicas
+     */
+    @Value("#{'${datasource.replicas.urls}'.split(',')}")
+    private List<String> replicaUrls;
+    /**
+     * Replicas username, defaults to primary username
+     */
+    @Value("${datasource.replicas.username:${spring.datasource.username}}")
+    private String replicaUsername;
+    /**
+     * Replicas password, defaults to primary password
+     */
+    @Value("${datasource.replicas.password:${spring.datasource.password}}")
+    private String replicaPassword;
+    /**
+     * Maximum pool size of each replica
+     */
+    @Value("${datasource.replicas.maximumPoolSize:10}")
+    private Integer replicaMaximumPoolSize;
+    /**
+     * Replica connection timeout ( in ms ), kept short so a dead replica falls back to primary quickly
+     */
+    @Value("${datasource.replicas.connectionTimeout:1000}")
+    private Long replicaConnectionTimeout;
+    /**
+     * Maximum accepted replication lag ( in ms )
+     */
+    @Value("${datasource.replicas.maxLag:5000}")
+    private Long maxLag;
+
+    /**
+     * Primary data source, configured from 'spring.datasource' properties
+     *
+     * @param properties data source properties
+     * @return {@link HikariDataSource}
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * Routing data source used by the application
+     *
+     * @param primaryDataSource primary data source
+     * @param meterRegistry     meter registry
+     * @return {@link DataSource}
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, MeterRegistry meterRegistry) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource(primaryDataSource, meterRegistry));
+    }
+
+    /**
+     * Data source routing between primary and replicas
+     *
+     * @param primaryDataSource primary data source
+     * @param meterRegistry     meter registry
+     * @return {@link ReplicaRoutingDataSource}
+     */
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource, MeterRegistry meterRegistry) {
+        List<DataSource> replicas = new ArrayList<>(replicaUrls.size());
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + i);
+            replica.setJdbcUrl(replicaUrls.get(i).trim());
+            replica.setUsername(replicaUsername);
+            replica.setPassword(replicaPassword);
+            replica.setMaximumPoolSize(replicaMaximumPoolSize);
+            replica.setConnectionTimeout(replicaConnectionTimeout);
+            replica.setReadOnly(true);
+            replica.setDataSourceProperties(primaryDataSource.getDataSourceProperties());
+            replicas.add(replica);
+        }
+
+        log.info("Read only transactions routed to {} replica(s).", replicas.size());
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, maxLag, meterRegistry);
+    }
+}
@@ -0,0 +1,228 @@
+package com.authorizationserver.db.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link DataSource} that sends connections of read only transactions to healthy replicas and everything else to the primary.
+ * A replica is skipped when a connection to it can't be obtained or when its replication lag exceeds the configured maximum,
+ * in both cases the connection is taken from the primary. Must be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} so the read only flag is known when the connection is fetched.
+ *
+ * @author Blajan George
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements DisposableBean {
+    /**
+     * Query returning replication lag in ms, 0 when the replica replayed everything it received
+     */
+    private static final String REPLICATION_LAG_QUERY = "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM (now() - pg_last_xact_replay_timestamp())) * 1000, 0) END";
+    /**
+     * Primary data source, used for writes and as fallback
+     */
+    private final DataSource primary;
+    /**
+     * Replicas used for read only transactions
+     */
+    private final List<Replica> replicas = new ArrayList<>();
+    /**
+     * Maximum accepted replication lag in ms
+     */
+    private final long maxLagMillis;
+    /**
+     * Round-robin cursor over replicas
+     */
+    private final AtomicInteger next = new AtomicInteger();
+    /**
+     * Connections routed to primary for writes
+     */
+    private final Counter primaryWrites;
+    /**
+     * Connections routed to a replica
+     */
+    private final Counter replicaReads;
+    /**
+     * Read only connections routed to primary because no replica was usable
+     */
+    private final Counter primaryFallbacks;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicaDataSources, long maxLagMillis, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.maxLagMillis = maxLagMillis;
+        this.primaryWrites = routingCounter(meterRegistry, "primary", "write");
+        this.replicaReads = routingCounter(meterRegistry, "replica", "read");
+        this.primaryFallbacks = routingCounter(meterRegistry, "primary", "fallback");
+
+        for (int i = 0; i < replicaDataSources.size(); i++) {
+            Replica replica = new Replica(String.valueOf(i), replicaDataSources.get(i));
+            replicas.add(replica);
+            Gauge.builder("datasource.replica.lag", replica, r -> r.lagMillis)
+                    .tag("replica", replica.name)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+            Gauge.builder("datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .tag("replica", replica.name)
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    /**
+     * View of this data source that always routes as a read only transaction, used by plain jdbc reads that run without a transaction
+     *
+     * @return {@link DataSource}
+     */
+    public DataSource readOnlyDataSource() {
+        return new AbstractDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return getReadConnection(DataSource::getConnection);
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return getReadConnection(dataSource -> dataSource.getConnection(username, password));
+            }
+        };
+    }
+
+    /**
+     * Obtain a connection from primary, or from a replica in read only transactions
+     *
+     * @param opener opens a connection of the chosen data source
+     * @return {@link Connection}
+     * @throws SQLException thrown when primary connection can't be obtained
+     */
+    private Connection route(ConnectionOpener opener) throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryWrites.increment();
+            return opener.open(primary);
+        }
+
+        return getReadConnection(opener);
+    }
+
+    /**
+     * Obtain a connection from the next healthy replica, or from primary if none is usable
+     *
+     * @param opener opens a connection of the chosen data source
+     * @return {@link Connection}
+     * @throws SQLException thrown when primary connection can't be obtained
+     */
+    private Connection getReadConnection(ConnectionOpener opener) throws SQLException {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size == 0 ? 1 : size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (!replica.healthy) {
+                continue;
+            }
+
+            try {
+                Connection connection = opener.open(replica.dataSource);
+                replicaReads.increment();
+                return connection;
+            } catch (SQLException e) {
+                log.warn("Replica {} unavailable, will be skipped until next lag check: {}", replica.name, e.getMessage());
+                replica.healthy = false;
+            }
+        }
+
+        primaryFallbacks.increment();
+        return opener.open(primary);
+    }
+
+    /**
+     * Refresh health and replication lag of every replica
+     */
+    @Scheduled(fixedDelayString = "${datasource.replicas.checkInterval:5000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(REPLICATION_LAG_QUERY)) {
+                resultSet.next();
+                replica.lagMillis = resultSet.getLong(1);
+                boolean healthy = replica.lagMillis <= maxLagMillis;
+                if (healthy != replica.healthy) {
+                    log.info("Replica {} marked as {} with lag {} ms.", replica.name, healthy ? "healthy" : "lagging", replica.lagMillis);
+                }
+                replica.healthy = healthy;
+            } catch (SQLException e) {
+                if (replica.healthy) {
+                    log.warn("Replica {} unavailable: {}", replica.name, e.getMessage());
+                }
+                replica.healthy = false;
+            }
+        }
+    }
+
+    /**
+     * Close replica pools on shutdown, primary is closed by its own bean
+     *
+     * @throws Exception exception thrown when closing a pool
+     */
+    @Override
+    public void destroy() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private static Counter routingCounter(MeterRegistry meterRegistry, String target, String reason) {
+        return Counter.builder("datasource.routing")
+                .tag("target", target)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a connection of a target data source, with or without explicit credentials
+     */
+    @FunctionalInterface
+    private interface ConnectionOpener {
+        Connection open(DataSource dataSource) throws SQLException;
+    }
+
+    /**
+     * Replica state
+     */
+    private static class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy = true;
+        private volatile long lagMillis;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
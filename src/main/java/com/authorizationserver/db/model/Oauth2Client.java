@@ -3,13 +3,22 @@ package com.authorizationserver.db.model;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
+import org.springframework.data.domain.Persistable;
 
 import java.time.Instant;
 
 /**
- * Custom implementation of {@link org.springframework.security.oauth2.server.authorization.client.RegisteredClient}
+ * Custom implementation of {@link org.springframework.security.oauth2.server.authorization.client.RegisteredClient}.
+ * Ids are assigned by the application, so the entity reports itself as new until it is loaded or persisted, which lets
+ * save insert without selecting the row first. Updates only write changed columns. The table is partitioned on client_id,
+ * which is therefore the entity identifier returned by {@link #getId()}, so updates issued by dirty checking touch a
+ * single partition. The registration identifier is a plain column.
  *
  * @author Blajan George
  */
@@ -18,11 +27,19 @@ import java.time.Instant;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@DynamicUpdate
 @Table(name = "oauth2_client")
-public class Oauth2Client {
+public class Oauth2Client implements Persistable<String> {
+    /**
+     * Registration identifier, lookups by it go through
+     * {@link com.authorizationserver.db.repository.Oauth2ClientRepository#findByRegistrationId(String)}
+     */
+    @Column(name = "id")
+    private String registrationId;
+    /**
+     * Client identifier, partition key
+     */
     @Id
-    private String id;
-    @Column(unique = true)
     private String clientId;
     private String clientSecret;
     private Instant clientSecretExpiresAt;
@@ -35,15 +52,49 @@ public class Oauth2Client {
     private String redirectUris;
     @Column(length = 1000)
     private String scopes;
-    @Column(length = 2000)
+    @Column(length = 10000)
     private String clientSettings;
     @Column(length = 2000)
     private String tokenSettings;
+    /**
+     * Change number, the id of the transaction that last inserted or updated the client, assigned by the database
+     */
+    @Column(insertable = false, updatable = false)
+    private Long version;
+    /**
+     * True until the entity is loaded from or written to the database
+     */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean newEntity = true;
+
+    /**
+     * @return client identifier, the entity identifier
+     */
+    @Override
+    public String getId() {
+        return clientId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isNew() {
+        return newEntity;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        newEntity = false;
+    }
 
     @Override
     public String toString() {
         return "Oauth2Client{" +
-                "id='" + id + '\'' +
+                "registrationId='" + registrationId + '\'' +
                 ", clientId='" + clientId + '\'' +
                 ", clientName='" + clientName + '\'' +
                 ", clientAuthenticationMethods='" + clientAuthenticationMethods + '\'' +
@@ -52,6 +103,7 @@ public class Oauth2Client {
                 ", scopes='" + scopes + '\'' +
                 ", clientSettings='" + clientSettings + '\'' +
                 ", tokenSettings='" + tokenSettings + '\'' +
+                ", version=" + version +
                 '}';
     }
 }
@@ -28,4 +28,8 @@ public class RsaKey {
     private byte[] privateKey;
     private byte[] iv;
     private Instant time;
+    /**
+     * Instant from which the key signs tokens, until then it is only published in the jwk set
+     */
+    private Instant activationTime;
 }
@@ -0,0 +1,127 @@
+package com.authorizationserver.db.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of client ids. Answers "definitely not registered" or "maybe registered", ids can't be removed,
+ * deleted clients disappear when the filter is rebuilt.
+ *
+ * @author Blajan George
+ */
+class ClientIdBloomFilter {
+    /**
+     * Filter bits
+     */
+    private final AtomicLongArray bits;
+    /**
+     * Number of bits
+     */
+    private final long bitCount;
+    /**
+     * Number of hash functions
+     */
+    private final int hashCount;
+    /**
+     * Number of added ids
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param capacity          number of ids the filter is sized for
+     * @param falsePositiveRate false positive rate expected at capacity
+     */
+    ClientIdBloomFilter(int capacity, double falsePositiveRate) {
+        long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new AtomicLongArray((int) Math.max(1, (optimalBits + 63) / 64));
+        this.bitCount = bits.length() * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+    }
+
+    /**
+     * Add a client id
+     *
+     * @param clientId client id
+     */
+    void add(String clientId) {
+        long hash1 = hash(clientId);
+        long hash2 = mix(hash1);
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(hash1 + i * hash2, bitCount);
+            long mask = 1L << index;
+            int word = (int) (index >>> 6);
+            long current;
+            while (((current = bits.get(word)) & mask) == 0) {
+                if (bits.compareAndSet(word, current, current | mask)) {
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        // an id setting no new bit was already answered "maybe registered", counting it again would overstate the fill
+        if (changed) {
+            size.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param clientId client id
+     * @return false if the client id was never added, true if it may have been added
+     */
+    boolean mightContain(String clientId) {
+        long hash1 = hash(clientId);
+        long hash2 = mix(hash1);
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return memory used by the filter bits ( in bytes )
+     */
+    long sizeInBytes() {
+        return bits.length() * 8L;
+    }
+
+    /**
+     * @return number of added ids that set at least one new bit, an id added again or whose bits were all set by
+     * other ids is not counted
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * @return false positive rate expected for the current number of ids
+     */
+    double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-hashCount * (double) size.get() / bitCount), hashCount);
+    }
+
+    /**
+     * FNV-1a hash of the utf-8 bytes
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Finalizer of splitmix64, second hash derived from the first, forced odd so it never collapses to a single index
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return (value ^ (value >>> 31)) | 1L;
+    }
+}
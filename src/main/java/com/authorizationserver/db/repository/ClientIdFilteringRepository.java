@@ -0,0 +1,270 @@
+package com.authorizationserver.db.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link CustomRegisteredClientRepository} that answers lookups of unknown client ids from a node local
+ * {@link ClientIdBloomFilter} instead of the database. The filter is built at startup one page of ids at a time,
+ * updated on save and every 'clientIdFilter.refreshInterval' ms with clients registered on other nodes, read from the
+ * client version feed. It is rebuilt every 'clientIdFilter.reconcileInterval' ms to drop deleted clients.
+ * A filter that could not be refreshed for 'clientIdFilter.maxStaleness' ms may miss new clients, so its misses reach
+ * the database, as do all lookups until the first build succeeds.
+ * Filter size, entries and expected false positive rate are published as 'client_id.filter.*' metrics.
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@Primary
+@Component
+@ConditionalOnProperty(value = "clientIdFilter.enabled", havingValue = "true", matchIfMissing = true)
+public class ClientIdFilteringRepository implements CustomRegisteredClientRepository {
+    /**
+     * Client ids read per query
+     */
+    private static final int PAGE_SIZE = 10000;
+
+    /**
+     * False positive rate the filter is sized for
+     */
+    @Value("${clientIdFilter.falsePositiveRate:0.01}")
+    private Double falsePositiveRate;
+    /**
+     * Minimum number of ids the filter is sized for
+     */
+    @Value("${clientIdFilter.minCapacity:10000}")
+    private Integer minCapacity;
+    /**
+     * Age of the last refresh after which misses are checked in the database ( in ms )
+     */
+    @Value("${clientIdFilter.maxStaleness:5000}")
+    private Long maxStaleness;
+
+    /**
+     * Repository doing the actual lookups
+     */
+    private final CustomRegisteredClientRepository delegate;
+    /**
+     * Jpa repo used to load client ids
+     */
+    private final Oauth2ClientRepository clientRepository;
+    /**
+     * Lookups rejected by the filter
+     */
+    private final Counter rejected;
+    /**
+     * Misses checked in the database because the filter is stale
+     */
+    private final Counter staleMisses;
+    /**
+     * Guards filter swaps against concurrent saves
+     */
+    private final Object monitor = new Object();
+    /**
+     * Current filter, null until built
+     */
+    private volatile ClientIdBloomFilter filter;
+    /**
+     * Client ids saved while a rebuild is running
+     */
+    private Set<String> savedDuringRebuild;
+    /**
+     * Last client version added to the filter, null until the first build
+     */
+    private volatile Long lastVersion;
+    /**
+     * Last client id added to the filter with the last version
+     */
+    private volatile String lastClientId;
+    /**
+     * Start time of the last successful build or refresh, every change committed before it is in the filter
+     */
+    private volatile long lastRefreshed;
+
+    public ClientIdFilteringRepository(CustomRegisteredClientRepository delegate,
+                                       Oauth2ClientRepository clientRepository,
+                                       MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.clientRepository = clientRepository;
+        this.rejected = Counter.builder("client_id.filter.rejected").register(meterRegistry);
+        this.staleMisses = Counter.builder("client_id.filter.stale_misses").register(meterRegistry);
+        Gauge.builder("client_id.filter.bytes", this, r -> r.filter == null ? 0 : r.filter.sizeInBytes())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("client_id.filter.entries", this, r -> r.filter == null ? 0 : r.filter.size())
+                .register(meterRegistry);
+        Gauge.builder("client_id.filter.false_positive_rate", this, r -> r.filter == null ? 0 : r.filter.expectedFalsePositiveRate())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Build the filter at startup, a failure leaves lookups going to the database until the next refresh
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.warn("Client id filter could not be built, lookups go to the database until next refresh: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuild the filter from the database, one page of client ids at a time
+     */
+    @Scheduled(initialDelayString = "${clientIdFilter.reconcileInterval:3600000}", fixedDelayString = "${clientIdFilter.reconcileInterval:3600000}")
+    public void reconcile() {
+        Set<String> saved = ConcurrentHashMap.newKeySet();
+        synchronized (monitor) {
+            savedDuringRebuild = saved;
+        }
+
+        try {
+            long started = System.currentTimeMillis();
+            // changes from this version on are read by the refresh, whether the scan below sees them or not
+            long horizon = clientRepository.findVersionHorizon();
+            // room for twice the current clients so saves between reconciliations keep the false positive rate
+            ClientIdBloomFilter rebuilt = new ClientIdBloomFilter((int) Math.max(minCapacity, clientRepository.count() * 2), falsePositiveRate);
+            int size = 0;
+            List<String> page;
+            String after = "";
+            do {
+                page = clientRepository.findClientIdsAfter(after, PageRequest.of(0, PAGE_SIZE));
+                page.forEach(rebuilt::add);
+                size += page.size();
+                if (!page.isEmpty()) {
+                    after = page.get(page.size() - 1);
+                }
+            } while (page.size() == PAGE_SIZE);
+
+            synchronized (monitor) {
+                saved.forEach(rebuilt::add);
+                filter = rebuilt;
+                if (lastVersion == null) {
+                    lastClientId = "";
+                    lastVersion = horizon - 1;
+                    lastRefreshed = started;
+                }
+            }
+            log.debug("Client id filter rebuilt with {} ids, {} bytes.", size, rebuilt.sizeInBytes());
+        } finally {
+            synchronized (monitor) {
+                savedDuringRebuild = null;
+            }
+        }
+    }
+
+    /**
+     * Add clients changed since the last refresh, builds the filter instead while it does not exist
+     */
+    @Scheduled(initialDelayString = "${clientIdFilter.refreshInterval:2000}", fixedDelayString = "${clientIdFilter.refreshInterval:2000}")
+    public void refresh() {
+        if (lastVersion == null) {
+            init();
+            return;
+        }
+
+        try {
+            long started = System.currentTimeMillis();
+            // every change committed before this point has a version below the bound
+            long bound = clientRepository.findVersionBound();
+            long version = lastVersion;
+            String clientId = lastClientId;
+            List<Object[]> page;
+            do {
+                page = clientRepository.findClientIdsChangedAfter(version, clientId, PAGE_SIZE);
+                for (Object[] row : page) {
+                    version = ((Number) row[0]).longValue();
+                    clientId = (String) row[1];
+                    add(clientId);
+                }
+            } while (page.size() == PAGE_SIZE);
+            lastClientId = clientId;
+            lastVersion = version;
+            // a transaction older than those changes still running holds them back from the feed, the filter is not yet current
+            if (clientRepository.findVersionHorizon() >= bound) {
+                lastRefreshed = started;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Client id filter could not be refreshed, misses go to the database once it is stale: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(RegisteredClient registeredClient) {
+        delegate.save(registeredClient);
+        add(registeredClient.getClientId());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RegisteredClient findById(String id) {
+        return delegate.findById(id);
+    }
+
+    /**
+     * @param clientId the client identifier
+     * @return {@link RegisteredClient} or null if the client is not registered
+     */
+    @Override
+    public RegisteredClient findByClientId(String clientId) {
+        ClientIdBloomFilter current = filter;
+        if (current != null && clientId != null && !current.mightContain(clientId)) {
+            if (System.currentTimeMillis() - lastRefreshed <= maxStaleness) {
+                rejected.increment();
+                return null;
+            }
+            staleMisses.increment();
+        }
+
+        return delegate.findByClientId(clientId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<RegisteredClient> getAllClients() {
+        return delegate.getAllClients();
+    }
+
+    /**
+     * Delete a client, its id stays in the filter until the next reconciliation and keeps reaching the database
+     *
+     * @param clientId client id
+     */
+    @Override
+    public String deleteByClientId(String clientId) {
+        return delegate.deleteByClientId(clientId);
+    }
+
+    private void add(String clientId) {
+        synchronized (monitor) {
+            if (filter != null) {
+                filter.add(clientId);
+            }
+            if (savedDuringRebuild != null) {
+                savedDuringRebuild.add(clientId);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.authorizationserver.db.repository;
+
+import com.authorizationserver.db.config.ReplicaRoutingDataSource;
+import com.authorizationserver.model.ClientUsageBucket;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Jdbc repository of the client_usage table, counts are added to time buckets with upserts so several nodes can write the same bucket
+ *
+ * @author Blajan George
+ */
+@Component
+public class ClientUsageRepository {
+    /**
+     * Add usage query
+     */
+    private static final String ADD_USAGE_QUERY = "INSERT INTO client_usage (client_id, bucket_start, issued, failed, rate_limited) VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (client_id, bucket_start) DO UPDATE SET issued = client_usage.issued + EXCLUDED.issued, " +
+            "failed = client_usage.failed + EXCLUDED.failed, rate_limited = client_usage.rate_limited + EXCLUDED.rate_limited";
+    /**
+     * Find usage query
+     */
+    private static final String FIND_USAGE_QUERY = "SELECT bucket_start, issued, failed, rate_limited FROM client_usage " +
+            "WHERE client_id = ? AND bucket_start >= ? AND bucket_start < ? ORDER BY bucket_start";
+
+    /**
+     * Jdbc template for writes
+     */
+    private final JdbcTemplate jdbcTemplate;
+    /**
+     * Jdbc template for reads
+     */
+    private final JdbcTemplate readJdbcTemplate;
+    /**
+     * Row mapper
+     */
+    private final RowMapper<ClientUsageBucket> rowMapper = (rs, rowNum) -> new ClientUsageBucket(
+            rs.getTimestamp("bucket_start").toInstant(),
+            rs.getLong("issued"),
+            rs.getLong("failed"),
+            rs.getLong("rate_limited"));
+
+    public ClientUsageRepository(DataSource dataSource, ObjectProvider<ReplicaRoutingDataSource> replicaRoutingDataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        ReplicaRoutingDataSource routingDataSource = replicaRoutingDataSource.getIfAvailable();
+        this.readJdbcTemplate = routingDataSource == null ? jdbcTemplate : new JdbcTemplate(routingDataSource.readOnlyDataSource());
+    }
+
+    /**
+     * Add counts to a time bucket
+     *
+     * @param bucketStart start of the bucket
+     * @param deltas      counts by client
+     */
+    public void addUsage(Instant bucketStart, List<UsageDelta> deltas) {
+        Timestamp bucket = Timestamp.from(bucketStart);
+        jdbcTemplate.batchUpdate(ADD_USAGE_QUERY, deltas, deltas.size(), (ps, delta) -> {
+            ps.setString(1, delta.clientId());
+            ps.setTimestamp(2, bucket);
+            ps.setLong(3, delta.issued());
+            ps.setLong(4, delta.failed());
+            ps.setLong(5, delta.rateLimited());
+        });
+    }
+
+    /**
+     * Find usage buckets of a client
+     *
+     * @param clientId client id
+     * @param from     inclusive start
+     * @param to       exclusive end
+     * @return list of {@link ClientUsageBucket}
+     */
+    public List<ClientUsageBucket> findUsage(String clientId, Instant from, Instant to) {
+        return readJdbcTemplate.query(FIND_USAGE_QUERY, rowMapper, clientId, Timestamp.from(from), Timestamp.from(to));
+    }
+
+    /**
+     * Counts to add for a client
+     *
+     * @param clientId    client id
+     * @param issued      issued tokens
+     * @param failed      failed requests
+     * @param rateLimited rate limited requests
+     */
+    public record UsageDelta(String clientId, long issued, long failed, long rateLimited) {
+    }
+}
@@ -16,8 +16,9 @@ public interface CustomRegisteredClientRepository extends RegisteredClientReposi
      * Delete a registered client entity by client id
      *
      * @param clientId client id
+     * @return registration identifier of the deleted client, null if no client was deleted
      */
-    void deleteByClientId(String clientId);
+    String deleteByClientId(String clientId);
 
     /**
      * Returns all registered clients
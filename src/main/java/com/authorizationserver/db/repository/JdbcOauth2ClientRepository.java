@@ -0,0 +1,165 @@
+package com.authorizationserver.db.repository;
+
+import com.authorizationserver.constants.Constants;
+import com.authorizationserver.db.config.ReplicaRoutingDataSource;
+import com.authorizationserver.db.model.Oauth2Client;
+import com.authorizationserver.db.resilience.DatabaseCircuitBreaker;
+import com.authorizationserver.db.resilience.LastKnownGoodCache;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Plain jdbc implementation of {@link org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository},
+ * selected with 'repository.type=jdbc'. Reads bypass the persistence context and map rows straight to {@link RegisteredClient},
+ * writes keep going through {@link Oauth2ClientRepository}. Lookups go through {@link DatabaseCircuitBreaker} with a short
+ * query timeout and fall back to the last client read while the database is unavailable.
+ *
+ * @author Blajan George
+ */
+@Component
+@ConditionalOnProperty(value = "repository.type", havingValue = "jdbc")
+public class JdbcOauth2ClientRepository implements CustomRegisteredClientRepository {
+    /**
+     * Selected columns
+     */
+    private static final String COLUMNS = "id, client_id, client_secret, client_secret_expires_at, client_name, client_authentication_methods, " +
+            "authorization_grant_types, redirect_uris, scopes, client_settings, token_settings";
+    /**
+     * Find by client id query
+     */
+    private static final String FIND_BY_CLIENT_ID_QUERY = "SELECT " + COLUMNS + " FROM oauth2_client WHERE client_id = ?";
+    /**
+     * Find by id query, the id is resolved to its client id first so both reads are pruned to one partition
+     */
+    private static final String FIND_BY_ID_QUERY = "SELECT " + COLUMNS + " FROM oauth2_client WHERE client_id = " +
+            "(SELECT client_id FROM oauth2_client_registration WHERE id = ?)";
+    /**
+     * Find all query
+     */
+    private static final String FIND_ALL_QUERY = "SELECT " + COLUMNS + " FROM oauth2_client";
+
+    /**
+     * Jpa repo for write operations
+     */
+    private final Oauth2ClientRepository clientRepository;
+    /**
+     * Jdbc template for reads
+     */
+    private final JdbcTemplate jdbcTemplate;
+    /**
+     * Jdbc template for single client lookups, with the token path query timeout
+     */
+    private final JdbcTemplate lookupJdbcTemplate;
+    /**
+     * Last clients read by registration identifier
+     */
+    private final LastKnownGoodCache<String, RegisteredClient> clientsById;
+    /**
+     * Last clients read by client identifier
+     */
+    private final LastKnownGoodCache<String, RegisteredClient> clientsByClientId;
+    /**
+     * Converter between row and {@link RegisteredClient}
+     */
+    private final RegisteredClientConverter converter = new RegisteredClientConverter();
+    /**
+     * Row mapper
+     */
+    private final RowMapper<RegisteredClient> rowMapper = (rs, rowNum) -> {
+        Oauth2Client client = new Oauth2Client();
+        client.setRegistrationId(rs.getString("id"));
+        client.setClientId(rs.getString("client_id"));
+        client.setClientSecret(rs.getString("client_secret"));
+        Timestamp clientSecretExpiresAt = rs.getTimestamp("client_secret_expires_at");
+        client.setClientSecretExpiresAt(clientSecretExpiresAt == null ? null : clientSecretExpiresAt.toInstant());
+        client.setClientName(rs.getString("client_name"));
+        client.setClientAuthenticationMethods(rs.getString("client_authentication_methods"));
+        client.setAuthorizationGrantTypes(rs.getString("authorization_grant_types"));
+        client.setRedirectUris(rs.getString("redirect_uris"));
+        client.setScopes(rs.getString("scopes"));
+        client.setClientSettings(rs.getString("client_settings"));
+        client.setTokenSettings(rs.getString("token_settings"));
+        return converter.toObject(client);
+    };
+
+    public JdbcOauth2ClientRepository(Oauth2ClientRepository clientRepository,
+                                      DataSource dataSource,
+                                      ObjectProvider<ReplicaRoutingDataSource> replicaRoutingDataSource,
+                                      DatabaseCircuitBreaker circuitBreaker) {
+        Assert.notNull(clientRepository, "clientRepository cannot be null");
+        this.clientRepository = clientRepository;
+
+        ReplicaRoutingDataSource routingDataSource = replicaRoutingDataSource.getIfAvailable();
+        DataSource readDataSource = routingDataSource == null ? dataSource : routingDataSource.readOnlyDataSource();
+        this.jdbcTemplate = new JdbcTemplate(readDataSource);
+        this.lookupJdbcTemplate = new JdbcTemplate(readDataSource);
+        this.lookupJdbcTemplate.setQueryTimeout(Constants.LOOKUP_QUERY_TIMEOUT_SECONDS);
+        this.clientsById = circuitBreaker.lastKnownGood("client_by_id");
+        this.clientsByClientId = circuitBreaker.lastKnownGood("client_by_client_id");
+    }
+
+    /**
+     * Method to insert custom entity mapping {@link RegisteredClient}, the entity is new so no select is issued before
+     * the insert. Saving a client id that already exists fails on the primary key, existing clients are only changed
+     * by {@link com.authorizationserver.service.AuthorizationService#patchOauth2Client}, which updates the locked entity.
+     *
+     * @param registeredClient the {@link RegisteredClient}
+     */
+    @Override
+    public void save(RegisteredClient registeredClient) {
+        Assert.notNull(registeredClient, "registeredClient cannot be null");
+        this.clientRepository.save(converter.toEntity(registeredClient));
+    }
+
+    /**
+     * @param id the registration identifier
+     * @return {@link RegisteredClient}
+     */
+    @Override
+    public RegisteredClient findById(String id) {
+        Assert.hasText(id, "id cannot be empty");
+        return clientsById.read(id, () -> findOne(FIND_BY_ID_QUERY, id));
+    }
+
+    /**
+     * @param clientId the client identifier
+     * @return {@link RegisteredClient}
+     */
+    @Override
+    public RegisteredClient findByClientId(String clientId) {
+        Assert.hasText(clientId, "clientId cannot be empty");
+        return clientsByClientId.read(clientId, () -> findOne(FIND_BY_CLIENT_ID_QUERY, clientId));
+    }
+
+    @Override
+    public List<RegisteredClient> getAllClients() {
+        return this.jdbcTemplate.query(FIND_ALL_QUERY, rowMapper);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String deleteByClientId(String clientId) {
+        String id = clientRepository.deleteByClientIdReturningId(clientId).orElse(null);
+        clientsByClientId.evict(clientId);
+        if (id != null) {
+            clientsById.evict(id);
+        }
+        return id;
+    }
+
+    private RegisteredClient findOne(String query, String value) {
+        List<RegisteredClient> result = this.lookupJdbcTemplate.query(query, rowMapper, value);
+        return result.isEmpty() ? null : result.get(0);
+    }
+}
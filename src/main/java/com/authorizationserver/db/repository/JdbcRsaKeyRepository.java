@@ -0,0 +1,77 @@
+package com.authorizationserver.db.repository;
+
+import com.authorizationserver.constants.Constants;
+import com.authorizationserver.db.config.ReplicaRoutingDataSource;
+import com.authorizationserver.db.model.RsaKey;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Plain jdbc implementation of key reads, selected with 'repository.type=jdbc'. Takes precedence over {@link RsaKeyRepository} reads.
+ *
+ * @author Blajan George
+ */
+@Primary
+@Component
+@ConditionalOnProperty(value = "repository.type", havingValue = "jdbc")
+public class JdbcRsaKeyRepository implements RsaKeyReadRepository {
+    /**
+     * Selected columns
+     */
+    private static final String COLUMNS = "id, public_key, private_key, iv, time, activation_time";
+    /**
+     * Most recently activated key query
+     */
+    private static final String MOST_RECENT_KEY_QUERY = "SELECT " + COLUMNS + " FROM rsa_key WHERE activation_time <= now() ORDER BY activation_time DESC LIMIT 1";
+    /**
+     * Most recent keys query
+     */
+    private static final String MOST_RECENT_KEYS_QUERY = "SELECT " + COLUMNS + " FROM rsa_key ORDER BY activation_time DESC LIMIT ?";
+    /**
+     * Jdbc template for reads
+     */
+    private final JdbcTemplate jdbcTemplate;
+    /**
+     * Row mapper
+     */
+    private final RowMapper<RsaKey> rowMapper = (rs, rowNum) -> {
+        RsaKey rsaKey = new RsaKey();
+        rsaKey.setId(rs.getString("id"));
+        rsaKey.setPublicKey(rs.getBytes("public_key"));
+        rsaKey.setPrivateKey(rs.getBytes("private_key"));
+        rsaKey.setIv(rs.getBytes("iv"));
+        rsaKey.setTime(rs.getTimestamp("time").toInstant());
+        rsaKey.setActivationTime(rs.getTimestamp("activation_time").toInstant());
+        return rsaKey;
+    };
+
+    public JdbcRsaKeyRepository(DataSource dataSource, ObjectProvider<ReplicaRoutingDataSource> replicaRoutingDataSource) {
+        ReplicaRoutingDataSource routingDataSource = replicaRoutingDataSource.getIfAvailable();
+        this.jdbcTemplate = new JdbcTemplate(routingDataSource == null ? dataSource : routingDataSource.readOnlyDataSource());
+        this.jdbcTemplate.setQueryTimeout(Constants.LOOKUP_QUERY_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<RsaKey> getMostRecentKey() {
+        return this.jdbcTemplate.query(MOST_RECENT_KEY_QUERY, rowMapper).stream().findFirst();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<RsaKey> getLimitNMostRecentPublicKeys(Integer n) {
+        return this.jdbcTemplate.query(MOST_RECENT_KEYS_QUERY, rowMapper, n);
+    }
+}
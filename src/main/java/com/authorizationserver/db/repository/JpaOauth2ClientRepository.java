@@ -1,60 +1,58 @@
 package com.authorizationserver.db.repository;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.Module;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.authorizationserver.db.model.Oauth2Client;
-import org.springframework.security.jackson2.SecurityJackson2Modules;
-import org.springframework.security.oauth2.core.AuthorizationGrantType;
-import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import com.authorizationserver.db.resilience.DatabaseCircuitBreaker;
+import com.authorizationserver.db.resilience.LastKnownGoodCache;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
-import org.springframework.security.oauth2.server.authorization.jackson2.OAuth2AuthorizationServerJackson2Module;
-import org.springframework.security.oauth2.server.authorization.settings.ClientSettings;
-import org.springframework.security.oauth2.server.authorization.settings.TokenSettings;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
-import org.springframework.util.StringUtils;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 /**
- * Custom Jpa implementation of {@link org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository}
+ * Custom Jpa implementation of {@link org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository}.
+ * Lookups go through {@link DatabaseCircuitBreaker} and fall back to the last client read while the database is unavailable.
  *
  * @author Blajan George
  */
 @Component
+@ConditionalOnProperty(value = "repository.type", havingValue = "jpa", matchIfMissing = true)
 public class JpaOauth2ClientRepository implements CustomRegisteredClientRepository {
     /**
      * Jpa repo for db operations
      */
     private final Oauth2ClientRepository clientRepository;
     /**
-     * Object mapper
+     * Converter between entity and {@link RegisteredClient}
      */
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final RegisteredClientConverter converter = new RegisteredClientConverter();
+    /**
+     * Last clients read by registration identifier
+     */
+    private final LastKnownGoodCache<String, RegisteredClient> clientsById;
+    /**
+     * Last clients read by client identifier
+     */
+    private final LastKnownGoodCache<String, RegisteredClient> clientsByClientId;
 
-    public JpaOauth2ClientRepository(Oauth2ClientRepository clientRepository) {
+    public JpaOauth2ClientRepository(Oauth2ClientRepository clientRepository, DatabaseCircuitBreaker circuitBreaker) {
         Assert.notNull(clientRepository, "clientRepository cannot be null");
         this.clientRepository = clientRepository;
-
-        ClassLoader classLoader = JpaOauth2ClientRepository.class.getClassLoader();
-        List<Module> securityModules = SecurityJackson2Modules.getModules(classLoader);
-        this.objectMapper.registerModules(securityModules);
-        this.objectMapper.registerModule(new OAuth2AuthorizationServerJackson2Module());
+        this.clientsById = circuitBreaker.lastKnownGood("client_by_id");
+        this.clientsByClientId = circuitBreaker.lastKnownGood("client_by_client_id");
     }
 
     /**
-     * Method to save custom entity mapping {@link RegisteredClient}
+     * Method to insert custom entity mapping {@link RegisteredClient}, the entity is new so no select is issued before
+     * the insert. Saving a client id that already exists fails on the primary key, existing clients are only changed
+     * by {@link com.authorizationserver.service.AuthorizationService#patchOauth2Client}, which updates the locked entity.
      *
      * @param registeredClient the {@link RegisteredClient}
      */
     @Override
     public void save(RegisteredClient registeredClient) {
         Assert.notNull(registeredClient, "registeredClient cannot be null");
-        this.clientRepository.save(toEntity(registeredClient));
+        this.clientRepository.save(converter.toEntity(registeredClient));
     }
 
     /**
@@ -64,7 +62,7 @@ public class JpaOauth2ClientRepository implements CustomRegisteredClientReposito
     @Override
     public RegisteredClient findById(String id) {
         Assert.hasText(id, "id cannot be empty");
-        return this.clientRepository.findById(id).map(this::toObject).orElse(null);
+        return clientsById.read(id, () -> this.clientRepository.findByRegistrationId(id).map(converter::toObject).orElse(null));
     }
 
     /**
@@ -74,136 +72,24 @@ public class JpaOauth2ClientRepository implements CustomRegisteredClientReposito
     @Override
     public RegisteredClient findByClientId(String clientId) {
         Assert.hasText(clientId, "clientId cannot be empty");
-        return this.clientRepository.findByClientId(clientId).map(this::toObject).orElse(null);
+        return clientsByClientId.read(clientId, () -> this.clientRepository.findByClientId(clientId).map(converter::toObject).orElse(null));
     }
 
     @Override
     public List<RegisteredClient> getAllClients() {
-        return this.clientRepository.findAll().stream().map(this::toObject).toList();
-    }
-
-    /**
-     * Method to map custom entity to {@link RegisteredClient}
-     *
-     * @param client custom entity instance
-     * @return {@link RegisteredClient}
-     */
-    private RegisteredClient toObject(Oauth2Client client) {
-        Set<String> clientAuthenticationMethods = StringUtils.commaDelimitedListToSet(
-                client.getClientAuthenticationMethods());
-        Set<String> authorizationGrantTypes = StringUtils.commaDelimitedListToSet(
-                client.getAuthorizationGrantTypes());
-        Set<String> redirectUris = StringUtils.commaDelimitedListToSet(
-                client.getRedirectUris());
-        Set<String> clientScopes = StringUtils.commaDelimitedListToSet(
-                client.getScopes());
-
-        RegisteredClient.Builder builder = RegisteredClient.withId(client.getId())
-                .clientId(client.getClientId())
-                .clientSecret(client.getClientSecret())
-                .clientSecretExpiresAt(client.getClientSecretExpiresAt())
-                .clientName(client.getClientName())
-                .clientAuthenticationMethods(authenticationMethods ->
-                        clientAuthenticationMethods.forEach(authenticationMethod ->
-                                authenticationMethods.add(resolveClientAuthenticationMethod(authenticationMethod))))
-                .authorizationGrantTypes(grantTypes ->
-                        authorizationGrantTypes.forEach(grantType ->
-                                grantTypes.add(resolveAuthorizationGrantType(grantType))))
-                .redirectUris(uris -> uris.addAll(redirectUris))
-                .scopes(scopes -> scopes.addAll(clientScopes));
-
-        Map<String, Object> clientSettingsMap = parseMap(client.getClientSettings());
-        builder.clientSettings(ClientSettings.withSettings(clientSettingsMap).build());
-
-        Map<String, Object> tokenSettingsMap = parseMap(client.getTokenSettings());
-        builder.tokenSettings(TokenSettings.withSettings(tokenSettingsMap).build());
-
-        return builder.build();
-    }
-
-    /**
-     * Method to map {@link RegisteredClient} to custom entity
-     *
-     * @param registeredClient {@link RegisteredClient} entity instance
-     * @return {@link Oauth2Client}
-     */
-    private Oauth2Client toEntity(RegisteredClient registeredClient) {
-        List<String> clientAuthenticationMethods = new ArrayList<>(registeredClient.getClientAuthenticationMethods().size());
-        registeredClient.getClientAuthenticationMethods().forEach(clientAuthenticationMethod ->
-                clientAuthenticationMethods.add(clientAuthenticationMethod.getValue()));
-
-        List<String> authorizationGrantTypes = new ArrayList<>(registeredClient.getAuthorizationGrantTypes().size());
-        registeredClient.getAuthorizationGrantTypes().forEach(authorizationGrantType ->
-                authorizationGrantTypes.add(authorizationGrantType.getValue()));
-
-        Oauth2Client entity = new Oauth2Client();
-        entity.setId(registeredClient.getId());
-        entity.setClientId(registeredClient.getClientId());
-        entity.setClientSecret(registeredClient.getClientSecret());
-        entity.setClientSecretExpiresAt(registeredClient.getClientSecretExpiresAt());
-        entity.setClientName(registeredClient.getClientName());
-        entity.setClientAuthenticationMethods(StringUtils.collectionToCommaDelimitedString(clientAuthenticationMethods));
-        entity.setAuthorizationGrantTypes(StringUtils.collectionToCommaDelimitedString(authorizationGrantTypes));
-        entity.setRedirectUris(StringUtils.collectionToCommaDelimitedString(registeredClient.getRedirectUris()));
-        entity.setScopes(StringUtils.collectionToCommaDelimitedString(registeredClient.getScopes()));
-        entity.setClientSettings(writeMap(registeredClient.getClientSettings().getSettings()));
-        entity.setTokenSettings(writeMap(registeredClient.getTokenSettings().getSettings()));
-
-        return entity;
-    }
-
-    private Map<String, Object> parseMap(String data) {
-        try {
-            return this.objectMapper.readValue(data, new TypeReference<>() {
-            });
-        } catch (Exception ex) {
-            throw new IllegalArgumentException(ex.getMessage(), ex);
-        }
-    }
-
-    private String writeMap(Map<String, Object> data) {
-        try {
-            return this.objectMapper.writeValueAsString(data);
-        } catch (Exception ex) {
-            throw new IllegalArgumentException(ex.getMessage(), ex);
-        }
-    }
-
-    /**
-     * @param authorizationGrantType authorization grant type
-     * @return {@link AuthorizationGrantType}
-     */
-    private static AuthorizationGrantType resolveAuthorizationGrantType(String authorizationGrantType) {
-        if (AuthorizationGrantType.AUTHORIZATION_CODE.getValue().equals(authorizationGrantType)) {
-            return AuthorizationGrantType.AUTHORIZATION_CODE;
-        } else if (AuthorizationGrantType.CLIENT_CREDENTIALS.getValue().equals(authorizationGrantType)) {
-            return AuthorizationGrantType.CLIENT_CREDENTIALS;
-        } else if (AuthorizationGrantType.REFRESH_TOKEN.getValue().equals(authorizationGrantType)) {
-            return AuthorizationGrantType.REFRESH_TOKEN;
-        }
-        return new AuthorizationGrantType(authorizationGrantType);              // Custom authorization grant type
-    }
-
-    /**
-     * @param clientAuthenticationMethod client authentication method
-     * @return {@link ClientAuthenticationMethod}
-     */
-    private static ClientAuthenticationMethod resolveClientAuthenticationMethod(String clientAuthenticationMethod) {
-        if (ClientAuthenticationMethod.CLIENT_SECRET_BASIC.getValue().equals(clientAuthenticationMethod)) {
-            return ClientAuthenticationMethod.CLIENT_SECRET_BASIC;
-        } else if (ClientAuthenticationMethod.CLIENT_SECRET_POST.getValue().equals(clientAuthenticationMethod)) {
-            return ClientAuthenticationMethod.CLIENT_SECRET_POST;
-        } else if (ClientAuthenticationMethod.NONE.getValue().equals(clientAuthenticationMethod)) {
-            return ClientAuthenticationMethod.NONE;
-        }
-        return new ClientAuthenticationMethod(clientAuthenticationMethod);      // Custom client authentication method
+        return this.clientRepository.findAll().stream().map(converter::toObject).toList();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void deleteByClientId(String clientId) {
-        clientRepository.deleteOauth2ClientByClientId(clientId);
+    public String deleteByClientId(String clientId) {
+        String id = clientRepository.deleteByClientIdReturningId(clientId).orElse(null);
+        clientsByClientId.evict(clientId);
+        if (id != null) {
+            clientsById.evict(id);
+        }
+        return id;
     }
 }
@@ -0,0 +1,20 @@
+package com.authorizationserver.db.repository;
+
+import java.util.Optional;
+
+/**
+ * Deletion of {@link com.authorizationserver.db.model.Oauth2Client} returning the deleted registration id. Modifying
+ * query methods can only return a row count, so the statement is issued by {@link Oauth2ClientDeletionImpl}.
+ *
+ * @author Blajan George
+ */
+public interface Oauth2ClientDeletion {
+    /**
+     * Delete an oauth2 client by client id in a single statement, without loading it first. Pending changes are
+     * flushed before and the persistence context is cleared after, so no managed entity outlives its row
+     *
+     * @param clientId client id
+     * @return {@link Optional} of the deleted client registration id
+     */
+    Optional<String> deleteByClientIdReturningId(String clientId);
+}
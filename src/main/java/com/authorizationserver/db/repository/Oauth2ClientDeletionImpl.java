@@ -0,0 +1,39 @@
+package com.authorizationserver.db.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Implementation of {@link Oauth2ClientDeletion}, behaves as a modifying query with automatic flush and clear.
+ *
+ * @author Blajan George
+ */
+public class Oauth2ClientDeletionImpl implements Oauth2ClientDeletion {
+    /**
+     * Delete statement returning the registration id of the deleted row
+     */
+    private static final String DELETE_RETURNING_ID_QUERY = "DELETE FROM oauth2_client WHERE client_id = :clientId RETURNING id";
+
+    /**
+     * Entity manager of the current transaction
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    @Override
+    public Optional<String> deleteByClientIdReturningId(String clientId) {
+        entityManager.flush();
+        Optional<String> id = entityManager.createNativeQuery(DELETE_RETURNING_ID_QUERY, String.class)
+                .setParameter("clientId", clientId)
+                .getResultList().stream().findFirst().map(String.class::cast);
+        entityManager.clear();
+        return id;
+    }
+}
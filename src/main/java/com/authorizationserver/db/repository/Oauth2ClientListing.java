@@ -0,0 +1,23 @@
+package com.authorizationserver.db.repository;
+
+import com.authorizationserver.db.model.Oauth2Client;
+
+import java.util.List;
+
+/**
+ * Listing of {@link Oauth2Client} one partition at a time. A range on client_id can't be pruned on a hash partitioned
+ * table, so the statements are issued against the partitions by {@link Oauth2ClientListingImpl}.
+ *
+ * @author Blajan George
+ */
+public interface Oauth2ClientListing {
+    /**
+     * Find oauth2 clients after a client id, in partition order and client id order inside a partition. The page starts
+     * in the partition of the given client id and only moves to the next partition when that one is exhausted
+     *
+     * @param clientId last client id seen by the caller, null for the first page
+     * @param limit    page size
+     * @return oauth2 clients
+     */
+    List<Oauth2Client> findPageAfter(String clientId, int limit);
+}
@@ -0,0 +1,63 @@
+package com.authorizationserver.db.repository;
+
+import com.authorizationserver.db.model.Oauth2Client;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implementation of {@link Oauth2ClientListing}, every statement names a single partition.
+ *
+ * @author Blajan George
+ */
+public class Oauth2ClientListingImpl implements Oauth2ClientListing {
+    /**
+     * Number of hash partitions of oauth2_client, as created by the V1.06 migration
+     */
+    static final int PARTITIONS = 16;
+    /**
+     * Partition of a client id, computed by the same hash Postgres routes rows with, also for deleted client ids
+     */
+    private static final String PARTITION_QUERY = "SELECT k FROM generate_series(0, " + (PARTITIONS - 1) + ") AS k " +
+            "WHERE satisfies_hash_partition('oauth2_client'::regclass, " + PARTITIONS + ", k, CAST(:clientId AS varchar))";
+    /**
+     * Page of one partition, read from its primary key index
+     */
+    private static final String PAGE_QUERY = "SELECT * FROM oauth2_client_p%d WHERE client_id > :clientId ORDER BY client_id LIMIT :limit";
+
+    /**
+     * Entity manager of the current transaction
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional(readOnly = true)
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Oauth2Client> findPageAfter(String clientId, int limit) {
+        int partition = clientId == null ? 0 : partitionOf(clientId);
+        String after = clientId == null ? "" : clientId;
+        List<Oauth2Client> page = new ArrayList<>(limit);
+        while (partition < PARTITIONS && page.size() < limit) {
+            page.addAll(entityManager.createNativeQuery(String.format(PAGE_QUERY, partition), Oauth2Client.class)
+                    .setParameter("clientId", after)
+                    .setParameter("limit", limit - page.size())
+                    .getResultList());
+            partition++;
+            after = "";
+        }
+        return page;
+    }
+
+    private int partitionOf(String clientId) {
+        return ((Number) entityManager.createNativeQuery(PARTITION_QUERY)
+                .setParameter("clientId", clientId)
+                .getSingleResult()).intValue();
+    }
+}
@@ -1,30 +1,223 @@
 package com.authorizationserver.db.repository;
 
+import com.authorizationserver.constants.Constants;
 import com.authorizationserver.db.model.Oauth2Client;
-import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
- * Repository for accessing and manipulating {@link Oauth2Client} data
+ * Repository for accessing and manipulating {@link Oauth2Client} data. The table is hash partitioned on client_id,
+ * queries filter on client_id so each one touches a single partition. The entity identifier is the client id, not the
+ * registration id, so the generic lookups by identifier are not exposed: registration ids are resolved with
+ * {@link #findByRegistrationId(String)} and client ids with {@link #findByClientId(String)}.
  *
  * @author Blajan George
  */
 @Repository
-public interface Oauth2ClientRepository extends JpaRepository<Oauth2Client, String> {
+public interface Oauth2ClientRepository extends org.springframework.data.repository.Repository<Oauth2Client, String>, Oauth2ClientDeletion, Oauth2ClientListing {
+    /**
+     * Insert or update an oauth2 client
+     *
+     * @param client oauth2 client
+     * @param <S>    entity type
+     * @return saved oauth2 client
+     */
+    @Transactional
+    <S extends Oauth2Client> S save(S client);
+
+    /**
+     * Find all oauth2 clients
+     *
+     * @return oauth2 clients
+     */
+    @Transactional(readOnly = true)
+    List<Oauth2Client> findAll();
+
+    /**
+     * Count oauth2 clients
+     *
+     * @return number of clients
+     */
+    @Transactional(readOnly = true)
+    long count();
+
     /**
      * Find an oauth2 client by client id
      *
      * @param clientId client id
      * @return {@link Optional}
      */
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.query.timeout", value = Constants.LOOKUP_QUERY_TIMEOUT_MILLIS))
     Optional<Oauth2Client> findByClientId(String clientId);
 
     /**
-     * Delete an oauth2 client by client id
+     * Find an oauth2 client by registration id, resolved to its client id through oauth2_client_registration so both
+     * reads are pruned to one partition
+     *
+     * @param id registration id
+     * @return {@link Optional}
+     */
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.query.timeout", value = Constants.LOOKUP_QUERY_TIMEOUT_MILLIS))
+    @Query(value = "SELECT c.* FROM oauth2_client c WHERE c.client_id = " +
+            "(SELECT r.client_id FROM oauth2_client_registration r WHERE r.id = :id)", nativeQuery = true)
+    Optional<Oauth2Client> findByRegistrationId(@Param("id") String id);
+
+    /**
+     * Find an oauth2 client by client id and lock its row until the end of the transaction
+     *
+     * @param clientId client id
+     * @return {@link Optional}
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Oauth2Client c WHERE c.clientId = :clientId")
+    Optional<Oauth2Client> findByClientIdForUpdate(@Param("clientId") String clientId);
+
+    /**
+     * Replace the columns of a client that a patch sets without depending on its current values, null arguments keep the
+     * current value. The version is checked and returned by the same statement
+     *
+     * @param clientId                client id
+     * @param version                 expected version, null to update any version
+     * @param clientSecret            encoded client secret
+     * @param clientName              client name
+     * @param scopes                  comma delimited scopes
+     * @param authorizationGrantTypes comma delimited authorization grant types
+     * @return row of registration id and new version, empty if the client doesn't exist or has another version
+     */
+    @Transactional
+    @Query(value = "UPDATE oauth2_client SET client_secret = COALESCE(CAST(:clientSecret AS varchar), client_secret), " +
+            "client_name = COALESCE(CAST(:clientName AS varchar), client_name), scopes = COALESCE(CAST(:scopes AS varchar), scopes), " +
+            "authorization_grant_types = COALESCE(CAST(:authorizationGrantTypes AS varchar), authorization_grant_types) " +
+            "WHERE client_id = :clientId AND (CAST(:version AS bigint) IS NULL OR version = CAST(:version AS bigint)) " +
+            "RETURNING id, version", nativeQuery = true)
+    List<Object[]> updateColumns(@Param("clientId") String clientId, @Param("version") Long version, @Param("clientSecret") String clientSecret,
+                                 @Param("clientName") String clientName, @Param("scopes") String scopes,
+                                 @Param("authorizationGrantTypes") String authorizationGrantTypes);
+
+    /**
+     * Write every mutable column of a client in one statement and read back the version the update got
+     *
+     * @param client client with its new values
+     * @return new version, null if the client doesn't exist
+     */
+    @Transactional
+    @Query(value = "UPDATE oauth2_client SET client_secret = CAST(:#{#client.clientSecret} AS varchar), client_name = :#{#client.clientName}, " +
+            "client_authentication_methods = :#{#client.clientAuthenticationMethods}, authorization_grant_types = :#{#client.authorizationGrantTypes}, " +
+            "scopes = :#{#client.scopes}, client_settings = :#{#client.clientSettings}, token_settings = :#{#client.tokenSettings} " +
+            "WHERE client_id = :#{#client.clientId} RETURNING version", nativeQuery = true)
+    Long updateClient(@Param("client") Oauth2Client client);
+
+    /**
+     * Find the version of an oauth2 client
      *
      * @param clientId client id
+     * @return {@link Optional}
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT c.version FROM Oauth2Client c WHERE c.clientId = :clientId")
+    Optional<Long> findVersionByClientId(@Param("clientId") String clientId);
+
+    /**
+     * Find oauth2 clients changed after a version and client id, oldest change first. Only versions below the oldest
+     * running transaction are returned, no later commit can add a change before them
+     *
+     * @param version  last version seen by the caller
+     * @param clientId last client id seen by the caller with that version
+     * @param limit    page size
+     * @return oauth2 clients
+     */
+    @Transactional(readOnly = true)
+    @Query(value = "SELECT * FROM oauth2_client WHERE (version, client_id) > (:version, :clientId) " +
+            "AND version < pg_snapshot_xmin(pg_current_snapshot())::text::bigint ORDER BY version, client_id LIMIT :limit", nativeQuery = true)
+    List<Oauth2Client> findChangedAfter(@Param("version") Long version, @Param("clientId") String clientId, @Param("limit") Integer limit);
+
+    /**
+     * Find client ids after a client id, in client id order
+     *
+     * @param clientId last client id seen by the caller
+     * @param pageable page size
+     * @return client ids
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT c.clientId FROM Oauth2Client c WHERE c.clientId > :clientId ORDER BY c.clientId")
+    List<String> findClientIdsAfter(@Param("clientId") String clientId, Pageable pageable);
+
+    /**
+     * Find versions and client ids of oauth2 clients changed after a version and client id, oldest change first,
+     * with the same visibility bound as {@link #findChangedAfter}
+     *
+     * @param version  last version seen by the caller
+     * @param clientId last client id seen by the caller with that version
+     * @param limit    page size
+     * @return rows of version and client id
+     */
+    @Transactional(readOnly = true)
+    @Query(value = "SELECT version, client_id FROM oauth2_client WHERE (version, client_id) > (:version, :clientId) " +
+            "AND version < pg_snapshot_xmin(pg_current_snapshot())::text::bigint ORDER BY version, client_id LIMIT :limit", nativeQuery = true)
+    List<Object[]> findClientIdsChangedAfter(@Param("version") Long version, @Param("clientId") String clientId, @Param("limit") Integer limit);
+
+    /**
+     * Find the version under which every change is committed and visible to later reads, the oldest running transaction
+     *
+     * @return version horizon
+     */
+    @Transactional(readOnly = true)
+    @Query(value = "SELECT pg_snapshot_xmin(pg_current_snapshot())::text::bigint", nativeQuery = true)
+    Long findVersionHorizon();
+
+    /**
+     * Find the version above every change committed so far, the next transaction id
+     *
+     * @return version bound
+     */
+    @Transactional(readOnly = true)
+    @Query(value = "SELECT pg_snapshot_xmax(pg_current_snapshot())::text::bigint", nativeQuery = true)
+    Long findVersionBound();
+
+    /**
+     * Replace the secret of a client if it still has the expected one
+     *
+     * @param clientId      client id
+     * @param currentSecret expected current encoded secret
+     * @param newSecret     new encoded secret
+     * @return number of updated rows
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Oauth2Client c SET c.clientSecret = :newSecret WHERE c.clientId = :clientId AND c.clientSecret = :currentSecret")
+    int updateClientSecret(@Param("clientId") String clientId, @Param("currentSecret") String currentSecret, @Param("newSecret") String newSecret);
+
+    /**
+     * Count clients by secret hash algorithm, secrets without '{id}' prefix are reported as 'bcrypt'
+     *
+     * @return rows of algorithm id and number of clients
+     */
+    @Transactional(readOnly = true)
+    @Query(value = "SELECT CASE WHEN client_secret IS NULL THEN 'none' " +
+            "WHEN client_secret LIKE '{%}%' THEN substring(client_secret FROM 2 FOR position('}' IN client_secret) - 2) " +
+            "ELSE 'bcrypt' END AS algorithm, count(*) FROM oauth2_client GROUP BY 1", nativeQuery = true)
+    List<Object[]> countBySecretAlgorithm();
+
+    /**
+     * Check whether any client secret starts with a prefix
+     *
+     * @param prefix like pattern of the encoded secret prefix
+     * @return true if a client secret matches
      */
-    void deleteOauth2ClientByClientId(String clientId);
+    @Transactional(readOnly = true)
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM oauth2_client WHERE client_secret LIKE :prefix)", nativeQuery = true)
+    boolean existsBySecretPrefix(@Param("prefix") String prefix);
 }
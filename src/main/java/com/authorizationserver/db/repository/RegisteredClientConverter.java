@@ -0,0 +1,164 @@
+package com.authorizationserver.db.repository;
+
+import com.authorizationserver.db.model.Oauth2Client;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.security.jackson2.SecurityJackson2Modules;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.jackson2.OAuth2AuthorizationServerJackson2Module;
+import org.springframework.security.oauth2.server.authorization.settings.ClientSettings;
+import org.springframework.security.oauth2.server.authorization.settings.TokenSettings;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps {@link Oauth2Client} rows to {@link RegisteredClient} and back, shared by the jpa and jdbc client repositories
+ *
+ * @author Blajan George
+ */
+public class RegisteredClientConverter {
+    /**
+     * Object mapper
+     */
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public RegisteredClientConverter() {
+        ClassLoader classLoader = RegisteredClientConverter.class.getClassLoader();
+        List<Module> securityModules = SecurityJackson2Modules.getModules(classLoader);
+        this.objectMapper.registerModules(securityModules);
+        this.objectMapper.registerModule(new OAuth2AuthorizationServerJackson2Module());
+    }
+
+    /**
+     * Method to map custom entity to {@link RegisteredClient}
+     *
+     * @param client custom entity instance
+     * @return {@link RegisteredClient}
+     */
+    public RegisteredClient toObject(Oauth2Client client) {
+        Set<String> clientAuthenticationMethods = StringUtils.commaDelimitedListToSet(
+                client.getClientAuthenticationMethods());
+        Set<String> authorizationGrantTypes = StringUtils.commaDelimitedListToSet(
+                client.getAuthorizationGrantTypes());
+        Set<String> redirectUris = StringUtils.commaDelimitedListToSet(
+                client.getRedirectUris());
+        Set<String> clientScopes = StringUtils.commaDelimitedListToSet(
+                client.getScopes());
+
+        RegisteredClient.Builder builder = RegisteredClient.withId(client.getRegistrationId())
+                .clientId(client.getClientId())
+                .clientSecret(client.getClientSecret())
+                .clientSecretExpiresAt(client.getClientSecretExpiresAt())
+                .clientName(client.getClientName())
+                .clientAuthenticationMethods(authenticationMethods ->
+                        clientAuthenticationMethods.forEach(authenticationMethod ->
+                                authenticationMethods.add(resolveClientAuthenticationMethod(authenticationMethod))))
+                .authorizationGrantTypes(grantTypes ->
+                        authorizationGrantTypes.forEach(grantType ->
+                                grantTypes.add(resolveAuthorizationGrantType(grantType))))
+                .redirectUris(uris -> uris.addAll(redirectUris))
+                .scopes(scopes -> scopes.addAll(clientScopes));
+
+        Map<String, Object> clientSettingsMap = parseMap(client.getClientSettings());
+        builder.clientSettings(ClientSettings.withSettings(clientSettingsMap).build());
+
+        Map<String, Object> tokenSettingsMap = parseMap(client.getTokenSettings());
+        builder.tokenSettings(TokenSettings.withSettings(tokenSettingsMap).build());
+
+        return builder.build();
+    }
+
+    /**
+     * Method to map {@link RegisteredClient} to custom entity
+     *
+     * @param registeredClient {@link RegisteredClient} entity instance
+     * @return {@link Oauth2Client}
+     */
+    Oauth2Client toEntity(RegisteredClient registeredClient) {
+        Oauth2Client entity = new Oauth2Client();
+        copyToEntity(registeredClient, entity);
+        return entity;
+    }
+
+    /**
+     * Method to copy {@link RegisteredClient} to an existing custom entity, used to update a managed entity in place
+     *
+     * @param registeredClient {@link RegisteredClient} entity instance
+     * @param entity           custom entity instance
+     */
+    public void copyToEntity(RegisteredClient registeredClient, Oauth2Client entity) {
+        List<String> clientAuthenticationMethods = new ArrayList<>(registeredClient.getClientAuthenticationMethods().size());
+        registeredClient.getClientAuthenticationMethods().forEach(clientAuthenticationMethod ->
+                clientAuthenticationMethods.add(clientAuthenticationMethod.getValue()));
+
+        List<String> authorizationGrantTypes = new ArrayList<>(registeredClient.getAuthorizationGrantTypes().size());
+        registeredClient.getAuthorizationGrantTypes().forEach(authorizationGrantType ->
+                authorizationGrantTypes.add(authorizationGrantType.getValue()));
+
+        entity.setRegistrationId(registeredClient.getId());
+        entity.setClientId(registeredClient.getClientId());
+        entity.setClientSecret(registeredClient.getClientSecret());
+        entity.setClientSecretExpiresAt(registeredClient.getClientSecretExpiresAt());
+        entity.setClientName(registeredClient.getClientName());
+        entity.setClientAuthenticationMethods(StringUtils.collectionToCommaDelimitedString(clientAuthenticationMethods));
+        entity.setAuthorizationGrantTypes(StringUtils.collectionToCommaDelimitedString(authorizationGrantTypes));
+        entity.setRedirectUris(StringUtils.collectionToCommaDelimitedString(registeredClient.getRedirectUris()));
+        entity.setScopes(StringUtils.collectionToCommaDelimitedString(registeredClient.getScopes()));
+        entity.setClientSettings(writeMap(registeredClient.getClientSettings().getSettings()));
+        entity.setTokenSettings(writeMap(registeredClient.getTokenSettings().getSettings()));
+    }
+
+    private Map<String, Object> parseMap(String data) {
+        try {
+            return this.objectMapper.readValue(data, new TypeReference<>() {
+            });
+        } catch (Exception ex) {
+            throw new IllegalArgumentException(ex.getMessage(), ex);
+        }
+    }
+
+    private String writeMap(Map<String, Object> data) {
+        try {
+            return this.objectMapper.writeValueAsString(data);
+        } catch (Exception ex) {
+            throw new IllegalArgumentException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * @param authorizationGrantType authorization grant type
+     * @return {@link AuthorizationGrantType}
+     */
+    private static AuthorizationGrantType resolveAuthorizationGrantType(String authorizationGrantType) {
+        if (AuthorizationGrantType.AUTHORIZATION_CODE.getValue().equals(authorizationGrantType)) {
+            return AuthorizationGrantType.AUTHORIZATION_CODE;
+        } else if (AuthorizationGrantType.CLIENT_CREDENTIALS.getValue().equals(authorizationGrantType)) {
+            return AuthorizationGrantType.CLIENT_CREDENTIALS;
+        } else if (AuthorizationGrantType.REFRESH_TOKEN.getValue().equals(authorizationGrantType)) {
+            return AuthorizationGrantType.REFRESH_TOKEN;
+        }
+        return new AuthorizationGrantType(authorizationGrantType);              // Custom authorization grant type
+    }
+
+    /**
+     * @param clientAuthenticationMethod client authentication method
+     * @return {@link ClientAuthenticationMethod}
+     */
+    private static ClientAuthenticationMethod resolveClientAuthenticationMethod(String clientAuthenticationMethod) {
+        if (ClientAuthenticationMethod.CLIENT_SECRET_BASIC.getValue().equals(clientAuthenticationMethod)) {
+            return ClientAuthenticationMethod.CLIENT_SECRET_BASIC;
+        } else if (ClientAuthenticationMethod.CLIENT_SECRET_POST.getValue().equals(clientAuthenticationMethod)) {
+            return ClientAuthenticationMethod.CLIENT_SECRET_POST;
+        } else if (ClientAuthenticationMethod.NONE.getValue().equals(clientAuthenticationMethod)) {
+            return ClientAuthenticationMethod.NONE;
+        }
+        return new ClientAuthenticationMethod(clientAuthenticationMethod);      // Custom client authentication method
+    }
+}
@@ -0,0 +1,27 @@
+package com.authorizationserver.db.repository;
+
+import com.authorizationserver.db.model.RsaKey;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read operations on keys used by the token and jwk set endpoints
+ *
+ * @author Blajan George
+ */
+public interface RsaKeyReadRepository {
+
+    /**
+     * Retrieve most recently activated key, used for signing
+     *
+     * @return {@link RsaKey}
+     */
+    Optional<RsaKey> getMostRecentKey();
+
+    /**
+     * @param n number of public key to be retrieved, including keys not activated yet
+     * @return {@link List} of {@link RsaKey}
+     */
+    List<RsaKey> getLimitNMostRecentPublicKeys(Integer n);
+}
@@ -1,10 +1,15 @@
 package com.authorizationserver.db.repository;
 
+import com.authorizationserver.constants.Constants;
 import com.authorizationserver.db.model.RsaKey;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -15,20 +20,57 @@ import java.util.Optional;
  * @author Blajan George
  */
 @Repository
-public interface RsaKeyRepository extends JpaRepository<RsaKey, String> {
+public interface RsaKeyRepository extends JpaRepository<RsaKey, String>, RsaKeyReadRepository {
 
     /**
-     * Retrieve most recent key
+     * Retrieve most recently activated key
      *
      * @return {@link RsaKey}
      */
-    @Query(value = "SELECT * FROM rsa_key ORDER BY time DESC LIMIT 1", nativeQuery = true)
+    @Override
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.query.timeout", value = Constants.LOOKUP_QUERY_TIMEOUT_MILLIS))
+    @Query(value = "SELECT * FROM rsa_key WHERE activation_time <= now() ORDER BY activation_time DESC LIMIT 1", nativeQuery = true)
     Optional<RsaKey> getMostRecentKey();
 
     /**
-     * @param n number of public key to be retrieved
+     * Retrieve most recently activated key, compared with the current time instead of the transaction start so that
+     * a key committed while the transaction waited on a lock is seen
+     *
+     * @return {@link RsaKey}
+     */
+    @Query(value = "SELECT * FROM rsa_key WHERE activation_time <= clock_timestamp() ORDER BY activation_time DESC LIMIT 1", nativeQuery = true)
+    Optional<RsaKey> getMostRecentKeyAtCurrentTime();
+
+    /**
+     * @param n number of public key to be retrieved, including keys not activated yet
      * @return {@link List} of {@link RsaKey}
      */
-    @Query(value = "SELECT * FROM rsa_key ORDER BY time DESC LIMIT :n", nativeQuery = true)
+    @Override
+    @Transactional(readOnly = true)
+    @Query(value = "SELECT * FROM rsa_key ORDER BY activation_time DESC LIMIT :n", nativeQuery = true)
     List<RsaKey> getLimitNMostRecentPublicKeys(@Param("n") Integer n);
+
+    /**
+     * Same keys as {@link #getLimitNMostRecentPublicKeys(Integer)}, read in a read-write transaction so the read is
+     * routed to primary instead of a replica that may not have the newest key yet
+     *
+     * @param n number of public key to be retrieved, including keys not activated yet
+     * @return {@link List} of {@link RsaKey}
+     */
+    @Transactional
+    @Query(value = "SELECT * FROM rsa_key ORDER BY activation_time DESC LIMIT :n", nativeQuery = true)
+    List<RsaKey> getLimitNMostRecentPublicKeysFromPrimary(@Param("n") Integer n);
+
+    /**
+     * Delete all activated keys except the n most recently activated ones, keys not activated yet are always kept
+     * so the key currently signing tokens is never deleted
+     *
+     * @param n number of activated keys to keep
+     * @return number of deleted keys
+     */
+    @Modifying
+    @Query(value = "DELETE FROM rsa_key WHERE activation_time <= now() AND id NOT IN " +
+            "(SELECT id FROM rsa_key WHERE activation_time <= now() ORDER BY activation_time DESC LIMIT :n)", nativeQuery = true)
+    int deleteAllExceptNMostRecent(@Param("n") Integer n);
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.authorizationserver.db.resilience;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+
+/**
+ * Classification of database errors for background writers that retry failed batches
+ *
+ * @author Blajan George
+ */
+@UtilityClass
+public class DataAccessErrors {
+
+    /**
+     * @param e write error
+     * @return true if the same write may succeed later, as when the database is unreachable or a lock timed out,
+     * false if the database rejects the data itself
+     */
+    public static boolean isTransient(DataAccessException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException;
+    }
+}
@@ -0,0 +1,199 @@
+package com.authorizationserver.db.resilience;
+
+import com.authorizationserver.exception.DatabaseUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker around database reads of the token path. After 'degradedMode.failureThreshold' consecutive database failures
+ * the circuit opens and reads fail fast for 'degradedMode.openDuration' ms, then a single read is let through to probe the
+ * database, closing the circuit on success and opening it again on failure. While the circuit is not closed,
+ * {@link LastKnownGoodCache} answers reads from the last values seen and admin writes are refused.
+ * State is published as 'degraded_mode.*' metrics and through the 'degradedMode' health indicator.
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@Component
+public class DatabaseCircuitBreaker {
+    /**
+     * Circuit state
+     */
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    /**
+     * False to run every read against the database without short-circuiting or serving stale values
+     */
+    @Value("${degradedMode.enabled:true}")
+    private Boolean enabled;
+    /**
+     * Consecutive database failures that open the circuit
+     */
+    @Value("${degradedMode.failureThreshold:5}")
+    private Integer failureThreshold;
+    /**
+     * Time ( in ms ) the circuit stays open before the database is probed again
+     */
+    @Value("${degradedMode.openDuration:10000}")
+    private Long openDuration;
+    /**
+     * Maximum age ( in ms ) of a last known good value served while the database is unavailable
+     */
+    @Value("${degradedMode.maxStaleness:600000}")
+    private Long maxStaleness;
+    /**
+     * Maximum number of values kept by each last known good cache
+     */
+    @Value("${degradedMode.maxCachedEntries:100000}")
+    private Integer maxCachedEntries;
+
+    /**
+     * Meter registry, used by the last known good caches
+     */
+    private final MeterRegistry meterRegistry;
+    /**
+     * Consecutive database failures while closed
+     */
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    /**
+     * Set while the single probing read of a half open circuit runs
+     */
+    private final AtomicBoolean probing = new AtomicBoolean();
+    /**
+     * Time the circuit opened at, 0 while closed
+     */
+    private volatile long openedAt;
+    /**
+     * Reads failed fast by the open circuit
+     */
+    private final Counter rejectedReads;
+    /**
+     * Admin writes refused by the open circuit
+     */
+    private final Counter refusedWrites;
+
+    public DatabaseCircuitBreaker(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.rejectedReads = Counter.builder("degraded_mode.rejected_reads").register(meterRegistry);
+        this.refusedWrites = Counter.builder("degraded_mode.refused_writes").register(meterRegistry);
+        Gauge.builder("degraded_mode.circuit_state", this, breaker -> breaker.getState().ordinal())
+                .description("0 closed, 1 half open, 2 open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run a database read through the circuit
+     *
+     * @param query database read
+     * @param <T>   result type
+     * @return query result
+     * @throws DatabaseUnavailableException thrown when the circuit is open
+     */
+    public <T> T execute(Supplier<T> query) {
+        if (!enabled) {
+            return query.get();
+        }
+
+        boolean probe = false;
+        if (openedAt != 0) {
+            if (getState() == State.OPEN || !probing.compareAndSet(false, true)) {
+                rejectedReads.increment();
+                throw unavailable();
+            }
+            probe = true;
+        }
+
+        try {
+            T result = query.get();
+            onSuccess();
+            return result;
+        } catch (DataAccessException | TransactionException e) {
+            onFailure(e);
+            throw e;
+        } finally {
+            if (probe) {
+                probing.set(false);
+            }
+        }
+    }
+
+    /**
+     * Refuse a write while the circuit is not closed, so admin requests fail fast instead of waiting on the pool
+     *
+     * @throws DatabaseUnavailableException thrown when the circuit is not closed
+     */
+    public void checkWritable() {
+        if (enabled && openedAt != 0) {
+            refusedWrites.increment();
+            throw unavailable();
+        }
+    }
+
+    /**
+     * Create a cache of last known good values read through this circuit
+     *
+     * @param name cache name, used as metrics tag
+     * @param <K>  key type
+     * @param <V>  value type
+     * @return {@link LastKnownGoodCache}
+     */
+    public <K, V> LastKnownGoodCache<K, V> lastKnownGood(String name) {
+        return new LastKnownGoodCache<>(name, this, maxStaleness, maxCachedEntries, meterRegistry);
+    }
+
+    /**
+     * @return current circuit state
+     */
+    public State getState() {
+        long opened = openedAt;
+        if (opened == 0) {
+            return State.CLOSED;
+        }
+        return System.currentTimeMillis() - opened < openDuration ? State.OPEN : State.HALF_OPEN;
+    }
+
+    /**
+     * @return true if last known good values are served
+     */
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return database exception for a read or write refused by the circuit
+     */
+    DatabaseUnavailableException unavailable() {
+        long remaining = openedAt == 0 ? 0 : openDuration - (System.currentTimeMillis() - openedAt);
+        return new DatabaseUnavailableException("Database unavailable, request can't be served.", Math.max(1, (remaining + 999) / 1000));
+    }
+
+    private void onSuccess() {
+        consecutiveFailures.set(0);
+        if (openedAt != 0) {
+            openedAt = 0;
+            log.info("Database reachable again, circuit closed.");
+        }
+    }
+
+    private void onFailure(RuntimeException e) {
+        if (openedAt != 0) {
+            openedAt = System.currentTimeMillis();
+            log.warn("Database probe failed, circuit stays open: {}", e.getMessage());
+        } else if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openedAt = System.currentTimeMillis();
+            log.warn("Database failed {} consecutive reads, circuit opened for {} ms: {}", consecutiveFailures.get(), openDuration, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.authorizationserver.db.resilience;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports 'DEGRADED' while the database circuit is not closed. The node keeps issuing tokens from last known good values,
+ * so the status is mapped to 200 and ordered above 'UP' only, load balancers keep routing to the node.
+ *
+ * @author Blajan George
+ */
+@Component
+public class DegradedModeHealthIndicator implements HealthIndicator {
+    /**
+     * Status reported while the circuit is not closed
+     */
+    public static final Status DEGRADED = new Status("DEGRADED", "Database unavailable, serving last known good clients and signing key");
+
+    /**
+     * Database circuit
+     */
+    private final DatabaseCircuitBreaker circuitBreaker;
+
+    public DegradedModeHealthIndicator(DatabaseCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Health health() {
+        DatabaseCircuitBreaker.State state = circuitBreaker.getState();
+        return Health.status(state == DatabaseCircuitBreaker.State.CLOSED ? Status.UP : DEGRADED)
+                .withDetail("circuit", state)
+                .build();
+    }
+}
@@ -0,0 +1,111 @@
+package com.authorizationserver.db.resilience;
+
+import com.authorizationserver.exception.DatabaseUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.transaction.TransactionException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Last value read from the database per key. Reads always go to the database through {@link DatabaseCircuitBreaker},
+ * the stored value is only returned when the database read fails or is refused, and only while it is younger than
+ * the maximum staleness. A key whose read returns nothing is dropped, new keys are not stored once the cache is full.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Blajan George
+ */
+@Slf4j
+public class LastKnownGoodCache<K, V> {
+    /**
+     * Cache name
+     */
+    private final String name;
+    /**
+     * Circuit the reads go through
+     */
+    private final DatabaseCircuitBreaker circuitBreaker;
+    /**
+     * Maximum age ( in ms ) of a served value
+     */
+    private final long maxStaleness;
+    /**
+     * Maximum number of stored values
+     */
+    private final int maxEntries;
+    /**
+     * Stored values
+     */
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    /**
+     * Values served instead of a database read
+     */
+    private final Counter staleReads;
+
+    LastKnownGoodCache(String name, DatabaseCircuitBreaker circuitBreaker, long maxStaleness, int maxEntries, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.circuitBreaker = circuitBreaker;
+        this.maxStaleness = maxStaleness;
+        this.maxEntries = maxEntries;
+        this.staleReads = Counter.builder("degraded_mode.stale_reads").tag("cache", name).register(meterRegistry);
+        Gauge.builder("degraded_mode.cached_entries", entries, Map::size).tag("cache", name).register(meterRegistry);
+    }
+
+    /**
+     * Read a value from the database, falling back to the last value read for the key
+     *
+     * @param key   key
+     * @param query database read
+     * @return value, null if the database has none
+     * @throws DatabaseUnavailableException thrown when the database read fails and no fresh value is stored
+     */
+    public V read(K key, Supplier<V> query) {
+        if (!circuitBreaker.isEnabled()) {
+            return query.get();
+        }
+
+        try {
+            V value = circuitBreaker.execute(query);
+            if (value == null) {
+                entries.remove(key);
+            } else if (entries.size() < maxEntries || entries.containsKey(key)) {
+                entries.put(key, new Entry<>(value, System.currentTimeMillis()));
+            }
+            return value;
+        } catch (DatabaseUnavailableException | DataAccessException | TransactionException e) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null || System.currentTimeMillis() - entry.storedAt() > maxStaleness) {
+                throw e instanceof DatabaseUnavailableException unavailable ? unavailable : circuitBreaker.unavailable();
+            }
+
+            staleReads.increment();
+            log.debug("Database unavailable, {} {} served from value stored at {}.", name, key, entry.storedAt());
+            return entry.value();
+        }
+    }
+
+    /**
+     * Drop the value of a key, used when this node deletes it
+     *
+     * @param key key
+     */
+    public void evict(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Stored value
+     *
+     * @param value    value
+     * @param storedAt time the value was read at
+     * @param <V>      value type
+     */
+    private record Entry<V>(V value, long storedAt) {
+    }
+}
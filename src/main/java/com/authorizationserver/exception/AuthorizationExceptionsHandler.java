@@ -2,14 +2,19 @@ package com.authorizationserver.exception;
 
 import com.authorizationserver.model.ErrorInformation;
 import com.authorizationserver.model.ErrorResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.InsufficientAuthenticationException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import java.sql.SQLException;
 
@@ -22,6 +27,23 @@ import java.sql.SQLException;
 @SuppressWarnings("java:S2259")
 @ControllerAdvice
 public class AuthorizationExceptionsHandler {
+    /**
+     * Serialized body of the unauthorized response, identical for every rejected request
+     */
+    private final byte[] unauthorizedBody;
+    /**
+     * Logger for expected rejections
+     */
+    private final RejectionLogger rejectionLogger;
+
+    public AuthorizationExceptionsHandler(ObjectMapper objectMapper, RejectionLogger rejectionLogger) throws JsonProcessingException {
+        this.unauthorizedBody = objectMapper.writeValueAsBytes(
+                new ErrorResponse(
+                        new ErrorInformation(
+                                "Unauthorized.",
+                                InsufficientAuthenticationException.class.getSimpleName())));
+        this.rejectionLogger = rejectionLogger;
+    }
 
     /**
      * Handle {@link RuntimeException}
@@ -48,7 +70,7 @@ public class AuthorizationExceptionsHandler {
      */
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<ErrorResponse> handleIllegalArgumentException(final IllegalArgumentException ex) {
-        log.error("Exception", ex);
+        rejectionLogger.reject("illegal_argument", ex.getMessage());
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
                 new ErrorResponse(
                         new ErrorInformation(
@@ -56,6 +78,38 @@ public class AuthorizationExceptionsHandler {
                                 ex.getClass().getSimpleName())));
     }
 
+    /**
+     * Handle {@link MethodArgumentTypeMismatchException}
+     *
+     * @param ex Exception instance
+     * @return {@link ResponseEntity}
+     */
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<ErrorResponse> handleMethodArgumentTypeMismatchException(final MethodArgumentTypeMismatchException ex) {
+        rejectionLogger.reject("invalid_parameter", ex.getName());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                new ErrorResponse(
+                        new ErrorInformation(
+                                String.format("%s has an invalid value.", ex.getName()),
+                                IllegalArgumentException.class.getSimpleName())));
+    }
+
+    /**
+     * Handle {@link ClaimNotWhitelistedException}
+     *
+     * @param ex Exception instance
+     * @return {@link ResponseEntity}
+     */
+    @ExceptionHandler(ClaimNotWhitelistedException.class)
+    public ResponseEntity<ErrorResponse> handleClaimNotWhitelistedException(final ClaimNotWhitelistedException ex) {
+        rejectionLogger.reject("claim_not_whitelisted", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                new ErrorResponse(
+                        new ErrorInformation(
+                                ex.getMessage(),
+                                IllegalArgumentException.class.getSimpleName())));
+    }
+
     /**
      * Handle {@link @DataIntegrityViolationException}
      *
@@ -64,15 +118,16 @@ public class AuthorizationExceptionsHandler {
      */
     @ExceptionHandler(DataIntegrityViolationException.class)
     public ResponseEntity<ErrorResponse> handleDataIntegrityException(final DataIntegrityViolationException ex) {
-        log.error("Exception", ex);
         if (ex.getMostSpecificCause() instanceof SQLException sqlException
                 && sqlException.getSQLState().equals("23505")) {
+            rejectionLogger.reject("client_id_conflict", sqlException.getMessage());
             return ResponseEntity.status(HttpStatus.CONFLICT).body(
                     new ErrorResponse(
                             new ErrorInformation(
                                     "client_id must be unique",
                                     ex.getClass().getSimpleName())));
         }
+        rejectionLogger.reject("data_integrity_violation", ex.getMostSpecificCause().getMessage());
         return ResponseEntity.status(HttpStatus.CONFLICT).body(
                 new ErrorResponse(
                         new ErrorInformation(
@@ -88,7 +143,7 @@ public class AuthorizationExceptionsHandler {
      */
     @ExceptionHandler(InsufficientAuthenticationException.class)
     public ResponseEntity<ErrorResponse> handleInsufficientAuthenticationException(final InsufficientAuthenticationException ex) {
-        log.error("Exception", ex);
+        rejectionLogger.reject("insufficient_authentication", ex.getMessage());
         return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
                 new ErrorResponse(
                         new ErrorInformation(
@@ -96,6 +151,20 @@ public class AuthorizationExceptionsHandler {
                                 ex.getClass().getSimpleName())));
     }
 
+    /**
+     * Handle {@link UnauthorizedException} with the pre-serialized body
+     *
+     * @param ex Exception instance
+     * @return {@link ResponseEntity}
+     */
+    @ExceptionHandler(UnauthorizedException.class)
+    public ResponseEntity<byte[]> handleUnauthorizedException(final UnauthorizedException ex) {
+        rejectionLogger.reject("unauthorized", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(unauthorizedBody);
+    }
+
     /**
      * Handle {@link MethodArgumentNotValidException}
      *
@@ -104,11 +173,62 @@ public class AuthorizationExceptionsHandler {
      */
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ErrorResponse> handleMethodArgumentNotValidException(final MethodArgumentNotValidException ex) {
-        log.error("Exception", ex);
+        String message = ex.getBindingResult().getFieldError() == null ? "" : ex.getBindingResult().getFieldError().getDefaultMessage();
+        rejectionLogger.reject("invalid_argument", message);
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
                 new ErrorResponse(
                         new ErrorInformation(
-                                ex.getBindingResult().getFieldError() == null ? "" : ex.getBindingResult().getFieldError().getDefaultMessage(),
+                                message,
+                                ex.getClass().getSimpleName())));
+    }
+
+    /**
+     * Handle {@link PreconditionFailedException}
+     *
+     * @param ex Exception instance
+     * @return {@link ResponseEntity}
+     */
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<ErrorResponse> handlePreconditionFailedException(final PreconditionFailedException ex) {
+        rejectionLogger.reject("precondition_failed", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(
+                new ErrorResponse(
+                        new ErrorInformation(
+                                ex.getMessage(),
+                                ex.getClass().getSimpleName())));
+    }
+
+    /**
+     * Handle {@link DatabaseUnavailableException}
+     *
+     * @param ex Exception instance
+     * @return {@link ResponseEntity}
+     */
+    @ExceptionHandler(DatabaseUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleDatabaseUnavailableException(final DatabaseUnavailableException ex) {
+        rejectionLogger.reject("database_unavailable", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(new ErrorResponse(
+                        new ErrorInformation(
+                                ex.getMessage(),
+                                ex.getClass().getSimpleName())));
+    }
+
+    /**
+     * Handle {@link BulkheadFullException}
+     *
+     * @param ex Exception instance
+     * @return {@link ResponseEntity}
+     */
+    @ExceptionHandler(BulkheadFullException.class)
+    public ResponseEntity<ErrorResponse> handleBulkheadFullException(final BulkheadFullException ex) {
+        rejectionLogger.reject("bulkhead_full", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ErrorResponse(
+                        new ErrorInformation(
+                                ex.getMessage(),
                                 ex.getClass().getSimpleName())));
     }
 
@@ -120,7 +240,7 @@ public class AuthorizationExceptionsHandler {
      */
     @ExceptionHandler(EntityNotFoundException.class)
     public ResponseEntity<ErrorResponse> handleEntityNotFoundException(final EntityNotFoundException ex) {
-        log.error("Exception", ex);
+        rejectionLogger.reject("entity_not_found", ex.getMessage());
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
                 new ErrorResponse(
                         new ErrorInformation(
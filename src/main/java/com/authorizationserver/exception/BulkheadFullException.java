@@ -0,0 +1,18 @@
+package com.authorizationserver.exception;
+
+/**
+ * Stackless exception for requests refused because their bulkhead is saturated
+ *
+ * @author Blajan George
+ */
+public class BulkheadFullException extends RuntimeException {
+
+    public BulkheadFullException(String message) {
+        super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
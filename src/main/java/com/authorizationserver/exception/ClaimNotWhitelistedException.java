@@ -0,0 +1,18 @@
+package com.authorizationserver.exception;
+
+/**
+ * Stackless exception for token requests with claims that are not white listed
+ *
+ * @author Blajan George
+ */
+public class ClaimNotWhitelistedException extends IllegalArgumentException {
+
+    public ClaimNotWhitelistedException(String message) {
+        super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,26 @@
+package com.authorizationserver.exception;
+
+import lombok.Getter;
+
+/**
+ * Stackless exception for requests that need the database while it is unavailable
+ *
+ * @author Blajan George
+ */
+@Getter
+public class DatabaseUnavailableException extends RuntimeException {
+    /**
+     * Seconds after which the database is tried again
+     */
+    private final long retryAfterSeconds;
+
+    public DatabaseUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -1,7 +1,7 @@
 package com.authorizationserver.exception;
 
 /**
- * Exception for not found data
+ * Stackless exception for not found data
  *
  * @author Blajan George
  */
@@ -10,4 +10,9 @@ public class EntityNotFoundException extends RuntimeException {
     public EntityNotFoundException(String message) {
         super(message);
     }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
 }
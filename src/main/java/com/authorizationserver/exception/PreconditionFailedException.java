@@ -0,0 +1,18 @@
+package com.authorizationserver.exception;
+
+/**
+ * Stackless exception for conditional requests whose precondition does not hold anymore
+ *
+ * @author Blajan George
+ */
+public class PreconditionFailedException extends RuntimeException {
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,18 @@
+package com.authorizationserver.exception;
+
+/**
+ * Stackless exception for reference tokens refused because the index of the reference token store is full
+ *
+ * @author Blajan George
+ */
+public class ReferenceTokenStoreFullException extends RuntimeException {
+
+    public ReferenceTokenStoreFullException(String message) {
+        super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,72 @@
+package com.authorizationserver.exception;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts rejected requests per reason and logs a summary at most once per interval per reason, without stack traces.
+ * Used for expected failures, like bad credentials or unknown clients, that can arrive in bursts.
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@Component
+public class RejectionLogger {
+    /**
+     * Minimum interval between two log lines of the same reason ( in ms )
+     */
+    @Value("${rejection.logInterval:10000}")
+    private Long logInterval;
+
+    /**
+     * Meter registry
+     */
+    private final MeterRegistry meterRegistry;
+    /**
+     * State per rejection reason
+     */
+    private final Map<String, Reason> reasons = new ConcurrentHashMap<>();
+
+    public RejectionLogger(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Record a rejected request
+     *
+     * @param reason  rejection reason, used as metric tag
+     * @param message rejection message, logged with the periodic summary
+     */
+    public void reject(String reason, String message) {
+        Reason state = reasons.computeIfAbsent(reason, key -> new Reason(Counter.builder("requests.rejected").tag("reason", key).register(meterRegistry)));
+        state.counter.increment();
+        state.sinceLastLog.increment();
+
+        long now = System.currentTimeMillis();
+        long lastLogged = state.lastLogged.get();
+        if (now - lastLogged >= logInterval && state.lastLogged.compareAndSet(lastLogged, now)) {
+            log.warn("{} request(s) rejected with {} since last report, last message: {}", state.sinceLastLog.sumThenReset(), reason, message);
+        }
+    }
+
+    /**
+     * Rejection reason state
+     */
+    private static class Reason {
+        private final Counter counter;
+        private final LongAdder sinceLastLog = new LongAdder();
+        private final AtomicLong lastLogged = new AtomicLong();
+
+        private Reason(Counter counter) {
+            this.counter = counter;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.authorizationserver.exception;
+
+import org.springframework.security.authentication.InsufficientAuthenticationException;
+
+/**
+ * Stackless exception for requests with a missing or wrong authorization secret
+ *
+ * @author Blajan George
+ */
+public class UnauthorizedException extends InsufficientAuthenticationException {
+
+    public UnauthorizedException(String message) {
+        super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
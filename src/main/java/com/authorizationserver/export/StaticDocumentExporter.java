@@ -0,0 +1,261 @@
+package com.authorizationserver.export;
+
+import com.authorizationserver.config.CustomJWKSource;
+import com.authorizationserver.db.model.RsaKey;
+import com.authorizationserver.service.AuthorizationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes the public JWK set and the metadata document to 'staticExport.directory', so a reverse proxy or a shared volume
+ * can serve them without reaching the application. Each document is written once under a checksum name
+ * ( e.g. 'jwks-3f2a….json' ), then written to its stable name ( 'jwks.json', 'metadata.json' ) and recorded in the
+ * 'current.json' pointer. Every file is written to a temporary file and moved in place, readers never see a partial
+ * document. Keys are read from primary, so an export right after a rotation includes the new key.
+ * Nodes sharing the directory export under a file lock, and the pointer records the creation times of the newest and
+ * oldest exported keys: an export of an older key set, from a node that read its keys before a rotation or pruning,
+ * leaves the stable documents and the pointer alone. Exports of the same keys write the same names, so they are idempotent.
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(value = "staticExport.enabled", havingValue = "true")
+public class StaticDocumentExporter {
+    /**
+     * Name of the pointer file
+     */
+    private static final String POINTER_FILE = "current.json";
+    /**
+     * Name of the file locked while exporting
+     */
+    private static final String LOCK_FILE = ".export.lock";
+    /**
+     * Name of the jwk set document
+     */
+    private static final String JWKS = "jwks";
+    /**
+     * Name of the metadata document
+     */
+    private static final String METADATA = "metadata";
+    /**
+     * Hex characters of the checksum kept in file names
+     */
+    private static final int CHECKSUM_LENGTH = 16;
+
+    /**
+     * Directory documents are written to
+     */
+    @Value("${staticExport.directory:./data/static}")
+    private String directory;
+    /**
+     * Issuer written in the metadata document, exports have no request to derive it from
+     */
+    @Value("${staticExport.issuer:}")
+    private String issuer;
+    /**
+     * Checksum named versions kept per document
+     */
+    @Value("${staticExport.retainedVersions:10}")
+    private Integer retainedVersions;
+
+    /**
+     * Source of public keys
+     */
+    private final CustomJWKSource jwkSource;
+    /**
+     * Service building the metadata document
+     */
+    private final AuthorizationService authorizationService;
+    /**
+     * Object mapper
+     */
+    private final ObjectMapper objectMapper;
+
+    public StaticDocumentExporter(CustomJWKSource jwkSource, AuthorizationService authorizationService, ObjectMapper objectMapper) {
+        this.jwkSource = jwkSource;
+        this.authorizationService = authorizationService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Export documents once the application is ready, so the directory is populated before the first rotation
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void exportOnStartup() {
+        export();
+    }
+
+    /**
+     * Export documents, after commit when called inside a transaction so the exported keys are the committed ones.
+     * Failures are logged, a key change never fails because of an export.
+     */
+    public void export() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    exportNow();
+                }
+            });
+            return;
+        }
+
+        exportNow();
+    }
+
+    private synchronized void exportNow() {
+        try {
+            Path root = Files.createDirectories(Paths.get(directory));
+            List<RsaKey> keys = jwkSource.getLastNKeysFromPrimary();
+            byte[] jwks = CustomJWKSource.toPublicKeySet(keys).toString().getBytes(StandardCharsets.UTF_8);
+            byte[] metadata = objectMapper.writeValueAsBytes(authorizationService.getMetadata(StringUtils.hasText(issuer) ? issuer : null));
+            long newestKeyTime = keys.stream().mapToLong(key -> key.getTime().toEpochMilli()).max().orElse(0);
+            long oldestKeyTime = keys.stream().mapToLong(key -> key.getTime().toEpochMilli()).min().orElse(0);
+
+            try (FileChannel lockChannel = FileChannel.open(root.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock ignored = lockChannel.lock()) {
+                Pointer current = readPointer(root.resolve(POINTER_FILE));
+                if (current != null && current.isNewerThan(newestKeyTime, oldestKeyTime)) {
+                    log.info("Static documents in {} are of a newer key set than this export, left unchanged.", root);
+                    return;
+                }
+
+                Pointer pointer = new Pointer(writeDocument(root, JWKS, jwks), writeDocument(root, METADATA, metadata), newestKeyTime, oldestKeyTime);
+                writeAtomically(root, root.resolve(POINTER_FILE), objectMapper.writeValueAsBytes(pointer));
+                if (!pointer.equals(current)) {
+                    log.info("Static documents exported to {}: {}.", root, pointer);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Static documents could not be exported to {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Read the pointer file
+     *
+     * @param pointerFile pointer file
+     * @return pointer, null if there is none or it can't be read
+     */
+    private Pointer readPointer(Path pointerFile) {
+        if (!Files.exists(pointerFile)) {
+            return null;
+        }
+
+        try {
+            return objectMapper.readValue(pointerFile.toFile(), Pointer.class);
+        } catch (IOException e) {
+            log.warn("Pointer file {} could not be read, it is replaced: {}", pointerFile, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Write a document under its checksum name, unless that version exists already, and always under its stable name
+     *
+     * @param root    export directory
+     * @param name    document name
+     * @param content document content
+     * @return checksum name of the document
+     * @throws IOException              thrown when a file can't be written
+     * @throws NoSuchAlgorithmException thrown when SHA-256 is not available
+     */
+    private String writeDocument(Path root, String name, byte[] content) throws IOException, NoSuchAlgorithmException {
+        String checksum = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)).substring(0, CHECKSUM_LENGTH);
+        String versionName = name + "-" + checksum + ".json";
+
+        Path version = root.resolve(versionName);
+        if (!Files.exists(version)) {
+            writeAtomically(root, version, content);
+            pruneVersions(root, name);
+        }
+        writeAtomically(root, root.resolve(name + ".json"), content);
+        return versionName;
+    }
+
+    /**
+     * Delete the oldest checksum named versions of a document past the retained ones
+     *
+     * @param root export directory
+     * @param name document name
+     * @throws IOException thrown when the directory can't be listed
+     */
+    private void pruneVersions(Path root, String name) throws IOException {
+        List<Path> versions;
+        try (Stream<Path> files = Files.list(root)) {
+            versions = files.filter(file -> file.getFileName().toString().matches(name + "-[0-9a-f]{" + CHECKSUM_LENGTH + "}\\.json"))
+                    .sorted(Comparator.comparing(StaticDocumentExporter::lastModified).reversed())
+                    .toList();
+        }
+
+        for (Path version : versions.subList(Math.min(retainedVersions, versions.size()), versions.size())) {
+            Files.deleteIfExists(version);
+        }
+    }
+
+    private static void writeAtomically(Path root, Path target, byte[] content) throws IOException {
+        Path temp = Files.createTempFile(root, ".export-", ".tmp");
+        try {
+            Files.write(temp, content);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Content of the pointer file
+     *
+     * @param jwks          checksum name of the jwk set document
+     * @param metadata      checksum name of the metadata document
+     * @param newestKeyTime creation time of the newest exported key ( in ms ), 0 without keys
+     * @param oldestKeyTime creation time of the oldest exported key ( in ms ), 0 without keys
+     */
+    record Pointer(String jwks, String metadata, long newestKeyTime, long oldestKeyTime) {
+
+        /**
+         * A key set is newer when it has a more recently created key, or the same newest key and fewer old keys left
+         * after pruning
+         *
+         * @param newestKeyTime creation time of the newest key of the other key set ( in ms )
+         * @param oldestKeyTime creation time of the oldest key of the other key set ( in ms )
+         * @return true if this pointer names a newer key set
+         */
+        boolean isNewerThan(long newestKeyTime, long oldestKeyTime) {
+            return this.newestKeyTime > newestKeyTime || this.newestKeyTime == newestKeyTime && this.oldestKeyTime > oldestKeyTime;
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.authorizationserver.model;
+
+/**
+ * Enum to define access token format of {@link org.springframework.security.oauth2.server.authorization.client.RegisteredClient}
+ *
+ * @author Blajan George
+ */
+public enum AccessTokenFormat {
+    SELF_CONTAINED("self-contained"),
+    REFERENCE("reference");
+
+    private final String accessTokenFormatName;
+
+    AccessTokenFormat(String accessTokenFormatName) {
+        this.accessTokenFormatName = accessTokenFormatName;
+    }
+
+    public String getAccessTokenFormatName() {
+        return this.accessTokenFormatName;
+    }
+}
@@ -7,7 +7,8 @@ package com.authorizationserver.model;
  */
 public enum AuthenticationMethod {
     CLIENT_SECRET_BASIC("client_secret_basic"),
-    CLIENT_SECRET_POST("client_secret_post");
+    CLIENT_SECRET_POST("client_secret_post"),
+    PRIVATE_KEY_JWT("private_key_jwt");
 
     private final String authenticationMethodName;
 
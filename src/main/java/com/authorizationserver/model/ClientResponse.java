@@ -14,5 +14,8 @@ public record ClientResponse(@JsonProperty("client_id") String clientId,
                              Set<String> scopes,
                              @JsonProperty("client_authentication_methods") Set<String> clientAuthenticationMethods,
                              @JsonProperty("client_authorization_grant_types") Set<String> clientAuthorizationGrantTypes,
-                             @JsonProperty("token_time_to_live") Integer tokenTimeToLive) {
+                             @JsonProperty("token_time_to_live") Integer tokenTimeToLive,
+                             @JsonProperty("token_reuse_percentage") Integer tokenReusePercentage,
+                             @JsonProperty("access_token_format") String accessTokenFormat,
+                             Long version) {
 }
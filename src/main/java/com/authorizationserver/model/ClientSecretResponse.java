@@ -0,0 +1,11 @@
+package com.authorizationserver.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Response entity returning a client secret generated by the server, shown only once
+ *
+ * @author Blajan George
+ */
+public record ClientSecretResponse(@JsonProperty("client_secret") String clientSecret) {
+}
@@ -0,0 +1,16 @@
+package com.authorizationserver.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+
+/**
+ * Response entity to display token request counts of a client in a time bucket
+ *
+ * @author Blajan George
+ */
+public record ClientUsageBucket(@JsonProperty("bucket_start") Instant bucketStart,
+                                Long issued,
+                                Long failed,
+                                @JsonProperty("rate_limited") Long rateLimited) {
+}
@@ -0,0 +1,14 @@
+package com.authorizationserver.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Response entity to display token request counts of a client
+ *
+ * @author Blajan George
+ */
+public record ClientUsageResponse(@JsonProperty("client_id") String clientId,
+                                  List<ClientUsageBucket> buckets) {
+}
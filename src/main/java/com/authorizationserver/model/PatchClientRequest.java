@@ -3,8 +3,10 @@ package com.authorizationserver.model;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Request entity to update a client
@@ -16,9 +18,13 @@ public record PatchClientRequest(@JsonProperty("client_secret") String clientSec
                                  List<Scope> scopes,
                                  @JsonProperty("client_authentication_methods") List<AuthenticationMethod> clientAuthenticationMethods,
                                  @JsonProperty("client_authorization_grant_types") List<AuthorizationGrantType> clientAuthorizationGrantTypes,
-                                 @JsonProperty("token_time_to_live") @Positive(message = "token_time_to_live must be positive.") @Max(value = 60, message = "token_time_to_live must be max 60 minutes.") Integer tokenTimeToLive) {
+                                 @JsonProperty("token_time_to_live") @Positive(message = "token_time_to_live must be positive.") @Max(value = 60, message = "token_time_to_live must be max 60 minutes.") Integer tokenTimeToLive,
+                                 @JsonProperty("token_reuse_percentage") @PositiveOrZero(message = "token_reuse_percentage must be positive or zero.") @Max(value = 90, message = "token_reuse_percentage must be max 90.") Integer tokenReusePercentage,
+                                 Map<String, Object> jwks,
+                                 @JsonProperty("access_token_format") AccessTokenFormat accessTokenFormat,
+                                 @JsonProperty("generate_client_secret") Boolean generateClientSecret) {
     @Override
     public String toString() {
-        return "UpdateClientRequest{" + "clientName='" + clientName + '\'' + ", scopes=" + scopes + ", authenticationMethod=" + clientAuthenticationMethods + ", authorizationGrantType=" + clientAuthorizationGrantTypes + ", tokenTimeToLive=" + tokenTimeToLive + '}';
+        return "UpdateClientRequest{" + "clientName='" + clientName + '\'' + ", scopes=" + scopes + ", authenticationMethod=" + clientAuthenticationMethods + ", authorizationGrantType=" + clientAuthorizationGrantTypes + ", tokenTimeToLive=" + tokenTimeToLive + ", tokenReusePercentage=" + tokenReusePercentage + ", jwks=" + jwks + ", accessTokenFormat=" + accessTokenFormat + ", generateClientSecret=" + generateClientSecret + '}';
     }
 }
@@ -0,0 +1,11 @@
+package com.authorizationserver.model;
+
+/**
+ * Outcome of a client patch
+ *
+ * @param version      version of the patched client
+ * @param clientSecret secret generated for the client, null if none was requested
+ * @author Blajan George
+ */
+public record PatchClientResult(Long version, String clientSecret) {
+}
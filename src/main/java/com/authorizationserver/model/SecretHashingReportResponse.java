@@ -0,0 +1,14 @@
+package com.authorizationserver.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Map;
+
+/**
+ * Response entity to display how client secrets are hashed
+ *
+ * @author Blajan George
+ */
+public record SecretHashingReportResponse(@JsonProperty("clients_by_algorithm") Map<String, Long> clientsByAlgorithm,
+                                          @JsonProperty("total_clients") Long totalClients) {
+}
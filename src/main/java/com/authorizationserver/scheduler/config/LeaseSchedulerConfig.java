@@ -0,0 +1,85 @@
+package com.authorizationserver.scheduler.config;
+
+import com.authorizationserver.scheduler.lease.LeaseCoordinator;
+import com.authorizationserver.scheduler.lease.MaintenanceTask;
+import com.authorizationserver.service.KeyManagementService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.quartz.SchedulerFactoryBeanCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration class for lease based maintenance, a lighter alternative to the clustered Quartz scheduler.
+ * Enabled with 'scheduler.type=lease', reuses the 'quartz.updateKeysJob' timing properties.
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(value = "scheduler.type", havingValue = "lease")
+public class LeaseSchedulerConfig {
+    /**
+     * First key rotation is delayed at start by this value ( in ms )
+     */
+    @Value("${quartz.updateKeysJob.startTriggerDelay:100000}")
+    private Long updateKeysJobStartTriggerDelay;
+    /**
+     * Specify interval at which keys are rotated ( in ms )
+     */
+    @Value("${quartz.updateKeysJob.triggerFireInterval:86400000}")
+    private Long updateKeysJobTriggerFireInterval;
+    /**
+     * Specify if key rotation is enabled
+     */
+    @Value("${quartz.updateKeysJob.enabled:true}")
+    private boolean updateKeysJobEnabled;
+    /**
+     * Specify interval at which old keys are pruned ( in ms )
+     */
+    @Value("${keyRotation.pruneInterval:3600000}")
+    private Long pruneKeysInterval;
+    /**
+     * Rotate key task name
+     */
+    private static final String ROTATE_KEY_TASK_NAME = "rotate-rsa-key";
+    /**
+     * Prune keys task name
+     */
+    private static final String PRUNE_KEYS_TASK_NAME = "prune-rsa-keys";
+
+    /**
+     * Lease coordinator bean
+     *
+     * @param jdbcTemplate         jdbc template
+     * @param keyManagementService key management service
+     * @return {@link LeaseCoordinator}
+     */
+    @Bean
+    public LeaseCoordinator leaseCoordinator(JdbcTemplate jdbcTemplate, KeyManagementService keyManagementService) {
+        List<MaintenanceTask> tasks = new ArrayList<>();
+        if (updateKeysJobEnabled) {
+            tasks.add(new MaintenanceTask(ROTATE_KEY_TASK_NAME, updateKeysJobStartTriggerDelay, updateKeysJobTriggerFireInterval, keyManagementService::rotateKey));
+        } else {
+            log.debug("Task {} is disabled.", ROTATE_KEY_TASK_NAME);
+        }
+        tasks.add(new MaintenanceTask(PRUNE_KEYS_TASK_NAME, pruneKeysInterval, pruneKeysInterval, keyManagementService::pruneKeys));
+
+        return new LeaseCoordinator(jdbcTemplate, tasks);
+    }
+
+    /**
+     * Keep the auto configured Quartz scheduler from starting, so it doesn't poll QRTZ_* tables
+     *
+     * @return {@link SchedulerFactoryBeanCustomizer}
+     */
+    @Bean
+    public SchedulerFactoryBeanCustomizer disableQuartzAutoStartup() {
+        return schedulerFactoryBean -> schedulerFactoryBean.setAutoStartup(false);
+    }
+}
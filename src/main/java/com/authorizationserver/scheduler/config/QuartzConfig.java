@@ -4,6 +4,7 @@ import com.authorizationserver.scheduler.jobs.UpdateRsaKeyJob;
 import lombok.extern.slf4j.Slf4j;
 import org.quartz.*;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.quartz.JobDetailFactoryBean;
@@ -15,12 +16,13 @@ import javax.sql.DataSource;
 import java.util.Properties;
 
 /**
- * Configuration class for Quartz beans
+ * Configuration class for Quartz beans, default scheduler selected with 'scheduler.type=quartz'
  *
  * @author Blajan George
  */
 @Slf4j
 @Configuration
+@ConditionalOnProperty(value = "scheduler.type", havingValue = "quartz", matchIfMissing = true)
 public class QuartzConfig {
     /**
      * Fire of the trigger is delayed at start by this value ( in ms )
@@ -1,18 +1,11 @@
 package com.authorizationserver.scheduler.jobs;
 
-import com.authorizationserver.db.model.RsaKey;
-import com.authorizationserver.db.repository.RsaKeyRepository;
-import com.authorizationserver.model.RSADto;
-import com.authorizationserver.util.CryptographyUtils;
-import com.authorizationserver.exception.KeyGenerationException;
+import com.authorizationserver.service.KeyManagementService;
 import lombok.extern.slf4j.Slf4j;
 import org.quartz.Job;
 import org.quartz.JobExecutionContext;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.time.Instant;
-
 /**
  * Job to add new public and private keys
  *
@@ -22,18 +15,12 @@ import java.time.Instant;
 @Component
 public class UpdateRsaKeyJob implements Job {
     /**
-     * Encryption secret
+     * Service for key operations
      */
-    @Value("${encryptionSecret}")
-    private String encryptionSecret;
+    private final KeyManagementService keyManagementService;
 
-    /**
-     * Repository for database access and operations
-     */
-    private final RsaKeyRepository rsaKeyRepository;
-
-    public UpdateRsaKeyJob(final RsaKeyRepository rsaKeyRepository) {
-        this.rsaKeyRepository = rsaKeyRepository;
+    public UpdateRsaKeyJob(final KeyManagementService keyManagementService) {
+        this.keyManagementService = keyManagementService;
     }
 
     /**
@@ -48,15 +35,7 @@ public class UpdateRsaKeyJob implements Job {
                 jobExecutionContext.getTrigger().getKey().getName(),
                 System.currentTimeMillis());
 
-        try {
-            RSADto rsaDto = CryptographyUtils.generateNewRsaKey();
-            byte[] iv = CryptographyUtils.generateIv();
-            rsaKeyRepository.saveAndFlush(new RsaKey(rsaDto.rsaKey().getKeyID(), rsaDto.rsaPublicKey().getEncoded(), CryptographyUtils.encrypt(rsaDto.rsaPrivateKey().getEncoded(), encryptionSecret, iv), iv, Instant.now()));
-            log.info("New key registered in db.");
-        } catch (Exception e) {
-            log.error("Error encountered when generating a new key.", e);
-            throw new KeyGenerationException(e.getMessage());
-        }
-
+        keyManagementService.rotateKey();
+        keyManagementService.pruneKeys();
     }
 }
@@ -0,0 +1,164 @@
+package com.authorizationserver.scheduler.lease;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Runs maintenance tasks on exactly one node using a lease row instead of a clustered Quartz scheduler.
+ * Every node tries to acquire or renew the lease once per poll interval, only the lease holder looks for due tasks.
+ * A due task is claimed with a conditional update that holds it for one lease duration, so another holder can't
+ * claim it meanwhile. Only a successful run moves its next run a full interval forward, a failed or interrupted run
+ * is retried once the claim lapses, and a period that succeeded is never executed again.
+ *
+ * @author Blajan George
+ */
+@Slf4j
+public class LeaseCoordinator {
+    /**
+     * Lease name
+     */
+    private static final String LEASE_NAME = "maintenance";
+    /**
+     * Acquire or renew lease, succeeds when the lease is free, expired or already owned
+     */
+    private static final String ACQUIRE_LEASE_QUERY = "INSERT INTO scheduler_lease (name, owner, expires_at) " +
+            "VALUES (?, ?, now() + (? * interval '1 millisecond')) " +
+            "ON CONFLICT (name) DO UPDATE SET owner = EXCLUDED.owner, expires_at = EXCLUDED.expires_at " +
+            "WHERE scheduler_lease.owner = EXCLUDED.owner OR scheduler_lease.expires_at < now()";
+    /**
+     * Release lease
+     */
+    private static final String RELEASE_LEASE_QUERY = "DELETE FROM scheduler_lease WHERE name = ? AND owner = ?";
+    /**
+     * Register task, keeps the schedule of an already registered task
+     */
+    private static final String REGISTER_TASK_QUERY = "INSERT INTO maintenance_task (name, next_run_at) " +
+            "VALUES (?, now() + (? * interval '1 millisecond')) ON CONFLICT (name) DO NOTHING";
+    /**
+     * Claim a due task by holding it for one lease duration, returns the claim
+     */
+    private static final String CLAIM_TASK_QUERY = "UPDATE maintenance_task SET next_run_at = now() + (? * interval '1 millisecond') " +
+            "WHERE name = ? AND next_run_at <= now() RETURNING next_run_at";
+    /**
+     * Schedule the next run of a task after success, unless its claim lapsed and another run claimed it
+     */
+    private static final String COMPLETE_TASK_QUERY = "UPDATE maintenance_task SET next_run_at = now() + (? * interval '1 millisecond') " +
+            "WHERE name = ? AND next_run_at = ?";
+
+    /**
+     * Lease duration ( in ms ), must be greater than poll interval and than the longest task run.
+     * A failed task is retried after this delay.
+     */
+    @Value("${scheduler.lease.duration:90000}")
+    private Long leaseDuration;
+
+    /**
+     * Jdbc template
+     */
+    private final JdbcTemplate jdbcTemplate;
+    /**
+     * Registered tasks
+     */
+    private final List<MaintenanceTask> tasks;
+    /**
+     * Identity of this node
+     */
+    private final String owner;
+    /**
+     * True while this node holds the lease
+     */
+    private volatile boolean leader;
+
+    public LeaseCoordinator(JdbcTemplate jdbcTemplate, List<MaintenanceTask> tasks) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tasks = tasks;
+        this.owner = hostName() + "-" + UUID.randomUUID();
+    }
+
+    /**
+     * Register tasks in db
+     */
+    @PostConstruct
+    public void registerTasks() {
+        for (MaintenanceTask task : tasks) {
+            jdbcTemplate.update(REGISTER_TASK_QUERY, task.name(), task.startDelay());
+        }
+        log.info("Lease coordinator {} started with tasks {}.", owner, tasks.stream().map(MaintenanceTask::name).toList());
+    }
+
+    /**
+     * Acquire or renew the lease and run due tasks while holding it
+     */
+    @Scheduled(fixedDelayString = "${scheduler.lease.pollInterval:30000}")
+    public void poll() {
+        boolean acquired = jdbcTemplate.update(ACQUIRE_LEASE_QUERY, LEASE_NAME, owner, leaseDuration) == 1;
+        if (acquired != leader) {
+            log.info("Node {} {} maintenance lease.", owner, acquired ? "acquired" : "lost");
+        }
+        leader = acquired;
+
+        if (!leader) {
+            return;
+        }
+
+        for (MaintenanceTask task : tasks) {
+            List<Timestamp> claims = jdbcTemplate.queryForList(CLAIM_TASK_QUERY, Timestamp.class, leaseDuration, task.name());
+            if (!claims.isEmpty() && run(task)) {
+                complete(task, claims.get(0));
+            }
+        }
+    }
+
+    /**
+     * Release the lease on shutdown so another node can take over without waiting for expiry
+     */
+    @PreDestroy
+    public void release() {
+        if (leader) {
+            jdbcTemplate.update(RELEASE_LEASE_QUERY, LEASE_NAME, owner);
+            log.info("Node {} released maintenance lease.", owner);
+        }
+    }
+
+    /**
+     * @return true while this node holds the lease
+     */
+    public boolean isLeader() {
+        return leader;
+    }
+
+    private boolean run(MaintenanceTask task) {
+        log.info("Task {} start to execute on node {}. Current time: {}", task.name(), owner, System.currentTimeMillis());
+        try {
+            task.action().run();
+            return true;
+        } catch (Exception e) {
+            log.error("Task {} failed, will run again in {} ms.", task.name(), leaseDuration, e);
+            return false;
+        }
+    }
+
+    private void complete(MaintenanceTask task, Timestamp claim) {
+        if (jdbcTemplate.update(COMPLETE_TASK_QUERY, task.interval(), task.name(), claim) == 0) {
+            log.warn("Claim of task {} lapsed before the run on node {} completed.", task.name(), owner);
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+}
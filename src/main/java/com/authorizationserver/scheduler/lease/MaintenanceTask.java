@@ -0,0 +1,13 @@
+package com.authorizationserver.scheduler.lease;
+
+/**
+ * Maintenance task run by {@link LeaseCoordinator}
+ *
+ * @param name       unique task name, identifies the task row in db
+ * @param startDelay delay before first run after the task is registered ( in ms )
+ * @param interval   interval between runs ( in ms )
+ * @param action     task instructions
+ * @author Blajan George
+ */
+public record MaintenanceTask(String name, long startDelay, long interval, Runnable action) {
+}
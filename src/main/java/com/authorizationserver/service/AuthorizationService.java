@@ -3,8 +3,12 @@ package com.authorizationserver.service;
 import com.authorizationserver.model.MetadataResponse;
 import com.authorizationserver.model.RegisterClientRequest;
 import com.authorizationserver.model.ClientResponse;
+import com.authorizationserver.model.ClientUsageResponse;
 import com.authorizationserver.model.PatchClientRequest;
+import com.authorizationserver.model.PatchClientResult;
+import com.authorizationserver.model.SecretHashingReportResponse;
 
+import java.time.Instant;
 import java.util.List;
 
 /**
@@ -18,8 +22,9 @@ public interface AuthorizationService {
      *
      * @param registerClientRequest {@link RegisterClientRequest} request entity for registering client
      * @param authorizationSecret   authorization secret to confirm identity
+     * @return secret generated for the client, null if none was requested
      */
-    void registerOauth2Client(final RegisterClientRequest registerClientRequest, final String authorizationSecret);
+    String registerOauth2Client(final RegisterClientRequest registerClientRequest, final String authorizationSecret);
 
     /**
      * Method to patch an Oauth2 client
@@ -27,8 +32,10 @@ public interface AuthorizationService {
      * @param patchClientRequest  {@link PatchClientRequest} request entity for patch client
      * @param authorizationSecret authorization secret to confirm identity
      * @param clientId            client id
+     * @param expectedVersion     version the patch was based on, null to patch any version
+     * @return {@link PatchClientResult} with the version of the patched client and the secret generated for it, if requested
      */
-    void patchOauth2Client(final PatchClientRequest patchClientRequest, final String authorizationSecret, final String clientId);
+    PatchClientResult patchOauth2Client(final PatchClientRequest patchClientRequest, final String authorizationSecret, final String clientId, final Long expectedVersion);
 
     /**
      * Method to delete an Oauth2 client
@@ -48,12 +55,53 @@ public interface AuthorizationService {
     ClientResponse getOauth2Client(final String authorizationSecret, final String clientId);
 
     /**
-     * Method to retrieve all clients
+     * Method to retrieve the version of a client, used to answer conditional requests without loading the client
      *
      * @param authorizationSecret authorization secret to confirm identity
+     * @param clientId            client id
+     * @return client version
+     */
+    Long getOauth2ClientVersion(final String authorizationSecret, final String clientId);
+
+    /**
+     * Method to retrieve a page of clients, partition by partition and in client id order inside a partition
+     *
+     * @param authorizationSecret authorization secret to confirm identity
+     * @param after               optional, last client id of the previous page
+     * @param limit               optional, maximum number of clients
+     * @return {@link ClientResponse}
+     */
+    List<ClientResponse> getOauth2ClientsPage(final String authorizationSecret, final String after, final Integer limit);
+
+    /**
+     * Method to retrieve clients changed after a version, oldest change first
+     *
+     * @param authorizationSecret authorization secret to confirm identity
+     * @param version             last version seen by the caller
+     * @param after               last client id seen by the caller with that version, null to start with the next version
+     * @param limit               maximum number of clients
      * @return {@link ClientResponse}
      */
-    List<ClientResponse> getOauth2Clients(final String authorizationSecret);
+    List<ClientResponse> getOauth2ClientsChangedSince(final String authorizationSecret, final Long version, final String after, final Integer limit);
+
+    /**
+     * Method to get token request counts of a client
+     *
+     * @param authorizationSecret authorization secret to confirm identity
+     * @param clientId            client id
+     * @param from                inclusive start, defaults to one day before 'to'
+     * @param to                  exclusive end, defaults to now
+     * @return {@link ClientUsageResponse}
+     */
+    ClientUsageResponse getClientUsage(final String authorizationSecret, final String clientId, final Instant from, final Instant to);
+
+    /**
+     * Method to report how client secrets are hashed
+     *
+     * @param authorizationSecret authorization secret to confirm identity
+     * @return {@link SecretHashingReportResponse}
+     */
+    SecretHashingReportResponse getSecretHashingReport(final String authorizationSecret);
 
     /**
      * Fetch metadata of auth service
@@ -61,4 +109,12 @@ public interface AuthorizationService {
      * @return {@link MetadataResponse}
      */
     MetadataResponse getMetadata();
+
+    /**
+     * Fetch metadata of auth service for a given issuer, used outside of requests
+     *
+     * @param issuer issuer
+     * @return {@link MetadataResponse}
+     */
+    MetadataResponse getMetadata(String issuer);
 }
@@ -1,24 +1,41 @@
 package com.authorizationserver.service;
 
+import com.authorizationserver.authentication.ClientSecretPasswordEncoder;
+import com.authorizationserver.authentication.PrivateKeyJwtClientAuthenticationProvider;
+import com.authorizationserver.db.model.Oauth2Client;
+import com.authorizationserver.db.repository.ClientUsageRepository;
 import com.authorizationserver.db.repository.CustomRegisteredClientRepository;
+import com.authorizationserver.db.repository.Oauth2ClientRepository;
+import com.authorizationserver.db.repository.RegisteredClientConverter;
 import com.authorizationserver.exception.EntityNotFoundException;
+import com.authorizationserver.exception.PreconditionFailedException;
+import com.authorizationserver.exception.UnauthorizedException;
 import com.authorizationserver.model.*;
+import com.authorizationserver.token.AccessTokenReuseCache;
 import com.authorizationserver.util.AuthenticationClientMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.authentication.InsufficientAuthenticationException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.settings.ClientSettings;
+import org.springframework.security.oauth2.server.authorization.settings.ConfigurationSettingNames;
+import org.springframework.security.oauth2.server.authorization.settings.OAuth2TokenFormat;
 import org.springframework.security.oauth2.server.authorization.settings.TokenSettings;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 import static com.authorizationserver.constants.Constants.*;
@@ -41,21 +58,49 @@ public class AuthorizationServiceImpl implements AuthorizationService {
      */
     private final CustomRegisteredClientRepository clientRepository;
 
+    /**
+     * Jpa repo used for reports
+     */
+    private final Oauth2ClientRepository oauth2ClientRepository;
+    /**
+     * Converter between db entity and {@link RegisteredClient}
+     */
+    private final RegisteredClientConverter registeredClientConverter = new RegisteredClientConverter();
+    /**
+     * Jdbc repo of client usage
+     */
+    private final ClientUsageRepository clientUsageRepository;
     /**
      * Used for hashing client secrets
      */
-    private final BCryptPasswordEncoder bCryptPasswordEncoder;
+    private final ClientSecretPasswordEncoder clientSecretPasswordEncoder;
     /**
      * Metadata context object class
      */
     private final MetadataContext metadataContext;
+    /**
+     * Cache of reusable access tokens, evicted when a client changes
+     */
+    private final AccessTokenReuseCache accessTokenReuseCache;
+    /**
+     * Keeps decoded public keys of private_key_jwt clients, evicted when a client changes
+     */
+    private final PrivateKeyJwtClientAuthenticationProvider privateKeyJwtClientAuthenticationProvider;
 
     public AuthorizationServiceImpl(final CustomRegisteredClientRepository clientRepository,
-                                    final BCryptPasswordEncoder bCryptPasswordEncoder,
-                                    final MetadataContext metadataContext) {
+                                    final Oauth2ClientRepository oauth2ClientRepository,
+                                    final ClientUsageRepository clientUsageRepository,
+                                    final ClientSecretPasswordEncoder clientSecretPasswordEncoder,
+                                    final MetadataContext metadataContext,
+                                    final AccessTokenReuseCache accessTokenReuseCache,
+                                    final PrivateKeyJwtClientAuthenticationProvider privateKeyJwtClientAuthenticationProvider) {
         this.clientRepository = clientRepository;
-        this.bCryptPasswordEncoder = bCryptPasswordEncoder;
+        this.oauth2ClientRepository = oauth2ClientRepository;
+        this.clientUsageRepository = clientUsageRepository;
+        this.clientSecretPasswordEncoder = clientSecretPasswordEncoder;
         this.metadataContext = metadataContext;
+        this.accessTokenReuseCache = accessTokenReuseCache;
+        this.privateKeyJwtClientAuthenticationProvider = privateKeyJwtClientAuthenticationProvider;
     }
 
     /**
@@ -63,13 +108,16 @@ public class AuthorizationServiceImpl implements AuthorizationService {
      */
     @Transactional
     @Override
-    public void registerOauth2Client(RegisterClientRequest registerClientRequest, String authorizationSecret) {
+    public String registerOauth2Client(RegisterClientRequest registerClientRequest, String authorizationSecret) {
         validateAuthorizationSecret(authorizationSecret);
 
-        RegisteredClient registeredClient = AuthenticationClientMapper.map(registerClientRequest, bCryptPasswordEncoder);
+        String clientSecret = resolveClientSecret(registerClientRequest.clientSecret(), registerClientRequest.generateClientSecret());
+        RegisteredClient registeredClient = AuthenticationClientMapper.map(registerClientRequest, clientSecret, clientSecretPasswordEncoder);
         log.debug("{} mapped to {}.", registerClientRequest, registeredClient);
         clientRepository.save(registeredClient);
         log.debug("Client with id {} stored in db.", registeredClient.getClientId());
+
+        return Boolean.TRUE.equals(registerClientRequest.generateClientSecret()) ? clientSecret : null;
     }
 
     /**
@@ -77,13 +125,18 @@ public class AuthorizationServiceImpl implements AuthorizationService {
      */
     @Transactional
     @Override
-    public void patchOauth2Client(PatchClientRequest patchClientRequest, String authorizationSecret, String clientId) {
-        RegisteredClient oauth2Client = preValidation(authorizationSecret, clientId);
+    public PatchClientResult patchOauth2Client(PatchClientRequest patchClientRequest, String authorizationSecret, String clientId, Long expectedVersion) {
+        validateClientId(clientId);
+        validateAuthorizationSecret(authorizationSecret);
 
-        RegisteredClient newOauth2Client = buildNewOauth2Client(patchClientRequest, oauth2Client);
-        log.debug("{} mapped to {}.", patchClientRequest, newOauth2Client);
-        clientRepository.save(newOauth2Client);
-        log.debug("Client with id {} updated in db.", oauth2Client.getClientId());
+        String clientSecret = resolveClientSecret(patchClientRequest.clientSecret(), patchClientRequest.generateClientSecret());
+        String encodedClientSecret = encodeClientSecret(clientSecret);
+        Long version = setsColumnsOnly(patchClientRequest)
+                ? patchColumns(patchClientRequest, encodedClientSecret, clientId, expectedVersion)
+                : patchClient(patchClientRequest, encodedClientSecret, clientId, expectedVersion);
+        log.debug("Client with id {} updated in db.", clientId);
+
+        return new PatchClientResult(version, Boolean.TRUE.equals(patchClientRequest.generateClientSecret()) ? clientSecret : null);
     }
 
     /**
@@ -92,9 +145,15 @@ public class AuthorizationServiceImpl implements AuthorizationService {
     @Transactional
     @Override
     public void deleteOauth2Client(String authorizationSecret, String clientId) {
-        preValidation(authorizationSecret, clientId);
+        validateClientId(clientId);
+        validateAuthorizationSecret(authorizationSecret);
 
-        clientRepository.deleteByClientId(clientId);
+        String registeredClientId = clientRepository.deleteByClientId(clientId);
+        if (registeredClientId == null) {
+            throw clientNotFound(clientId);
+        }
+
+        evictClientAfterCommit(registeredClientId);
         log.debug("Client with id {} deleted from db.", clientId);
     }
 
@@ -103,19 +162,78 @@ public class AuthorizationServiceImpl implements AuthorizationService {
      */
     @Override
     public ClientResponse getOauth2Client(String authorizationSecret, String clientId) {
-        RegisteredClient oauth2Client = preValidation(authorizationSecret, clientId);
+        validateClientId(clientId);
+        validateAuthorizationSecret(authorizationSecret);
 
+        Oauth2Client oauth2Client = oauth2ClientRepository.findByClientId(clientId).orElseThrow(() -> clientNotFound(clientId));
         log.debug("Client with id {} found in db.", clientId);
-        return AuthenticationClientMapper.map(oauth2Client);
+        return map(oauth2Client);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public List<ClientResponse> getOauth2Clients(String authorizationSecret) {
+    public Long getOauth2ClientVersion(String authorizationSecret, String clientId) {
+        validateClientId(clientId);
         validateAuthorizationSecret(authorizationSecret);
-        return clientRepository.getAllClients().stream().map(AuthenticationClientMapper::map).toList();
+
+        return oauth2ClientRepository.findVersionByClientId(clientId).orElseThrow(() -> clientNotFound(clientId));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ClientResponse> getOauth2ClientsPage(String authorizationSecret, String after, Integer limit) {
+        validateAuthorizationSecret(authorizationSecret);
+
+        return oauth2ClientRepository.findPageAfter(after, pageSize(limit)).stream().map(this::map).toList();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ClientResponse> getOauth2ClientsChangedSince(String authorizationSecret, Long version, String after, Integer limit) {
+        validateAuthorizationSecret(authorizationSecret);
+
+        // client ids are never empty, so the next version with an empty one starts with every client of that version
+        return (after == null
+                ? oauth2ClientRepository.findChangedAfter(version + 1, "", pageSize(limit))
+                : oauth2ClientRepository.findChangedAfter(version, after, pageSize(limit)))
+                .stream().map(this::map).toList();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ClientUsageResponse getClientUsage(String authorizationSecret, String clientId, Instant from, Instant to) {
+        validateAuthorizationSecret(authorizationSecret);
+
+        final Instant end = to == null ? Instant.now() : to;
+        final Instant start = from == null ? end.minus(Duration.ofDays(1)) : from;
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("from must be before to.");
+        }
+
+        return new ClientUsageResponse(clientId, clientUsageRepository.findUsage(clientId, start, end));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SecretHashingReportResponse getSecretHashingReport(String authorizationSecret) {
+        validateAuthorizationSecret(authorizationSecret);
+
+        Map<String, Long> algorithms = new TreeMap<>();
+        for (Object[] row : oauth2ClientRepository.countBySecretAlgorithm()) {
+            algorithms.merge((String) row[0], ((Number) row[1]).longValue(), Long::sum);
+        }
+
+        return new SecretHashingReportResponse(algorithms, algorithms.values().stream().mapToLong(Long::longValue).sum());
     }
 
     /**
@@ -123,9 +241,17 @@ public class AuthorizationServiceImpl implements AuthorizationService {
      */
     @Override
     public MetadataResponse getMetadata() {
+        return getMetadata(metadataContext.getIssuer());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MetadataResponse getMetadata(String issuer) {
         MetadataResponse.MetadataResponseBuilder metadataResponseBuilder = MetadataResponse.builder();
 
-        metadataResponseBuilder.issuer(metadataContext.getIssuer());
+        metadataResponseBuilder.issuer(issuer);
         metadataResponseBuilder.tokenEndpoint(GENERATE_AUTH_TOKEN_PATH);
         metadataResponseBuilder.jwkSetEndpoint(GET_JWK_SET_PATH);
         metadataResponseBuilder.registerClientEndpoint(API_V1 + "/client");
@@ -141,52 +267,220 @@ public class AuthorizationServiceImpl implements AuthorizationService {
     }
 
     /**
-     * PreValidation method for solving code duplication
+     * Method to validate client id
      *
-     * @param authorizationSecret authorization secret to confirm identity
-     * @param clientId            client id
-     * @return {@link RegisteredClient}
+     * @param clientId client id
      */
-    private RegisteredClient preValidation(String authorizationSecret, String clientId) {
+    private static void validateClientId(String clientId) {
         if (StringUtils.isBlank(clientId)) {
             throw new IllegalArgumentException("client_id must not be blank.");
         }
+    }
+
+    /**
+     * Method to evict reusable tokens and decoded public keys of a client once the transaction commits, so a token request
+     * running meanwhile can't cache a token or keys of the client as it was before the change
+     *
+     * @param registeredClientId registered client id
+     */
+    private void evictClientAfterCommit(String registeredClientId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evictClient(registeredClientId);
+            return;
+        }
 
-        validateAuthorizationSecret(authorizationSecret);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evictClient(registeredClientId);
+            }
+        });
+    }
+
+    private void evictClient(String registeredClientId) {
+        accessTokenReuseCache.evictClient(registeredClientId);
+        privateKeyJwtClientAuthenticationProvider.evictClient(registeredClientId);
+    }
 
-        RegisteredClient oauth2Client = clientRepository.findByClientId(clientId);
-        if (oauth2Client == null) {
-            log.warn("Client with id {} not found in db.", clientId);
-            throw new EntityNotFoundException(String.format("Client with id %s not found in db.", clientId));
+    /**
+     * Method to validate the page size of client listings
+     *
+     * @param limit requested page size, default if null
+     * @return page size
+     */
+    private static int pageSize(Integer limit) {
+        final int pageSize = limit == null ? DEFAULT_CHANGED_CLIENTS_LIMIT : limit;
+        if (pageSize < 1 || pageSize > MAX_CHANGED_CLIENTS_LIMIT) {
+            throw new IllegalArgumentException(String.format("limit must be between 1 and %d.", MAX_CHANGED_CLIENTS_LIMIT));
         }
+        return pageSize;
+    }
 
-        return oauth2Client;
+    /**
+     * Check whether a patch only sets columns whose new value doesn't depend on the current client: name, secret, scopes
+     * and grant types. Authentication methods, keys and token settings are merged with the stored client and validated
+     * against it
+     *
+     * @param patchClientRequest patch request entity
+     * @return true if the patch can be written without reading the client
+     */
+    private static boolean setsColumnsOnly(PatchClientRequest patchClientRequest) {
+        return (patchClientRequest.clientAuthenticationMethods() == null || patchClientRequest.clientAuthenticationMethods().isEmpty())
+                && patchClientRequest.jwks() == null
+                && patchClientRequest.tokenTimeToLive() == null
+                && patchClientRequest.tokenReusePercentage() == null
+                && patchClientRequest.accessTokenFormat() == null;
+    }
+
+    /**
+     * Method to patch the plain columns of a client with a single update, which checks and returns the version
+     *
+     * @param patchClientRequest  patch request entity
+     * @param encodedClientSecret new encoded client secret, null to keep the current one
+     * @param clientId            client id
+     * @param expectedVersion     version the client must have, null to patch any version
+     * @return new version
+     */
+    private Long patchColumns(PatchClientRequest patchClientRequest, String encodedClientSecret, String clientId, Long expectedVersion) {
+        final List<Scope> scopes = patchClientRequest.scopes();
+        final List<AuthorizationGrantType> clientAuthorizationGrantTypes = patchClientRequest.clientAuthorizationGrantTypes();
+
+        List<Object[]> rows = oauth2ClientRepository.updateColumns(clientId, expectedVersion, encodedClientSecret, patchClientRequest.clientName(),
+                scopes == null ? null : scopes.stream().map(Scope::name).distinct().collect(Collectors.joining(",")),
+                clientAuthorizationGrantTypes == null || clientAuthorizationGrantTypes.isEmpty() ? null
+                        : clientAuthorizationGrantTypes.stream().map(AuthorizationGrantType::getAuthorizationGrantTypeName).distinct().collect(Collectors.joining(",")));
+        if (rows.isEmpty()) {
+            Long version = oauth2ClientRepository.findVersionByClientId(clientId).orElseThrow(() -> clientNotFound(clientId));
+            throw clientModified(clientId, version);
+        }
+
+        evictClientAfterCommit((String) rows.get(0)[0]);
+        return ((Number) rows.get(0)[1]).longValue();
+    }
+
+    /**
+     * Method to patch a client whose new settings are merged with the current ones: the row is locked while the patch
+     * is merged and validated, then written by a single update that returns the new version
+     *
+     * @param patchClientRequest  patch request entity
+     * @param encodedClientSecret new encoded client secret, null to keep the current one
+     * @param clientId            client id
+     * @param expectedVersion     version the client must have, null to patch any version
+     * @return new version
+     */
+    private Long patchClient(PatchClientRequest patchClientRequest, String encodedClientSecret, String clientId, Long expectedVersion) {
+        Oauth2Client currentOauth2Client = oauth2ClientRepository.findByClientIdForUpdate(clientId).orElseThrow(() -> clientNotFound(clientId));
+        if (expectedVersion != null && !expectedVersion.equals(currentOauth2Client.getVersion())) {
+            throw clientModified(clientId, currentOauth2Client.getVersion());
+        }
+
+        RegisteredClient oauth2Client = registeredClientConverter.toObject(currentOauth2Client);
+        RegisteredClient newOauth2Client = buildNewOauth2Client(patchClientRequest, encodedClientSecret, oauth2Client);
+        log.debug("{} mapped to {}.", patchClientRequest, newOauth2Client);
+        // written by a detached copy, the locked entity stays unchanged so dirty checking adds no update of its own
+        Oauth2Client newOauth2ClientEntity = new Oauth2Client();
+        registeredClientConverter.copyToEntity(newOauth2Client, newOauth2ClientEntity);
+        Long version = oauth2ClientRepository.updateClient(newOauth2ClientEntity);
+        evictClientAfterCommit(oauth2Client.getId());
+        return version;
+    }
+
+    /**
+     * Method to encode the new secret of a patch
+     *
+     * @param clientSecret new client secret, supplied or generated
+     * @return encoded client secret, null if the patch keeps the current one
+     */
+    private String encodeClientSecret(String clientSecret) {
+        if (clientSecret == null) {
+            return null;
+        }
+
+        if (clientSecret.isBlank()) {
+            throw new IllegalArgumentException("client_secret must not be blank if specified.");
+        }
+        return clientSecretPasswordEncoder.encode(clientSecret);
+    }
+
+    /**
+     * Method to build precondition failed exception of a client modified since the expected version
+     *
+     * @param clientId client id
+     * @param version  current version
+     * @return {@link PreconditionFailedException}
+     */
+    private static PreconditionFailedException clientModified(String clientId, Long version) {
+        return new PreconditionFailedException(String.format("Client with id %s was modified, current version is %d.", clientId, version));
+    }
+
+    /**
+     * Method to build not found exception of a client
+     *
+     * @param clientId client id
+     * @return {@link EntityNotFoundException}
+     */
+    private static EntityNotFoundException clientNotFound(String clientId) {
+        log.warn("Client with id {} not found in db.", clientId);
+        return new EntityNotFoundException(String.format("Client with id %s not found in db.", clientId));
+    }
+
+    /**
+     * Method to map a db entity to {@link ClientResponse}
+     *
+     * @param oauth2Client db entity
+     * @return {@link ClientResponse}
+     */
+    private ClientResponse map(Oauth2Client oauth2Client) {
+        return AuthenticationClientMapper.map(registeredClientConverter.toObject(oauth2Client), oauth2Client.getVersion());
+    }
+
+    /**
+     * Resolve the secret of a register or patch request, generated when requested. Client supplied secrets may not use
+     * the prefix of generated secrets, so the hash chosen from a secret always matches its origin
+     *
+     * @param clientSecret         client supplied secret
+     * @param generateClientSecret true to generate the secret
+     * @return client secret, null if none was supplied or requested
+     */
+    private String resolveClientSecret(String clientSecret, Boolean generateClientSecret) {
+        if (Boolean.TRUE.equals(generateClientSecret)) {
+            if (clientSecret != null) {
+                throw new IllegalArgumentException("client_secret must not be specified with generate_client_secret.");
+            }
+            return clientSecretPasswordEncoder.generateSecret();
+        }
+
+        if (clientSecret != null && clientSecret.startsWith(ClientSecretPasswordEncoder.GENERATED_SECRET_PREFIX)) {
+            throw new IllegalArgumentException(String.format("client_secret must not start with %s.", ClientSecretPasswordEncoder.GENERATED_SECRET_PREFIX));
+        }
+        return clientSecret;
     }
 
     /**
      * Method to buld new oauth2 client
      *
-     * @param patchClientRequest patch request entity
-     * @param oldOauth2Client    old oauth2 client
+     * @param patchClientRequest  patch request entity
+     * @param encodedClientSecret new encoded client secret, null to keep the current one
+     * @param oldOauth2Client     old oauth2 client
      * @return {@link RegisteredClient}
      */
     @SuppressWarnings("java:S3776")
     private RegisteredClient buildNewOauth2Client(PatchClientRequest patchClientRequest,
+                                                  String encodedClientSecret,
                                                   RegisteredClient oldOauth2Client) {
         RegisteredClient.Builder newOauth2ClientBuilder = RegisteredClient.withId(oldOauth2Client.getId()).clientId(oldOauth2Client.getClientId());
 
-        final String clientSecret = patchClientRequest.clientSecret();
         final String clientName = patchClientRequest.clientName();
         final List<Scope> scopes = patchClientRequest.scopes();
         final List<AuthenticationMethod> clientAuthenticationMethods = patchClientRequest.clientAuthenticationMethods();
         final List<AuthorizationGrantType> clientAuthorizationGrantTypes = patchClientRequest.clientAuthorizationGrantTypes();
         final Integer tokenTimeToLive = patchClientRequest.tokenTimeToLive();
+        final Integer tokenReusePercentage = patchClientRequest.tokenReusePercentage();
+        final Map<String, Object> jwks = patchClientRequest.jwks();
+        final AccessTokenFormat accessTokenFormat = patchClientRequest.accessTokenFormat();
 
-        if (clientSecret != null) {
-            if (clientSecret.isBlank()) {
-                throw new IllegalArgumentException("client_secret must not be blank if specified.");
-            }
-            newOauth2ClientBuilder.clientSecret(bCryptPasswordEncoder.encode(clientSecret));
+        if (encodedClientSecret != null) {
+            newOauth2ClientBuilder.clientSecret(encodedClientSecret);
         } else {
             newOauth2ClientBuilder.clientSecret(oldOauth2Client.getClientSecret());
         }
@@ -209,15 +503,24 @@ public class AuthorizationServiceImpl implements AuthorizationService {
             }
         }
 
+        final Set<ClientAuthenticationMethod> authenticationMethods = new HashSet<>();
         if (clientAuthenticationMethods != null && !clientAuthenticationMethods.isEmpty()) {
             for (AuthenticationMethod clientAuthenticationMethod : clientAuthenticationMethods) {
-                newOauth2ClientBuilder.clientAuthenticationMethod(new ClientAuthenticationMethod(clientAuthenticationMethod.getAuthenticationMethodName()));
+                authenticationMethods.add(new ClientAuthenticationMethod(clientAuthenticationMethod.getAuthenticationMethodName()));
             }
         } else {
-            for (ClientAuthenticationMethod clientAuthenticationMethod : oldOauth2Client.getClientAuthenticationMethods()) {
-                newOauth2ClientBuilder.clientAuthenticationMethod(clientAuthenticationMethod);
-            }
+            authenticationMethods.addAll(oldOauth2Client.getClientAuthenticationMethods());
         }
+        newOauth2ClientBuilder.clientAuthenticationMethods(methods -> methods.addAll(authenticationMethods));
+
+        Map<String, Object> clientSettings = new HashMap<>(oldOauth2Client.getClientSettings().getSettings());
+        if (jwks != null) {
+            clientSettings.put(CLIENT_JWK_SET_SETTING, AuthenticationClientMapper.toJwkSetSetting(jwks));
+        }
+        AuthenticationClientMapper.validateClientCredentials(authenticationMethods,
+                encodedClientSecret != null || oldOauth2Client.getClientSecret() != null,
+                clientSettings.containsKey(CLIENT_JWK_SET_SETTING));
+        newOauth2ClientBuilder.clientSettings(ClientSettings.withSettings(clientSettings).build());
 
         if (clientAuthorizationGrantTypes != null && !clientAuthorizationGrantTypes.isEmpty()) {
             for (AuthorizationGrantType clientAuthorizationGrantType : clientAuthorizationGrantTypes) {
@@ -229,14 +532,26 @@ public class AuthorizationServiceImpl implements AuthorizationService {
             }
         }
 
-        TokenSettings tokenSettings = oldOauth2Client.getTokenSettings();
+        Map<String, Object> tokenSettings = new HashMap<>(oldOauth2Client.getTokenSettings().getSettings());
 
         if (tokenTimeToLive != null) {
-            newOauth2ClientBuilder.tokenSettings(TokenSettings.withSettings(tokenSettings.getSettings()).accessTokenTimeToLive(Duration.ofMinutes(tokenTimeToLive)).build());
-        } else {
-            newOauth2ClientBuilder.tokenSettings(TokenSettings.withSettings(tokenSettings.getSettings()).build());
+            tokenSettings.put(ConfigurationSettingNames.Token.ACCESS_TOKEN_TIME_TO_LIVE, Duration.ofMinutes(tokenTimeToLive));
         }
 
+        if (tokenReusePercentage != null) {
+            if (tokenReusePercentage > 0) {
+                tokenSettings.put(ACCESS_TOKEN_REUSE_PERCENTAGE_SETTING, tokenReusePercentage);
+            } else {
+                tokenSettings.remove(ACCESS_TOKEN_REUSE_PERCENTAGE_SETTING);
+            }
+        }
+
+        if (accessTokenFormat != null) {
+            tokenSettings.put(ConfigurationSettingNames.Token.ACCESS_TOKEN_FORMAT, new OAuth2TokenFormat(accessTokenFormat.getAccessTokenFormatName()));
+        }
+
+        newOauth2ClientBuilder.tokenSettings(TokenSettings.withSettings(tokenSettings).build());
+
         return newOauth2ClientBuilder.build();
     }
 
@@ -247,11 +562,11 @@ public class AuthorizationServiceImpl implements AuthorizationService {
      */
     private void validateAuthorizationSecret(String authorizationSecret) {
         if (StringUtils.isBlank(authorizationSecret)) {
-            throw new InsufficientAuthenticationException("Unauthorized.");
+            throw new UnauthorizedException("Unauthorized.");
         }
 
         if (!this.authorizationSecret.equals(authorizationSecret)) {
-            throw new InsufficientAuthenticationException("Unauthorized.");
+            throw new UnauthorizedException("Unauthorized.");
         }
     }
 }
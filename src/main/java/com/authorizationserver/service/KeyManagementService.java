@@ -0,0 +1,18 @@
+package com.authorizationserver.service;
+
+/**
+ * Key management service interface to define maintenance operations on signing keys
+ *
+ * @author Blajan George
+ */
+public interface KeyManagementService {
+    /**
+     * Generate a new signing key and store it in db
+     */
+    void rotateKey();
+
+    /**
+     * Delete keys older than the retained most recent ones
+     */
+    void pruneKeys();
+}
@@ -0,0 +1,93 @@
+package com.authorizationserver.service;
+
+import com.authorizationserver.db.model.RsaKey;
+import com.authorizationserver.db.repository.RsaKeyRepository;
+import com.authorizationserver.exception.KeyGenerationException;
+import com.authorizationserver.export.StaticDocumentExporter;
+import com.authorizationserver.model.RSADto;
+import com.authorizationserver.util.CryptographyUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+/**
+ * Key management service implementation
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@Service
+public class KeyManagementServiceImpl implements KeyManagementService {
+    /**
+     * Encryption secret
+     */
+    @Value("${encryptionSecret}")
+    private String encryptionSecret;
+    /**
+     * Number of most recent keys kept when pruning, 0 disables pruning. Must not be lower than 'jwkSetEndpoint.numberOfRetrievedKeys'
+     */
+    @Value("${keyRotation.retainedKeys:0}")
+    private Integer retainedKeys;
+    /**
+     * Time a new key is published in the jwk set before it signs tokens ( in ms ), should exceed resource servers jwk set cache time
+     */
+    @Value("${keyRotation.publicationLeadTime:3600000}")
+    private Long publicationLeadTime;
+
+    /**
+     * Repository for database access and operations
+     */
+    private final RsaKeyRepository rsaKeyRepository;
+    /**
+     * Exporter of static jwk set and metadata documents, present when 'staticExport.enabled=true'
+     */
+    private final ObjectProvider<StaticDocumentExporter> staticDocumentExporter;
+
+    public KeyManagementServiceImpl(final RsaKeyRepository rsaKeyRepository,
+                                    final ObjectProvider<StaticDocumentExporter> staticDocumentExporter) {
+        this.rsaKeyRepository = rsaKeyRepository;
+        this.staticDocumentExporter = staticDocumentExporter;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rotateKey() {
+        try {
+            RSADto rsaDto = CryptographyUtils.generateNewRsaKey();
+            byte[] iv = CryptographyUtils.generateIv();
+            Instant now = Instant.now();
+            Instant activationTime = now.plusMillis(publicationLeadTime);
+            rsaKeyRepository.saveAndFlush(new RsaKey(rsaDto.rsaKey().getKeyID(), rsaDto.rsaPublicKey().getEncoded(), CryptographyUtils.encrypt(rsaDto.rsaPrivateKey().getEncoded(), encryptionSecret, iv), iv, now, activationTime));
+            log.info("New key {} registered in db, published now and active from {}.", rsaDto.rsaKey().getKeyID(), activationTime);
+        } catch (Exception e) {
+            log.error("Error encountered when generating a new key.", e);
+            throw new KeyGenerationException(e.getMessage());
+        }
+
+        staticDocumentExporter.ifAvailable(StaticDocumentExporter::export);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    @Override
+    public void pruneKeys() {
+        if (retainedKeys <= 0) {
+            log.debug("Key pruning disabled.");
+            return;
+        }
+
+        int deleted = rsaKeyRepository.deleteAllExceptNMostRecent(retainedKeys);
+        log.info("{} key(s) pruned from db, {} most recently activated and all pending keys kept.", deleted, retainedKeys);
+        if (deleted > 0) {
+            staticDocumentExporter.ifAvailable(StaticDocumentExporter::export);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.authorizationserver.token;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Node local cache of access tokens that can be handed out again for identical client_credentials requests.
+ * Entries are evicted when the reuse window ends, when the token is revoked or when the owning client changes.
+ * Changes made on other nodes are not propagated, a cached token there lives at most until its reuse window ends.
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@Component
+public class AccessTokenReuseCache {
+    /**
+     * Maximum number of cached tokens, new tokens are not cached once the limit is reached
+     */
+    @Value("${tokenReuse.maxEntries:10000}")
+    private Integer maxEntries;
+
+    /**
+     * Cached tokens by request key
+     */
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    /**
+     * Request keys by token value, used for revocation
+     */
+    private final Map<String, Key> keysByTokenValue = new ConcurrentHashMap<>();
+    /**
+     * Signing operations currently in progress by request key
+     */
+    private final Map<Key, CompletableFuture<Jwt>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Retrieve a token that is still inside its reuse window
+     *
+     * @param key request key
+     * @return {@link Jwt} or null if there is no reusable token
+     */
+    public Jwt get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (Instant.now().isBefore(entry.reuseUntil())) {
+            return entry.jwt();
+        }
+
+        evict(key, entry);
+        return null;
+    }
+
+    /**
+     * Cache a freshly signed token
+     *
+     * @param key        request key
+     * @param jwt        signed token
+     * @param reuseUntil instant after which the token is not handed out again
+     */
+    public void put(Key key, Jwt jwt, Instant reuseUntil) {
+        if (entries.size() >= maxEntries) {
+            purgeExpired();
+            if (entries.size() >= maxEntries) {
+                log.debug("Access token reuse cache is full, token for client {} will not be cached.", key.registeredClientId());
+                return;
+            }
+        }
+
+        Entry previous = entries.put(key, new Entry(jwt, reuseUntil, new AtomicReference<>()));
+        if (previous != null) {
+            keysByTokenValue.remove(previous.jwt().getTokenValue());
+        }
+        keysByTokenValue.put(jwt.getTokenValue(), key);
+    }
+
+    /**
+     * Register the caller as the one signing a token for the given key
+     *
+     * @param key    request key
+     * @param future future completed by the caller when signing is done
+     * @return {@link CompletableFuture} of the signing already in progress, or null if the caller must sign
+     */
+    CompletableFuture<Jwt> joinInFlight(Key key, CompletableFuture<Jwt> future) {
+        return inFlight.putIfAbsent(key, future);
+    }
+
+    /**
+     * Signal that the signing registered for the given key is done
+     *
+     * @param key    request key
+     * @param future future registered by {@link #joinInFlight(Key, CompletableFuture)}
+     */
+    void leaveInFlight(Key key, CompletableFuture<Jwt> future) {
+        inFlight.remove(key, future);
+    }
+
+    /**
+     * Decide if an authorization for the given token must be persisted. A reused token is persisted only once,
+     * with the authorization that first carried it.
+     *
+     * @param tokenValue      access token value
+     * @param authorizationId authorization id
+     * @return true if the authorization must be persisted
+     */
+    public boolean shouldPersist(String tokenValue, String authorizationId) {
+        Key key = keysByTokenValue.get(tokenValue);
+        Entry entry = key == null ? null : entries.get(key);
+        if (entry == null) {
+            return true;
+        }
+
+        return entry.authorizationId().compareAndSet(null, authorizationId) || authorizationId.equals(entry.authorizationId().get());
+    }
+
+    /**
+     * Evict a token, used when the token is revoked
+     *
+     * @param tokenValue access token value
+     */
+    public void evictToken(String tokenValue) {
+        Key key = keysByTokenValue.remove(tokenValue);
+        if (key != null) {
+            entries.computeIfPresent(key, (k, entry) -> entry.jwt().getTokenValue().equals(tokenValue) ? null : entry);
+        }
+    }
+
+    /**
+     * Evict all tokens of a client, used when the client is patched or deleted
+     *
+     * @param registeredClientId registered client id
+     */
+    public void evictClient(String registeredClientId) {
+        entries.forEach((key, entry) -> {
+            if (key.registeredClientId().equals(registeredClientId)) {
+                evict(key, entry);
+            }
+        });
+    }
+
+    /**
+     * Remove entries whose reuse window ended
+     */
+    private void purgeExpired() {
+        Instant now = Instant.now();
+        entries.forEach((key, entry) -> {
+            if (!now.isBefore(entry.reuseUntil())) {
+                evict(key, entry);
+            }
+        });
+    }
+
+    private void evict(Key key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            keysByTokenValue.remove(entry.jwt().getTokenValue(), key);
+        }
+    }
+
+    /**
+     * Identity of a token request, two requests with the same key receive the same token
+     *
+     * @param registeredClientId   registered client id
+     * @param scopes               authorized scopes
+     * @param additionalParameters additional parameters turned into claims
+     */
+    public record Key(String registeredClientId, Set<String> scopes, Map<String, Object> additionalParameters) {
+    }
+
+    /**
+     * Cached token
+     *
+     * @param jwt             signed token
+     * @param reuseUntil      instant after which the token is not handed out again
+     * @param authorizationId id of the authorization persisted for the token
+     */
+    private record Entry(Jwt jwt, Instant reuseUntil, AtomicReference<String> authorizationId) {
+    }
+}
@@ -0,0 +1,43 @@
+package com.authorizationserver.token;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the time between JVM start and the first issued token, published as 'application.first.token.time'
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@Component
+public class FirstTokenTimer {
+    /**
+     * Time to first token ( in ms ), 0 until a token was issued
+     */
+    private final AtomicLong timeToFirstToken = new AtomicLong();
+
+    public FirstTokenTimer(MeterRegistry meterRegistry) {
+        Gauge.builder("application.first.token.time", timeToFirstToken, AtomicLong::get)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Signal that a token was issued, only the first call is recorded
+     */
+    public void tokenIssued() {
+        if (timeToFirstToken.get() != 0) {
+            return;
+        }
+
+        long elapsed = Math.max(1, System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime());
+        if (timeToFirstToken.compareAndSet(0, elapsed)) {
+            log.info("First token issued {} ms after JVM start.", elapsed);
+        }
+    }
+}
@@ -0,0 +1,543 @@
+package com.authorizationserver.token;
+
+import com.authorizationserver.exception.ReferenceTokenStoreFullException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import sun.misc.Unsafe;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Node local store of reference tokens. Records are appended to fixed size memory-mapped segment files and located
+ * through {@link ReferenceTokenIndex}, so neither the records nor the index live on the java heap.
+ * Segments whose tokens all expired are unmapped and deleted, mostly expired segments have their live records copied forward first.
+ * Index entries of a deleted segment are skipped by lookups and purged afterwards in short steps, so compaction never
+ * holds the lock for a scan of the whole index.
+ * Revocation flips a state byte in place. The store survives restarts, the index is rebuilt by scanning the segments,
+ * writes reach the page cache but are not forced to disk per token.
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(value = "referenceTokens.enabled", havingValue = "true")
+public class MappedReferenceTokenStore {
+    /**
+     * Record header: length, expiry in epoch seconds, state, token length
+     */
+    private static final int HEADER_BYTES = 4 + 8 + 1 + 2;
+    private static final int EXPIRES_AT_OFFSET = 4;
+    private static final int STATE_OFFSET = 12;
+    private static final int TOKEN_LENGTH_OFFSET = 13;
+    private static final byte ACTIVE = 0;
+    private static final byte REVOKED = 1;
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d+)\\.tokens");
+    /**
+     * Index slots purged per write lock hold
+     */
+    private static final int PURGE_BATCH_SLOTS = 1 << 16;
+    /**
+     * Releases mappings of dropped segments, null when not accessible
+     */
+    private static final Unsafe UNSAFE = unsafe();
+
+    /**
+     * Directory of segment files
+     */
+    @Value("${referenceTokens.directory:./data/reference-tokens}")
+    private String directory;
+    /**
+     * Size of a segment file ( in bytes )
+     */
+    @Value("${referenceTokens.segmentSize:67108864}")
+    private Integer segmentSize;
+    /**
+     * Number of tokens the index is sized for at startup, it grows when needed
+     */
+    @Value("${referenceTokens.expectedTokens:1000000}")
+    private Integer expectedTokens;
+    /**
+     * Share of live bytes under which a segment is compacted
+     */
+    @Value("${referenceTokens.compactionThreshold:0.25}")
+    private Double compactionThreshold;
+
+    /**
+     * Guards segments and index, lookups share the read lock
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Segments by id, the last one receives appends
+     */
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    /**
+     * Used to publish store metrics
+     */
+    private final MeterRegistry meterRegistry;
+    /**
+     * Segments deleted by compaction
+     */
+    private final Counter segmentsDropped;
+    /**
+     * Tokens refused because the index is full
+     */
+    private final Counter indexFull;
+    /**
+     * Token locations
+     */
+    private ReferenceTokenIndex index;
+    /**
+     * Segment receiving appends
+     */
+    private Segment active;
+
+    public MappedReferenceTokenStore(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.segmentsDropped = Counter.builder("reference_token.store.segments.dropped").register(meterRegistry);
+        this.indexFull = Counter.builder("reference_token.store.index.full").register(meterRegistry);
+    }
+
+    /**
+     * Map existing segments and rebuild the index
+     *
+     * @throws IOException thrown when segments can't be mapped
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        Path path = Paths.get(directory);
+        Files.createDirectories(path);
+        index = new ReferenceTokenIndex(expectedTokens, location -> segments.containsKey(segmentOf(location)));
+
+        try (Stream<Path> files = Files.list(path)) {
+            for (Path file : files.toList()) {
+                Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    int id = Integer.parseInt(matcher.group(1));
+                    segments.put(id, map(id, file));
+                }
+            }
+        }
+
+        long now = Instant.now().getEpochSecond();
+        for (Segment segment : segments.values()) {
+            load(segment, now);
+        }
+        active = segments.isEmpty() ? createSegment(0) : segments.lastEntry().getValue();
+
+        Gauge.builder("reference_token.store.entries", this, store -> store.index.size()).register(meterRegistry);
+        Gauge.builder("reference_token.store.segments", segments, Map::size).register(meterRegistry);
+        Gauge.builder("reference_token.store.index.bytes", this, store -> store.index.sizeInBytes()).baseUnit("bytes").register(meterRegistry);
+        log.info("Reference token store opened with {} segment(s) and {} live token(s).", segments.size(), index.size());
+    }
+
+    /**
+     * Store a token
+     *
+     * @param tokenValue token value
+     * @param expiresAt  token expiry
+     * @param payload    authorization data
+     * @return false if the record does not fit in a segment
+     * @throws ReferenceTokenStoreFullException thrown when the index can't hold another token
+     */
+    public boolean put(String tokenValue, Instant expiresAt, byte[] payload) {
+        byte[] token = tokenValue.getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_BYTES + token.length + payload.length;
+        if (length > segmentSize || token.length > Short.MAX_VALUE) {
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            Segment segment = segmentWithRoom(length);
+            int offset = segment.writeOffset;
+            MappedByteBuffer buffer = segment.buffer;
+            buffer.putLong(offset + EXPIRES_AT_OFFSET, expiresAt.getEpochSecond());
+            buffer.put(offset + STATE_OFFSET, ACTIVE);
+            buffer.putShort(offset + TOKEN_LENGTH_OFFSET, (short) token.length);
+            buffer.put(offset + HEADER_BYTES, token);
+            buffer.put(offset + HEADER_BYTES + token.length, payload);
+            buffer.putInt(offset, length);
+            segment.appended(length, expiresAt.getEpochSecond());
+
+            if (!index.put(hash(token), location(segment.id, offset), candidate -> holds(candidate, token))) {
+                // the record stays unindexed, compaction counts it as dead
+                indexFull.increment();
+                throw new ReferenceTokenStoreFullException("Reference token index is full.");
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieve a token that did not expire
+     *
+     * @param tokenValue token value
+     * @return {@link StoredToken} or null if the token is unknown or expired
+     */
+    public StoredToken get(String tokenValue) {
+        byte[] token = tokenValue.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            long location = index.get(hash(token), candidate -> holds(candidate, token));
+            if (location < 0) {
+                return null;
+            }
+
+            MappedByteBuffer buffer = segments.get(segmentOf(location)).buffer;
+            int offset = offsetOf(location);
+            long expiresAt = buffer.getLong(offset + EXPIRES_AT_OFFSET);
+            if (expiresAt <= Instant.now().getEpochSecond()) {
+                return null;
+            }
+
+            int payloadOffset = offset + HEADER_BYTES + token.length;
+            byte[] payload = new byte[buffer.getInt(offset) - HEADER_BYTES - token.length];
+            buffer.get(payloadOffset, payload);
+            return new StoredToken(payload, buffer.get(offset + STATE_OFFSET) == REVOKED);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Mark a token as revoked, it stays indexed until its segment is dropped so it can't be resurrected by an older copy
+     *
+     * @param tokenValue token value
+     * @return false if the token is not stored
+     */
+    public boolean revoke(String tokenValue) {
+        byte[] token = tokenValue.getBytes(StandardCharsets.UTF_8);
+        lock.writeLock().lock();
+        try {
+            long location = index.get(hash(token), candidate -> holds(candidate, token));
+            if (location < 0) {
+                return false;
+            }
+
+            segments.get(segmentOf(location)).buffer.put(offsetOf(location) + STATE_OFFSET, REVOKED);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop expired segments and copy live records out of mostly expired ones, then purge the index entries of dropped segments
+     */
+    @Scheduled(fixedDelayString = "${referenceTokens.compactionInterval:60000}")
+    public void compact() {
+        long now = Instant.now().getEpochSecond();
+        boolean dropped = false;
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values().toArray(Segment[]::new)) {
+                if (segment == active) {
+                    continue;
+                }
+
+                if (segment.maxExpiresAt <= now) {
+                    drop(segment);
+                    dropped = true;
+                } else if (liveBytes(segment, now) < segment.writeOffset * compactionThreshold) {
+                    copyLiveRecords(segment, now);
+                    drop(segment);
+                    dropped = true;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (dropped) {
+            purgeIndex();
+        }
+    }
+
+    /**
+     * Flush segments to disk on shutdown
+     */
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Index the records of a segment, called in segment order so newer copies of a token replace older ones
+     *
+     * @param segment segment
+     * @param now     current epoch second
+     */
+    private void load(Segment segment, long now) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (offset + HEADER_BYTES <= segmentSize) {
+            int length = buffer.getInt(offset);
+            if (length <= 0) {
+                break;
+            }
+
+            long expiresAt = buffer.getLong(offset + EXPIRES_AT_OFFSET);
+            segment.appended(length, expiresAt);
+            if (expiresAt > now) {
+                byte[] token = tokenAt(buffer, offset);
+                if (!index.put(hash(token), location(segment.id, offset), candidate -> holds(candidate, token))) {
+                    indexFull.increment();
+                }
+            }
+            offset += length;
+        }
+    }
+
+    /**
+     * @param segment segment
+     * @param now     current epoch second
+     * @return bytes of records that did not expire and are still indexed at their location in the segment
+     */
+    private long liveBytes(Segment segment, long now) {
+        long liveBytes = 0;
+        for (int offset = 0; offset < segment.writeOffset; offset += segment.buffer.getInt(offset)) {
+            if (isLive(segment, offset, now)) {
+                liveBytes += segment.buffer.getInt(offset);
+            }
+        }
+        return liveBytes;
+    }
+
+    private void copyLiveRecords(Segment segment, long now) {
+        MappedByteBuffer source = segment.buffer;
+        for (int offset = 0; offset < segment.writeOffset; offset += source.getInt(offset)) {
+            if (!isLive(segment, offset, now)) {
+                continue;
+            }
+
+            int length = source.getInt(offset);
+            Segment target = segmentWithRoom(length);
+            int targetOffset = target.writeOffset;
+            target.buffer.put(targetOffset + 4, source, offset + 4, length - 4);
+            target.buffer.putInt(targetOffset, length);
+            target.appended(length, source.getLong(offset + EXPIRES_AT_OFFSET));
+
+            byte[] token = tokenAt(source, offset);
+            index.put(hash(token), location(target.id, targetOffset), candidate -> holds(candidate, token));
+        }
+    }
+
+    private boolean isLive(Segment segment, int offset, long now) {
+        if (segment.buffer.getLong(offset + EXPIRES_AT_OFFSET) <= now) {
+            return false;
+        }
+
+        byte[] token = tokenAt(segment.buffer, offset);
+        return index.get(hash(token), candidate -> holds(candidate, token)) == location(segment.id, offset);
+    }
+
+    /**
+     * Remove index entries of dropped segments, taking the write lock for one batch of slots at a time
+     */
+    private void purgeIndex() {
+        int slot = 0;
+        while (slot >= 0) {
+            lock.writeLock().lock();
+            try {
+                slot = index.purge(slot, PURGE_BATCH_SLOTS);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Remove a segment, its index entries no longer match and are purged later. Called under the write lock, so no
+     * lookup holds the buffer and its mapping can be released before the file is deleted
+     *
+     * @param segment segment
+     */
+    private void drop(Segment segment) {
+        segments.remove(segment.id);
+        unmap(segment.buffer);
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            log.warn("Reference token segment {} could not be deleted: {}", segment.path, e.getMessage());
+        }
+        segmentsDropped.increment();
+    }
+
+    /**
+     * Release a mapping now instead of when its buffer is collected, otherwise the disk space of a deleted segment
+     * stays in use and the mapping counts against the process limit until a GC finds the buffer
+     *
+     * @param buffer mapped buffer, must not be accessed afterwards
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (UNSAFE == null) {
+            return;
+        }
+
+        try {
+            UNSAFE.invokeCleaner(buffer);
+        } catch (RuntimeException e) {
+            log.warn("Reference token segment could not be unmapped, it is released when collected: {}", e.getMessage());
+        }
+    }
+
+    private static Unsafe unsafe() {
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (Unsafe) field.get(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Dropped reference token segments are unmapped when collected: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Segment segmentWithRoom(int length) {
+        if (active.writeOffset + length > segmentSize) {
+            active = createSegment(active.id + 1);
+        }
+        return active;
+    }
+
+    private Segment createSegment(int id) {
+        try {
+            Segment segment = map(id, Paths.get(directory, "segment-" + id + ".tokens"));
+            segments.put(id, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Reference token segment could not be created.", e);
+        }
+    }
+
+    private Segment map(int id, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        }
+    }
+
+    /**
+     * @param location candidate location
+     * @param token    token bytes
+     * @return true if the record at the location holds the token, false if its segment was dropped
+     */
+    private boolean holds(long location, byte[] token) {
+        Segment segment = segments.get(segmentOf(location));
+        if (segment == null) {
+            return false;
+        }
+
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = offsetOf(location);
+        if (buffer.getShort(offset + TOKEN_LENGTH_OFFSET) != token.length) {
+            return false;
+        }
+
+        for (int i = 0; i < token.length; i++) {
+            if (buffer.get(offset + HEADER_BYTES + i) != token[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] tokenAt(MappedByteBuffer buffer, int offset) {
+        byte[] token = new byte[buffer.getShort(offset + TOKEN_LENGTH_OFFSET)];
+        buffer.get(offset + HEADER_BYTES, token);
+        return token;
+    }
+
+    /**
+     * FNV-1a followed by a 64 bit finalizer, never returns 0 since the index uses it to mark empty slots
+     *
+     * @param token token bytes
+     * @return token hash
+     */
+    private static long hash(byte[] token) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : token) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static long location(int segmentId, int offset) {
+        return ((long) segmentId << 32) | offset;
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    /**
+     * Stored token
+     *
+     * @param payload authorization data
+     * @param revoked true if the token was revoked
+     */
+    public record StoredToken(byte[] payload, boolean revoked) {
+    }
+
+    /**
+     * Mapped segment file
+     */
+    private static class Segment {
+        private final int id;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writeOffset;
+        private long maxExpiresAt;
+
+        private Segment(int id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        private void appended(int length, long expiresAt) {
+            writeOffset += length;
+            maxExpiresAt = Math.max(maxExpiresAt, expiresAt);
+        }
+    }
+}
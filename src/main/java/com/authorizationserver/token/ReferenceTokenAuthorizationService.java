@@ -0,0 +1,131 @@
+package com.authorizationserver.token;
+
+import com.authorizationserver.exception.ReferenceTokenStoreFullException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+
+/**
+ * {@link OAuth2AuthorizationService} that keeps authorizations of reference access tokens in {@link MappedReferenceTokenStore}
+ * instead of the delegate. Reference tokens are told apart from JWTs by the absence of '.', authorizations carrying other
+ * tokens, and records too large for a segment, go to the delegate. Lookups by id are served by the delegate only.
+ * When the store's index is full the token request fails with 'temporarily_unavailable' ( 503 ).
+ *
+ * @author Blajan George
+ */
+@Slf4j
+public class ReferenceTokenAuthorizationService implements OAuth2AuthorizationService {
+    /**
+     * Service that stores every other authorization
+     */
+    private final OAuth2AuthorizationService delegate;
+    /**
+     * Store of reference tokens
+     */
+    private final MappedReferenceTokenStore store;
+    /**
+     * Serializes authorization data
+     */
+    private final StoredAuthorizationCodec codec;
+
+    public ReferenceTokenAuthorizationService(OAuth2AuthorizationService delegate,
+                                              MappedReferenceTokenStore store,
+                                              RegisteredClientRepository registeredClientRepository,
+                                              ObjectMapper objectMapper) {
+        this.delegate = delegate;
+        this.store = store;
+        this.codec = new StoredAuthorizationCodec(registeredClientRepository, objectMapper);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        if (!isStorable(authorization)) {
+            delegate.save(authorization);
+            return;
+        }
+
+        OAuth2Authorization.Token<OAuth2AccessToken> accessToken = authorization.getAccessToken();
+        String tokenValue = accessToken.getToken().getTokenValue();
+        if (accessToken.isInvalidated()) {
+            if (!store.revoke(tokenValue)) {
+                delegate.save(authorization);
+            }
+            return;
+        }
+
+        boolean stored;
+        try {
+            stored = store.put(tokenValue, accessToken.getToken().getExpiresAt(), codec.serialize(authorization));
+        } catch (ReferenceTokenStoreFullException e) {
+            log.warn("Authorization {} refused: {}", authorization.getId(), e.getMessage());
+            throw new OAuth2AuthenticationException(new OAuth2Error(OAuth2ErrorCodes.TEMPORARILY_UNAVAILABLE, e.getMessage(), null));
+        }
+        if (!stored) {
+            log.debug("Authorization {} too large for reference token store, kept by delegate.", authorization.getId());
+            delegate.save(authorization);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        if (isStorable(authorization)) {
+            store.revoke(authorization.getAccessToken().getToken().getTokenValue());
+        }
+        delegate.remove(authorization);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OAuth2Authorization findById(String id) {
+        return delegate.findById(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        if ((tokenType == null || OAuth2TokenType.ACCESS_TOKEN.equals(tokenType)) && isReference(token)) {
+            MappedReferenceTokenStore.StoredToken storedToken = store.get(token);
+            if (storedToken != null) {
+                return codec.deserialize(token, storedToken.payload(), storedToken.revoked());
+            }
+        }
+
+        return delegate.findByToken(token, tokenType);
+    }
+
+    /**
+     * @param authorization authorization
+     * @return true if the authorization carries only a reference access token
+     */
+    private static boolean isStorable(OAuth2Authorization authorization) {
+        return StoredAuthorizationCodec.isStorable(authorization)
+                && isReference(authorization.getAccessToken().getToken().getTokenValue());
+    }
+
+    /**
+     * A compact JWS always holds two '.' separators, reference tokens are base64url and hold none
+     *
+     * @param tokenValue token value
+     * @return true if the token is a reference token
+     */
+    private static boolean isReference(String tokenValue) {
+        return tokenValue.indexOf('.') < 0;
+    }
+}
@@ -0,0 +1,255 @@
+package com.authorizationserver.token;
+
+import java.nio.ByteBuffer;
+import java.util.function.LongPredicate;
+
+/**
+ * Open addressing hash table kept in direct memory, maps the 64 bit hash of a reference token to the location of its record.
+ * Hashes are not unique, callers confirm a candidate location against the stored token. Entries whose record is gone
+ * stay until {@link #purge} reaches them or the table is rebuilt. Once the table reached its largest capacity and live
+ * entries fill it, new tokens are refused until a purge frees slots. Not thread safe, guarded by {@link MappedReferenceTokenStore}.
+ *
+ * @author Blajan George
+ */
+class ReferenceTokenIndex {
+    /**
+     * Bytes per slot, hash followed by location
+     */
+    private static final int SLOT_BYTES = 16;
+    /**
+     * Location of a removed entry, the slot keeps its hash so probing continues past it
+     */
+    private static final long REMOVED = -1L;
+    /**
+     * Maximum share of used slots ( live and removed ) before the table is rebuilt
+     */
+    private static final double MAX_LOAD = 0.7;
+    /**
+     * Largest capacity, keeps the table under the 2GB limit of a direct buffer
+     */
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    /**
+     * Slots, a zero hash marks an empty slot
+     */
+    private ByteBuffer slots;
+    /**
+     * Number of slots, always a power of two
+     */
+    private int capacity;
+    /**
+     * Number of live entries
+     */
+    private int size;
+    /**
+     * Number of live and removed entries
+     */
+    private int used;
+    /**
+     * Set when the table can't grow and a rebuild freed no slot, cleared when a purge removes an entry
+     */
+    private boolean full;
+    /**
+     * Largest capacity the table grows to
+     */
+    private final int maxCapacity;
+    /**
+     * Tells whether the record at a location still exists, entries failing it are dropped on rebuild
+     */
+    private final LongPredicate exists;
+
+    /**
+     * @param expectedEntries number of entries the table is sized for
+     * @param exists          tells whether the record at a location still exists
+     */
+    ReferenceTokenIndex(int expectedEntries, LongPredicate exists) {
+        this(expectedEntries, MAX_CAPACITY, exists);
+    }
+
+    /**
+     * @param expectedEntries number of entries the table is sized for
+     * @param maxCapacity     largest capacity, a power of two
+     * @param exists          tells whether the record at a location still exists
+     */
+    ReferenceTokenIndex(int expectedEntries, int maxCapacity, LongPredicate exists) {
+        this.maxCapacity = maxCapacity;
+        this.exists = exists;
+        allocate(Math.min(maxCapacity, capacityFor(expectedEntries)));
+    }
+
+    /**
+     * Find the location of a token
+     *
+     * @param hash    token hash
+     * @param matches confirms that the record at a location holds the token
+     * @return location or -1 if the token is not indexed
+     */
+    long get(long hash, LongPredicate matches) {
+        int mask = capacity - 1;
+        int slot = slotOf(hash);
+        for (int i = 0; i < capacity; i++) {
+            int offset = ((slot + i) & mask) * SLOT_BYTES;
+            long slotHash = slots.getLong(offset);
+            if (slotHash == 0) {
+                return -1;
+            }
+
+            if (slotHash == hash) {
+                long location = slots.getLong(offset + 8);
+                if (location != REMOVED && matches.test(location)) {
+                    return location;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Index a token, replacing the location of the same token if it is already indexed
+     *
+     * @param hash     token hash
+     * @param location record location
+     * @param matches  confirms that the record at a location holds the same token
+     * @return false if the token is new and the table is full, the token is then not indexed
+     */
+    boolean put(long hash, long location, LongPredicate matches) {
+        if (replace(hash, location, matches)) {
+            return true;
+        }
+        if (used + 1 > capacity * MAX_LOAD && (full || !rebuild())) {
+            return false;
+        }
+
+        int mask = capacity - 1;
+        int slot = slotOf(hash);
+        for (int i = 0; i < capacity; i++) {
+            int offset = ((slot + i) & mask) * SLOT_BYTES;
+            long slotHash = slots.getLong(offset);
+            if (slotHash == 0 || slots.getLong(offset + 8) == REMOVED) {
+                if (slotHash == 0) {
+                    used++;
+                }
+                slots.putLong(offset, hash);
+                slots.putLong(offset + 8, location);
+                size++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replace the location of a token that is already indexed
+     *
+     * @param hash     token hash
+     * @param location record location
+     * @param matches  confirms that the record at a location holds the same token
+     * @return true if the token was indexed
+     */
+    private boolean replace(long hash, long location, LongPredicate matches) {
+        int mask = capacity - 1;
+        int slot = slotOf(hash);
+        for (int i = 0; i < capacity; i++) {
+            int offset = ((slot + i) & mask) * SLOT_BYTES;
+            long slotHash = slots.getLong(offset);
+            if (slotHash == 0) {
+                return false;
+            }
+
+            long slotLocation = slots.getLong(offset + 8);
+            if (slotHash == hash && slotLocation != REMOVED && matches.test(slotLocation)) {
+                slots.putLong(offset + 8, location);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove entries whose record no longer exists from a range of slots, so a purge of the whole table can be split
+     * into short steps
+     *
+     * @param fromSlot first slot of the range
+     * @param count    number of slots in the range
+     * @return first slot after the range, -1 once the end of the table is reached
+     */
+    int purge(int fromSlot, int count) {
+        int toSlot = (int) Math.min(capacity, (long) fromSlot + count);
+        for (int offset = fromSlot * SLOT_BYTES; offset < toSlot * SLOT_BYTES; offset += SLOT_BYTES) {
+            if (slots.getLong(offset) != 0) {
+                long location = slots.getLong(offset + 8);
+                if (location != REMOVED && !exists.test(location)) {
+                    slots.putLong(offset + 8, REMOVED);
+                    size--;
+                    full = false;
+                }
+            }
+        }
+        return toSlot < capacity ? toSlot : -1;
+    }
+
+    /**
+     * @return number of indexed tokens, entries of removed records included until purged
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return direct memory used by the table
+     */
+    long sizeInBytes() {
+        return (long) capacity * SLOT_BYTES;
+    }
+
+    /**
+     * Copy entries whose record exists to a fresh table, doubling it when they alone pass half of the load limit and
+     * the table may still grow
+     *
+     * @return true if the table has room for one more entry
+     */
+    private boolean rebuild() {
+        ByteBuffer previous = slots;
+        int previousCapacity = capacity;
+        int newCapacity = size + 1 > capacity * MAX_LOAD / 2 && capacity < maxCapacity ? capacity * 2 : capacity;
+
+        allocate(newCapacity);
+        int mask = capacity - 1;
+        for (int offset = 0; offset < previousCapacity * SLOT_BYTES; offset += SLOT_BYTES) {
+            long hash = previous.getLong(offset);
+            long location = previous.getLong(offset + 8);
+            if (hash == 0 || location == REMOVED || !exists.test(location)) {
+                continue;
+            }
+
+            int slot = slotOf(hash);
+            while (slots.getLong((slot & mask) * SLOT_BYTES) != 0) {
+                slot++;
+            }
+            slots.putLong((slot & mask) * SLOT_BYTES, hash);
+            slots.putLong((slot & mask) * SLOT_BYTES + 8, location);
+            size++;
+            used++;
+        }
+
+        // at the largest capacity, live entries can fill the table, new tokens are refused until a purge frees a slot
+        full = used + 1 > capacity * MAX_LOAD;
+        return !full;
+    }
+
+    private void allocate(int newCapacity) {
+        slots = ByteBuffer.allocateDirect(newCapacity * SLOT_BYTES);
+        capacity = newCapacity;
+        size = 0;
+        used = 0;
+    }
+
+    private int slotOf(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+    }
+
+    private static int capacityFor(int expectedEntries) {
+        int capacity = Integer.highestOneBit((int) Math.min(MAX_CAPACITY, Math.max(16, (long) (expectedEntries / MAX_LOAD))));
+        return capacity * MAX_LOAD < expectedEntries && capacity < MAX_CAPACITY ? capacity * 2 : capacity;
+    }
+}
@@ -0,0 +1,75 @@
+package com.authorizationserver.token;
+
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+
+/**
+ * {@link OAuth2AuthorizationService} that keeps a single authorization per reused access token and evicts
+ * revoked tokens from {@link AccessTokenReuseCache}
+ *
+ * @author Blajan George
+ */
+public class ReuseAwareAuthorizationService implements OAuth2AuthorizationService {
+    /**
+     * Service that stores authorizations
+     */
+    private final OAuth2AuthorizationService delegate;
+    /**
+     * Cache of reusable tokens
+     */
+    private final AccessTokenReuseCache cache;
+
+    public ReuseAwareAuthorizationService(OAuth2AuthorizationService delegate, AccessTokenReuseCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        OAuth2Authorization.Token<OAuth2AccessToken> accessToken = authorization.getAccessToken();
+        if (accessToken != null) {
+            String tokenValue = accessToken.getToken().getTokenValue();
+            if (accessToken.isInvalidated()) {
+                cache.evictToken(tokenValue);
+            } else if (!cache.shouldPersist(tokenValue, authorization.getId())) {
+                return;
+            }
+        }
+
+        delegate.save(authorization);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        OAuth2Authorization.Token<OAuth2AccessToken> accessToken = authorization.getAccessToken();
+        if (accessToken != null) {
+            cache.evictToken(accessToken.getToken().getTokenValue());
+        }
+
+        delegate.remove(authorization);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OAuth2Authorization findById(String id) {
+        return delegate.findById(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        return delegate.findByToken(token, tokenType);
+    }
+}
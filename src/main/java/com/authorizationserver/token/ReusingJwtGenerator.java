@@ -0,0 +1,134 @@
+package com.authorizationserver.token;
+
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientCredentialsAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenContext;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static com.authorizationserver.constants.Constants.ACCESS_TOKEN_REUSE_PERCENTAGE_SETTING;
+
+/**
+ * Token generator that hands out the same access token for identical client_credentials requests of clients
+ * that opted in through {@link com.authorizationserver.constants.Constants#ACCESS_TOKEN_REUSE_PERCENTAGE_SETTING}.
+ * Concurrent identical requests wait for a single signing operation.
+ *
+ * @author Blajan George
+ */
+public class ReusingJwtGenerator implements OAuth2TokenGenerator<Jwt> {
+    /**
+     * Generator that signs new tokens
+     */
+    private final OAuth2TokenGenerator<Jwt> delegate;
+    /**
+     * Cache of reusable tokens
+     */
+    private final AccessTokenReuseCache cache;
+
+    public ReusingJwtGenerator(OAuth2TokenGenerator<Jwt> delegate, AccessTokenReuseCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    /**
+     * Return a reusable token if one exists, otherwise sign a new one
+     *
+     * @param context token context
+     * @return {@link Jwt}
+     */
+    @Override
+    public Jwt generate(OAuth2TokenContext context) {
+        Integer reusePercentage = reusePercentage(context);
+        if (reusePercentage == null) {
+            return delegate.generate(context);
+        }
+
+        OAuth2ClientCredentialsAuthenticationToken grant = context.getAuthorizationGrant();
+        AccessTokenReuseCache.Key key = new AccessTokenReuseCache.Key(
+                context.getRegisteredClient().getId(),
+                new HashSet<>(context.getAuthorizedScopes()),
+                new HashMap<>(grant.getAdditionalParameters()));
+
+        Jwt cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<Jwt> signing = new CompletableFuture<>();
+        CompletableFuture<Jwt> inFlight = cache.joinInFlight(key, signing);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+
+        try {
+            // a signer that finished between the lookup above and the registration left its token in the cache
+            Jwt signed = cache.get(key);
+            if (signed != null) {
+                signing.complete(signed);
+                return signed;
+            }
+
+            Jwt jwt = delegate.generate(context);
+            if (jwt != null && jwt.getIssuedAt() != null && jwt.getExpiresAt() != null) {
+                Duration lifetime = Duration.between(jwt.getIssuedAt(), jwt.getExpiresAt());
+                Instant reuseUntil = jwt.getIssuedAt().plus(lifetime.multipliedBy(reusePercentage).dividedBy(100));
+                cache.put(key, jwt, reuseUntil);
+            }
+            signing.complete(jwt);
+            return jwt;
+        } catch (RuntimeException e) {
+            signing.completeExceptionally(e);
+            throw e;
+        } finally {
+            cache.leaveInFlight(key, signing);
+        }
+    }
+
+    /**
+     * Resolve reuse percentage for the request
+     *
+     * @param context token context
+     * @return reuse percentage or null if the token must not be reused
+     */
+    private static Integer reusePercentage(OAuth2TokenContext context) {
+        if (!OAuth2TokenType.ACCESS_TOKEN.equals(context.getTokenType())
+                || !AuthorizationGrantType.CLIENT_CREDENTIALS.equals(context.getAuthorizationGrantType())
+                || !(context.getAuthorizationGrant() instanceof OAuth2ClientCredentialsAuthenticationToken)) {
+            return null;
+        }
+
+        RegisteredClient registeredClient = context.getRegisteredClient();
+        Object setting = registeredClient.getTokenSettings().getSetting(ACCESS_TOKEN_REUSE_PERCENTAGE_SETTING);
+        if (setting instanceof Number percentage && percentage.intValue() > 0) {
+            return percentage.intValue();
+        }
+
+        return null;
+    }
+
+    /**
+     * Wait for a signing started by another request
+     *
+     * @param inFlight signing in progress
+     * @return {@link Jwt}
+     */
+    private static Jwt await(CompletableFuture<Jwt> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.authorizationserver.token;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2TokenIntrospectionClaimNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Serializes authorizations carrying only an access token to compact json, for stores that keep them off the heap.
+ * The token value and its revocation state are kept by the store, next to the serialized data.
+ *
+ * @author Blajan George
+ */
+@Slf4j
+class StoredAuthorizationCodec {
+    /**
+     * Time claims, stored as epoch seconds
+     */
+    private static final Set<String> TIME_CLAIMS = Set.of(OAuth2TokenIntrospectionClaimNames.EXP,
+            OAuth2TokenIntrospectionClaimNames.IAT, OAuth2TokenIntrospectionClaimNames.NBF);
+
+    /**
+     * Used to resolve the client of a stored authorization
+     */
+    private final RegisteredClientRepository registeredClientRepository;
+    /**
+     * Used to serialize authorization data
+     */
+    private final ObjectMapper objectMapper;
+
+    StoredAuthorizationCodec(RegisteredClientRepository registeredClientRepository, ObjectMapper objectMapper) {
+        this.registeredClientRepository = registeredClientRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param authorization authorization
+     * @return true if the authorization carries only an access token with an expiry
+     */
+    static boolean isStorable(OAuth2Authorization authorization) {
+        return authorization.getAccessToken() != null
+                && authorization.getRefreshToken() == null
+                && authorization.getAccessToken().getToken().getExpiresAt() != null;
+    }
+
+    /**
+     * @param authorization storable authorization
+     * @return serialized authorization data
+     */
+    byte[] serialize(OAuth2Authorization authorization) {
+        OAuth2Authorization.Token<OAuth2AccessToken> accessToken = authorization.getAccessToken();
+        Map<String, Object> claims = new HashMap<>();
+        if (accessToken.getClaims() != null) {
+            accessToken.getClaims().forEach((name, value) -> claims.put(name, value instanceof Instant instant ? instant.getEpochSecond() : value));
+        }
+
+        StoredAuthorization storedAuthorization = new StoredAuthorization(
+                authorization.getId(),
+                authorization.getRegisteredClientId(),
+                authorization.getPrincipalName(),
+                authorization.getAuthorizationGrantType().getValue(),
+                authorization.getAuthorizedScopes(),
+                accessToken.getToken().getIssuedAt() == null ? null : accessToken.getToken().getIssuedAt().getEpochSecond(),
+                accessToken.getToken().getExpiresAt().getEpochSecond(),
+                claims);
+        try {
+            return objectMapper.writeValueAsBytes(storedAuthorization);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param tokenValue access token value
+     * @param payload    serialized authorization data
+     * @param revoked    true if the access token was revoked
+     * @return {@link OAuth2Authorization} or null if the data can't be read or its client no longer exists
+     */
+    OAuth2Authorization deserialize(String tokenValue, byte[] payload, boolean revoked) {
+        final StoredAuthorization storedAuthorization;
+        try {
+            storedAuthorization = objectMapper.readValue(payload, StoredAuthorization.class);
+        } catch (IOException e) {
+            log.warn("Stored authorization could not be read: {}", e.getMessage());
+            return null;
+        }
+
+        RegisteredClient registeredClient = registeredClientRepository.findById(storedAuthorization.registeredClientId());
+        if (registeredClient == null) {
+            return null;
+        }
+
+        Map<String, Object> claims = new HashMap<>(storedAuthorization.claims());
+        TIME_CLAIMS.forEach(name -> claims.computeIfPresent(name, (key, value) -> value instanceof Number seconds ? Instant.ofEpochSecond(seconds.longValue()) : value));
+
+        OAuth2AccessToken accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, tokenValue,
+                storedAuthorization.issuedAt() == null ? null : Instant.ofEpochSecond(storedAuthorization.issuedAt()),
+                Instant.ofEpochSecond(storedAuthorization.expiresAt()),
+                storedAuthorization.scopes());
+
+        return OAuth2Authorization.withRegisteredClient(registeredClient)
+                .id(storedAuthorization.id())
+                .principalName(storedAuthorization.principalName())
+                .authorizationGrantType(new AuthorizationGrantType(storedAuthorization.grantType()))
+                .authorizedScopes(storedAuthorization.scopes())
+                .token(accessToken, metadata -> {
+                    metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, claims);
+                    metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, revoked);
+                })
+                .build();
+    }
+
+    /**
+     * Authorization data kept for an access token
+     *
+     * @param id                 authorization id
+     * @param registeredClientId registered client id
+     * @param principalName      principal name
+     * @param grantType          authorization grant type
+     * @param scopes             authorized scopes
+     * @param issuedAt           issue time in epoch seconds
+     * @param expiresAt          expiry in epoch seconds
+     * @param claims             token claims, instants as epoch seconds
+     */
+    record StoredAuthorization(String id, String registeredClientId, String principalName, String grantType,
+                               Set<String> scopes, Long issuedAt, long expiresAt, Map<String, Object> claims) {
+    }
+}
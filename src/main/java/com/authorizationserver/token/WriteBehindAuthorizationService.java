@@ -0,0 +1,100 @@
+package com.authorizationserver.token;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+
+/**
+ * {@link OAuth2AuthorizationService} that persists access token authorizations through {@link WriteBehindAuthorizationStore},
+ * so issuing a token doesn't wait for a database insert. Authorizations carrying other tokens go to the delegate.
+ *
+ * @author Blajan George
+ */
+public class WriteBehindAuthorizationService implements OAuth2AuthorizationService {
+    /**
+     * Service that stores every other authorization
+     */
+    private final OAuth2AuthorizationService delegate;
+    /**
+     * Persistent store of access token authorizations
+     */
+    private final WriteBehindAuthorizationStore store;
+    /**
+     * Serializes authorization data
+     */
+    private final StoredAuthorizationCodec codec;
+
+    public WriteBehindAuthorizationService(OAuth2AuthorizationService delegate,
+                                           WriteBehindAuthorizationStore store,
+                                           RegisteredClientRepository registeredClientRepository,
+                                           ObjectMapper objectMapper) {
+        this.delegate = delegate;
+        this.store = store;
+        this.codec = new StoredAuthorizationCodec(registeredClientRepository, objectMapper);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        if (!StoredAuthorizationCodec.isStorable(authorization)) {
+            delegate.save(authorization);
+            return;
+        }
+
+        OAuth2Authorization.Token<OAuth2AccessToken> accessToken = authorization.getAccessToken();
+        store.save(new WriteBehindAuthorizationStore.Row(
+                authorization.getId(),
+                authorization.getRegisteredClientId(),
+                authorization.getPrincipalName(),
+                accessToken.getToken().getTokenValue(),
+                accessToken.getToken().getExpiresAt().getEpochSecond(),
+                accessToken.isInvalidated(),
+                codec.serialize(authorization)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        if (StoredAuthorizationCodec.isStorable(authorization)) {
+            store.delete(authorization.getId(), authorization.getAccessToken().getToken().getTokenValue());
+            return;
+        }
+
+        delegate.remove(authorization);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OAuth2Authorization findById(String id) {
+        WriteBehindAuthorizationStore.Row row = store.findById(id);
+        if (row != null) {
+            return codec.deserialize(row.accessTokenValue(), row.data(), row.revoked());
+        }
+
+        return delegate.findById(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        if (tokenType == null || OAuth2TokenType.ACCESS_TOKEN.equals(tokenType)) {
+            WriteBehindAuthorizationStore.Row row = store.findByToken(token);
+            if (row != null) {
+                return codec.deserialize(row.accessTokenValue(), row.data(), row.revoked());
+            }
+        }
+
+        return delegate.findByToken(token, tokenType);
+    }
+}
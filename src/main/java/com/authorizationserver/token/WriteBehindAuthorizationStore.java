@@ -0,0 +1,924 @@
+package com.authorizationserver.token;
+
+import com.authorizationserver.constants.Constants;
+import com.authorizationserver.db.resilience.DataAccessErrors;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Persistent store of access token authorizations with write-behind. Writes are acknowledged once buffered, a background
+ * writer drains them in multi-row upserts to the oauth2_authorization table. Buffered writes are coalesced by authorization
+ * id and served to reads before the database. When the buffer is full, and for writes still buffered at shutdown, writes are
+ * appended to spill files, also replayed after a restart. The writer replays 'authorizationStore.replayBatches' spilled
+ * batches after every buffered batch, so spill files drain under sustained load, and replays continuously when idle. Spilled
+ * writes are indexed by id
+ * and access token, reads find the latest one in its spill file. Later writes of an authorization with spilled writes are
+ * spilled after them, and replay only writes the latest spilled write of each authorization, so a deletion or revocation
+ * is never undone by an older write. A batch failing with an error that retrying can't fix is split until the failing
+ * writes are isolated, those are appended to a dead letter file. Rows are deleted 'authorizationStore.retention' ms after
+ * their token expired.
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(value = "authorizationStore.enabled", havingValue = "true")
+public class WriteBehindAuthorizationStore implements Runnable {
+    /**
+     * Columns of a row, in insert order
+     */
+    private static final String COLUMNS = "id, registered_client_id, principal_name, access_token_value, access_token_expires_at, access_token_revoked, data";
+    /**
+     * Placeholders of one row
+     */
+    private static final String ROW_VALUES = "(?, ?, ?, ?, ?, ?, ?)";
+    /**
+     * Number of placeholders of one row
+     */
+    private static final int ROW_PARAMETERS = 7;
+    /**
+     * Largest batch, keeps a multi-row statement under the 32767 bind parameters accepted by the driver
+     */
+    private static final int MAX_BATCH_SIZE = Short.MAX_VALUE / ROW_PARAMETERS;
+    /**
+     * Revocation of an existing row is kept, the rest of the row never changes after the first write
+     */
+    private static final String UPSERT_CONFLICT = " ON CONFLICT (id) DO UPDATE SET access_token_revoked = " +
+            "oauth2_authorization.access_token_revoked OR EXCLUDED.access_token_revoked";
+    /**
+     * Delete query, followed by one placeholder per id
+     */
+    private static final String DELETE_QUERY_PREFIX = "DELETE FROM oauth2_authorization WHERE id IN (";
+    /**
+     * Find by id query
+     */
+    private static final String FIND_BY_ID_QUERY = "SELECT " + COLUMNS + " FROM oauth2_authorization WHERE id = ?";
+    /**
+     * Find by access token query
+     */
+    private static final String FIND_BY_TOKEN_QUERY = "SELECT " + COLUMNS + " FROM oauth2_authorization WHERE access_token_value = ?";
+    /**
+     * Delete a chunk of expired rows, rows locked by the cleanup of another node are left to it
+     */
+    private static final String DELETE_EXPIRED_QUERY = "DELETE FROM oauth2_authorization WHERE id IN " +
+            "(SELECT id FROM oauth2_authorization WHERE access_token_expires_at < ? LIMIT ? FOR UPDATE SKIP LOCKED)";
+    /**
+     * Spill file suffix
+     */
+    private static final String SPILL_SUFFIX = ".spill";
+    /**
+     * Dead letter file, in the spill directory
+     */
+    private static final String DEAD_LETTER_FILE = "authorizations.dead";
+
+    /**
+     * Maximum number of buffered writes
+     */
+    @Value("${authorizationStore.queueCapacity:100000}")
+    private Integer queueCapacity;
+    /**
+     * Maximum number of rows written in one statement
+     */
+    @Value("${authorizationStore.batchSize:500}")
+    private Integer batchSize;
+    /**
+     * Spilled batches replayed after every buffered batch
+     */
+    @Value("${authorizationStore.replayBatches:1}")
+    private Integer replayBatches;
+    /**
+     * Delay before a failed batch is written again ( in ms )
+     */
+    @Value("${authorizationStore.retryDelay:1000}")
+    private Long retryDelay;
+    /**
+     * Time given to the writer to drain the buffer on shutdown ( in ms ), what is left is spilled
+     */
+    @Value("${authorizationStore.shutdownTimeout:10000}")
+    private Long shutdownTimeout;
+    /**
+     * Directory of spill files
+     */
+    @Value("${authorizationStore.spillDirectory:./data/authorization-spill}")
+    private String spillDirectory;
+    /**
+     * Time rows are kept after their token expired ( in ms )
+     */
+    @Value("${authorizationStore.retention:3600000}")
+    private Long retention;
+    /**
+     * Maximum number of expired rows deleted in one statement
+     */
+    @Value("${authorizationStore.cleanupBatchSize:10000}")
+    private Integer cleanupBatchSize;
+
+    /**
+     * Latest buffered write by authorization id
+     */
+    private final Map<String, Write> pending = new ConcurrentHashMap<>();
+    /**
+     * Authorization id of buffered writes by access token value
+     */
+    private final Map<String, String> pendingTokens = new ConcurrentHashMap<>();
+    /**
+     * Location of the latest spilled write by authorization id, until it is replayed
+     */
+    private final Map<String, SpillLocation> spilledWrites = new ConcurrentHashMap<>();
+    /**
+     * Authorization id of spilled writes by access token value
+     */
+    private final Map<String, String> spilledTokens = new ConcurrentHashMap<>();
+    /**
+     * Used to serialize spilled writes
+     */
+    private final ObjectMapper objectMapper;
+    /**
+     * Jdbc template for writes and cleanup
+     */
+    private final JdbcTemplate jdbcTemplate;
+    /**
+     * Jdbc template for lookups, with the token path query timeout
+     */
+    private final JdbcTemplate lookupJdbcTemplate;
+    /**
+     * Used to publish store metrics
+     */
+    private final MeterRegistry meterRegistry;
+    /**
+     * Rows written
+     */
+    private final Counter written;
+    /**
+     * Writes appended to spill files
+     */
+    private final Counter spilled;
+    /**
+     * Failed batch writes
+     */
+    private final Counter writeFailures;
+    /**
+     * Writes appended to the dead letter file
+     */
+    private final Counter deadLettered;
+    /**
+     * Expired rows deleted
+     */
+    private final Counter expired;
+    /**
+     * Guards the spill file
+     */
+    private final Object spillMonitor = new Object();
+    /**
+     * Row mapper
+     */
+    private final RowMapper<Row> rowMapper = (rs, rowNum) -> new Row(
+            rs.getString("id"),
+            rs.getString("registered_client_id"),
+            rs.getString("principal_name"),
+            rs.getString("access_token_value"),
+            rs.getTimestamp("access_token_expires_at").toInstant().getEpochSecond(),
+            rs.getBoolean("access_token_revoked"),
+            rs.getBytes("data"));
+    /**
+     * Authorization ids of buffered writes, in arrival order. An id in {@link #pending} is either queued here
+     * or part of the batch being written
+     */
+    private BlockingQueue<String> queue;
+    /**
+     * Writer thread
+     */
+    private Thread thread;
+    /**
+     * Writer running flag
+     */
+    private volatile boolean running;
+    /**
+     * Spill file receiving appends, null until the next overflow
+     */
+    private Path spillFile;
+    /**
+     * Stream appending to the spill file
+     */
+    private OutputStream spillStream;
+    /**
+     * Length of the spill file, offset of the next appended write
+     */
+    private long spillOffset;
+    /**
+     * Sequence of spill files created by this run, keeps names unique and ordered
+     */
+    private long spillSequence;
+    /**
+     * Spill file being replayed by the writer, null between files
+     */
+    private Path replayFile;
+    /**
+     * Stream reading the spill file being replayed
+     */
+    private InputStream replayStream;
+    /**
+     * Offset of the next line of the spill file being replayed
+     */
+    private long replayOffset;
+    /**
+     * Writes replayed from the spill file being replayed
+     */
+    private int replayedWrites;
+    /**
+     * Spilled writes read for replay and not written yet, kept for the retry when writing them fails
+     */
+    private final List<Write> replayBatch = new ArrayList<>();
+    /**
+     * Location of each write of {@link #replayBatch}
+     */
+    private final List<SpillLocation> replayLocations = new ArrayList<>();
+
+    public WriteBehindAuthorizationStore(DataSource dataSource, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.lookupJdbcTemplate = new JdbcTemplate(dataSource);
+        this.lookupJdbcTemplate.setQueryTimeout(Constants.LOOKUP_QUERY_TIMEOUT_SECONDS);
+        this.written = Counter.builder("authorization_store.written").register(meterRegistry);
+        this.spilled = Counter.builder("authorization_store.spilled").register(meterRegistry);
+        this.writeFailures = Counter.builder("authorization_store.write_failures").register(meterRegistry);
+        this.deadLettered = Counter.builder("authorization_store.dead_lettered").register(meterRegistry);
+        this.expired = Counter.builder("authorization_store.expired").register(meterRegistry);
+    }
+
+    /**
+     * Start the writer, spill files left by a previous run are indexed for reads and replayed between batches
+     *
+     * @throws IOException thrown when the spill directory can't be created or listed
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        Assert.isTrue(batchSize > 0 && batchSize <= MAX_BATCH_SIZE, "authorizationStore.batchSize must be between 1 and " + MAX_BATCH_SIZE);
+        Assert.isTrue(replayBatches > 0, "authorizationStore.replayBatches must be positive");
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder("authorization_store.pending", pending, Map::size).register(meterRegistry);
+        Gauge.builder("authorization_store.spilled_pending", spilledWrites, Map::size).register(meterRegistry);
+
+        List<Path> spillFiles = spillFiles();
+        if (!spillFiles.isEmpty()) {
+            for (Path file : spillFiles) {
+                readSpillFile(file, this::indexSpilled);
+            }
+            log.info("{} authorization spill file(s) found with {} authorization(s), will be replayed.", spillFiles.size(), spilledWrites.size());
+        }
+
+        running = true;
+        thread = new Thread(this, "authorization-store-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop the writer after the buffer is drained, writes still buffered after the shutdown timeout are spilled
+     *
+     * @throws InterruptedException thrown when interrupted while waiting for writer thread
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        thread.join(shutdownTimeout);
+        if (!pending.isEmpty()) {
+            log.warn("{} authorization(s) not written before shutdown, spilled to {}.", pending.size(), spillDirectory);
+            pending.values().forEach(this::spill);
+        }
+
+        synchronized (spillMonitor) {
+            closeSpillFile();
+        }
+    }
+
+    /**
+     * Buffer a row, replacing a buffered write of the same authorization
+     *
+     * @param row row
+     */
+    void save(Row row) {
+        enqueue(new Write(row.id(), row.accessTokenValue(), row));
+    }
+
+    /**
+     * Buffer the deletion of an authorization
+     *
+     * @param id         authorization id
+     * @param tokenValue access token value
+     */
+    void delete(String id, String tokenValue) {
+        enqueue(new Write(id, tokenValue, null));
+    }
+
+    /**
+     * @param id authorization id
+     * @return buffered, spilled or stored row, null if unknown or buffered for deletion
+     */
+    Row findById(String id) {
+        Write write = pending.get(id);
+        if (write != null) {
+            return write.row();
+        }
+
+        write = findSpilled(id);
+        if (write != null) {
+            return write.row();
+        }
+
+        return findOne(FIND_BY_ID_QUERY, id);
+    }
+
+    /**
+     * @param tokenValue access token value
+     * @return buffered, spilled or stored row, null if unknown or buffered for deletion
+     */
+    Row findByToken(String tokenValue) {
+        String id = pendingTokens.get(tokenValue);
+        Write write = id == null ? null : pending.get(id);
+        if (write != null && tokenValue.equals(write.accessTokenValue())) {
+            return write.row();
+        }
+
+        id = spilledTokens.get(tokenValue);
+        write = id == null ? null : findSpilled(id);
+        if (write != null && tokenValue.equals(write.accessTokenValue())) {
+            return write.row();
+        }
+
+        return findOne(FIND_BY_TOKEN_QUERY, tokenValue);
+    }
+
+    /**
+     * Delete rows of tokens expired for longer than the retention, in chunks so no statement holds many row locks
+     */
+    @Scheduled(initialDelayString = "${authorizationStore.cleanupInterval:60000}", fixedDelayString = "${authorizationStore.cleanupInterval:60000}")
+    public void deleteExpired() {
+        Timestamp before = Timestamp.from(Instant.now().minusMillis(retention));
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(DELETE_EXPIRED_QUERY, before, cleanupBatchSize);
+            total += deleted;
+        } while (deleted == cleanupBatchSize);
+
+        expired.increment(total);
+        log.debug("{} expired authorization(s) deleted.", total);
+    }
+
+    @Override
+    public void run() {
+        List<Write> batch = new ArrayList<>(batchSize);
+        int idle = 0;
+        try {
+            while (running || !queue.isEmpty() || !batch.isEmpty()) {
+                try {
+                    if (batch.isEmpty()) {
+                        collect(batch);
+                    }
+
+                    if (!batch.isEmpty()) {
+                        writeIsolating(batch);
+                        complete(batch);
+                        batch.clear();
+                        idle = 0;
+                        // spilled writes get a share of every round, otherwise they wait for an idle writer
+                        for (int i = 0; i < replayBatches && running; i++) {
+                            if (!replaySpilled()) {
+                                break;
+                            }
+                        }
+                    } else if (!running || !replaySpilled()) {
+                        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(Math.min(1_000, 10L << Math.min(idle++, 7))));
+                    }
+                } catch (Exception e) {
+                    writeFailures.increment();
+                    if (!running) {
+                        log.error("Authorizations could not be written during shutdown: {}", e.getMessage());
+                        return;
+                    }
+
+                    log.warn("Authorizations could not be written, retrying in {} ms: {}", retryDelay, e.getMessage());
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(retryDelay));
+                }
+            }
+        } finally {
+            closeReplayFile();
+        }
+    }
+
+    private void enqueue(Write write) {
+        // writes of an authorization with spilled writes follow them, replay keeps their order
+        if (spilledWrites.containsKey(write.id())) {
+            spill(write);
+            return;
+        }
+
+        Write previous = pending.put(write.id(), write);
+        if (write.accessTokenValue() != null) {
+            pendingTokens.put(write.accessTokenValue(), write.id());
+        }
+
+        // a replaced write is already queued or being written, the writer queues its id again when it finds it replaced
+        if (previous == null && !queue.offer(write.id())) {
+            spillPending(write);
+        }
+    }
+
+    /**
+     * Take the latest write of the next queued ids
+     *
+     * @param batch batch to fill
+     */
+    private void collect(List<Write> batch) {
+        String id;
+        while (batch.size() < batchSize && (id = queue.poll()) != null) {
+            Write write = pending.get(id);
+            if (write != null) {
+                batch.add(write);
+            }
+        }
+    }
+
+    /**
+     * Release written writes, writes replaced while being written are queued again
+     *
+     * @param batch written batch
+     */
+    private void complete(List<Write> batch) {
+        for (Write write : batch) {
+            if (pending.remove(write.id(), write)) {
+                if (write.accessTokenValue() != null) {
+                    pendingTokens.remove(write.accessTokenValue(), write.id());
+                }
+            } else if (!queue.offer(write.id())) {
+                Write latest = pending.get(write.id());
+                if (latest != null) {
+                    spillPending(latest);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write a batch, a batch failing with a non transient error is split in halves until the failing writes are
+     * isolated and dead lettered. Transient errors are thrown, the caller retries the whole batch, writes are idempotent
+     *
+     * @param batch writes
+     */
+    private void writeIsolating(List<Write> batch) {
+        try {
+            write(batch);
+        } catch (DataAccessException e) {
+            if (DataAccessErrors.isTransient(e)) {
+                throw e;
+            }
+
+            writeFailures.increment();
+            if (batch.size() == 1) {
+                deadLetter(batch.get(0), e);
+                return;
+            }
+
+            int half = batch.size() / 2;
+            writeIsolating(batch.subList(0, half));
+            writeIsolating(batch.subList(half, batch.size()));
+        }
+    }
+
+    /**
+     * Append a write that can never be stored to the dead letter file, for inspection
+     *
+     * @param write write
+     * @param e     write error
+     */
+    private void deadLetter(Write write, DataAccessException e) {
+        deadLettered.increment();
+        log.error("Authorization {} can't be written and is dead lettered: {}", write.id(), e.getMessage());
+        try {
+            Path dir = Paths.get(spillDirectory);
+            Files.createDirectories(dir);
+            Files.write(dir.resolve(DEAD_LETTER_FILE), line(write), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException ioe) {
+            log.error("Authorization {} could not be dead lettered and is lost: {}", write.id(), ioe.getMessage());
+        }
+    }
+
+    /**
+     * Write a batch in one upsert and one delete statement, the batch holds at most one write per authorization
+     *
+     * @param batch writes
+     */
+    private void write(Collection<Write> batch) {
+        List<Row> rows = new ArrayList<>(batch.size());
+        List<String> deletedIds = new ArrayList<>();
+        for (Write write : batch) {
+            if (write.row() == null) {
+                deletedIds.add(write.id());
+            } else {
+                rows.add(write.row());
+            }
+        }
+
+        if (!rows.isEmpty()) {
+            jdbcTemplate.update(upsertQuery(rows.size()), statement -> {
+                int i = 1;
+                for (Row row : rows) {
+                    statement.setString(i++, row.id());
+                    statement.setString(i++, row.registeredClientId());
+                    statement.setString(i++, row.principalName());
+                    statement.setString(i++, row.accessTokenValue());
+                    statement.setTimestamp(i++, Timestamp.from(Instant.ofEpochSecond(row.expiresAt())));
+                    statement.setBoolean(i++, row.revoked());
+                    statement.setBytes(i++, row.data());
+                }
+            });
+        }
+
+        if (!deletedIds.isEmpty()) {
+            jdbcTemplate.update(DELETE_QUERY_PREFIX + String.join(", ", Collections.nCopies(deletedIds.size(), "?")) + ")", deletedIds.toArray());
+        }
+
+        written.increment(batch.size());
+    }
+
+    private static String upsertQuery(int rows) {
+        StringBuilder query = new StringBuilder(100 + rows * (ROW_VALUES.length() + 2) + UPSERT_CONFLICT.length());
+        query.append("INSERT INTO oauth2_authorization (").append(COLUMNS).append(") VALUES ");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                query.append(", ");
+            }
+            query.append(ROW_VALUES);
+        }
+        return query.append(UPSERT_CONFLICT).toString();
+    }
+
+    private Row findOne(String query, String value) {
+        List<Row> result = lookupJdbcTemplate.query(query, rowMapper, value);
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * Move a buffered write to the spill file, unless it was replaced meanwhile
+     *
+     * @param write buffered write
+     */
+    private void spillPending(Write write) {
+        if (pending.remove(write.id(), write)) {
+            if (write.accessTokenValue() != null) {
+                pendingTokens.remove(write.accessTokenValue(), write.id());
+            }
+            spill(write);
+        }
+    }
+
+    /**
+     * Append a write to the spill file and index it, the line reaches the page cache before this returns
+     *
+     * @param write write
+     */
+    private void spill(Write write) {
+        synchronized (spillMonitor) {
+            try {
+                if (spillStream == null) {
+                    Path dir = Paths.get(spillDirectory);
+                    Files.createDirectories(dir);
+                    spillFile = dir.resolve(String.format("authorizations-%d-%06d%s", System.currentTimeMillis(), spillSequence++, SPILL_SUFFIX));
+                    spillStream = new BufferedOutputStream(Files.newOutputStream(spillFile, StandardOpenOption.CREATE_NEW));
+                    spillOffset = 0;
+                }
+
+                byte[] line = line(write);
+                spillStream.write(line);
+                spillStream.flush();
+                indexSpilled(write, new SpillLocation(spillFile, spillOffset));
+                spillOffset += line.length;
+                spilled.increment();
+            } catch (IOException e) {
+                log.error("Authorization {} could not be spilled and is lost: {}", write.id(), e.getMessage());
+                closeSpillFile();
+            }
+        }
+    }
+
+    /**
+     * Write the next batch of spilled writes, oldest spill file first. A spill file is deleted once every write in it
+     * is replayed. Opening a file closes the current spill file, so new overflows go to a new file. Only the latest
+     * spilled write of each authorization is written, once written it is read from the database. Writes that failed
+     * are kept and written again by the next call
+     *
+     * @return true if spilled writes were replayed or a spill file was finished
+     * @throws IOException thrown when spill files can't be read or deleted
+     */
+    private boolean replaySpilled() throws IOException {
+        if (replayBatch.isEmpty()) {
+            if (replayStream == null && !openReplayFile()) {
+                return false;
+            }
+
+            byte[] line = null;
+            while (replayBatch.size() < batchSize && (line = readLine(replayStream)) != null) {
+                SpillLocation location = new SpillLocation(replayFile, replayOffset);
+                replayOffset += line.length + 1;
+                Write write = parse(line, replayFile);
+                // a later spilled write of the same authorization replaces this one, it may be in a later file
+                if (write != null && location.equals(spilledWrites.get(write.id()))) {
+                    replayBatch.add(write);
+                    replayLocations.add(location);
+                }
+            }
+
+            if (line == null && replayBatch.isEmpty()) {
+                finishReplayFile();
+                return true;
+            }
+        }
+
+        replayedWrites += replay(replayBatch, replayLocations);
+        return true;
+    }
+
+    /**
+     * Open the oldest spill file for replay
+     *
+     * @return true if a spill file was opened
+     * @throws IOException thrown when spill files can't be listed or opened
+     */
+    private boolean openReplayFile() throws IOException {
+        synchronized (spillMonitor) {
+            List<Path> files = spillFiles();
+            if (files.isEmpty()) {
+                return false;
+            }
+            closeSpillFile();
+            replayFile = files.get(0);
+        }
+
+        replayStream = new BufferedInputStream(Files.newInputStream(replayFile));
+        replayOffset = 0;
+        replayedWrites = 0;
+        return true;
+    }
+
+    /**
+     * Delete a spill file whose writes are all replayed
+     *
+     * @throws IOException thrown when the file can't be deleted
+     */
+    private void finishReplayFile() throws IOException {
+        Path file = replayFile;
+        int replayed = replayedWrites;
+        closeReplayFile();
+        Files.delete(file);
+        log.info("{} spilled authorization write(s) replayed from {}.", replayed, file.getFileName());
+    }
+
+    private void closeReplayFile() {
+        if (replayStream == null) {
+            return;
+        }
+
+        try {
+            replayStream.close();
+        } catch (IOException e) {
+            log.warn("Error encountered when closing replayed authorization spill file.", e);
+        }
+        replayStream = null;
+        replayFile = null;
+    }
+
+    /**
+     * Write replayed writes, then drop them from the spill index unless a later write was spilled meanwhile
+     *
+     * @param batch     latest spilled writes
+     * @param locations location of each write
+     * @return number of writes
+     */
+    private int replay(List<Write> batch, List<SpillLocation> locations) {
+        writeIsolating(batch);
+        for (int i = 0; i < batch.size(); i++) {
+            Write write = batch.get(i);
+            if (spilledWrites.remove(write.id(), locations.get(i)) && write.accessTokenValue() != null) {
+                spilledTokens.remove(write.accessTokenValue(), write.id());
+            }
+        }
+
+        int size = batch.size();
+        batch.clear();
+        locations.clear();
+        return size;
+    }
+
+    /**
+     * Index a spilled write, replacing earlier spilled writes of the same authorization
+     *
+     * @param write    spilled write
+     * @param location location of the write
+     */
+    private void indexSpilled(Write write, SpillLocation location) {
+        spilledWrites.put(write.id(), location);
+        if (write.accessTokenValue() != null) {
+            spilledTokens.put(write.accessTokenValue(), write.id());
+        }
+    }
+
+    /**
+     * Read the latest spilled write of an authorization back from its spill file
+     *
+     * @param id authorization id
+     * @return spilled write, null if there is none or it was replayed meanwhile
+     */
+    private Write findSpilled(String id) {
+        SpillLocation location = spilledWrites.get(id);
+        if (location == null) {
+            return null;
+        }
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(location.file()))) {
+            in.skipNBytes(location.offset());
+            byte[] line = readLine(in);
+            return line == null ? null : objectMapper.readValue(line, Write.class);
+        } catch (IOException e) {
+            // replayed and deleted since the lookup, the row is in the database
+            log.debug("Spilled authorization {} not readable, reading the database: {}", id, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Read every write of a spill file with its location, unreadable lines are skipped
+     *
+     * @param file     spill file
+     * @param consumer receives each write
+     * @throws IOException thrown when the file can't be read
+     */
+    private void readSpillFile(Path file, SpilledWriteConsumer consumer) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            long offset = 0;
+            byte[] line;
+            while ((line = readLine(in)) != null) {
+                SpillLocation location = new SpillLocation(file, offset);
+                offset += line.length + 1;
+                Write write = parse(line, file);
+                if (write != null) {
+                    consumer.accept(write, location);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param line line of a spill file
+     * @param file spill file, for logging
+     * @return spilled write, null for empty or unreadable lines
+     */
+    private Write parse(byte[] line, Path file) {
+        if (line.length == 0) {
+            return null;
+        }
+
+        try {
+            return objectMapper.readValue(line, Write.class);
+        } catch (IOException e) {
+            log.warn("Unreadable line skipped in {}: {}", file.getFileName(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param in spill file stream
+     * @return next line without its terminator, null at the end of the file
+     * @throws IOException thrown when the file can't be read
+     */
+    private static byte[] readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(512);
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            line.write(b);
+        }
+
+        return b == -1 && line.size() == 0 ? null : line.toByteArray();
+    }
+
+    /**
+     * @param write write
+     * @return write serialized on one line, with its terminator
+     * @throws JsonProcessingException thrown when the write can't be serialized
+     */
+    private byte[] line(Write write) throws JsonProcessingException {
+        return (objectMapper.writeValueAsString(write) + '\n').getBytes(StandardCharsets.UTF_8);
+    }
+
+    private List<Path> spillFiles() throws IOException {
+        Path dir = Paths.get(spillDirectory);
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SPILL_SUFFIX))
+                    .sorted()
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void closeSpillFile() {
+        if (spillStream == null) {
+            return;
+        }
+
+        try {
+            spillStream.close();
+        } catch (IOException e) {
+            log.warn("Error encountered when closing authorization spill file.", e);
+        }
+        spillStream = null;
+        spillFile = null;
+    }
+
+    /**
+     * Stored authorization
+     *
+     * @param id                 authorization id
+     * @param registeredClientId registered client id
+     * @param principalName      principal name
+     * @param accessTokenValue   access token value
+     * @param expiresAt          access token expiry in epoch seconds
+     * @param revoked            true if the access token was revoked
+     * @param data               authorization data serialized by {@link StoredAuthorizationCodec}
+     */
+    record Row(String id, String registeredClientId, String principalName, String accessTokenValue,
+               long expiresAt, boolean revoked, byte[] data) {
+    }
+
+    /**
+     * Buffered write
+     *
+     * @param id               authorization id
+     * @param accessTokenValue access token value
+     * @param row              row to write, null to delete the authorization
+     */
+    record Write(String id, String accessTokenValue, Row row) {
+    }
+
+    /**
+     * Location of a spilled write
+     *
+     * @param file   spill file
+     * @param offset offset of the write's line in the file
+     */
+    private record SpillLocation(Path file, long offset) {
+    }
+
+    /**
+     * Receives the writes of a spill file
+     */
+    @FunctionalInterface
+    private interface SpilledWriteConsumer {
+        void accept(Write write, SpillLocation location) throws IOException;
+    }
+}
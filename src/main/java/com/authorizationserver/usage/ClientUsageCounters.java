@@ -0,0 +1,194 @@
+package com.authorizationserver.usage;
+
+import com.authorizationserver.db.repository.ClientUsageRepository;
+import com.authorizationserver.db.repository.CustomRegisteredClientRepository;
+import com.authorizationserver.db.resilience.DataAccessErrors;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Node local token request counters per client. Requests only increment a {@link LongAdder}, counts are moved to
+ * the client_usage table every flush interval in one batch of additive upserts, so every node can flush its own counts
+ * into the same time bucket. Counts are attributed to the bucket of the flush that writes them.
+ * Failed and rejected requests only name the client they claim to be, those are counted under that client when it is
+ * registered and under {@value #OTHER_CLIENTS} otherwise, so arbitrary client ids can't grow the counters or the table.
+ *
+ * @author Blajan George
+ */
+@Slf4j
+@Component
+public class ClientUsageCounters {
+    /**
+     * Key collecting failures of requests naming an unregistered client
+     */
+    public static final String OTHER_CLIENTS = "_other";
+
+    /**
+     * Bucket size of the usage table ( in ms )
+     */
+    @Value("${usage.bucketSize:3600000}")
+    private Long bucketSize;
+
+    /**
+     * Counters by client id
+     */
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+    /**
+     * Repo used to persist counts
+     */
+    private final ClientUsageRepository clientUsageRepository;
+    /**
+     * Client repository used to check requested client ids
+     */
+    private final CustomRegisteredClientRepository registeredClientRepository;
+
+    public ClientUsageCounters(ClientUsageRepository clientUsageRepository, CustomRegisteredClientRepository registeredClientRepository) {
+        this.clientUsageRepository = clientUsageRepository;
+        this.registeredClientRepository = registeredClientRepository;
+    }
+
+    /**
+     * Count a token request of an authenticated client
+     *
+     * @param clientId client id, requests without one are not counted
+     * @param outcome  request outcome
+     */
+    public void record(String clientId, UsageOutcome outcome) {
+        if (clientId == null) {
+            return;
+        }
+
+        counters.computeIfAbsent(clientId, k -> new Counters()).get(outcome).increment();
+    }
+
+    /**
+     * Count a token request by the client id it claims, without it having been authenticated
+     *
+     * @param clientId requested client id, requests without one are not counted
+     * @param outcome  request outcome
+     */
+    public void recordRequested(String clientId, UsageOutcome outcome) {
+        if (clientId == null) {
+            return;
+        }
+
+        record(isRegistered(clientId) ? clientId : OTHER_CLIENTS, outcome);
+    }
+
+    /**
+     * @param clientId requested client id
+     * @return true if the client has counts already or is registered, false if it is unknown or can't be checked
+     */
+    private boolean isRegistered(String clientId) {
+        if (counters.containsKey(clientId)) {
+            return true;
+        }
+
+        try {
+            return registeredClientRepository.findByClientId(clientId) != null;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Move counts to the usage table. Counts are added back when the database can't be written for now, a batch the
+     * database rejects is split to find the deltas it rejects, which are dropped.
+     */
+    @Scheduled(fixedDelayString = "${usage.flushInterval:60000}")
+    public void flush() {
+        Instant now = Instant.now();
+        Instant bucketStart = Instant.ofEpochMilli(now.toEpochMilli() - Math.floorMod(now.toEpochMilli(), bucketSize));
+
+        List<ClientUsageRepository.UsageDelta> deltas = new ArrayList<>();
+        counters.forEach((clientId, clientCounters) -> {
+            long issued = clientCounters.issued.sumThenReset();
+            long failed = clientCounters.failed.sumThenReset();
+            long rateLimited = clientCounters.rateLimited.sumThenReset();
+            if (issued != 0 || failed != 0 || rateLimited != 0) {
+                deltas.add(new ClientUsageRepository.UsageDelta(clientId, issued, failed, rateLimited));
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        write(bucketStart, deltas);
+    }
+
+    /**
+     * Write deltas, halving the batch when the database rejects it until the rejected deltas are found
+     *
+     * @param bucketStart start of the bucket
+     * @param deltas      deltas to write
+     */
+    private void write(Instant bucketStart, List<ClientUsageRepository.UsageDelta> deltas) {
+        try {
+            clientUsageRepository.addUsage(bucketStart, deltas);
+        } catch (DataAccessException e) {
+            if (DataAccessErrors.isTransient(e)) {
+                restore(deltas, e);
+            } else if (deltas.size() == 1) {
+                log.error("Usage of client {} was rejected by the database and is dropped: {}", deltas.get(0).clientId(), e.getMessage());
+            } else {
+                int half = deltas.size() / 2;
+                write(bucketStart, deltas.subList(0, half));
+                write(bucketStart, deltas.subList(half, deltas.size()));
+            }
+        } catch (RuntimeException e) {
+            restore(deltas, e);
+        }
+    }
+
+    /**
+     * Add deltas back to the counters, to be written by the next flush
+     *
+     * @param deltas deltas not written
+     * @param e      write error
+     */
+    private void restore(List<ClientUsageRepository.UsageDelta> deltas, RuntimeException e) {
+        log.warn("Usage of {} client(s) could not be flushed, will be retried: {}", deltas.size(), e.getMessage());
+        for (ClientUsageRepository.UsageDelta delta : deltas) {
+            Counters clientCounters = counters.computeIfAbsent(delta.clientId(), k -> new Counters());
+            clientCounters.issued.add(delta.issued());
+            clientCounters.failed.add(delta.failed());
+            clientCounters.rateLimited.add(delta.rateLimited());
+        }
+    }
+
+    /**
+     * Flush remaining counts on shutdown
+     */
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+
+    /**
+     * Counters of a client
+     */
+    private static class Counters {
+        private final LongAdder issued = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder rateLimited = new LongAdder();
+
+        private LongAdder get(UsageOutcome outcome) {
+            return switch (outcome) {
+                case ISSUED -> issued;
+                case FAILED -> failed;
+                case RATE_LIMITED -> rateLimited;
+            };
+        }
+    }
+}
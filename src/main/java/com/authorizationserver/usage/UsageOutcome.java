@@ -0,0 +1,12 @@
+package com.authorizationserver.usage;
+
+/**
+ * Enum to define outcome of a token request counted by {@link ClientUsageCounters}
+ *
+ * @author Blajan George
+ */
+public enum UsageOutcome {
+    ISSUED,
+    FAILED,
+    RATE_LIMITED
+}
@@ -1,23 +1,35 @@
 package com.authorizationserver.util;
 
+import com.authorizationserver.model.AccessTokenFormat;
 import com.authorizationserver.model.RegisterClientRequest;
 import com.authorizationserver.model.AuthenticationMethod;
 import com.authorizationserver.model.ClientResponse;
 import com.authorizationserver.model.Scope;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
 import lombok.experimental.UtilityClass;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.oauth2.core.AuthorizationGrantType;
 import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.settings.ClientSettings;
+import org.springframework.security.oauth2.server.authorization.settings.OAuth2TokenFormat;
 import org.springframework.security.oauth2.server.authorization.settings.TokenSettings;
 
+import java.text.ParseException;
 import java.time.Duration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import static com.authorizationserver.constants.Constants.ACCESS_TOKEN_REUSE_PERCENTAGE_SETTING;
+import static com.authorizationserver.constants.Constants.CLIENT_JWK_SET_SETTING;
 import static com.authorizationserver.constants.Constants.DEFAULT_TOKEN_AVAILABILITY_IN_MINUTES;
+import static com.authorizationserver.constants.Constants.MAX_JWK_SET_LENGTH;
 
 /**
  * Utility class for mapping
@@ -31,17 +43,29 @@ public class AuthenticationClientMapper {
      * Map {@link RegisterClientRequest} to {@link RegisteredClient}
      *
      * @param registerClientRequest Request entity
+     * @param clientSecret          client secret, supplied or generated, null for clients without secret
+     * @param passwordEncoder       encoder hashing the client secret
      * @return {@link RegisteredClient}
      */
     @SuppressWarnings("java:S3776")
-    public static RegisteredClient map(final RegisterClientRequest registerClientRequest, final BCryptPasswordEncoder bCryptPasswordEncoder) {
-        RegisteredClient.Builder registerClientBuilder = RegisteredClient.withId(UUID.randomUUID().toString()).clientId(registerClientRequest.clientId()).clientSecret(bCryptPasswordEncoder.encode(registerClientRequest.clientSecret()));
+    public static RegisteredClient map(final RegisterClientRequest registerClientRequest, final String clientSecret, final PasswordEncoder passwordEncoder) {
+        RegisteredClient.Builder registerClientBuilder = RegisteredClient.withId(UUID.randomUUID().toString()).clientId(registerClientRequest.clientId());
 
         final String clientName = registerClientRequest.clientName();
         final List<Scope> scopes = registerClientRequest.scopes();
         final List<AuthenticationMethod> clientAuthenticationMethods = registerClientRequest.clientAuthenticationMethods();
         final List<com.authorizationserver.model.AuthorizationGrantType> clientAuthorizationGrantTypes = registerClientRequest.clientAuthorizationGrantTypes();
         final Integer tokenTimeToLive = registerClientRequest.tokenTimeToLive();
+        final Integer tokenReusePercentage = registerClientRequest.tokenReusePercentage();
+        final Map<String, Object> jwks = registerClientRequest.jwks();
+        final AccessTokenFormat accessTokenFormat = registerClientRequest.accessTokenFormat();
+
+        if (clientSecret != null) {
+            if (clientSecret.isBlank()) {
+                throw new IllegalArgumentException("client_secret must not be blank if specified.");
+            }
+            registerClientBuilder.clientSecret(passwordEncoder.encode(clientSecret));
+        }
 
         if (clientName != null) {
             registerClientBuilder.clientName(clientName);
@@ -55,12 +79,19 @@ public class AuthenticationClientMapper {
             registerClientBuilder.scope(Scope.ALL.name());
         }
 
+        final Set<ClientAuthenticationMethod> authenticationMethods = new HashSet<>();
         if (clientAuthenticationMethods != null && !clientAuthenticationMethods.isEmpty()) {
             for (AuthenticationMethod clientAuthenticationMethod : clientAuthenticationMethods) {
-                registerClientBuilder.clientAuthenticationMethod(new ClientAuthenticationMethod(clientAuthenticationMethod.getAuthenticationMethodName()));
+                authenticationMethods.add(new ClientAuthenticationMethod(clientAuthenticationMethod.getAuthenticationMethodName()));
             }
         } else {
-            registerClientBuilder.clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC);
+            authenticationMethods.add(ClientAuthenticationMethod.CLIENT_SECRET_BASIC);
+        }
+        validateClientCredentials(authenticationMethods, clientSecret != null, jwks != null);
+        registerClientBuilder.clientAuthenticationMethods(methods -> methods.addAll(authenticationMethods));
+
+        if (jwks != null) {
+            registerClientBuilder.clientSettings(ClientSettings.builder().setting(CLIENT_JWK_SET_SETTING, toJwkSetSetting(jwks)).build());
         }
 
         if (clientAuthorizationGrantTypes != null && !clientAuthorizationGrantTypes.isEmpty()) {
@@ -71,25 +102,84 @@ public class AuthenticationClientMapper {
             registerClientBuilder.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS);
         }
 
-        registerClientBuilder.tokenSettings(TokenSettings.builder().accessTokenTimeToLive(Duration.ofMinutes(Objects.requireNonNullElse(tokenTimeToLive, DEFAULT_TOKEN_AVAILABILITY_IN_MINUTES))).build());
+        TokenSettings.Builder tokenSettingsBuilder = TokenSettings.builder().accessTokenTimeToLive(Duration.ofMinutes(Objects.requireNonNullElse(tokenTimeToLive, DEFAULT_TOKEN_AVAILABILITY_IN_MINUTES)));
+        if (tokenReusePercentage != null && tokenReusePercentage > 0) {
+            tokenSettingsBuilder.setting(ACCESS_TOKEN_REUSE_PERCENTAGE_SETTING, tokenReusePercentage);
+        }
+        if (accessTokenFormat != null) {
+            tokenSettingsBuilder.accessTokenFormat(new OAuth2TokenFormat(accessTokenFormat.getAccessTokenFormatName()));
+        }
+        registerClientBuilder.tokenSettings(tokenSettingsBuilder.build());
 
         return registerClientBuilder.build();
     }
 
+    /**
+     * Check that the client has the credentials its authentication methods need
+     *
+     * @param authenticationMethods client authentication methods
+     * @param hasSecret             true if the client has a secret
+     * @param hasJwks               true if the client has registered public keys
+     */
+    public static void validateClientCredentials(final Set<ClientAuthenticationMethod> authenticationMethods, final boolean hasSecret, final boolean hasJwks) {
+        if (!hasSecret && (authenticationMethods.contains(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+                || authenticationMethods.contains(ClientAuthenticationMethod.CLIENT_SECRET_POST))) {
+            throw new IllegalArgumentException("client_secret must not be blank.");
+        }
+
+        if (!hasJwks && authenticationMethods.contains(ClientAuthenticationMethod.PRIVATE_KEY_JWT)) {
+            throw new IllegalArgumentException("jwks must be specified for private_key_jwt.");
+        }
+    }
+
+    /**
+     * Validate a public JWK set and convert it to its client setting value
+     *
+     * @param jwks JWK set
+     * @return JWK set json
+     */
+    public static String toJwkSetSetting(final Map<String, Object> jwks) {
+        final JWKSet jwkSet;
+        try {
+            jwkSet = JWKSet.parse(jwks);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("jwks is not a valid JWK set: " + e.getMessage());
+        }
+
+        if (jwkSet.getKeys().isEmpty()) {
+            throw new IllegalArgumentException("jwks must contain at least one key.");
+        }
+        if (jwkSet.getKeys().stream().anyMatch(JWK::isPrivate)) {
+            throw new IllegalArgumentException("jwks must contain public keys only.");
+        }
+
+        final String jwkSetSetting = jwkSet.toString(true);
+        if (jwkSetSetting.length() > MAX_JWK_SET_LENGTH) {
+            throw new IllegalArgumentException("jwks must not be longer than " + MAX_JWK_SET_LENGTH + " characters.");
+        }
+        return jwkSetSetting;
+    }
+
     /**
      * Map {@link RegisteredClient} to {@link ClientResponse}
      *
      * @param registeredClient Db entity
+     * @param version          client version
      * @return {@link ClientResponse}
      */
-    public static ClientResponse map(final RegisteredClient registeredClient) {
+    public static ClientResponse map(final RegisteredClient registeredClient, final Long version) {
+        final Object tokenReusePercentage = registeredClient.getTokenSettings().getSetting(ACCESS_TOKEN_REUSE_PERCENTAGE_SETTING);
+
         return new ClientResponse(
                 registeredClient.getClientId(),
                 registeredClient.getClientName(),
                 registeredClient.getScopes(),
                 registeredClient.getClientAuthenticationMethods().stream().map(ClientAuthenticationMethod::getValue).map(String::toUpperCase).collect(Collectors.toSet()),
                 registeredClient.getAuthorizationGrantTypes().stream().map(AuthorizationGrantType::getValue).map(String::toUpperCase).collect(Collectors.toSet()),
-                (int) registeredClient.getTokenSettings().getAccessTokenTimeToLive().toMinutes());
+                (int) registeredClient.getTokenSettings().getAccessTokenTimeToLive().toMinutes(),
+                tokenReusePercentage instanceof Number percentage ? percentage.intValue() : 0,
+                registeredClient.getTokenSettings().getAccessTokenFormat().getValue(),
+                version);
     }
 }
 
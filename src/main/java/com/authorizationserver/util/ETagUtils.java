@@ -0,0 +1,74 @@
+package com.authorizationserver.util;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Utility class for entity tags derived from client versions
+ *
+ * @author Blajan George
+ */
+@UtilityClass
+public class ETagUtils {
+    /**
+     * Wildcard matching any current version
+     */
+    private static final String ANY = "*";
+    /**
+     * Prefix of weak entity tags
+     */
+    private static final String WEAK_PREFIX = "W/";
+
+    /**
+     * Format a version as entity tag
+     *
+     * @param version client version
+     * @return quoted entity tag
+     */
+    public static String format(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Parse the version named by an 'If-Match' header
+     *
+     * @param header entity tag or '*'
+     * @return version, null for '*', -1 when the header names no version or a weak tag so it can never match
+     */
+    public static Long parseVersion(String header) {
+        String tag = header.trim();
+        if (ANY.equals(tag)) {
+            return null;
+        }
+        // 'If-Match' uses the strong comparison, a weak tag never matches
+        if (tag.startsWith(WEAK_PREFIX)) {
+            return -1L;
+        }
+
+        try {
+            return Long.parseLong(tag.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Check an 'If-None-Match' header against a version
+     *
+     * @param header  comma separated entity tags or '*'
+     * @param version current version
+     * @return true if one of the tags names the version
+     */
+    public static boolean matches(String header, long version) {
+        String expected = format(version);
+        for (String tag : header.split(",")) {
+            String trimmed = tag.trim();
+            if (trimmed.startsWith(WEAK_PREFIX)) {
+                trimmed = trimmed.substring(WEAK_PREFIX.length());
+            }
+            if (ANY.equals(trimmed) || expected.equals(trimmed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
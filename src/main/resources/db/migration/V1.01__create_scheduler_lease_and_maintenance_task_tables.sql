@@ -0,0 +1,14 @@
+CREATE TABLE scheduler_lease
+(
+    name       varchar(100) NOT NULL,
+    owner      varchar(200) NOT NULL,
+    expires_at timestamp    NOT NULL,
+    PRIMARY KEY (name)
+);
+
+CREATE TABLE maintenance_task
+(
+    name        varchar(100) NOT NULL,
+    next_run_at timestamp    NOT NULL,
+    PRIMARY KEY (name)
+);
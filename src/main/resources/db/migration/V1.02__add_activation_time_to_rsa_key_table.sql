@@ -0,0 +1,7 @@
+ALTER TABLE rsa_key ADD COLUMN activation_time timestamp;
+
+UPDATE rsa_key SET activation_time = time;
+
+ALTER TABLE rsa_key ALTER COLUMN activation_time SET NOT NULL;
+
+CREATE INDEX activation_time_index ON rsa_key (activation_time DESC);
@@ -0,0 +1,11 @@
+CREATE TABLE token_audit
+(
+    jti         varchar(100)  NOT NULL,
+    client_id   varchar(100)  NOT NULL,
+    kid         varchar(100)  DEFAULT NULL,
+    claim_names varchar(2000) NOT NULL,
+    issued_at   timestamp     NOT NULL,
+    expires_at  timestamp     NOT NULL
+);
+
+CREATE INDEX token_audit_issued_at_index ON token_audit (issued_at);
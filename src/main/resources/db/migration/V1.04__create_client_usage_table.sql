@@ -0,0 +1,9 @@
+CREATE TABLE client_usage
+(
+    client_id    varchar(100) NOT NULL,
+    bucket_start timestamp    NOT NULL,
+    issued       bigint       NOT NULL DEFAULT 0,
+    failed       bigint       NOT NULL DEFAULT 0,
+    rate_limited bigint       NOT NULL DEFAULT 0,
+    PRIMARY KEY (client_id, bucket_start)
+);
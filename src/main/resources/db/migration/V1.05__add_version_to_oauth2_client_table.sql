@@ -0,0 +1,29 @@
+-- a client version is the id of the transaction that wrote it, taken without any lock, so client writes don't serialize
+-- on each other. Transactions commit out of id order, change feeds therefore only return versions below the oldest
+-- transaction still running ( the snapshot xmin ): every version under it is final and no later commit can add one
+-- behind a reader's cursor. Clients written by one transaction share a version, feeds resume from version and client_id.
+-- Updates that only change client_secret, such as rehashes on the token path, keep the version, the secret is not part
+-- of the client representation
+ALTER TABLE oauth2_client ADD COLUMN version bigint;
+UPDATE oauth2_client SET version = pg_current_xact_id()::text::bigint;
+ALTER TABLE oauth2_client ALTER COLUMN version SET NOT NULL;
+
+CREATE INDEX oauth2_client_version_index ON oauth2_client (version, client_id);
+
+CREATE FUNCTION oauth2_client_next_version() RETURNS trigger AS
+$$
+BEGIN
+    IF TG_OP = 'UPDATE' AND (to_jsonb(NEW) - 'client_secret' - 'version') = (to_jsonb(OLD) - 'client_secret' - 'version') THEN
+        NEW.version := OLD.version;
+    ELSE
+        NEW.version := pg_current_xact_id()::text::bigint;
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER oauth2_client_version_trigger
+    BEFORE INSERT OR UPDATE
+    ON oauth2_client
+    FOR EACH ROW
+EXECUTE FUNCTION oauth2_client_next_version();
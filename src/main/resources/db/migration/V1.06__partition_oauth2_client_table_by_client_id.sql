@@ -0,0 +1,84 @@
+-- oauth2_client is hash partitioned on client_id, every lookup, lock, update and delete by client_id touches one partition.
+-- A partitioned table can only enforce keys that contain the partition key, so client_id becomes the primary key and
+-- registration ids are kept unique by oauth2_client_registration, partitioned on id, which also resolves id lookups
+-- to a client_id. Row triggers on partitioned tables require Postgres 13 or later
+ALTER TABLE oauth2_client RENAME TO oauth2_client_unpartitioned;
+DROP INDEX oauth2_client_version_index;
+
+CREATE TABLE oauth2_client
+(
+    id                            varchar(100)  NOT NULL,
+    client_id                     varchar(100)  NOT NULL,
+    client_secret                 varchar(200)  DEFAULT NULL,
+    client_secret_expires_at      timestamp     DEFAULT NULL,
+    client_name                   varchar(200)  NOT NULL,
+    client_authentication_methods varchar(1000) NOT NULL,
+    authorization_grant_types     varchar(1000) NOT NULL,
+    redirect_uris                 varchar(1000) DEFAULT NULL,
+    scopes                        varchar(1000) NOT NULL,
+    client_settings               varchar(2000) NOT NULL,
+    token_settings                varchar(2000) NOT NULL,
+    version                       bigint        NOT NULL,
+    PRIMARY KEY (client_id)
+) PARTITION BY HASH (client_id);
+
+CREATE TABLE oauth2_client_registration
+(
+    id        varchar(100) NOT NULL,
+    client_id varchar(100) NOT NULL,
+    PRIMARY KEY (id)
+) PARTITION BY HASH (id);
+
+DO
+$$
+    BEGIN
+        FOR remainder IN 0..15
+            LOOP
+                EXECUTE format('CREATE TABLE oauth2_client_p%s PARTITION OF oauth2_client FOR VALUES WITH (MODULUS 16, REMAINDER %s)',
+                               lpad(remainder::text, 2, '0'), remainder);
+                EXECUTE format('CREATE TABLE oauth2_client_registration_p%s PARTITION OF oauth2_client_registration FOR VALUES WITH (MODULUS 16, REMAINDER %s)',
+                               lpad(remainder::text, 2, '0'), remainder);
+            END LOOP;
+    END
+$$;
+
+-- copied before the triggers exist so rows keep their versions
+INSERT INTO oauth2_client (id, client_id, client_secret, client_secret_expires_at, client_name, client_authentication_methods,
+                           authorization_grant_types, redirect_uris, scopes, client_settings, token_settings, version)
+SELECT id, client_id, client_secret, client_secret_expires_at, client_name, client_authentication_methods,
+       authorization_grant_types, redirect_uris, scopes, client_settings, token_settings, version
+FROM oauth2_client_unpartitioned;
+
+INSERT INTO oauth2_client_registration (id, client_id)
+SELECT id, client_id
+FROM oauth2_client_unpartitioned;
+
+DROP TABLE oauth2_client_unpartitioned;
+
+-- local to each partition, changes are read back through a merge of the partition indexes in version order
+CREATE INDEX oauth2_client_version_index ON oauth2_client (version, client_id);
+
+CREATE TRIGGER oauth2_client_version_trigger
+    BEFORE INSERT OR UPDATE
+    ON oauth2_client
+    FOR EACH ROW
+EXECUTE FUNCTION oauth2_client_next_version();
+
+CREATE FUNCTION oauth2_client_sync_registration() RETURNS trigger AS
+$$
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        DELETE FROM oauth2_client_registration WHERE id = OLD.id;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        INSERT INTO oauth2_client_registration (id, client_id) VALUES (NEW.id, NEW.client_id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER oauth2_client_registration_trigger
+    AFTER INSERT OR DELETE OR UPDATE OF id, client_id
+    ON oauth2_client
+    FOR EACH ROW
+EXECUTE FUNCTION oauth2_client_sync_registration();
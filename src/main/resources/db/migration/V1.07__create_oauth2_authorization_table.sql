@@ -0,0 +1,15 @@
+CREATE TABLE oauth2_authorization
+(
+    id                      varchar(100) NOT NULL,
+    registered_client_id    varchar(100) NOT NULL,
+    principal_name          varchar(200) NOT NULL,
+    access_token_value      text         NOT NULL,
+    access_token_expires_at timestamp    NOT NULL,
+    access_token_revoked    boolean      NOT NULL DEFAULT false,
+    data                    bytea        NOT NULL,
+    PRIMARY KEY (id)
+);
+
+-- signed tokens can be longer than a btree entry allows, lookups are by equality only
+CREATE INDEX oauth2_authorization_access_token_index ON oauth2_authorization USING hash (access_token_value);
+CREATE INDEX oauth2_authorization_expires_at_index ON oauth2_authorization (access_token_expires_at);
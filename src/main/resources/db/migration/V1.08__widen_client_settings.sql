@@ -0,0 +1,3 @@
+-- client_settings holds the registered JWK set of private_key_jwt clients, two 4096 bit RSA keys don't fit in 2000
+-- characters. Raising a varchar limit only changes the catalog, no partition is rewritten
+ALTER TABLE oauth2_client ALTER COLUMN client_settings TYPE varchar(10000);
@@ -0,0 +1,163 @@
+package com.authorizationserver.audit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ring buffer ordering and overflow: events are drained in publish order, a full buffer drops or blocks producers
+ * depending on the overflow strategy, drained slots are cleared.
+ *
+ * @author Blajan George
+ */
+class TokenAuditRingBufferTest {
+    /**
+     * Claims of every published event
+     */
+    private static final Map<String, Object> CLAIMS = Map.of("sub", "client");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void capacityIsRoundedUpToPowerOfTwo() {
+        new TokenAuditRingBuffer(5, TokenAuditRingBuffer.OverflowStrategy.DROP, meterRegistry);
+
+        assertEquals(8, meterRegistry.get("token.audit.capacity").gauge().value());
+    }
+
+    @Test
+    void drainsInPublishOrderAcrossWrapAround() {
+        TokenAuditRingBuffer ringBuffer = new TokenAuditRingBuffer(4, TokenAuditRingBuffer.OverflowStrategy.DROP, meterRegistry);
+        List<String> drained = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(publish(ringBuffer, "jti-" + i));
+            assertEquals(1, ringBuffer.drain(event -> drained.add(event.getJti()), 10));
+        }
+
+        assertEquals(List.of("jti-0", "jti-1", "jti-2", "jti-3", "jti-4", "jti-5", "jti-6", "jti-7", "jti-8", "jti-9"), drained);
+        assertEquals(0, ringBuffer.lag());
+    }
+
+    @Test
+    void drainStopsAtMaxEvents() {
+        TokenAuditRingBuffer ringBuffer = new TokenAuditRingBuffer(8, TokenAuditRingBuffer.OverflowStrategy.DROP, meterRegistry);
+        for (int i = 0; i < 5; i++) {
+            publish(ringBuffer, "jti-" + i);
+        }
+
+        assertEquals(3, ringBuffer.drain(event -> {
+        }, 3));
+        assertEquals(2, ringBuffer.lag());
+    }
+
+    @Test
+    void fullBufferDropsWithDropStrategy() {
+        TokenAuditRingBuffer ringBuffer = new TokenAuditRingBuffer(4, TokenAuditRingBuffer.OverflowStrategy.DROP, meterRegistry);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(publish(ringBuffer, "jti-" + i));
+        }
+
+        assertFalse(publish(ringBuffer, "dropped"));
+        assertEquals(1, meterRegistry.get("token.audit.dropped").counter().count());
+
+        List<String> drained = new ArrayList<>();
+        ringBuffer.drain(event -> drained.add(event.getJti()), 10);
+        assertEquals(List.of("jti-0", "jti-1", "jti-2", "jti-3"), drained);
+    }
+
+    @Test
+    void fullBufferBlocksWithBlockStrategyUntilDrained() throws Exception {
+        TokenAuditRingBuffer ringBuffer = new TokenAuditRingBuffer(4, TokenAuditRingBuffer.OverflowStrategy.BLOCK, meterRegistry);
+        for (int i = 0; i < 4; i++) {
+            publish(ringBuffer, "jti-" + i);
+        }
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch published = new CountDownLatch(1);
+            executor.submit(() -> {
+                publish(ringBuffer, "jti-4");
+                published.countDown();
+            });
+            assertFalse(published.await(100, TimeUnit.MILLISECONDS));
+
+            List<String> drained = new ArrayList<>();
+            ringBuffer.drain(event -> drained.add(event.getJti()), 1);
+            assertTrue(published.await(5, TimeUnit.SECONDS));
+            ringBuffer.drain(event -> drained.add(event.getJti()), 10);
+
+            assertEquals(List.of("jti-0", "jti-1", "jti-2", "jti-3", "jti-4"), drained);
+            assertEquals(0, meterRegistry.get("token.audit.dropped").counter().count());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentProducersPublishEveryEventOnce() throws Exception {
+        int producers = 8;
+        int eventsPerProducer = 10_000;
+        TokenAuditRingBuffer ringBuffer = new TokenAuditRingBuffer(1024, TokenAuditRingBuffer.OverflowStrategy.BLOCK, meterRegistry);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                executor.submit(() -> {
+                    for (int i = 0; i < eventsPerProducer; i++) {
+                        publish(ringBuffer, producer + "-" + i);
+                    }
+                });
+            }
+
+            // events of one producer keep their order, events of all producers are drained exactly once
+            int[] next = new int[producers];
+            int drained = 0;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (drained < producers * eventsPerProducer && System.nanoTime() < deadline) {
+                drained += ringBuffer.drain(event -> {
+                    String[] parts = event.getJti().split("-");
+                    int producer = Integer.parseInt(parts[0]);
+                    assertEquals(next[producer]++, Integer.parseInt(parts[1]));
+                }, 256);
+            }
+
+            assertEquals(producers * eventsPerProducer, drained);
+            for (int count : next) {
+                assertEquals(eventsPerProducer, count);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void drainedSlotIsCleared() {
+        TokenAuditRingBuffer ringBuffer = new TokenAuditRingBuffer(2, TokenAuditRingBuffer.OverflowStrategy.DROP, meterRegistry);
+        TokenAuditEvent[] slot = new TokenAuditEvent[1];
+        publish(ringBuffer, "jti");
+
+        ringBuffer.drain(event -> slot[0] = event, 1);
+
+        assertNull(slot[0].getJti());
+        assertNull(slot[0].getClientId());
+    }
+
+    private static boolean publish(TokenAuditRingBuffer ringBuffer, String jti) {
+        Instant now = Instant.now();
+        return ringBuffer.publish("client", "kid", jti, CLAIMS, now, now.plusSeconds(300));
+    }
+}
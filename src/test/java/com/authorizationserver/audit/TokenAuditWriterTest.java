@@ -0,0 +1,209 @@
+package com.authorizationserver.audit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Audit files and token_audit inserts: files roll on size without name collisions and every event is written once,
+ * rows failing transiently are retried, rows the database rejects are dead lettered without losing the rest of their batch.
+ *
+ * @author Blajan George
+ */
+class TokenAuditWriterTest {
+    /**
+     * Claims of every published event
+     */
+    private static final Map<String, Object> CLAIMS = Map.of("sub", "client", "scope", "ALL");
+
+    @TempDir
+    Path directory;
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final List<String> inserted = Collections.synchronizedList(new ArrayList<>());
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private TokenAuditRingBuffer ringBuffer;
+    private TokenAuditWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        ringBuffer = new TokenAuditRingBuffer(1024, TokenAuditRingBuffer.OverflowStrategy.BLOCK, meterRegistry);
+        writer = new TokenAuditWriter(ringBuffer, jdbcTemplate, meterRegistry);
+        ReflectionTestUtils.setField(writer, "directory", directory.toString());
+        ReflectionTestUtils.setField(writer, "maxFileSize", 104857600L);
+        ReflectionTestUtils.setField(writer, "batchSize", 50);
+        ReflectionTestUtils.setField(writer, "databaseEnabled", true);
+        ReflectionTestUtils.setField(writer, "retryDelay", 1L);
+        ReflectionTestUtils.setField(writer, "maxRetryDelay", 10L);
+        ReflectionTestUtils.setField(writer, "maxPendingRows", 100000);
+    }
+
+    @Test
+    void filesRolledInTheSameSecondDoNotCollide() throws Exception {
+        ReflectionTestUtils.setField(writer, "maxFileSize", 200L);
+        ReflectionTestUtils.setField(writer, "databaseEnabled", false);
+
+        writer.start();
+        publish(500, "jti-");
+        writer.stop();
+
+        List<String> lines = auditLines();
+        assertEquals(500, lines.size());
+        assertEquals(500, lines.stream().distinct().count());
+        assertTrue(auditFiles().size() > 1);
+    }
+
+    @Test
+    void fileSizeCountsBytes() throws Exception {
+        // a line is 143 characters but 223 bytes, the file only rolls after every line when sizes are counted in bytes
+        String jti = "€".repeat(40);
+        ReflectionTestUtils.setField(writer, "maxFileSize", 200L);
+        ReflectionTestUtils.setField(writer, "databaseEnabled", false);
+
+        writer.start();
+        publish(3, jti);
+        writer.stop();
+
+        for (Path file : auditFiles()) {
+            assertEquals(1, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+        }
+        assertEquals(3, auditFiles().size());
+        assertEquals(124, TokenAuditWriter.utf8Length(jti + "😀"));
+    }
+
+    @Test
+    void transientFailuresAreRetried() throws Exception {
+        AtomicInteger failures = new AtomicInteger(3);
+        when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class))).thenAnswer(invocation -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new TransientDataAccessResourceException("database unavailable");
+            }
+            inserted.addAll(jtis(invocation.getArgument(1)));
+            return 0;
+        });
+
+        writer.start();
+        publish(200, "jti-");
+        writer.stop();
+
+        assertEquals(jtis(200), inserted);
+        assertFalse(Files.exists(directory.resolve(TokenAuditWriter.DEAD_LETTER_FILE)));
+    }
+
+    @Test
+    void rejectedRowIsDeadLetteredAndRestOfBatchInserted() throws Exception {
+        when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class))).thenAnswer(invocation -> {
+            List<String> jtis = jtis(invocation.getArgument(1));
+            if (jtis.contains("jti-17")) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            inserted.addAll(jtis);
+            return 0;
+        });
+
+        writer.start();
+        publish(100, "jti-");
+        writer.stop();
+
+        List<String> expected = jtis(100);
+        expected.remove("jti-17");
+        assertEquals(expected, inserted);
+        List<String> deadLetters = Files.readAllLines(directory.resolve(TokenAuditWriter.DEAD_LETTER_FILE));
+        assertEquals(1, deadLetters.size());
+        assertTrue(deadLetters.get(0).contains("\"jti\":\"jti-17\""));
+        assertEquals(1, meterRegistry.get("token.audit.dead.lettered").counter().count());
+    }
+
+    @Test
+    void rowsStillFailingAtShutdownAreDeadLettered() throws Exception {
+        when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class)))
+                .thenThrow(new TransientDataAccessResourceException("database unavailable"));
+
+        writer.start();
+        publish(20, "jti-");
+        writer.stop();
+
+        assertEquals(20, Files.readAllLines(directory.resolve(TokenAuditWriter.DEAD_LETTER_FILE)).size());
+        assertEquals(20, auditLines().size());
+    }
+
+    private void publish(int count, String jtiPrefix) {
+        Instant now = Instant.now();
+        for (int i = 0; i < count; i++) {
+            ringBuffer.publish("client", "kid", jtiPrefix + i, CLAIMS, now, now.plusSeconds(300));
+        }
+    }
+
+    private List<Path> auditFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).toList();
+        }
+    }
+
+    private List<String> auditLines() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Path file : auditFiles()) {
+            lines.addAll(Files.readAllLines(file, StandardCharsets.UTF_8));
+        }
+        return lines;
+    }
+
+    private static List<String> jtis(int count) {
+        List<String> jtis = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            jtis.add("jti-" + i);
+        }
+        return jtis;
+    }
+
+    /**
+     * @param setter statement setter of an insert
+     * @return jti of every inserted row, in statement order
+     */
+    private static List<String> jtis(PreparedStatementSetter setter) throws SQLException {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        setter.setValues(statement);
+        ArgumentCaptor<Integer> index = ArgumentCaptor.forClass(Integer.class);
+        ArgumentCaptor<String> value = ArgumentCaptor.forClass(String.class);
+        verify(statement, atLeastOnce()).setString(index.capture(), value.capture());
+
+        List<String> jtis = new ArrayList<>();
+        for (int i = 0; i < index.getAllValues().size(); i++) {
+            if (index.getAllValues().get(i) % 6 == 1) {
+                jtis.add(value.getAllValues().get(i));
+            }
+        }
+        return jtis;
+    }
+}
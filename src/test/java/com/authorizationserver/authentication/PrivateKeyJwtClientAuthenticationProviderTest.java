@@ -0,0 +1,210 @@
+package com.authorizationserver.authentication;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContext;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContextHolder;
+import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.security.oauth2.server.authorization.settings.ClientSettings;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.authorizationserver.constants.Constants.CLIENT_JWK_SET_SETTING;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Client assertion checks of 'private_key_jwt': signature, audience, expiration and replay of the assertion id.
+ *
+ * @author Blajan George
+ */
+class PrivateKeyJwtClientAuthenticationProviderTest {
+    /**
+     * Client authenticating with assertions
+     */
+    private static final String CLIENT_ID = "private-key-jwt-client";
+    /**
+     * Issuer of the authorization server
+     */
+    private static final String ISSUER = "https://auth.example.com";
+    /**
+     * Token endpoint, the only accepted audience
+     */
+    private static final String TOKEN_ENDPOINT = "/api/v1/oauth2/token";
+    /**
+     * Authentication method set by the client assertion converter
+     */
+    private static final ClientAuthenticationMethod JWT_CLIENT_ASSERTION =
+            new ClientAuthenticationMethod("urn:ietf:params:oauth:client-assertion-type:jwt-bearer");
+
+    private static RSAKey clientKey;
+    private static RSAKey otherKey;
+
+    private RegisteredClient registeredClient;
+    private PrivateKeyJwtClientAuthenticationProvider provider;
+
+    @BeforeAll
+    static void generateKeys() throws JOSEException {
+        clientKey = new RSAKeyGenerator(2048).keyID("client-key").generate();
+        otherKey = new RSAKeyGenerator(2048).keyID("client-key").generate();
+    }
+
+    @BeforeEach
+    void setUp() {
+        registeredClient = RegisteredClient.withId(UUID.randomUUID().toString())
+                .clientId(CLIENT_ID)
+                .clientAuthenticationMethod(ClientAuthenticationMethod.PRIVATE_KEY_JWT)
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .scope("ALL")
+                .clientSettings(ClientSettings.builder().setting(CLIENT_JWK_SET_SETTING, new JWKSet(clientKey.toPublicJWK()).toString(true)).build())
+                .build();
+
+        ClientAssertionReplayCache replayCache = new ClientAssertionReplayCache();
+        ReflectionTestUtils.setField(replayCache, "maxEntries", 1000);
+        provider = new PrivateKeyJwtClientAuthenticationProvider(new InMemoryRegisteredClientRepository(registeredClient), replayCache);
+        ReflectionTestUtils.setField(provider, "maxAssertionLifetime", 300000L);
+        ReflectionTestUtils.setField(provider, "clockSkew", 60000L);
+
+        AuthorizationServerSettings settings = AuthorizationServerSettings.builder().issuer(ISSUER).tokenEndpoint(TOKEN_ENDPOINT).build();
+        AuthorizationServerContextHolder.setContext(new AuthorizationServerContext() {
+            @Override
+            public String getIssuer() {
+                return ISSUER;
+            }
+
+            @Override
+            public AuthorizationServerSettings getAuthorizationServerSettings() {
+                return settings;
+            }
+        });
+    }
+
+    @AfterEach
+    void resetContext() {
+        AuthorizationServerContextHolder.resetContext();
+    }
+
+    @Test
+    void validAssertionAuthenticates() throws JOSEException {
+        Authentication authentication = provider.authenticate(token(sign(clientKey, claims().build())));
+
+        OAuth2ClientAuthenticationToken clientAuthentication = assertInstanceOf(OAuth2ClientAuthenticationToken.class, authentication);
+        assertTrue(clientAuthentication.isAuthenticated());
+        assertEquals(ClientAuthenticationMethod.PRIVATE_KEY_JWT, clientAuthentication.getClientAuthenticationMethod());
+        assertEquals(registeredClient.getId(), clientAuthentication.getRegisteredClient().getId());
+    }
+
+    @Test
+    void assertionSignedWithUnregisteredKeyIsRejected() throws JOSEException {
+        assertRejected(sign(otherKey, claims().build()), "signature");
+    }
+
+    @Test
+    void assertionForAnotherAudienceIsRejected() throws JOSEException {
+        assertRejected(sign(clientKey, claims().audience("https://other.example.com/token").build()), "aud");
+        assertRejected(sign(clientKey, claims().audience((String) null).build()), "aud");
+    }
+
+    @Test
+    void expiredAssertionIsRejected() throws JOSEException {
+        Instant expiredBeyondSkew = Instant.now().minus(Duration.ofMinutes(2));
+
+        assertRejected(sign(clientKey, claims().expirationTime(Date.from(expiredBeyondSkew)).build()), "exp");
+    }
+
+    @Test
+    void assertionExpiringAfterMaxLifetimeIsRejected() throws JOSEException {
+        Instant tooFar = Instant.now().plus(Duration.ofMinutes(10));
+
+        assertRejected(sign(clientKey, claims().expirationTime(Date.from(tooFar)).build()), "exp");
+    }
+
+    @Test
+    void assertionWithoutExpirationIsRejected() throws JOSEException {
+        assertRejected(sign(clientKey, claims().expirationTime(null).build()), "exp");
+    }
+
+    @Test
+    void replayedAssertionIsRejected() throws JOSEException {
+        String assertion = sign(clientKey, claims().build());
+        provider.authenticate(token(assertion));
+
+        assertRejected(assertion, "jti");
+    }
+
+    @Test
+    void newAssertionIdIsAcceptedAfterAnother() throws JOSEException {
+        provider.authenticate(token(sign(clientKey, claims().build())));
+
+        assertInstanceOf(OAuth2ClientAuthenticationToken.class, provider.authenticate(token(sign(clientKey, claims().build()))));
+    }
+
+    @Test
+    void assertionWithoutIdIsRejected() throws JOSEException {
+        assertRejected(sign(clientKey, claims().jwtID(null).build()), "jti");
+    }
+
+    @Test
+    void evictedClientKeysAreForgotten() throws JOSEException {
+        provider.authenticate(token(sign(clientKey, claims().build())));
+        Map<?, ?> clientKeys = (Map<?, ?>) ReflectionTestUtils.getField(provider, "clientKeys");
+        assertEquals(1, clientKeys.size());
+
+        provider.evictClient(registeredClient.getId());
+
+        assertTrue(clientKeys.isEmpty());
+    }
+
+    private void assertRejected(String assertion, String parameter) {
+        OAuth2AuthenticationException e = assertThrows(OAuth2AuthenticationException.class, () -> provider.authenticate(token(assertion)));
+        assertEquals(OAuth2ErrorCodes.INVALID_CLIENT, e.getError().getErrorCode());
+        assertEquals("Client authentication failed: " + parameter, e.getError().getDescription());
+    }
+
+    private static JWTClaimsSet.Builder claims() {
+        Instant now = Instant.now();
+        return new JWTClaimsSet.Builder()
+                .issuer(CLIENT_ID)
+                .subject(CLIENT_ID)
+                .audience(ISSUER + TOKEN_ENDPOINT)
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(Duration.ofMinutes(1))))
+                .jwtID(UUID.randomUUID().toString());
+    }
+
+    private static String sign(RSAKey key, JWTClaimsSet claims) throws JOSEException {
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    private static OAuth2ClientAuthenticationToken token(String assertion) {
+        return new OAuth2ClientAuthenticationToken(CLIENT_ID, JWT_CLIENT_ASSERTION, assertion, null);
+    }
+}
@@ -0,0 +1,182 @@
+package com.authorizationserver.config;
+
+import com.authorizationserver.model.RegisterClientRequest;
+import com.authorizationserver.model.Scope;
+import com.authorizationserver.service.AuthorizationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.Filter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.authorizationserver.constants.Constants.GENERATE_AUTH_TOKEN_PATH;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Responses of the fast path against those of the authorization server chain, in one application so both paths share
+ * the reuse cache: the second of two identical requests gets the token issued by the first, so success responses can
+ * be compared byte for byte like error responses. Status, headers and body must match.
+ *
+ * @author Blajan George
+ */
+@Testcontainers
+@SpringBootTest(properties = {
+        "authorizationSecret=secret",
+        "encryptionSecret=0123456789abcdef",
+        "secretHashing.hmacKey=fast-path-test-key",
+        "claims.whiteList=audience",
+        "tokenFastPath.enabled=true",
+        "scheduler.type=none",
+        "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.quartz.QuartzAutoConfiguration"
+})
+class ClientCredentialsFastPathFilterTest {
+    /**
+     * Authorization secret of the admin operations
+     */
+    private static final String SECRET = "secret";
+    /**
+     * Client issuing every request
+     */
+    private static final String CLIENT_ID = "fast-path-client";
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @Autowired
+    private WebApplicationContext context;
+    @Autowired
+    @Qualifier("springSecurityFilterChain")
+    private Filter springSecurityFilterChain;
+    @Autowired
+    private FilterRegistrationBean<ClientCredentialsFastPathFilter> fastPathRegistration;
+    @Autowired
+    private AuthorizationService authorizationService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private MockMvc standard;
+    private MockMvc fastPath;
+    private String clientSecret;
+
+    @BeforeEach
+    void setUp() {
+        standard = MockMvcBuilders.webAppContextSetup(context).addFilters(springSecurityFilterChain).build();
+        fastPath = MockMvcBuilders.webAppContextSetup(context).addFilters(fastPathRegistration.getFilter(), springSecurityFilterChain).build();
+        if (clientSecret == null) {
+            try {
+                authorizationService.deleteOauth2Client(SECRET, CLIENT_ID);
+            } catch (RuntimeException e) {
+                // not registered yet
+            }
+            clientSecret = authorizationService.registerOauth2Client(new RegisterClientRequest(CLIENT_ID, null, "client", List.of(Scope.ALL),
+                    null, null, null, 50, null, null, true), SECRET);
+        }
+    }
+
+    @Test
+    void generatedSecretIsKeyedHash() {
+        assertTrue(clientSecret.startsWith("sas_"));
+    }
+
+    @Test
+    void tokenWithScopeMatches() throws Exception {
+        assertSameResponse(basic(CLIENT_ID, clientSecret), "grant_type", "client_credentials", "scope", "ALL");
+    }
+
+    @Test
+    void tokenWithoutScopeMatches() throws Exception {
+        assertSameResponse(basic(CLIENT_ID, clientSecret), "grant_type", "client_credentials");
+    }
+
+    @Test
+    void tokenWithWhiteListedClaimMatches() throws Exception {
+        assertSameResponse(basic(CLIENT_ID, clientSecret), "grant_type", "client_credentials", "scope", "ALL", "audience", "api");
+    }
+
+    @Test
+    void wrongSecretMatches() throws Exception {
+        assertSameResponse(basic(CLIENT_ID, clientSecret + "x"), "grant_type", "client_credentials", "scope", "ALL");
+    }
+
+    @Test
+    void unknownClientMatches() throws Exception {
+        assertSameResponse(basic("unknown-client", clientSecret), "grant_type", "client_credentials", "scope", "ALL");
+    }
+
+    @Test
+    void unknownScopeMatches() throws Exception {
+        assertSameResponse(basic(CLIENT_ID, clientSecret), "grant_type", "client_credentials", "scope", "UNKNOWN");
+    }
+
+    /**
+     * Send a request through the fast path, then through the chain, and compare both responses
+     *
+     * @param authorization authorization header
+     * @param parameters    names and values of the form parameters
+     */
+    private void assertSameResponse(String authorization, String... parameters) throws Exception {
+        double served = meterRegistry.get("token.fast_path").tag("result", "served").counter().count();
+
+        MockHttpServletResponse fast = fastPath.perform(request(authorization, parameters)).andReturn().getResponse();
+        MockHttpServletResponse chain = standard.perform(request(authorization, parameters)).andReturn().getResponse();
+
+        assertEquals(served + 1, meterRegistry.get("token.fast_path").tag("result", "served").counter().count());
+        assertEquals(chain.getStatus(), fast.getStatus());
+        assertEquals(headers(chain), headers(fast));
+        assertArrayEquals(chain.getContentAsByteArray(), fast.getContentAsByteArray(),
+                () -> chain.getContentAsString(StandardCharsets.UTF_8) + " != " + fast.getContentAsString(StandardCharsets.UTF_8));
+    }
+
+    private static MockHttpServletRequestBuilder request(String authorization, String... parameters) {
+        MockHttpServletRequestBuilder request = post(GENERATE_AUTH_TOKEN_PATH)
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .header(HttpHeaders.AUTHORIZATION, authorization);
+        for (int i = 0; i < parameters.length; i += 2) {
+            request.param(parameters[i], parameters[i + 1]);
+        }
+        return request;
+    }
+
+    private static Map<String, List<String>> headers(MockHttpServletResponse response) {
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (String name : response.getHeaderNames()) {
+            headers.put(name, response.getHeaders(name));
+        }
+        return headers;
+    }
+
+    private static String basic(String clientId, String clientSecret) {
+        return "Basic " + Base64.getEncoder().encodeToString((clientId + ":" + clientSecret).getBytes(StandardCharsets.UTF_8));
+    }
+}
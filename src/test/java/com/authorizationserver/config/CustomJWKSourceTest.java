@@ -0,0 +1,242 @@
+package com.authorizationserver.config;
+
+import com.authorizationserver.db.repository.RsaKeyRepository;
+import com.authorizationserver.db.resilience.DatabaseCircuitBreaker;
+import com.authorizationserver.service.KeyManagementService;
+import com.authorizationserver.service.KeyManagementServiceImpl;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.RSAKey;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Signing keys against a real Postgres under contention: several nodes, each with many threads, racing on an empty
+ * key table generate a single key, keys read back parse to the pair that was stored, pruning keeps the signing key and
+ * a rotated key is published before it signs.
+ *
+ * @author Blajan George
+ */
+@Testcontainers
+@DataJpaTest(properties = {
+        "encryptionSecret=0123456789abcdef",
+        "keyRotation.retainedKeys=2",
+        "keyRotation.publicationLeadTime=0",
+        "spring.datasource.hikari.maximum-pool-size=20",
+        "spring.datasource.hikari.connection-timeout=30000"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({DatabaseCircuitBreaker.class, KeyManagementServiceImpl.class, CustomJWKSourceTest.Config.class})
+class CustomJWKSourceTest {
+    /**
+     * Simulated nodes, each with its own key source
+     */
+    private static final int NODES = 4;
+    /**
+     * Concurrent callers per node
+     */
+    private static final int THREADS_PER_NODE = 16;
+    /**
+     * Selects every key
+     */
+    private static final JWKSelector ANY_KEY = new JWKSelector(new JWKMatcher.Builder().build());
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private RsaKeyRepository rsaKeyRepository;
+    @Autowired
+    private DatabaseCircuitBreaker circuitBreaker;
+    @Autowired
+    private KeyManagementService keyManagementService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void clean() {
+        jdbcTemplate.update("DELETE FROM rsa_key");
+    }
+
+    @Test
+    void concurrentNodesGenerateSingleFirstKey() throws Exception {
+        List<CustomJWKSource> nodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            nodes.add(node());
+        }
+
+        Set<String> keyIds = ConcurrentHashMap.newKeySet();
+        List<Callable<Void>> callers = new ArrayList<>();
+        for (CustomJWKSource node : nodes) {
+            for (int i = 0; i < THREADS_PER_NODE; i++) {
+                callers.add(() -> {
+                    node.get(ANY_KEY, null).forEach(jwk -> keyIds.add(jwk.getKeyID()));
+                    return null;
+                });
+            }
+        }
+        runTogether(callers);
+
+        assertEquals(1, keyIds.size());
+        assertEquals(1, count());
+        assertEquals(keyIds.iterator().next(), rsaKeyRepository.getMostRecentKey().orElseThrow().getId());
+    }
+
+    @Test
+    void storedKeyParsesToGeneratedPair() throws Exception {
+        RSAKey generated = (RSAKey) node().get(ANY_KEY, null).get(0);
+        List<JWK> read = node().get(ANY_KEY, null);
+
+        assertEquals(1, read.size());
+        RSAKey parsed = (RSAKey) read.get(0);
+        assertEquals(generated.getKeyID(), parsed.getKeyID());
+        assertEquals(generated.toRSAPublicKey(), parsed.toRSAPublicKey());
+        assertNotNull(parsed.toRSAPrivateKey());
+        assertEquals(generated.toRSAPrivateKey().getPrivateExponent(), parsed.toRSAPrivateKey().getPrivateExponent());
+
+        List<JWK> published = node().getLastNPublicKeys(ANY_KEY);
+        assertEquals(1, published.size());
+        assertEquals(generated.getKeyID(), published.get(0).getKeyID());
+        assertEquals(generated.toRSAPublicKey(), ((RSAKey) published.get(0)).toRSAPublicKey());
+    }
+
+    @Test
+    void concurrentPruningKeepsSigningKey() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            keyManagementService.rotateKey();
+            Thread.sleep(5);
+        }
+        String signingKeyId = rsaKeyRepository.getMostRecentKey().orElseThrow().getId();
+
+        CustomJWKSource node = node();
+        Set<String> signedWith = ConcurrentHashMap.newKeySet();
+        List<Callable<Void>> callers = new ArrayList<>();
+        for (int i = 0; i < NODES * THREADS_PER_NODE; i++) {
+            callers.add(i % 2 == 0
+                    ? () -> {
+                keyManagementService.pruneKeys();
+                return null;
+            }
+                    : () -> {
+                node.get(ANY_KEY, null).forEach(jwk -> signedWith.add(jwk.getKeyID()));
+                return null;
+            });
+        }
+        runTogether(callers);
+
+        assertEquals(2, count());
+        assertEquals(Set.of(signingKeyId), signedWith);
+        assertEquals(signingKeyId, rsaKeyRepository.getMostRecentKey().orElseThrow().getId());
+    }
+
+    @Test
+    void rotatedKeyIsPublishedBeforeItSigns() throws Exception {
+        keyManagementService.rotateKey();
+        String activeKeyId = rsaKeyRepository.getMostRecentKey().orElseThrow().getId();
+        Object service = AopTestUtils.getTargetObject(keyManagementService);
+        ReflectionTestUtils.setField(service, "publicationLeadTime", 1_000L);
+        try {
+            keyManagementService.rotateKey();
+        } finally {
+            ReflectionTestUtils.setField(service, "publicationLeadTime", 0L);
+        }
+
+        CustomJWKSource node = node();
+        List<String> published = keyIds(node.getLastNPublicKeys(ANY_KEY));
+        assertEquals(2, published.size());
+        assertTrue(published.contains(activeKeyId));
+        assertEquals(List.of(activeKeyId), keyIds(node.get(ANY_KEY, null)));
+
+        Thread.sleep(1_500);
+
+        String nextKeyId = published.stream().filter(id -> !id.equals(activeKeyId)).findFirst().orElseThrow();
+        assertEquals(List.of(nextKeyId), keyIds(node.get(ANY_KEY, null)));
+    }
+
+    private static List<String> keyIds(List<JWK> keys) {
+        return keys.stream().map(JWK::getKeyID).toList();
+    }
+
+    private CustomJWKSource node() {
+        CustomJWKSource source = new CustomJWKSource(rsaKeyRepository, rsaKeyRepository, circuitBreaker, jdbcTemplate, transactionTemplate);
+        ReflectionTestUtils.setField(source, "encryptionSecret", "0123456789abcdef");
+        ReflectionTestUtils.setField(source, "numberOfRetrievedPublicKeys", 5);
+        return source;
+    }
+
+    private long count() {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM rsa_key", Long.class);
+    }
+
+    private static void runTogether(List<Callable<Void>> callers) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(callers.size());
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (Callable<Void> caller : callers) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return caller.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.authorizationserver.config;
+
+import com.authorizationserver.AuthorizationServerApplication;
+import com.authorizationserver.model.RegisterClientRequest;
+import com.authorizationserver.service.AuthorizationService;
+import jakarta.servlet.Filter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.authorizationserver.constants.Constants.GENERATE_AUTH_TOKEN_PATH;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Token requests through the authorization server chain and through the fast path, in process against the same
+ * application, with a generated secret so the keyed hash check costs microseconds and the comparison measures the
+ * chains, not the password hashing. With 'tokenReusePercentage' above zero most requests are answered from the reuse
+ * cache and signing drops out too. Run with 'scripts/token-fast-path-benchmark.sh'.
+ *
+ * @author Blajan George
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+public class TokenFastPathBenchmark {
+    /**
+     * Authorization secret of the admin operations
+     */
+    private static final String SECRET = "secret";
+
+    /**
+     * Filters in front of the dispatcher, 'standard' for the chain alone, 'fast' for the fast path in front of it
+     */
+    @Param({"standard", "fast"})
+    public String path;
+    /**
+     * Token reuse percentage of the benchmark client, 0 signs a token on every request
+     */
+    @Param({"0", "50"})
+    public int tokenReusePercentage;
+
+    private PostgreSQLContainer<?> postgres;
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private String authorization;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+        postgres.start();
+        context = new SpringApplicationBuilder(AuthorizationServerApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=" + postgres.getJdbcUrl(),
+                        "spring.datasource.username=" + postgres.getUsername(),
+                        "spring.datasource.password=" + postgres.getPassword(),
+                        "spring.datasource.hikari.maximum-pool-size=16",
+                        "authorizationSecret=" + SECRET,
+                        "encryptionSecret=0123456789abcdef",
+                        "secretHashing.hmacKey=fast-path-benchmark-key",
+                        "tokenFastPath.enabled=true",
+                        "scheduler.type=none",
+                        "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.quartz.QuartzAutoConfiguration")
+                .run();
+
+        Filter springSecurityFilterChain = context.getBean("springSecurityFilterChain", Filter.class);
+        FilterRegistrationBean<ClientCredentialsFastPathFilter> fastPathRegistration = (FilterRegistrationBean<ClientCredentialsFastPathFilter>) context
+                .getBeanProvider(ResolvableType.forClassWithGenerics(FilterRegistrationBean.class, ClientCredentialsFastPathFilter.class))
+                .getObject();
+        Filter[] filters = "fast".equals(path)
+                ? new Filter[]{fastPathRegistration.getFilter(), springSecurityFilterChain}
+                : new Filter[]{springSecurityFilterChain};
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).addFilters(filters).build();
+
+        String clientId = "fast-path-bench-" + path + "-" + tokenReusePercentage;
+        String clientSecret = context.getBean(AuthorizationService.class).registerOauth2Client(new RegisterClientRequest(clientId, null, "client",
+                List.of(com.authorizationserver.model.Scope.ALL), null, null, null, tokenReusePercentage, null, null, true), SECRET);
+        authorization = "Basic " + Base64.getEncoder().encodeToString((clientId + ":" + clientSecret).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        postgres.stop();
+    }
+
+    @Benchmark
+    public int token() throws Exception {
+        int status = mockMvc.perform(post(GENERATE_AUTH_TOKEN_PATH)
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .header(HttpHeaders.AUTHORIZATION, authorization)
+                        .param("grant_type", "client_credentials")
+                        .param("scope", "ALL"))
+                .andReturn().getResponse().getStatus();
+        if (status != 200) {
+            throw new IllegalStateException("Token request failed with status " + status);
+        }
+        return status;
+    }
+}
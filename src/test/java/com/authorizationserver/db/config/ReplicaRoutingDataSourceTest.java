@@ -0,0 +1,81 @@
+package com.authorizationserver.db.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Routing of connections: read only transactions go to a replica, write transactions and reads without a usable replica
+ * go to primary, explicit credentials are passed to the chosen data source.
+ *
+ * @author Blajan George
+ */
+class ReplicaRoutingDataSourceTest {
+    private final DataSource primary = mock(DataSource.class);
+    private final DataSource replica = mock(DataSource.class);
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection replicaConnection = mock(Connection.class);
+
+    private ReplicaRoutingDataSource routing;
+    private DataSource dataSource;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+
+        routing = new ReplicaRoutingDataSource(primary, List.of(replica), 5000, new SimpleMeterRegistry());
+        dataSource = new LazyConnectionDataSourceProxy(routing);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @Test
+    void readOnlyTransactionUsesReplica() {
+        transactionTemplate.setReadOnly(true);
+
+        assertSame(replicaConnection, transactionTemplate.execute(status -> targetConnection()));
+    }
+
+    @Test
+    void writeTransactionUsesPrimary() {
+        assertSame(primaryConnection, transactionTemplate.execute(status -> targetConnection()));
+    }
+
+    @Test
+    void readOnlyTransactionFallsBackToPrimaryWithoutReplica() throws SQLException {
+        when(replica.getConnection()).thenThrow(new SQLException("replica down"));
+        transactionTemplate.setReadOnly(true);
+
+        assertSame(primaryConnection, transactionTemplate.execute(status -> targetConnection()));
+    }
+
+    @Test
+    void credentialsArePassedToRoutedDataSource() throws SQLException {
+        Connection primaryUserConnection = mock(Connection.class);
+        Connection replicaUserConnection = mock(Connection.class);
+        when(primary.getConnection("user", "password")).thenReturn(primaryUserConnection);
+        when(replica.getConnection("user", "password")).thenReturn(replicaUserConnection);
+
+        assertSame(primaryUserConnection, routing.getConnection("user", "password"));
+        assertSame(replicaUserConnection, routing.readOnlyDataSource().getConnection("user", "password"));
+    }
+
+    private Connection targetConnection() {
+        return ((ConnectionProxy) DataSourceUtils.getConnection(dataSource)).getTargetConnection();
+    }
+}
@@ -0,0 +1,46 @@
+package com.authorizationserver.db.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bloom filter size accounting: ids added again, as on every save of an existing client, don't inflate the entry count
+ * or the expected false positive rate.
+ *
+ * @author Blajan George
+ */
+class ClientIdBloomFilterTest {
+
+    @Test
+    void idAddedAgainIsCountedOnce() {
+        ClientIdBloomFilter filter = new ClientIdBloomFilter(1000, 0.01);
+        filter.add("client");
+        double falsePositiveRate = filter.expectedFalsePositiveRate();
+
+        for (int i = 0; i < 100; i++) {
+            filter.add("client");
+        }
+
+        assertEquals(1, filter.size());
+        assertEquals(falsePositiveRate, filter.expectedFalsePositiveRate());
+        assertTrue(filter.mightContain("client"));
+    }
+
+    @Test
+    void distinctIdsAreCounted() {
+        ClientIdBloomFilter filter = new ClientIdBloomFilter(1000, 0.01);
+
+        for (int i = 0; i < 500; i++) {
+            filter.add("client-" + i);
+            filter.add("client-" + i);
+        }
+
+        // an id whose bits were all set by other ids is not counted, at half capacity that is rare
+        assertTrue(filter.size() >= 495 && filter.size() <= 500, "size " + filter.size());
+        for (int i = 0; i < 500; i++) {
+            assertTrue(filter.mightContain("client-" + i));
+        }
+    }
+}
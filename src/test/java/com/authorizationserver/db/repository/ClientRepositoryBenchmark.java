@@ -0,0 +1,133 @@
+package com.authorizationserver.db.repository;
+
+import com.authorizationserver.db.config.ReplicaRoutingDataSource;
+import com.authorizationserver.db.model.Oauth2Client;
+import com.authorizationserver.db.resilience.DatabaseCircuitBreaker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client lookups of the jpa and jdbc {@link org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository}
+ * implementations against the same Postgres, without http, authentication or hashing around them. findByClientId is the
+ * token request lookup, findById the introspection lookup. Run with 'scripts/client-repository-benchmark.sh'.
+ *
+ * @author Blajan George
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+public class ClientRepositoryBenchmark {
+    /**
+     * Repository implementation, as selected by 'repository.type'
+     */
+    @Param({"jpa", "jdbc"})
+    public String repository;
+    /**
+     * Registered clients, lookups are spread over all of them
+     */
+    @Param("1000")
+    public int clients;
+
+    private PostgreSQLContainer<?> postgres;
+    private ConfigurableApplicationContext context;
+    private CustomRegisteredClientRepository clientRepository;
+    private String[] clientIds;
+    private String[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+        postgres.start();
+        context = new SpringApplicationBuilder(Config.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=" + postgres.getJdbcUrl(),
+                        "spring.datasource.username=" + postgres.getUsername(),
+                        "spring.datasource.password=" + postgres.getPassword(),
+                        "spring.datasource.hikari.maximum-pool-size=16",
+                        "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.quartz.QuartzAutoConfiguration")
+                .run();
+
+        Oauth2ClientRepository oauth2ClientRepository = context.getBean(Oauth2ClientRepository.class);
+        DatabaseCircuitBreaker circuitBreaker = context.getBean(DatabaseCircuitBreaker.class);
+        clientRepository = "jdbc".equals(repository)
+                ? new JdbcOauth2ClientRepository(oauth2ClientRepository, context.getBean(DataSource.class),
+                context.getBeanProvider(ReplicaRoutingDataSource.class), circuitBreaker)
+                : new JpaOauth2ClientRepository(oauth2ClientRepository, circuitBreaker);
+
+        clientIds = new String[clients];
+        ids = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            RegisteredClient client = RegisteredClient.withId(UUID.randomUUID().toString())
+                    .clientId("repository-bench-" + i)
+                    .clientSecret("{noop}secret")
+                    .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+                    .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                    .scope("ALL")
+                    .build();
+            clientRepository.save(client);
+            clientIds[i] = client.getClientId();
+            ids[i] = client.getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        postgres.stop();
+    }
+
+    @Benchmark
+    public RegisteredClient findByClientId() {
+        return clientRepository.findByClientId(clientIds[ThreadLocalRandom.current().nextInt(clients)]);
+    }
+
+    @Benchmark
+    public RegisteredClient findById() {
+        return clientRepository.findById(ids[ThreadLocalRandom.current().nextInt(clients)]);
+    }
+
+    /**
+     * Data source, flyway and jpa repositories of the application, none of its web or security configuration
+     */
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = Oauth2Client.class)
+    @EnableJpaRepositories(basePackageClasses = Oauth2ClientRepository.class)
+    @Import(DatabaseCircuitBreaker.class)
+    public static class Config {
+    }
+}
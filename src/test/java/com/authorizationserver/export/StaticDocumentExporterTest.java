@@ -0,0 +1,124 @@
+package com.authorizationserver.export;
+
+import com.authorizationserver.config.CustomJWKSource;
+import com.authorizationserver.db.model.RsaKey;
+import com.authorizationserver.model.MetadataResponse;
+import com.authorizationserver.service.AuthorizationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPairGenerator;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Exported files: keys are read from primary, stable documents and the pointer are rewritten together on every export,
+ * and an export of an older key set never replaces a newer one.
+ *
+ * @author Blajan George
+ */
+class StaticDocumentExporterTest {
+    @TempDir
+    private Path directory;
+
+    private final CustomJWKSource jwkSource = mock(CustomJWKSource.class);
+    private final AuthorizationService authorizationService = mock(AuthorizationService.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final RsaKey first = key("first", Instant.parse("2024-01-01T00:00:00Z"));
+    private final RsaKey second = key("second", Instant.parse("2024-01-02T00:00:00Z"));
+
+    private StaticDocumentExporter exporter;
+
+    @BeforeEach
+    void setUp() {
+        when(authorizationService.getMetadata(any())).thenReturn(MetadataResponse.builder().issuer("https://issuer").build());
+        exporter = new StaticDocumentExporter(jwkSource, authorizationService, objectMapper);
+        ReflectionTestUtils.setField(exporter, "directory", directory.toString());
+        ReflectionTestUtils.setField(exporter, "issuer", "");
+        ReflectionTestUtils.setField(exporter, "retainedVersions", 10);
+    }
+
+    @Test
+    void keysAreReadFromPrimary() throws Exception {
+        when(jwkSource.getLastNKeysFromPrimary()).thenReturn(List.of(second, first));
+
+        exporter.export();
+
+        verify(jwkSource, never()).getLastNPublicKeys(any());
+        assertEquals(jwks(second, first), read("jwks.json"));
+    }
+
+    @Test
+    void stableDocumentIsRewrittenWhenVersionExists() throws Exception {
+        when(jwkSource.getLastNKeysFromPrimary()).thenReturn(List.of(second, first));
+        exporter.export();
+        Files.writeString(directory.resolve("jwks.json"), "{}");
+
+        exporter.export();
+
+        assertEquals(jwks(second, first), read("jwks.json"));
+        assertEquals(read(pointer().jwks()), read("jwks.json"));
+    }
+
+    @Test
+    void olderKeySetDoesNotReplaceNewerOne() throws Exception {
+        when(jwkSource.getLastNKeysFromPrimary()).thenReturn(List.of(second, first));
+        exporter.export();
+        StaticDocumentExporter.Pointer newer = pointer();
+
+        // a node that read its keys before the rotation exports afterwards
+        when(jwkSource.getLastNKeysFromPrimary()).thenReturn(List.of(first));
+        exporter.export();
+
+        assertEquals(newer, pointer());
+        assertEquals(jwks(second, first), read("jwks.json"));
+    }
+
+    @Test
+    void prunedKeySetReplacesOlderOne() throws Exception {
+        when(jwkSource.getLastNKeysFromPrimary()).thenReturn(List.of(second, first));
+        exporter.export();
+
+        when(jwkSource.getLastNKeysFromPrimary()).thenReturn(List.of(second));
+        exporter.export();
+
+        assertEquals(jwks(second), read("jwks.json"));
+        assertEquals(read(pointer().jwks()), read("jwks.json"));
+        assertEquals(second.getTime().toEpochMilli(), pointer().oldestKeyTime());
+    }
+
+    private StaticDocumentExporter.Pointer pointer() throws Exception {
+        return objectMapper.readValue(directory.resolve("current.json").toFile(), StaticDocumentExporter.Pointer.class);
+    }
+
+    private String read(String name) throws Exception {
+        return Files.readString(directory.resolve(name), StandardCharsets.UTF_8);
+    }
+
+    private static String jwks(RsaKey... keys) throws Exception {
+        return CustomJWKSource.toPublicKeySet(List.of(keys)).toString();
+    }
+
+    private static RsaKey key(String id, Instant time) {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            return new RsaKey(id, generator.generateKeyPair().getPublic().getEncoded(), null, null, time, time);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.authorizationserver.scheduler.lease;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Lease coordinator against a real Postgres: a period runs once, whichever node holds the lease when it is due.
+ *
+ * @author Blajan George
+ */
+@Testcontainers
+class LeaseCoordinatorTest {
+    /**
+     * Lease duration used by the tests ( in ms )
+     */
+    private static final long LEASE_DURATION = 300;
+    /**
+     * Task interval, longer than any test
+     */
+    private static final long INTERVAL = 3_600_000;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void migrate() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @BeforeEach
+    void clean() {
+        jdbcTemplate.update("DELETE FROM scheduler_lease");
+        jdbcTemplate.update("DELETE FROM maintenance_task");
+    }
+
+    @Test
+    void expiredLeaseDoesNotRunCompletedPeriodAgain() throws InterruptedException {
+        AtomicInteger rotations = new AtomicInteger();
+        LeaseCoordinator first = coordinator(rotations::incrementAndGet);
+        LeaseCoordinator second = coordinator(rotations::incrementAndGet);
+
+        first.poll();
+        assertTrue(first.isLeader());
+        assertEquals(1, rotations.get());
+
+        Thread.sleep(LEASE_DURATION * 2);
+        second.poll();
+        first.poll();
+
+        assertTrue(second.isLeader());
+        assertFalse(first.isLeader());
+        assertEquals(1, rotations.get());
+    }
+
+    @Test
+    void failedRunIsRetriedOnceClaimLapses() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicInteger rotations = new AtomicInteger();
+        LeaseCoordinator coordinator = coordinator(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("rotation failed");
+            }
+            rotations.incrementAndGet();
+        });
+
+        coordinator.poll();
+        coordinator.poll();
+        assertEquals(1, attempts.get());
+
+        Thread.sleep(LEASE_DURATION * 2);
+        coordinator.poll();
+        coordinator.poll();
+
+        assertEquals(2, attempts.get());
+        assertEquals(1, rotations.get());
+    }
+
+    @Test
+    void competingNodesWithExpiringLeasesRotateOnce() throws Exception {
+        AtomicInteger rotations = new AtomicInteger();
+        List<LeaseCoordinator> nodes = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            nodes.add(coordinator(() -> {
+                rotations.incrementAndGet();
+                sleep(LEASE_DURATION / 2);
+            }));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(nodes.size());
+        long deadline = System.currentTimeMillis() + LEASE_DURATION * 20;
+        List<Future<?>> polls = new ArrayList<>();
+        for (LeaseCoordinator node : nodes) {
+            polls.add(executor.submit(() -> {
+                while (System.currentTimeMillis() < deadline) {
+                    node.poll();
+                    sleep(LEASE_DURATION + LEASE_DURATION / 2);
+                }
+            }));
+        }
+        for (Future<?> poll : polls) {
+            poll.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+
+        assertEquals(1, rotations.get());
+    }
+
+    private static LeaseCoordinator coordinator(Runnable rotation) {
+        LeaseCoordinator coordinator = new LeaseCoordinator(jdbcTemplate, List.of(new MaintenanceTask("rotate-rsa-key", 0, INTERVAL, rotation)));
+        ReflectionTestUtils.setField(coordinator, "leaseDuration", LEASE_DURATION);
+        coordinator.registerTasks();
+        return coordinator;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
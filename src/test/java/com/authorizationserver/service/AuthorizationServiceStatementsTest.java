@@ -0,0 +1,228 @@
+package com.authorizationserver.service;
+
+import com.authorizationserver.authentication.ClientSecretPasswordEncoder;
+import com.authorizationserver.authentication.PrivateKeyJwtClientAuthenticationProvider;
+import com.authorizationserver.db.repository.ClientUsageRepository;
+import com.authorizationserver.db.repository.JpaOauth2ClientRepository;
+import com.authorizationserver.db.resilience.DatabaseCircuitBreaker;
+import com.authorizationserver.exception.PreconditionFailedException;
+import com.authorizationserver.model.ClientResponse;
+import com.authorizationserver.model.MetadataContext;
+import com.authorizationserver.model.PatchClientRequest;
+import com.authorizationserver.model.PatchClientResult;
+import com.authorizationserver.model.RegisterClientRequest;
+import com.authorizationserver.token.AccessTokenReuseCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Statements sent by client writes against a real Postgres: register is a single insert, a patch of plain columns is
+ * a single update returning the version, a patch of settings locks the row and updates it, delete is a single statement
+ * that loads nothing. Pages of the client listing read partition by partition and cover every client once.
+ *
+ * @author Blajan George
+ */
+@Testcontainers
+@DataJpaTest(properties = {
+        "authorizationSecret=secret",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({DatabaseCircuitBreaker.class, JpaOauth2ClientRepository.class, AuthorizationServiceImpl.class, AuthorizationServiceStatementsTest.Config.class})
+class AuthorizationServiceStatementsTest {
+    /**
+     * Authorization secret of the admin operations
+     */
+    private static final String SECRET = "secret";
+    /**
+     * Client written by every test
+     */
+    private static final String CLIENT_ID = "statements-client";
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        ClientSecretPasswordEncoder clientSecretPasswordEncoder() {
+            return new ClientSecretPasswordEncoder(new BCryptPasswordEncoder(4), null);
+        }
+    }
+
+    @MockBean
+    private ClientUsageRepository clientUsageRepository;
+    @MockBean
+    private MetadataContext metadataContext;
+    @MockBean
+    private AccessTokenReuseCache accessTokenReuseCache;
+    @MockBean
+    private PrivateKeyJwtClientAuthenticationProvider privateKeyJwtClientAuthenticationProvider;
+
+    @Autowired
+    private AuthorizationService authorizationService;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void clean() {
+        jdbcTemplate.update("DELETE FROM oauth2_client");
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void registerIsSingleInsert() {
+        register();
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getEntityInsertCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void patchOfColumnsIsSingleUpdate() {
+        register();
+        Long version = version();
+        statistics.clear();
+
+        PatchClientResult result = authorizationService.patchOauth2Client(new PatchClientRequest(null, "renamed", null, null, null, null, null, null, null, null),
+                SECRET, CLIENT_ID, version);
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getEntityUpdateCount());
+        assertEquals(version(), result.version());
+        assertEquals("renamed", jdbcTemplate.queryForObject("SELECT client_name FROM oauth2_client WHERE client_id = ?", String.class, CLIENT_ID));
+    }
+
+    @Test
+    void patchOfColumnsWithStaleVersionFails() {
+        register();
+        Long version = version();
+        PatchClientRequest patch = new PatchClientRequest(null, "renamed", null, null, null, null, null, null, null, null);
+        authorizationService.patchOauth2Client(patch, SECRET, CLIENT_ID, null);
+
+        assertThrows(PreconditionFailedException.class, () -> authorizationService.patchOauth2Client(
+                new PatchClientRequest(null, "renamed again", null, null, null, null, null, null, null, null), SECRET, CLIENT_ID, version));
+        assertEquals("renamed", jdbcTemplate.queryForObject("SELECT client_name FROM oauth2_client WHERE client_id = ?", String.class, CLIENT_ID));
+    }
+
+    @Test
+    void patchOfSettingsLocksAndUpdates() {
+        register();
+        statistics.clear();
+
+        PatchClientResult result = authorizationService.patchOauth2Client(new PatchClientRequest(null, null, null, null, null, 30, null, null, null, null),
+                SECRET, CLIENT_ID, null);
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getEntityUpdateCount());
+        assertEquals(0, statistics.getEntityInsertCount());
+        assertEquals(version(), result.version());
+    }
+
+    @Test
+    void deleteIsSingleStatement() {
+        register();
+        statistics.clear();
+
+        authorizationService.deleteOauth2Client(SECRET, CLIENT_ID);
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM oauth2_client", Long.class));
+    }
+
+    @Test
+    void pagesReturnEveryClientOnce() {
+        Set<String> registered = new HashSet<>();
+        for (int i = 0; i < 40; i++) {
+            register("page-client-" + i);
+            registered.add("page-client-" + i);
+        }
+
+        List<String> listed = new ArrayList<>();
+        List<ClientResponse> page = authorizationService.getOauth2ClientsPage(SECRET, null, 7);
+        while (!page.isEmpty()) {
+            page.forEach(client -> listed.add(client.clientId()));
+            page = authorizationService.getOauth2ClientsPage(SECRET, listed.get(listed.size() - 1), 7);
+        }
+
+        assertEquals(registered.size(), listed.size());
+        assertEquals(registered, new HashSet<>(listed));
+    }
+
+    @Test
+    void pageAfterDeletedClientContinuesInItsPartition() {
+        for (int i = 0; i < 40; i++) {
+            register("page-client-" + i);
+        }
+        List<ClientResponse> first = authorizationService.getOauth2ClientsPage(SECRET, null, 2);
+        List<ClientResponse> expected = authorizationService.getOauth2ClientsPage(SECRET, first.get(0).clientId(), 1);
+
+        authorizationService.deleteOauth2Client(SECRET, first.get(0).clientId());
+
+        assertEquals(expected, authorizationService.getOauth2ClientsPage(SECRET, first.get(0).clientId(), 1));
+    }
+
+    private Long version() {
+        return jdbcTemplate.queryForObject("SELECT version FROM oauth2_client WHERE client_id = ?", Long.class, CLIENT_ID);
+    }
+
+    private void register() {
+        register(CLIENT_ID);
+    }
+
+    private void register(String clientId) {
+        authorizationService.registerOauth2Client(new RegisterClientRequest(clientId, "client-secret", "client", null, null, null,
+                null, null, null, null, null), SECRET);
+    }
+}
@@ -0,0 +1,125 @@
+package com.authorizationserver.token;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert and lookup rates of {@link MappedReferenceTokenStore} in process, without http, authentication or
+ * serialization around it. put stores tokens expiring within the iteration, they are compacted away after each
+ * iteration so disk use stays bounded. get looks up tokens stored during setup. Run with
+ * 'scripts/run-benchmark.sh MappedReferenceTokenStoreBenchmark'.
+ *
+ * @author Blajan George
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+public class MappedReferenceTokenStoreBenchmark {
+    /**
+     * Tokens stored before measuring, spread over several segments
+     */
+    @Param("1000000")
+    public int tokens;
+    /**
+     * Serialized authorization size ( in bytes )
+     */
+    @Param("400")
+    public int payloadSize;
+
+    private Path directory;
+    private MappedReferenceTokenStore store;
+    private String[] storedTokens;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("reference-token-benchmark");
+        store = new MappedReferenceTokenStore(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(store, "directory", directory.toString());
+        ReflectionTestUtils.setField(store, "segmentSize", 67108864);
+        ReflectionTestUtils.setField(store, "expectedTokens", tokens);
+        ReflectionTestUtils.setField(store, "compactionThreshold", 0.25);
+        store.open();
+
+        payload = new byte[payloadSize];
+        ThreadLocalRandom.current().nextBytes(payload);
+        Instant expiresAt = Instant.now().plus(Duration.ofHours(1));
+        storedTokens = new String[tokens];
+        for (int i = 0; i < tokens; i++) {
+            storedTokens[i] = TokenValues.next();
+            store.put(storedTokens[i], expiresAt, payload);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void compact() {
+        store.compact();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public boolean put(TokenValues tokenValues) {
+        return store.put(tokenValues.value(), Instant.now().plusSeconds(1), payload);
+    }
+
+    @Benchmark
+    public MappedReferenceTokenStore.StoredToken get() {
+        return store.get(storedTokens[ThreadLocalRandom.current().nextInt(tokens)]);
+    }
+
+    /**
+     * Token values of one benchmark thread, shaped like issued reference tokens
+     */
+    @State(Scope.Thread)
+    public static class TokenValues {
+        private static final SecureRandom RANDOM = new SecureRandom();
+        private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+        private final String prefix = next().substring(0, 24);
+        private long sequence;
+
+        String value() {
+            return prefix + sequence++;
+        }
+
+        static String next() {
+            byte[] bytes = new byte[32];
+            RANDOM.nextBytes(bytes);
+            return ENCODER.encodeToString(bytes);
+        }
+    }
+}
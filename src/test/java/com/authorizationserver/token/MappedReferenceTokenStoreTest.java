@@ -0,0 +1,171 @@
+package com.authorizationserver.token;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reference token store on small segment files: lookups, revocation, expiry, reload after restart and compaction of
+ * expired and mostly expired segments.
+ *
+ * @author Blajan George
+ */
+class MappedReferenceTokenStoreTest {
+    /**
+     * Segment size, about 15 records of {@link #PAYLOAD} each
+     */
+    private static final int SEGMENT_SIZE = 4096;
+    /**
+     * Authorization data of every record
+     */
+    private static final byte[] PAYLOAD = "a".repeat(240).getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private MappedReferenceTokenStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void storedTokenIsFound() {
+        assertTrue(store.put("token", live(), PAYLOAD));
+
+        MappedReferenceTokenStore.StoredToken storedToken = store.get("token");
+        assertNotNull(storedToken);
+        assertArrayEquals(PAYLOAD, storedToken.payload());
+        assertFalse(storedToken.revoked());
+        assertNull(store.get("unknown"));
+    }
+
+    @Test
+    void revokedTokenIsFoundRevoked() {
+        store.put("token", live(), PAYLOAD);
+
+        assertTrue(store.revoke("token"));
+        assertFalse(store.revoke("unknown"));
+        assertTrue(store.get("token").revoked());
+    }
+
+    @Test
+    void expiredTokenIsNotFound() {
+        store.put("token", expired(), PAYLOAD);
+
+        assertNull(store.get("token"));
+    }
+
+    @Test
+    void recordLargerThanSegmentIsRefused() {
+        assertFalse(store.put("token", live(), new byte[SEGMENT_SIZE]));
+        assertNull(store.get("token"));
+    }
+
+    @Test
+    void tokensSurviveRestart() throws IOException {
+        for (int i = 0; i < 40; i++) {
+            store.put("token-" + i, live(), PAYLOAD);
+        }
+        store.revoke("token-3");
+        store.close();
+
+        store = open();
+
+        for (int i = 0; i < 40; i++) {
+            assertArrayEquals(PAYLOAD, store.get("token-" + i).payload());
+        }
+        assertTrue(store.get("token-3").revoked());
+        assertEquals(40, meterRegistry.get("reference_token.store.entries").gauge().value());
+    }
+
+    @Test
+    void expiredSegmentIsDropped() {
+        fillSegment("expired-", expired());
+        store.put("live", live(), PAYLOAD);
+
+        store.compact();
+
+        assertFalse(Files.exists(directory.resolve("segment-0.tokens")));
+        assertEquals(1, meterRegistry.get("reference_token.store.segments.dropped").counter().count());
+        assertArrayEquals(PAYLOAD, store.get("live").payload());
+    }
+
+    @Test
+    void liveRecordsOfMostlyExpiredSegmentAreCopiedForward() {
+        store.put("live", live(), PAYLOAD);
+        store.revoke("live");
+        fillSegment("expired-", expired());
+        store.put("newer", live(), PAYLOAD);
+
+        store.compact();
+
+        assertFalse(Files.exists(directory.resolve("segment-0.tokens")));
+        MappedReferenceTokenStore.StoredToken storedToken = store.get("live");
+        assertArrayEquals(PAYLOAD, storedToken.payload());
+        assertTrue(storedToken.revoked());
+        assertArrayEquals(PAYLOAD, store.get("newer").payload());
+    }
+
+    @Test
+    void mostlyLiveSegmentIsKept() {
+        fillSegment("live-", live());
+        store.put("newer", live(), PAYLOAD);
+
+        store.compact();
+
+        assertTrue(Files.exists(directory.resolve("segment-0.tokens")));
+        assertArrayEquals(PAYLOAD, store.get("live-0").payload());
+    }
+
+    private MappedReferenceTokenStore open() throws IOException {
+        MappedReferenceTokenStore opened = new MappedReferenceTokenStore(meterRegistry);
+        ReflectionTestUtils.setField(opened, "directory", directory.toString());
+        ReflectionTestUtils.setField(opened, "segmentSize", SEGMENT_SIZE);
+        ReflectionTestUtils.setField(opened, "expectedTokens", 1000);
+        ReflectionTestUtils.setField(opened, "compactionThreshold", 0.25);
+        opened.open();
+        return opened;
+    }
+
+    /**
+     * Append records until one starts the second segment
+     */
+    private void fillSegment(String prefix, Instant expiresAt) {
+        for (int i = 0; !Files.exists(directory.resolve("segment-1.tokens")); i++) {
+            store.put(prefix + i, expiresAt, PAYLOAD);
+        }
+    }
+
+    private static Instant live() {
+        return Instant.now().plus(Duration.ofHours(1));
+    }
+
+    private static Instant expired() {
+        return Instant.now().minus(Duration.ofMinutes(1));
+    }
+}
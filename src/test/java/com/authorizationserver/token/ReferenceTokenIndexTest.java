@@ -0,0 +1,94 @@
+package com.authorizationserver.token;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Index growth and saturation: the table grows up to its largest capacity, then refuses new tokens while still
+ * accepting new locations of indexed ones, and takes new tokens again once a purge frees slots.
+ *
+ * @author Blajan George
+ */
+class ReferenceTokenIndexTest {
+    /**
+     * Largest capacity of the tested tables, 11 entries fit under the load limit
+     */
+    private static final int MAX_CAPACITY = 16;
+
+    /**
+     * Locations whose record exists, the location of a token is its hash in these tests
+     */
+    private final Set<Long> records = new HashSet<>();
+
+    @Test
+    void growsUntilLargestCapacity() {
+        ReferenceTokenIndex index = new ReferenceTokenIndex(4, 64, records::contains);
+
+        for (long token = 1; token <= 40; token++) {
+            assertTrue(put(index, token));
+        }
+
+        assertEquals(40, index.size());
+        assertEquals(64 * 16, index.sizeInBytes());
+        for (long token = 1; token <= 40; token++) {
+            long expected = token;
+            assertEquals(expected, index.get(expected, location -> location == expected));
+        }
+    }
+
+    @Test
+    void fullTableRefusesNewTokens() {
+        ReferenceTokenIndex index = fullIndex();
+
+        assertFalse(put(index, 100));
+        assertEquals(-1, index.get(100, records::contains));
+    }
+
+    @Test
+    void fullTableReplacesLocationOfIndexedToken() {
+        ReferenceTokenIndex index = fullIndex();
+        records.add(1000L);
+
+        // a record copied forward by compaction keeps its token indexed
+        assertTrue(index.put(1, 1000L, location -> location == 1));
+        assertEquals(1000L, index.get(1, location -> location == 1000L));
+    }
+
+    @Test
+    void purgeFreesSlotsOfFullTable() {
+        ReferenceTokenIndex index = fullIndex();
+        int size = index.size();
+        records.remove(1L);
+        records.remove(2L);
+
+        int slot = 0;
+        while (slot >= 0) {
+            slot = index.purge(slot, 4);
+        }
+
+        assertEquals(size - 2, index.size());
+        assertTrue(put(index, 100));
+        assertEquals(100L, index.get(100, location -> location == 100L));
+    }
+
+    private ReferenceTokenIndex fullIndex() {
+        ReferenceTokenIndex index = new ReferenceTokenIndex(4, MAX_CAPACITY, records::contains);
+        long token = 1;
+        while (put(index, token)) {
+            token++;
+        }
+        assertEquals(11, index.size());
+        return index;
+    }
+
+    private boolean put(ReferenceTokenIndex index, long token) {
+        records.add(token);
+        return index.put(token, token, location -> location == token);
+    }
+}
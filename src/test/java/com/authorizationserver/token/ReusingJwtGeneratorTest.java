@@ -0,0 +1,151 @@
+package com.authorizationserver.token;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientCredentialsAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.settings.TokenSettings;
+import org.springframework.security.oauth2.server.authorization.token.DefaultOAuth2TokenContext;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.authorizationserver.constants.Constants.ACCESS_TOKEN_REUSE_PERCENTAGE_SETTING;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Token reuse under concurrency: identical requests racing each other or a finishing signer get one signed token.
+ *
+ * @author Blajan George
+ */
+class ReusingJwtGeneratorTest {
+    /**
+     * Concurrent callers
+     */
+    private static final int THREADS = 32;
+    /**
+     * Requests per caller
+     */
+    private static final int REQUESTS_PER_THREAD = 200;
+
+    private final AtomicInteger signed = new AtomicInteger();
+    private HookedCache cache;
+    private ReusingJwtGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        cache = new HookedCache();
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        generator = new ReusingJwtGenerator(context -> {
+            Instant now = Instant.now();
+            return Jwt.withTokenValue("token-" + signed.incrementAndGet())
+                    .header("alg", "RS256")
+                    .subject(context.getRegisteredClient().getClientId())
+                    .issuedAt(now)
+                    .expiresAt(now.plus(Duration.ofMinutes(5)))
+                    .build();
+        }, cache);
+    }
+
+    @Test
+    void signerFinishingBetweenLookupAndRegistrationIsReused() {
+        OAuth2TokenContext context = context();
+        // the first lookup misses, then another request signs and releases the key before this one registers
+        cache.afterNextGet = () -> generator.generate(context);
+
+        Jwt jwt = generator.generate(context);
+
+        assertEquals(1, signed.get());
+        assertSame(cache.get(key(context)), jwt);
+    }
+
+    @Test
+    void concurrentIdenticalRequestsSignOnce() throws Exception {
+        OAuth2TokenContext context = context();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Set<String>>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    Set<String> tokens = new HashSet<>();
+                    for (int j = 0; j < REQUESTS_PER_THREAD; j++) {
+                        tokens.add(generator.generate(context).getTokenValue());
+                    }
+                    return tokens;
+                }));
+            }
+            start.countDown();
+
+            Set<String> tokens = new HashSet<>();
+            for (Future<Set<String>> result : results) {
+                tokens.addAll(result.get());
+            }
+            assertEquals(1, signed.get());
+            assertEquals(Set.of("token-1"), tokens);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static OAuth2TokenContext context() {
+        RegisteredClient client = RegisteredClient.withId("registration-id")
+                .clientId("client")
+                .clientSecret("secret")
+                .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .scope("ALL")
+                .tokenSettings(TokenSettings.builder().setting(ACCESS_TOKEN_REUSE_PERCENTAGE_SETTING, 50).build())
+                .build();
+        OAuth2ClientAuthenticationToken principal = new OAuth2ClientAuthenticationToken(client, ClientAuthenticationMethod.CLIENT_SECRET_BASIC, null);
+        return DefaultOAuth2TokenContext.builder()
+                .registeredClient(client)
+                .principal(principal)
+                .authorizedScopes(Set.of("ALL"))
+                .tokenType(OAuth2TokenType.ACCESS_TOKEN)
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .authorizationGrant(new OAuth2ClientCredentialsAuthenticationToken(principal, Set.of("ALL"), Map.of()))
+                .build();
+    }
+
+    private static AccessTokenReuseCache.Key key(OAuth2TokenContext context) {
+        return new AccessTokenReuseCache.Key(context.getRegisteredClient().getId(), Set.of("ALL"), Map.of());
+    }
+
+    /**
+     * Cache running a hook after a lookup, before its result is returned
+     */
+    private static class HookedCache extends AccessTokenReuseCache {
+        private Runnable afterNextGet;
+
+        @Override
+        public Jwt get(Key key) {
+            Jwt jwt = super.get(key);
+            Runnable hook = afterNextGet;
+            afterNextGet = null;
+            if (hook != null) {
+                hook.run();
+            }
+            return jwt;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.authorizationserver.token;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Write-behind store against a real Postgres: writes over the buffer are spilled, read back from their spill file and
+ * replayed, also while the writer never goes idle, later writes of a spilled authorization win, writes left at shutdown
+ * are replayed by the next start and writes the database rejects are dead lettered without holding back the others.
+ * The writer is held up by a lock on the table taken from another connection.
+ *
+ * @author Blajan George
+ */
+@Testcontainers
+class WriteBehindAuthorizationStoreTest {
+    /**
+     * Longest wait for the writer ( in ms )
+     */
+    private static final long TIMEOUT = 10_000;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private static DriverManagerDataSource dataSource;
+    private static JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    private Path spillDirectory;
+
+    private final List<WriteBehindAuthorizationStore> stores = new ArrayList<>();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private Connection lock;
+
+    @BeforeAll
+    static void migrate() {
+        dataSource = new DriverManagerDataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @BeforeEach
+    void clean() {
+        jdbcTemplate.update("DELETE FROM oauth2_authorization");
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        unlockTable();
+        for (WriteBehindAuthorizationStore store : stores) {
+            store.stop();
+        }
+    }
+
+    @Test
+    void overflowIsSpilledReadBackAndReplayed() throws Exception {
+        WriteBehindAuthorizationStore store = store(2, 1);
+        lockTable();
+        saveHeld(store, "a");
+        store.save(row("b"));
+        store.save(row("c"));
+
+        store.save(row("d"));
+
+        assertEquals(1, meterRegistry.get("authorization_store.spilled").counter().count());
+        assertEquals(1, spillFiles().size());
+        assertEquals("d", store.findById("d").id());
+        assertEquals("d", store.findByToken("token-d").id());
+
+        unlockTable();
+
+        await(() -> storedIds().equals(List.of("a", "b", "c", "d")) && spillFiles().isEmpty());
+        assertEquals(0, meterRegistry.get("authorization_store.spilled_pending").gauge().value());
+    }
+
+    @Test
+    void laterWritesOfSpilledAuthorizationAreReplayedInOrder() throws Exception {
+        WriteBehindAuthorizationStore store = store(2, 1);
+        lockTable();
+        saveHeld(store, "a");
+        store.save(row("b"));
+        store.save(row("c"));
+        store.save(row("d"));
+        store.save(row("e"));
+
+        // writes of spilled authorizations follow them into the spill file
+        store.save(revoked(row("d")));
+        store.delete("e", "token-e");
+
+        assertTrue(store.findById("d").revoked());
+        assertNull(store.findById("e"));
+        unlockTable();
+
+        await(() -> spillFiles().isEmpty() && storedIds().equals(List.of("a", "b", "c", "d")));
+        assertTrue(jdbcTemplate.queryForObject("SELECT access_token_revoked FROM oauth2_authorization WHERE id = 'd'", Boolean.class));
+    }
+
+    @Test
+    void spillIsReplayedWhileWriterIsBusy() throws Exception {
+        WriteBehindAuthorizationStore store = store(100, 1);
+        lockTable();
+        saveHeld(store, "held");
+        for (int i = 0; i < 100; i++) {
+            store.save(row("queued-" + i));
+        }
+        for (int i = 0; i < 20; i++) {
+            store.save(row("spilled-" + i));
+        }
+        assertEquals(20, meterRegistry.get("authorization_store.spilled").counter().count());
+
+        // keeps the buffer filled without overflowing it, so the writer never goes idle
+        BlockingQueue<?> queue = (BlockingQueue<?>) ReflectionTestUtils.getField(store, "queue");
+        AtomicBoolean loading = new AtomicBoolean(true);
+        Thread load = new Thread(() -> {
+            for (int i = 0; loading.get(); ) {
+                if (queue.remainingCapacity() > 0) {
+                    store.save(row("load-" + i++));
+                } else {
+                    LockSupport.parkNanos(100_000);
+                }
+            }
+        });
+        unlockTable();
+        load.start();
+        try {
+            await(() -> jdbcTemplate.queryForObject("SELECT count(*) FROM oauth2_authorization WHERE id LIKE 'spilled-%'", Long.class) == 20);
+            assertTrue(load.isAlive());
+        } finally {
+            loading.set(false);
+            load.join();
+        }
+    }
+
+    @Test
+    void writesLeftAtShutdownAreReplayedByNextStart() throws Exception {
+        WriteBehindAuthorizationStore first = store(10, 1);
+        ReflectionTestUtils.setField(first, "shutdownTimeout", 200L);
+        lockTable();
+        saveHeld(first, "a");
+        first.save(row("b"));
+
+        stores.remove(first);
+        first.stop();
+
+        assertEquals(1, spillFiles().size());
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT count(*) FROM oauth2_authorization", Long.class));
+        WriteBehindAuthorizationStore second = store(10, 1);
+        assertEquals("b", second.findById("b").id());
+        unlockTable();
+
+        await(() -> storedIds().equals(List.of("a", "b")) && spillFiles().isEmpty());
+    }
+
+    @Test
+    void rejectedWriteIsDeadLetteredAndOthersAreWritten() throws Exception {
+        WriteBehindAuthorizationStore store = store(10, 10);
+        lockTable();
+        saveHeld(store, "a");
+        store.save(row("b"));
+        store.save(new WriteBehindAuthorizationStore.Row("poisoned", "client", null, "token-poisoned",
+                Instant.now().plusSeconds(300).getEpochSecond(), false, new byte[]{1}));
+        store.save(row("c"));
+        unlockTable();
+
+        await(() -> storedIds().equals(List.of("a", "b", "c")) && meterRegistry.get("authorization_store.dead_lettered").counter().count() == 1);
+        String deadLetters = Files.readString(spillDirectory.resolve("authorizations.dead"), StandardCharsets.UTF_8);
+        assertTrue(deadLetters.contains("\"poisoned\""));
+        assertNotNull(store.findById("c"));
+        assertNull(store.findById("poisoned"));
+    }
+
+    private WriteBehindAuthorizationStore store(int queueCapacity, int batchSize) throws Exception {
+        WriteBehindAuthorizationStore store = new WriteBehindAuthorizationStore(dataSource, new ObjectMapper(), meterRegistry);
+        ReflectionTestUtils.setField(store, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(store, "batchSize", batchSize);
+        ReflectionTestUtils.setField(store, "replayBatches", 1);
+        ReflectionTestUtils.setField(store, "retryDelay", 50L);
+        ReflectionTestUtils.setField(store, "shutdownTimeout", 5_000L);
+        ReflectionTestUtils.setField(store, "spillDirectory", spillDirectory.toString());
+        ReflectionTestUtils.setField(store, "retention", 3_600_000L);
+        ReflectionTestUtils.setField(store, "cleanupBatchSize", 1000);
+        store.start();
+        stores.add(store);
+        return store;
+    }
+
+    /**
+     * Save a row and wait until the writer took it, the writer then waits on the table lock with it
+     *
+     * @param store store
+     * @param id    authorization id
+     */
+    private static void saveHeld(WriteBehindAuthorizationStore store, String id) throws InterruptedException {
+        store.save(row(id));
+        BlockingQueue<?> queue = (BlockingQueue<?>) ReflectionTestUtils.getField(store, "queue");
+        await(queue::isEmpty);
+        // leaves the writer time to reach the database
+        Thread.sleep(100);
+    }
+
+    /**
+     * Block writes to the table from another connection, reads stay possible
+     */
+    private void lockTable() throws SQLException {
+        lock = dataSource.getConnection();
+        lock.setAutoCommit(false);
+        try (Statement statement = lock.createStatement()) {
+            statement.execute("LOCK TABLE oauth2_authorization IN SHARE MODE");
+        }
+    }
+
+    private void unlockTable() throws SQLException {
+        if (lock != null) {
+            lock.rollback();
+            lock.close();
+            lock = null;
+        }
+    }
+
+    private List<Path> spillFiles() {
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".spill")).toList();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<String> storedIds() {
+        return jdbcTemplate.queryForList("SELECT id FROM oauth2_authorization ORDER BY id", String.class);
+    }
+
+    private static WriteBehindAuthorizationStore.Row row(String id) {
+        return new WriteBehindAuthorizationStore.Row(id, "client", "principal", "token-" + id,
+                Instant.now().plusSeconds(300).getEpochSecond(), false, new byte[]{1});
+    }
+
+    private static WriteBehindAuthorizationStore.Row revoked(WriteBehindAuthorizationStore.Row row) {
+        return new WriteBehindAuthorizationStore.Row(row.id(), row.registeredClientId(), row.principalName(), row.accessTokenValue(),
+                row.expiresAt(), true, row.data());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met within " + TIMEOUT + " ms");
+            Thread.sleep(20);
+        }
+    }
+}
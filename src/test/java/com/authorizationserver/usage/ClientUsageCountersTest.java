@@ -0,0 +1,119 @@
+package com.authorizationserver.usage;
+
+import com.authorizationserver.db.repository.ClientUsageRepository;
+import com.authorizationserver.db.repository.CustomRegisteredClientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Attribution of counts to registered clients and flushing: transient failures keep the counts, deltas the database
+ * rejects are dropped without holding back the others.
+ *
+ * @author Blajan George
+ */
+class ClientUsageCountersTest {
+    private final ClientUsageRepository usageRepository = mock(ClientUsageRepository.class);
+    private final CustomRegisteredClientRepository clientRepository = mock(CustomRegisteredClientRepository.class);
+    private final List<ClientUsageRepository.UsageDelta> written = new ArrayList<>();
+
+    private ClientUsageCounters counters;
+
+    @BeforeEach
+    void setUp() {
+        counters = new ClientUsageCounters(usageRepository, clientRepository);
+        ReflectionTestUtils.setField(counters, "bucketSize", 3600000L);
+        when(clientRepository.findByClientId("registered")).thenReturn(mock(RegisteredClient.class));
+        doAnswer(invocation -> written.addAll(invocation.getArgument(1))).when(usageRepository).addUsage(any(), anyList());
+    }
+
+    @Test
+    void unregisteredClientIdIsCountedAsOther() {
+        counters.recordRequested("unknown-1", UsageOutcome.FAILED);
+        counters.recordRequested("unknown-2", UsageOutcome.RATE_LIMITED);
+
+        counters.flush();
+
+        assertEquals(List.of(new ClientUsageRepository.UsageDelta(ClientUsageCounters.OTHER_CLIENTS, 0, 1, 1)), written);
+    }
+
+    @Test
+    void registeredClientIdIsCountedUnderItself() {
+        counters.recordRequested("registered", UsageOutcome.FAILED);
+        counters.record("registered", UsageOutcome.ISSUED);
+
+        counters.flush();
+
+        assertEquals(List.of(new ClientUsageRepository.UsageDelta("registered", 1, 1, 0)), written);
+    }
+
+    @Test
+    void clientIdThatCantBeCheckedIsCountedAsOther() {
+        when(clientRepository.findByClientId("unchecked")).thenThrow(new QueryTimeoutException("timeout"));
+
+        counters.recordRequested("unchecked", UsageOutcome.FAILED);
+        counters.flush();
+
+        assertEquals(List.of(new ClientUsageRepository.UsageDelta(ClientUsageCounters.OTHER_CLIENTS, 0, 1, 0)), written);
+    }
+
+    @Test
+    void rejectedDeltaIsDroppedAndOthersAreWritten() {
+        doAnswer(invocation -> {
+            List<ClientUsageRepository.UsageDelta> deltas = invocation.getArgument(1);
+            if (deltas.stream().anyMatch(delta -> delta.clientId().equals("poisoned"))) {
+                throw new DataIntegrityViolationException("rejected");
+            }
+            return written.addAll(deltas);
+        }).when(usageRepository).addUsage(any(), anyList());
+        for (String clientId : List.of("a", "b", "poisoned", "c", "d")) {
+            counters.record(clientId, UsageOutcome.ISSUED);
+        }
+
+        counters.flush();
+        List<ClientUsageRepository.UsageDelta> first = sorted(written);
+        written.clear();
+        counters.flush();
+
+        assertEquals(List.of(
+                new ClientUsageRepository.UsageDelta("a", 1, 0, 0),
+                new ClientUsageRepository.UsageDelta("b", 1, 0, 0),
+                new ClientUsageRepository.UsageDelta("c", 1, 0, 0),
+                new ClientUsageRepository.UsageDelta("d", 1, 0, 0)), first);
+        assertEquals(List.of(), written);
+    }
+
+    @Test
+    void transientFailureKeepsCountsForNextFlush() {
+        doAnswer(invocation -> {
+            throw new QueryTimeoutException("timeout");
+        }).doAnswer(invocation -> written.addAll(invocation.getArgument(1))).when(usageRepository).addUsage(any(), anyList());
+        counters.record("registered", UsageOutcome.ISSUED);
+
+        counters.flush();
+        counters.record("registered", UsageOutcome.ISSUED);
+        counters.flush();
+
+        assertEquals(List.of(new ClientUsageRepository.UsageDelta("registered", 2, 0, 0)), written);
+    }
+
+    private static List<ClientUsageRepository.UsageDelta> sorted(List<ClientUsageRepository.UsageDelta> deltas) {
+        List<ClientUsageRepository.UsageDelta> sorted = new ArrayList<>(deltas);
+        sorted.sort(Comparator.comparing(ClientUsageRepository.UsageDelta::clientId));
+        return sorted;
+    }
+}